@@ -0,0 +1,93 @@
+package bll;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Bản SIMD của ESKernels trên jdk.incubator.vector (độ rộng làn ưu tiên của CPU).
+ * Mỗi vòng giữ tổng theo từng làn và chỉ cộng dồn các làn ở cuối; phần đuôi chạy vô hướng.
+ * Chỉ dot và multiply (vòng liền mạch) dùng SIMD; gather / scatter theo danh sách TID chạy bản
+ * vô hướng (xem ghi chú bên dưới). Vector ngắn hơn MIN_LENGTH chạy bản vô hướng vì chi phí dựng
+ * vector và cộng các làn lớn hơn phần tiết kiệm được.
+ *
+ * Nằm ở thư mục nguồn riêng vì cần module incubator khi biên dịch:
+ *   javac --add-modules jdk.incubator.vector -cp bin -d bin src-vector/bll/*.java
+ * và được ESKernels nạp bằng reflection khi chạy với --add-modules jdk.incubator.vector.
+ */
+
+public class VectorESKernels extends ESKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /** Độ dài tối thiểu để dùng SIMD */
+    private static final int MIN_LENGTH = 8 * SPECIES.length();
+
+    private static final ESKernels SCALAR = ESKernels.scalar();
+
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public double dot(double[] a, double[] b, int n) {
+        if (n < MIN_LENGTH) {
+            return SCALAR.dot(a, b, n);
+        }
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, i);
+            acc = va.fma(vb, acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double multiply(double[] a, double[] b, double[] out, int n) {
+        if (n < MIN_LENGTH) {
+            return SCALAR.multiply(a, b, out, n);
+        }
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, a, i).mul(DoubleVector.fromArray(SPECIES, b, i));
+            v.intoArray(out, i);
+            acc = acc.add(v);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            out[i] = a[i] * b[i];
+            sum += out[i];
+        }
+        return sum;
+    }
+
+    // Gather / scatter (fromArray / intoArray với indexMap) chạy bản vô hướng: trên JDK 17 các bản
+    // này làm JVM crash (SIGSEGV) khi được inline vào TopKExpectedSupport.extend và
+    // UDiffsetMiner.extend đã biên dịch bởi C2, và ngay cả khi chạy riêng lợi ích cũng nhỏ hoặc âm
+    // (gatherMultiply 0.66–1.12x bản vô hướng trên chess tùy lần đo).
+
+    @Override
+    public double gatherDot(double[] w, int[] tids, double[] p, int n) {
+        return SCALAR.gatherDot(w, tids, p, n);
+    }
+
+    @Override
+    public double gatherMultiply(double[] w, int[] tids, double[] p, double[] out, int n) {
+        return SCALAR.gatherMultiply(w, tids, p, out, n);
+    }
+
+    @Override
+    public double gatherSum(double[] w, int[] tids, int n) {
+        return SCALAR.gatherSum(w, tids, n);
+    }
+}
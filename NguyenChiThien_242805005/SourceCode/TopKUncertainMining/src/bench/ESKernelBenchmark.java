@@ -0,0 +1,180 @@
+package bench;
+
+import bll.DatabasePreparer;
+import bll.ESKernels;
+import dal.CSVExporter;
+import dal.DatasetGenerator;
+import java.io.*;
+import java.util.*;
+import model.PreparedDatabase;
+
+/**
+ * Benchmark các vòng nhân–cộng của ESKernels: bản vô hướng so với ESKernels.INSTANCE (SIMD khi
+ * chạy với --add-modules jdk.incubator.vector và đã biên dịch src-vector).
+ *
+ * Dữ liệu vào lấy từ dataset thật sau tiền xử lý:
+ *  - dot / multiply:          cột xác suất dày (theo TID) của item đứng đầu với từng item khác
+ *  - gatherDot / gatherMultiply: vector prefix dày của item đứng đầu, gather theo danh sách TID
+ *                             và xác suất của từng item (như một mức của TopK-ES)
+ *  - gatherSum:               tổng vector prefix theo danh sách TID của từng item
+ * Một op là một lượt qua tất cả item; kết quả tính bằng ns trên mỗi phần tử.
+ *
+ * Cách chạy (từ thư mục dự án, sau khi biên dịch src-vector):
+ *   java --add-modules jdk.incubator.vector -cp bin bench.ESKernelBenchmark -datasets chess,foodmart -wi 5 -i 10
+ */
+
+public class ESKernelBenchmark {
+
+    private static final String[] KERNELS = {"dot", "multiply", "gatherDot", "gatherMultiply", "gatherSum"};
+
+    // -----------------------------------------------------------------
+    // Cấu hình (mặc định, ghi đè bằng tham số dòng lệnh)
+    // -----------------------------------------------------------------
+    private List<String> datasets = Arrays.asList("chess", "foodmart");
+    private long seed = 1L;
+    private int warmupIterations = 5;
+    private int measurementIterations = 10;
+    private String originFolder = "datasets/origin/";
+    private String outputCsv = "outputs/kernel_benchmark.csv";
+
+    /** Tránh JIT loại bỏ kết quả */
+    private double sink;
+
+    public static void main(String[] args) throws Exception {
+        ESKernelBenchmark b = new ESKernelBenchmark();
+        b.parseArgs(args);
+        b.run();
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            switch (a) {
+                case "-datasets": datasets = Arrays.asList(args[++i].split(",")); break;
+                case "-seed":     seed = Long.parseLong(args[++i]); break;
+                case "-wi":       warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i":        measurementIterations = Integer.parseInt(args[++i]); break;
+                case "-origin":   originFolder = args[++i]; break;
+                case "-o":        outputCsv = args[++i]; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + a);
+            }
+        }
+    }
+
+    private void run() throws IOException {
+        ESKernels scalar = ESKernels.scalar();
+        ESKernels simd = ESKernels.INSTANCE;
+        System.out.println("Kernels: " + scalar.name() + " vs " + simd.name());
+
+        List<List<String>> rows = new ArrayList<>();
+        for (String dataset : datasets) {
+            PreparedDatabase db = prepare(dataset);
+            for (String kernel : KERNELS) {
+                double base = measure(db, kernel, scalar);
+                double fast = measure(db, kernel, simd);
+                System.out.printf("%-10s %-15s %-10s %8.3f ns/elem   %-10s %8.3f ns/elem   speedup %.2fx%n",
+                        dataset, kernel, scalar.name(), base, simd.name(), fast, base / fast);
+                rows.add(Arrays.asList(dataset, kernel, scalar.name(), String.valueOf(base),
+                        simd.name(), String.valueOf(fast), String.valueOf(base / fast)));
+            }
+        }
+        new File(outputCsv).getAbsoluteFile().getParentFile().mkdirs();
+        CSVExporter.exportToCSV(Arrays.asList("Dataset", "Kernel", "Baseline", "Baseline_ns_elem",
+                "Kernels", "Kernels_ns_elem", "Speedup"), rows, outputCsv);
+    }
+
+    private PreparedDatabase prepare(String dataset) {
+        String origin = originFolder + dataset + ".txt";
+        DatasetGenerator.OriginIndex index = DatasetGenerator.index(origin);
+        if (index == null) {
+            throw new IllegalStateException("Cannot read " + origin);
+        }
+        return DatabasePreparer.prepare(index.getItems().toArray(new String[0]),
+                DatasetGenerator.generateTransactions(index, seed, 1, null));
+    }
+
+    /** @return thời gian trung bình (ns) trên mỗi phần tử qua các vòng measurement */
+    private double measure(PreparedDatabase db, String kernel, ESKernels kernels) {
+        int n = db.getTransactionCount();
+        int[] order = db.getRankOrder();
+        double[] prefix = dense(db, order[0], n);
+        double[] out = new double[n];
+
+        // Số lượt mỗi vòng để một vòng chạy khoảng vài chục ms
+        long elemsPerPass = 0;
+        for (int id : order) {
+            elemsPerPass += kernel.startsWith("gather") ? db.getTidList(id).length : n;
+        }
+        int passes = (int) Math.max(1, 20_000_000L / Math.max(1, elemsPerPass));
+
+        double[][] columns = null;
+        if (!kernel.startsWith("gather")) {
+            int m = (int) Math.min(order.length, Math.max(2, 64_000_000L / 8 / Math.max(1, n)));
+            columns = new double[m][];
+            for (int r = 0; r < m; r++) {
+                columns[r] = dense(db, order[r], n);
+            }
+            elemsPerPass = (long) m * n;
+            passes = (int) Math.max(1, 20_000_000L / elemsPerPass);
+        }
+
+        double total = 0.0;
+        for (int it = 0; it < warmupIterations + measurementIterations; it++) {
+            long t0 = System.nanoTime();
+            for (int p = 0; p < passes; p++) {
+                sink += pass(db, kernel, kernels, order, prefix, columns, out, n);
+            }
+            long elapsed = System.nanoTime() - t0;
+            if (it >= warmupIterations) {
+                total += (double) elapsed / ((double) passes * elemsPerPass);
+            }
+        }
+        return total / measurementIterations;
+    }
+
+    private static double pass(PreparedDatabase db, String kernel, ESKernels kernels, int[] order,
+                               double[] prefix, double[][] columns, double[] out, int n) {
+        double sum = 0.0;
+        switch (kernel) {
+            case "dot":
+                for (double[] col : columns) sum += kernels.dot(prefix, col, n);
+                break;
+            case "multiply":
+                for (double[] col : columns) sum += kernels.multiply(prefix, col, out, n);
+                break;
+            case "gatherDot":
+                for (int id : order) {
+                    int[] tids = db.getTidList(id);
+                    sum += kernels.gatherDot(prefix, tids, db.getTidProbs(id), tids.length);
+                }
+                break;
+            case "gatherMultiply":
+                for (int id : order) {
+                    int[] tids = db.getTidList(id);
+                    sum += kernels.gatherMultiply(prefix, tids, db.getTidProbs(id), out, tids.length);
+                }
+                break;
+            case "gatherSum":
+                for (int id : order) {
+                    int[] tids = db.getTidList(id);
+                    sum += kernels.gatherSum(prefix, tids, tids.length);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown kernel: " + kernel);
+        }
+        return sum;
+    }
+
+    /** Cột xác suất dày (theo TID) của một item */
+    private static double[] dense(PreparedDatabase db, int id, int n) {
+        double[] col = new double[n];
+        int[] tids = db.getTidList(id);
+        double[] probs = db.getTidProbs(id);
+        for (int x = 0; x < tids.length; x++) {
+            col[tids[x]] = probs[x];
+        }
+        return col;
+    }
+}
@@ -0,0 +1,341 @@
+package bench;
+
+import bll.DatabasePreparer;
+import dal.CSVExporter;
+import dal.DatasetGenerator;
+import java.io.*;
+import java.util.*;
+import main.Main;
+import main.RunMeter;
+import model.OffHeapTransactionStore;
+import model.PairESMatrix;
+import model.PreparedDatabase;
+import model.RunMetrics;
+import model.TransactionStore;
+
+/**
+ * Bộ benchmark cho các thuật toán trong bll, theo cách làm của JMH:
+ *  - Lưới tham số: dataset × K × seed sinh xác suất × thuật toán
+ *  - Các vòng khởi động (warmup) bị bỏ qua, sau đó đo nhiều vòng (measurement)
+ *  - Mỗi tổ hợp có thể chạy trong các JVM con riêng (fork) để tránh ảnh hưởng JIT/heap lẫn nhau
+ *  - Bộ đo GC/cấp phát (-prof gc): byte cấp phát mỗi lần chạy, số lần GC và thời gian GC
+ *  - Nơi giữ giao dịch (-store heap|offheap) cùng heap còn giữ sau tiền xử lý và RSS cao nhất
+ *    của tiến trình (VmHWM, chỉ trên Linux; có ý nghĩa nhất khi mỗi tổ hợp chạy trong JVM con riêng)
+ *  - Thứ tự dữ liệu (-order file|reorder): giữ thứ tự gốc hoặc đánh số lại item theo ES và sắp
+ *    giao dịch theo thứ tự từ điển (DatabasePreparer.reorder), để đo ảnh hưởng lên từng dataset
+ *
+ * Dữ liệu được sinh với seed cố định và tiền xử lý ngoài phần đo (tương đương @Setup(Level.Trial)).
+ *
+ * Cách chạy (từ thư mục dự án):
+ *   java -cp bin bench.MinerBenchmark -datasets example,chess -k 10,50 -seeds 1,2 -wi 2 -i 5 -f 1 -prof gc
+ *   java -cp bin bench.MinerBenchmark -datasets retail -algorithms U-Apriori -store offheap -prof gc
+ *   java -cp bin bench.MinerBenchmark -datasets chess,foodmart -algorithms U-FPGrowth,U-HMine -order reorder
+ */
+
+public class MinerBenchmark {
+
+    static final String[] ALL_ALGORITHMS = {"U-Apriori", "U-FPGrowth", "U-HMine", "Hybrid", "TopK-ES", "Diffset", "LargeK", "OutOfCore", "Closed", "Maximal"};
+
+    private static final String SAMPLE = "SAMPLE ";
+    private static final String FOOTPRINT = "FOOTPRINT ";
+
+    // -----------------------------------------------------------------
+    // Cấu hình (mặc định, ghi đè bằng tham số dòng lệnh)
+    // -----------------------------------------------------------------
+    private List<String> datasets = Arrays.asList("example", "chess", "foodmart", "retail");
+    private List<Integer> kValues = Arrays.asList(10, 50, 90);
+    private List<Long> seeds = Arrays.asList(1L, 2L);
+    private List<String> algorithms = Arrays.asList(ALL_ALGORITHMS);
+    private int warmupIterations = 2;
+    private int measurementIterations = 5;
+    private int forks = 1;
+    private boolean gcProfiler = false;
+    private double densityThreshold = 0.1;
+    private String originFolder = "datasets/origin/";
+    private String outputCsv = "outputs/benchmark.csv";
+    private String jvmArgs = "";
+    private String store = "heap";
+    private String order = "file";
+
+    /** Một lần đo của một vòng measurement */
+    static class Sample {
+
+        final double timeMs;
+        final long allocBytes;
+        final long gcCount;
+        final long gcTimeMs;
+
+        Sample(double timeMs, long allocBytes, long gcCount, long gcTimeMs) {
+            this.timeMs = timeMs;
+            this.allocBytes = allocBytes;
+            this.gcCount = gcCount;
+            this.gcTimeMs = gcTimeMs;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        MinerBenchmark b = new MinerBenchmark();
+        b.parseArgs(args);
+        b.run();
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            switch (a) {
+                case "-datasets":   datasets = splitList(args[++i]); break;
+                case "-k":          kValues = toInts(splitList(args[++i])); break;
+                case "-seeds":      seeds = toLongs(splitList(args[++i])); break;
+                case "-algorithms": algorithms = splitList(args[++i]); break;
+                case "-wi":         warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i":          measurementIterations = Integer.parseInt(args[++i]); break;
+                case "-f":          forks = Integer.parseInt(args[++i]); break;
+                case "-prof":       gcProfiler = "gc".equals(args[++i]); break;
+                case "-density":    densityThreshold = Double.parseDouble(args[++i]); break;
+                case "-origin":     originFolder = args[++i]; break;
+                case "-o":          outputCsv = args[++i]; break;
+                case "-jvmArgs":    jvmArgs = args[++i]; break;
+                case "-store":      store = args[++i]; break;
+                case "-order":      order = args[++i]; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + a);
+            }
+        }
+        if (!store.equals("heap") && !store.equals("offheap")) {
+            throw new IllegalArgumentException("Unknown store: " + store + " (heap|offheap)");
+        }
+        if (!order.equals("file") && !order.equals("reorder")) {
+            throw new IllegalArgumentException("Unknown order: " + order + " (file|reorder)");
+        }
+        if (order.equals("reorder") && store.equals("offheap")) {
+            throw new IllegalArgumentException("-order reorder keeps transactions on heap (use -store heap)");
+        }
+    }
+
+    // =====================================================================
+    // Vòng lặp chính
+    // =====================================================================
+
+    private void run() throws Exception {
+        boolean child = forks == 0 && System.getProperty("bench.child") != null;
+        List<List<String>> rows = new ArrayList<>();
+
+        for (String dataset : datasets) {
+            for (long seed : seeds) {
+                // Dữ liệu chỉ cần chuẩn bị trong JVM thực sự chạy đo
+                PreparedDatabase db = forks == 0 ? prepare(dataset, seed) : null;
+                long retainedMB = forks == 0 ? retainedHeapMB() : 0;
+
+                for (String algorithm : algorithms) {
+                    for (int k : kValues) {
+                        List<Sample> samples = new ArrayList<>();
+                        // [0] = heap còn giữ sau tiền xử lý, [1] = RSS cao nhất (MB), lớn nhất qua các fork
+                        long[] footprint = new long[2];
+                        if (forks == 0) {
+                            samples.addAll(measure(db, algorithm, k));
+                            footprint[0] = retainedMB;
+                            footprint[1] = peakRssMB();
+                        } else {
+                            for (int f = 0; f < forks; f++) {
+                                samples.addAll(runFork(dataset, seed, algorithm, k, footprint));
+                            }
+                        }
+
+                        if (child) {
+                            for (Sample s : samples) {
+                                System.out.println(SAMPLE + s.timeMs + " " + s.allocBytes + " "
+                                        + s.gcCount + " " + s.gcTimeMs);
+                            }
+                            System.out.println(FOOTPRINT + footprint[0] + " " + footprint[1]);
+                        } else {
+                            rows.add(report(dataset, seed, algorithm, k, samples, footprint));
+                        }
+                    }
+                }
+            }
+        }
+
+        if (!child) {
+            List<String> headers = Arrays.asList("Benchmark", "Dataset", "K", "Seed", "Mode", "Cnt",
+                    "Score_ms_op", "StdDev_ms", "Min_ms", "Alloc_bytes_op", "GC_count", "GC_time_ms",
+                    "Store", "Retained_heap_MB", "Peak_RSS_MB", "Order");
+            new File(outputCsv).getAbsoluteFile().getParentFile().mkdirs();
+            CSVExporter.exportToCSV(headers, rows, outputCsv);
+        }
+    }
+
+    /**
+     * Sinh xác suất thẳng vào bộ nhớ (cùng kết quả với file xác suất của seed) rồi tiền xử lý.
+     * Với -store offheap, giao dịch được chép ra ngoài heap và danh sách Transaction
+     * được dựng khi truy cập.
+     */
+    private PreparedDatabase prepare(String dataset, long seed) {
+        String origin = originFolder + dataset + ".txt";
+        DatasetGenerator.OriginIndex index = DatasetGenerator.index(origin);
+        if (index == null) {
+            throw new IllegalStateException("Cannot read " + origin);
+        }
+        TransactionStore generated = DatasetGenerator.generateTransactions(index, seed,
+                Runtime.getRuntime().availableProcessors(), null);
+        String[] itemNames = index.getItems().toArray(new String[0]);
+        PreparedDatabase db;
+        if (order.equals("reorder")) {
+            db = DatabasePreparer.reorder(itemNames, generated);
+            db.getTransactions();
+        } else if (store.equals("offheap")) {
+            db = DatabasePreparer.prepare(itemNames, OffHeapTransactionStore.copyOf(generated)).withTransactionView();
+        } else {
+            db = DatabasePreparer.prepare(itemNames, generated);
+            db.getTransactions();
+        }
+        // Ma trận ES cặp item thuộc tiền xử lý: dựng một lần cho K lớn nhất của lưới
+        if (PairESMatrix.ENABLED) {
+            db.getPairMatrix(Collections.max(kValues));
+        }
+        return db;
+    }
+
+    /** Heap còn được giữ (MB) sau khi gọi gc: chủ yếu là dữ liệu đã tiền xử lý */
+    private static long retainedHeapMB() {
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024);
+    }
+
+    /**
+     * RSS cao nhất của tiến trình (MB), đọc VmHWM trong /proc/self/status.
+     * Gồm cả heap, bộ nhớ ngoài heap và mã của JVM; trả về -1 nếu không đọc được (không phải Linux).
+     */
+    private static long peakRssMB() {
+        File status = new File("/proc/self/status");
+        if (!status.exists()) {
+            return -1;
+        }
+        try (BufferedReader br = new BufferedReader(new FileReader(status))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /** Chạy warmup rồi đo trong JVM hiện tại */
+    private List<Sample> measure(PreparedDatabase db, String algorithm, int k) {
+        for (int i = 0; i < warmupIterations; i++) {
+            Main.mineTopK(algorithm, db, k, densityThreshold);
+        }
+
+        List<Sample> samples = new ArrayList<>();
+        for (int i = 0; i < measurementIterations; i++) {
+            RunMetrics m = RunMeter.measure(() -> Main.mineTopK(algorithm, db, k, densityThreshold), false);
+            long alloc = gcProfiler ? (long) (m.getAllocatedMB() * 1024 * 1024) : 0;
+            samples.add(new Sample(m.getWallMs(), alloc, m.getGcCount(), m.getGcPauseMs()));
+        }
+        return samples;
+    }
+
+    /** Chạy một tổ hợp trong JVM con, nhận lại các lần đo */
+    private List<Sample> runFork(String dataset, long seed, String algorithm, int k, long[] footprint)
+            throws Exception {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+        if (!jvmArgs.isEmpty()) {
+            cmd.addAll(Arrays.asList(jvmArgs.trim().split("\\s+")));
+        }
+        cmd.add("-Dbench.child=true");
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(MinerBenchmark.class.getName());
+        cmd.addAll(Arrays.asList("-datasets", dataset, "-seeds", String.valueOf(seed),
+                "-algorithms", algorithm, "-k", String.valueOf(k),
+                "-wi", String.valueOf(warmupIterations), "-i", String.valueOf(measurementIterations),
+                "-f", "0", "-density", String.valueOf(densityThreshold), "-origin", originFolder,
+                "-store", store, "-order", order));
+        if (gcProfiler) {
+            cmd.addAll(Arrays.asList("-prof", "gc"));
+        }
+
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        List<Sample> samples = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith(SAMPLE)) {
+                    String[] parts = line.split(" ");
+                    samples.add(new Sample(Double.parseDouble(parts[1]), Long.parseLong(parts[2]),
+                            Long.parseLong(parts[3]), Long.parseLong(parts[4])));
+                } else if (line.startsWith(FOOTPRINT)) {
+                    String[] parts = line.split(" ");
+                    footprint[0] = Math.max(footprint[0], Long.parseLong(parts[1]));
+                    footprint[1] = Math.max(footprint[1], Long.parseLong(parts[2]));
+                }
+            }
+        }
+        if (p.waitFor() != 0) {
+            throw new IllegalStateException("Fork failed: " + algorithm + " on " + dataset + " (K = " + k + ")");
+        }
+        return samples;
+    }
+
+    private List<String> report(String dataset, long seed, String algorithm, int k, List<Sample> samples,
+                                long[] footprint) {
+        double mean = 0.0;
+        double min = Double.MAX_VALUE;
+        long alloc = 0;
+        long gcCount = 0;
+        long gcTime = 0;
+        for (Sample s : samples) {
+            mean += s.timeMs;
+            min = Math.min(min, s.timeMs);
+            alloc += s.allocBytes;
+            gcCount += s.gcCount;
+            gcTime += s.gcTimeMs;
+        }
+        int n = samples.size();
+        mean /= n;
+        double var = 0.0;
+        for (Sample s : samples) {
+            var += (s.timeMs - mean) * (s.timeMs - mean);
+        }
+        double stdDev = n > 1 ? Math.sqrt(var / (n - 1)) : 0.0;
+
+        System.out.printf("%-10s %-10s K=%-4d seed=%-3d avgt %3d  %12.3f +- %10.3f ms/op%s  %s %s heap=%d MB rss=%d MB%n",
+                algorithm, dataset, k, seed, n, mean, stdDev,
+                gcProfiler ? String.format("  alloc=%d B/op  gc=%d (%d ms)", alloc / n, gcCount, gcTime) : "",
+                store, order, footprint[0], footprint[1]);
+
+        return Arrays.asList(algorithm, dataset, String.valueOf(k), String.valueOf(seed), "avgt",
+                String.valueOf(n), String.valueOf(mean), String.valueOf(stdDev), String.valueOf(min),
+                gcProfiler ? String.valueOf(alloc / n) : "", String.valueOf(gcCount), String.valueOf(gcTime),
+                store, String.valueOf(footprint[0]), String.valueOf(footprint[1]), order);
+    }
+
+    // -----------------------------------------------------------------
+    // Tiện ích
+    // -----------------------------------------------------------------
+
+    private static List<String> splitList(String s) {
+        List<String> out = new ArrayList<>();
+        for (String part : s.split(",")) {
+            if (!part.trim().isEmpty()) out.add(part.trim());
+        }
+        return out;
+    }
+
+    private static List<Integer> toInts(List<String> xs) {
+        List<Integer> out = new ArrayList<>();
+        for (String x : xs) out.add(Integer.parseInt(x));
+        return out;
+    }
+
+    private static List<Long> toLongs(List<String> xs) {
+        List<Long> out = new ArrayList<>();
+        for (String x : xs) out.add(Long.parseLong(x));
+        return out;
+    }
+}
@@ -0,0 +1,439 @@
+package bll;
+
+import java.util.*;
+import model.Itemset;
+import model.PreparedDatabase;
+
+/**
+ * Khai thác Top-K itemset đóng (closed) hoặc tối đại (maximal) theo Expected Support.
+ *
+ * Trên dữ liệu dày (vd: chess), Top-K thông thường gồm chủ yếu các tập con của một vài mẫu dài.
+ * Hai chế độ rút gọn:
+ *  - CLOSED:  X đóng nếu không tập cha thực sự nào có cùng ES. ES(X ∪ {y}) = ES(X) khi và chỉ khi
+ *             y có xác suất 1 trong mọi giao dịch chứa X, nên closure(X) = X ∪ {các item như vậy}.
+ *             Kết quả là K itemset đóng có ES cao nhất.
+ *  - MAXIMAL: X tối đại tại ngưỡng τ nếu ES(X) ≥ τ và mọi tập cha X ∪ {y} có ES < τ, tức là
+ *             τ ∈ (maxExt(X), ES(X)] với maxExt(X) = max ES(X ∪ {y}). τ* là ngưỡng lớn nhất mà
+ *             tại đó có ít nhất K itemset tối đại; kết quả là K itemset tối đại tại τ* có ES cao nhất.
+ *             Itemset tối đại luôn đóng.
+ *
+ * Duyệt theo kiểu LCM trên danh sách TID (kèm tích xác suất), item theo thứ tự ES giảm dần:
+ * mỗi nút là một itemset đóng Q với item lõi e; con của Q là closure(Q ∪ {r}) với r sau e.
+ * Nếu closure thêm một item đứng trước r thì itemset đóng này đã được (hoặc sẽ được) sinh từ
+ * nhánh khác (kiểm tra bảo toàn tiền tố), nên cả cây con bị bỏ. Các item trong closure được
+ * nhảy qua luôn, không duyệt các tập con không đóng nằm giữa.
+ *
+ * Cắt tỉa theo ngưỡng động: ES đơn điệu giảm khi thêm item nên nhánh có ES < minES bị bỏ.
+ * Ở chế độ MAXIMAL, minES là cận dưới của τ* tính từ các khoảng (maxExt, ES] đã thu được
+ * (thêm khoảng chỉ làm τ* tăng), thấp hơn minES của Top-K thông thường nên duyệt nhiều nút hơn
+ * nhưng kết quả là các mẫu dài không trùng lặp.
+ */
+
+public class CondensedTopKMiner {
+
+    public enum Mode { CLOSED, MAXIMAL }
+
+    private final PreparedDatabase prepared;
+    private final int k;
+    private final Mode mode;
+
+    /** Thứ hạng → item id (ES giảm dần) */
+    private final int[] order;
+
+    /** Số giao dịch có xác suất đúng bằng 1 của mỗi item (theo id) */
+    private final int[] certainCount;
+
+    /** Thứ hạng của item sắp theo certainCount giảm dần (duyệt ứng viên closure) */
+    private final int[] byCertainCount;
+
+    /** Item (theo thứ hạng) đang nằm trong itemset của nút hiện tại */
+    private final boolean[] inQ;
+
+    /** Các item (thứ hạng) của nút hiện tại, theo thứ tự được thêm vào */
+    private final int[] members;
+
+    /** CLOSED: hàng đợi Top-K theo ES tăng dần */
+    private final PriorityQueue<Itemset> topKQueue =
+            new PriorityQueue<>(Comparator.comparingDouble(Itemset::getExpectedSupport));
+
+    /** CLOSED: ES nhỏ nhất của Top-K; MAXIMAL: cận dưới của τ* */
+    private double minES = 0.0;
+
+    /** MAXIMAL: các itemset đóng với khoảng ngưỡng mà tại đó chúng tối đại */
+    private final List<Candidate> candidates = new ArrayList<>();
+    private int addedSinceUpdate;
+
+    /** Bộ đếm không gian tìm kiếm (chỉ cập nhật khi MiningStats.ENABLED) */
+    private final MiningStats stats;
+
+    /**
+     * @param prepared cơ sở dữ liệu đã tiền xử lý (dùng danh sách TID)
+     * @param k        số itemset cần tìm
+     * @param mode     CLOSED hoặc MAXIMAL
+     */
+    public CondensedTopKMiner(PreparedDatabase prepared, int k, Mode mode) {
+        this.prepared = prepared;
+        this.k = k;
+        this.mode = mode;
+        this.stats = new MiningStats(mode == Mode.CLOSED ? "Closed" : "Maximal");
+        this.order = prepared.getRankOrder();
+        this.inQ = new boolean[order.length];
+        this.members = new int[order.length];
+
+        this.certainCount = new int[prepared.getItemCount()];
+        Integer[] ranks = new Integer[order.length];
+        for (int r = 0; r < order.length; r++) {
+            ranks[r] = r;
+            int c = 0;
+            for (double p : prepared.getTidProbs(order[r])) {
+                if (p == 1.0) {
+                    c++;
+                }
+            }
+            certainCount[order[r]] = c;
+        }
+        Arrays.sort(ranks, (a, b) -> Integer.compare(certainCount[order[b]], certainCount[order[a]]));
+        this.byCertainCount = new int[order.length];
+        for (int i = 0; i < ranks.length; i++) {
+            byCertainCount[i] = ranks[i];
+        }
+    }
+
+    /**
+     * @return Top-K itemset đóng / tối đại theo ES giảm dần
+     */
+    public List<Itemset> mine() {
+        // Nút gốc: closure(∅) gồm các item có xác suất 1 trong mọi giao dịch (tids == null: mọi giao dịch)
+        int n = prepared.getTransactionCount();
+        int size = 0;
+        for (int r : byCertainCount) {
+            if (certainCount[order[r]] < n || n == 0) {
+                break;
+            }
+            inQ[r] = true;
+            members[size++] = r;
+        }
+        if (size > 0) {
+            expand(size, -1, null, null, n, n, true);
+        } else {
+            if (mode == Mode.CLOSED) {
+                seedSingletons();
+            }
+            for (int r = 0; r < order.length; r++) {
+                int id = order[r];
+                double es = prepared.getItemES(id);
+                if (es <= 0 || es < minES) {
+                    if (MiningStats.ENABLED) stats.prunedByUpperBound();
+                    break; // các item sau có ES không lớn hơn
+                }
+                if (MiningStats.ENABLED) stats.candidate();
+                int[] tids = prepared.getTidList(id);
+                MiningPhaseEvent phase = stats.beginPhase("subtree", r);
+                visitChild(0, r, tids, prepared.getTidProbs(id), tids.length, es, mode != Mode.CLOSED);
+                stats.endPhase(phase, minES);
+            }
+        }
+
+        List<Itemset> result;
+        if (mode == Mode.CLOSED) {
+            result = new ArrayList<>(topKQueue);
+        } else {
+            double tau = threshold(true);
+            result = new ArrayList<>();
+            for (Candidate c : candidates) {
+                if (c.maxExt < tau && tau <= c.es) {
+                    result.add(c.itemset);
+                }
+            }
+        }
+        result.sort((a, b) -> Double.compare(b.getExpectedSupport(), a.getExpectedSupport()));
+        return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+    }
+
+    /**
+     * CLOSED: đẩy trước closure của các item đơn vào Top-K. DFS đi sâu vào nhánh đầu tiên khi
+     * minES còn bằng 0; với các itemset đóng có ES cao nhất đã nằm sẵn trong hàng đợi,
+     * minES đạt gần giá trị cuối ngay từ đầu. Các nút này không được đẩy lại khi duyệt.
+     */
+    private void seedSingletons() {
+        for (int r = 0; r < order.length; r++) {
+            int id = order[r];
+            double es = prepared.getItemES(id);
+            if (es <= 0 || es < minES) {
+                break;
+            }
+            int[] tids = prepared.getTidList(id);
+            int newSize = close(0, r, tids, tids.length);
+            if (newSize >= 0) {
+                pushTopK(newSize, es);
+            }
+            release(0, Math.max(newSize, 1));
+        }
+    }
+
+    /**
+     * Xét closure(Q ∪ {r}) với Q là members[0..size): bỏ nếu closure chứa item đứng trước r
+     * mà không thuộc Q (đã sinh từ nhánh khác), nếu không thì mở rộng nút mới.
+     *
+     * @param push đẩy nút mới vào Top-K (false nếu đã đẩy bởi seedSingletons)
+     */
+    private void visitChild(int size, int r, int[] tids, double[] vals, int len, double es, boolean push) {
+        int newSize = close(size, r, tids, len);
+        if (newSize < 0) {
+            if (MiningStats.ENABLED) stats.prunedBySubset();
+            release(size, size + 1);
+        } else {
+            expand(newSize, r, tids, vals, len, es, push);
+            release(size, newSize);
+        }
+    }
+
+    /**
+     * Thêm r và closure vào members (từ vị trí size).
+     *
+     * @return số item của itemset đóng, -1 nếu closure chứa item đứng trước r ngoài Q
+     *         (khi đó chỉ r đã được thêm)
+     */
+    private int close(int size, int r, int[] tids, int len) {
+        inQ[r] = true;
+        members[size] = r;
+        int newSize = size + 1;
+        for (int j : byCertainCount) {
+            if (certainCount[order[j]] < len) {
+                break; // các item sau không thể có xác suất 1 trên mọi giao dịch của nút
+            }
+            if (inQ[j] || !allCertain(order[j], tids, len)) {
+                continue;
+            }
+            if (j < r) {
+                release(size + 1, newSize);
+                return -1;
+            }
+            inQ[j] = true;
+            members[newSize++] = j;
+        }
+        return newSize;
+    }
+
+    /** Bỏ members[from..to) khỏi itemset hiện tại */
+    private void release(int from, int to) {
+        for (int i = from; i < to; i++) {
+            inQ[members[i]] = false;
+        }
+    }
+
+    /**
+     * Mở rộng itemset đóng members[0..size) có item lõi ở thứ hạng core.
+     *
+     * @param tids danh sách TID của itemset (null: mọi giao dịch)
+     * @param vals tích xác suất tương ứng (null: bằng 1)
+     * @param push CLOSED: đẩy itemset vào Top-K (false nếu đã đẩy bởi seedSingletons)
+     */
+    private void expand(int size, int core, int[] tids, double[] vals, int len, double es, boolean push) {
+        if (mode == Mode.CLOSED && push) {
+            pushTopK(size, es);
+        }
+        double maxExt = 0.0;
+        for (int r = core + 1; r < order.length; r++) {
+            if (inQ[r]) {
+                continue;
+            }
+            int id = order[r];
+            if (prepared.getItemES(id) < minES) {
+                if (MiningStats.ENABLED) stats.prunedByUpperBound();
+                break; // các item sau có ES đơn không lớn hơn, ES(Q ∪ {y}) ≤ ES(y)
+            }
+            if (MiningStats.ENABLED) stats.candidate();
+            int[] ytids = prepared.getTidList(id);
+            double[] yprobs = prepared.getTidProbs(id);
+            int[] nextTids;
+            double[] nextVals;
+            int c = 0;
+            double sum = 0.0;
+            if (tids == null) {
+                nextTids = ytids;
+                nextVals = yprobs;
+                c = ytids.length;
+                sum = prepared.getItemES(id);
+            } else {
+                nextTids = new int[Math.min(len, ytids.length)];
+                nextVals = new double[nextTids.length];
+                for (int a = 0, b = 0; a < len && b < ytids.length; ) {
+                    if (tids[a] < ytids[b]) {
+                        a++;
+                    } else if (tids[a] > ytids[b]) {
+                        b++;
+                    } else {
+                        nextTids[c] = tids[a];
+                        nextVals[c] = vals[a++] * yprobs[b++];
+                        sum += nextVals[c++];
+                    }
+                }
+                if (MiningStats.ENABLED) stats.scanned(len);
+            }
+            maxExt = Math.max(maxExt, sum);
+            if (sum <= 0 || sum < minES) {
+                if (MiningStats.ENABLED) stats.prunedByExactES();
+                continue;
+            }
+            visitChild(size, r, nextTids, nextVals, c, sum, true);
+        }
+
+        if (mode == Mode.MAXIMAL) {
+            // Tập cha qua item đứng trước lõi không nằm trong cây con này nhưng vẫn tính vào maxExt
+            for (int r = 0; r < core; r++) {
+                if (inQ[r] || prepared.getItemES(order[r]) < minES) {
+                    continue;
+                }
+                maxExt = Math.max(maxExt, extensionES(order[r], tids, vals, len));
+            }
+            addCandidate(size, maxExt, es);
+        }
+    }
+
+    /** ES(Q ∪ {y}) khi chỉ cần giá trị (không dựng danh sách TID) */
+    private double extensionES(int id, int[] tids, double[] vals, int len) {
+        if (tids == null) {
+            return prepared.getItemES(id);
+        }
+        int[] ytids = prepared.getTidList(id);
+        double[] yprobs = prepared.getTidProbs(id);
+        double sum = 0.0;
+        for (int a = 0, b = 0; a < len && b < ytids.length; ) {
+            if (tids[a] < ytids[b]) {
+                a++;
+            } else if (tids[a] > ytids[b]) {
+                b++;
+            } else {
+                sum += vals[a++] * yprobs[b++];
+            }
+        }
+        if (MiningStats.ENABLED) stats.scanned(len);
+        return sum;
+    }
+
+    /** Item có xác suất đúng bằng 1 trong mọi giao dịch của danh sách TID */
+    private boolean allCertain(int id, int[] tids, int len) {
+        int[] ytids = prepared.getTidList(id);
+        double[] yprobs = prepared.getTidProbs(id);
+        if (tids == null) {
+            return ytids.length == len && certainCount[id] == len;
+        }
+        int b = 0;
+        for (int a = 0; a < len; a++) {
+            while (b < ytids.length && ytids[b] < tids[a]) {
+                b++;
+            }
+            if (b == ytids.length || ytids[b] != tids[a] || yprobs[b] != 1.0) {
+                return false;
+            }
+            b++;
+        }
+        return true;
+    }
+
+    private Itemset itemset(int size, double es) {
+        int[] ranks = Arrays.copyOf(members, size);
+        Arrays.sort(ranks);
+        Set<String> items = new LinkedHashSet<>();
+        for (int r : ranks) {
+            items.add(prepared.getItemName(order[r]));
+        }
+        return new Itemset(items, es);
+    }
+
+    // =====================================================================
+    // CLOSED: hàng đợi Top-K
+    // =====================================================================
+
+    private void pushTopK(int size, double es) {
+        if (topKQueue.size() < k) {
+            topKQueue.add(itemset(size, es));
+            if (MiningStats.ENABLED) stats.topKInsert();
+        } else if (es > topKQueue.peek().getExpectedSupport()) {
+            topKQueue.poll();
+            topKQueue.add(itemset(size, es));
+            if (MiningStats.ENABLED) stats.topKReplacement();
+        }
+        if (topKQueue.size() == k) {
+            minES = topKQueue.peek().getExpectedSupport();
+        }
+    }
+
+    // =====================================================================
+    // MAXIMAL: khoảng ngưỡng và cận dưới của τ*
+    // =====================================================================
+
+    /** Itemset đóng X cùng khoảng (maxExt, ES] của các ngưỡng mà tại đó X tối đại */
+    private static class Candidate {
+
+        final Itemset itemset;
+        final double maxExt;
+        final double es;
+
+        Candidate(Itemset itemset, double maxExt, double es) {
+            this.itemset = itemset;
+            this.maxExt = maxExt;
+            this.es = es;
+        }
+    }
+
+    private void addCandidate(int size, double maxExt, double es) {
+        if (maxExt >= es || es < minES) {
+            return; // không tối đại tại ngưỡng nào ≥ minES
+        }
+        candidates.add(new Candidate(itemset(size, es), maxExt, es));
+        if (MiningStats.ENABLED) stats.topKInsert();
+        if (candidates.size() >= k && ++addedSinceUpdate >= Math.max(16, k / 2)) {
+            addedSinceUpdate = 0;
+            double tau = threshold(false);
+            if (tau > minES) {
+                minES = tau;
+                candidates.removeIf(c -> c.es < minES);
+            }
+        }
+    }
+
+    /**
+     * Ngưỡng lớn nhất τ (một giá trị ES) mà tại đó có ít nhất K itemset tối đại trong các ứng viên
+     * (số itemset tối đại tại τ = #{ES ≥ τ} - #{maxExt ≥ τ}).
+     *
+     * @param orLowest khi không có ngưỡng nào đủ K: true → trả về ES nhỏ nhất (lấy mọi itemset
+     *                 tối đại), false → trả về minES hiện tại
+     */
+    private double threshold(boolean orLowest) {
+        int n = candidates.size();
+        double[] hi = new double[n];
+        double[] lo = new double[n];
+        for (int i = 0; i < n; i++) {
+            hi[i] = candidates.get(i).es;
+            lo[i] = candidates.get(i).maxExt;
+        }
+        Arrays.sort(hi);
+        Arrays.sort(lo);
+        // Duyệt τ theo ES giảm dần, đếm số ES ≥ τ và số maxExt ≥ τ
+        int a = n - 1;
+        int b = n - 1;
+        for (int i = n - 1; i >= 0; i--) {
+            double tau = hi[i];
+            while (a >= 0 && hi[a] >= tau) {
+                a--;
+            }
+            while (b >= 0 && lo[b] >= tau) {
+                b--;
+            }
+            if ((n - 1 - a) - (n - 1 - b) >= k) {
+                return tau;
+            }
+        }
+        if (orLowest) {
+            return n > 0 ? hi[0] : 0.0;
+        }
+        return minES;
+    }
+
+    /** Bộ đếm không gian tìm kiếm của lần khai thác (chỉ có số liệu khi MiningStats.ENABLED) */
+    public MiningStats getStats() {
+        return stats;
+    }
+}
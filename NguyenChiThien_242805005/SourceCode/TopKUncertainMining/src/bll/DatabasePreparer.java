@@ -0,0 +1,238 @@
+package bll;
+
+import java.util.*;
+import model.ArrayTransactionStore;
+import model.PreparedDatabase;
+import model.Renumbering;
+import model.Transaction;
+import model.TransactionStore;
+
+/**
+ * Bước tiền xử lý dùng chung: dựng PreparedDatabase một lần cho mỗi dataset
+ * để các thuật toán không phải tự tính lại ES item đơn, thứ tự item và mật độ.
+ *
+ * Các bước:
+ *  - Mã hóa item thành id (theo thứ tự xuất hiện đầu tiên)
+ *  - Tính ES của từng item đơn
+ *  - Sắp item theo ES giảm dần (hòa thì theo id)
+ *  - Dựng danh sách TID + xác suất cho từng item
+ *
+ * Tùy chọn reorder() đánh số lại item theo ES giảm dần và sắp giao dịch theo thứ tự từ điển
+ * của danh sách item mới, kèm ánh xạ về id / TID gốc (model.Renumbering).
+ */
+
+public class DatabasePreparer {
+
+    /**
+     * Tiền xử lý từ danh sách Transaction (kết quả của DataReader).
+     *
+     * @param transactions cơ sở dữ liệu không chắc chắn
+     * @return cơ sở dữ liệu đã tiền xử lý, giữ lại danh sách Transaction gốc
+     */
+    public static PreparedDatabase prepare(List<Transaction> transactions) {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        int[][] items = new int[transactions.size()][];
+        double[][] probs = new double[transactions.size()][];
+
+        for (int t = 0; t < transactions.size(); t++) {
+            Map<String, Double> tx = transactions.get(t).getItems();
+            long[] packed = new long[tx.size()];
+            double[] p = new double[tx.size()];
+            int j = 0;
+            for (Map.Entry<String, Double> e : tx.entrySet()) {
+                Integer id = ids.get(e.getKey());
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(e.getKey(), id);
+                }
+                // Ghép (id, vị trí) để sắp theo id mà vẫn lấy lại đúng xác suất
+                packed[j] = ((long) id << 32) | j;
+                p[j] = e.getValue();
+                j++;
+            }
+            Arrays.sort(packed);
+
+            items[t] = new int[packed.length];
+            probs[t] = new double[packed.length];
+            for (int x = 0; x < packed.length; x++) {
+                items[t][x] = (int) (packed[x] >>> 32);
+                probs[t][x] = p[(int) packed[x]];
+            }
+        }
+
+        String[] itemNames = ids.keySet().toArray(new String[0]);
+        return build(itemNames, new ArrayTransactionStore(items, probs), transactions);
+    }
+
+    /**
+     * Tiền xử lý từ dữ liệu đã mã hóa (vd: do trình đọc file nhanh tạo ra).
+     * Các item trong mỗi giao dịch phải được sắp theo id tăng dần.
+     *
+     * @param itemNames tên item theo id
+     * @param store     giao dịch đã mã hóa
+     * @return cơ sở dữ liệu đã tiền xử lý
+     */
+    public static PreparedDatabase prepare(String[] itemNames, TransactionStore store) {
+        return build(itemNames, store, null);
+    }
+
+    /**
+     * Tiền xử lý khi danh sách TID theo item đã có sẵn (vd: đọc từ cột TID của file .tkud):
+     * ES item đơn được cộng trực tiếp trên danh sách TID, không cần duyệt lại các giao dịch.
+     *
+     * @param itemNames tên item theo id
+     * @param store     giao dịch đã mã hóa
+     * @param tidLists  danh sách TID tăng dần theo item
+     * @param tidProbs  xác suất tương ứng với tidLists
+     * @return cơ sở dữ liệu đã tiền xử lý
+     */
+    public static PreparedDatabase prepare(String[] itemNames, TransactionStore store,
+                                           int[][] tidLists, double[][] tidProbs) {
+        int n = itemNames.length;
+        double[] itemES = new double[n];
+        long entryCount = 0;
+        for (int i = 0; i < n; i++) {
+            // Cộng theo thứ tự TID tăng dần: cùng thứ tự với lần duyệt giao dịch trong build()
+            for (double p : tidProbs[i]) {
+                itemES[i] += p;
+            }
+            entryCount += tidLists[i].length;
+        }
+        int maxLength = 0;
+        for (int t = 0; t < store.size(); t++) {
+            maxLength = Math.max(maxLength, store.length(t));
+        }
+        return new PreparedDatabase(itemNames, store, itemES, rankOrder(itemES),
+                tidLists, tidProbs, entryCount, maxLength, null);
+    }
+
+    /**
+     * Tiền xử lý có sắp xếp lại để tăng tính cục bộ bộ nhớ:
+     *  - Item được đánh số lại theo ES giảm dần (id mới = thứ hạng), nên item trong mỗi giao dịch
+     *    cũng nằm theo ES giảm dần, cùng thứ tự các thuật toán duyệt prefix
+     *  - Giao dịch được sắp theo thứ tự từ điển của danh sách item mới: các giao dịch có chung
+     *    prefix nằm liền nhau, nên DB chiếu theo một item là một vùng liên tục hơn trong bộ nhớ
+     *    và danh sách TID ít nhảy hơn
+     * Tên item giữ nguyên nên kết quả khai thác không đổi (ES có thể khác ở vài bit cuối do thứ tự cộng).
+     *
+     * @param itemNames tên item theo id gốc
+     * @param store     giao dịch đã mã hóa theo id gốc
+     * @return cơ sở dữ liệu đã tiền xử lý, getRenumbering() trả về ánh xạ về id / TID gốc
+     */
+    public static PreparedDatabase reorder(String[] itemNames, TransactionStore store) {
+        int n = itemNames.length;
+        double[] itemES = new double[n];
+        for (int t = 0; t < store.size(); t++) {
+            for (int j = 0; j < store.length(t); j++) {
+                itemES[store.itemAt(t, j)] += store.probAt(t, j);
+            }
+        }
+        int[] originalItemIds = rankOrder(itemES);
+        int[] newIds = new int[n];
+        String[] newNames = new String[n];
+        for (int r = 0; r < n; r++) {
+            newIds[originalItemIds[r]] = r;
+            newNames[r] = itemNames[originalItemIds[r]];
+        }
+
+        // Giao dịch theo id mới, item tăng dần
+        int size = store.size();
+        int[][] items = new int[size][];
+        double[][] probs = new double[size][];
+        for (int t = 0; t < size; t++) {
+            int len = store.length(t);
+            long[] packed = new long[len];
+            for (int j = 0; j < len; j++) {
+                packed[j] = ((long) newIds[store.itemAt(t, j)] << 32) | j;
+            }
+            Arrays.sort(packed);
+            items[t] = new int[len];
+            probs[t] = new double[len];
+            for (int x = 0; x < len; x++) {
+                items[t][x] = (int) (packed[x] >>> 32);
+                probs[t][x] = store.probAt(t, (int) packed[x]);
+            }
+        }
+
+        // Sắp giao dịch theo thứ tự từ điển (hòa thì giữ thứ tự gốc)
+        Integer[] order = new Integer[size];
+        for (int t = 0; t < size; t++) {
+            order[t] = t;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compare(items[a], items[b]));
+        int[] originalTids = new int[size];
+        int[][] sortedItems = new int[size][];
+        double[][] sortedProbs = new double[size][];
+        for (int t = 0; t < size; t++) {
+            originalTids[t] = order[t];
+            sortedItems[t] = items[order[t]];
+            sortedProbs[t] = probs[order[t]];
+        }
+
+        return build(newNames, new ArrayTransactionStore(sortedItems, sortedProbs), null)
+                .withRenumbering(new Renumbering(originalItemIds, originalTids));
+    }
+
+    private static PreparedDatabase build(String[] itemNames, TransactionStore store,
+                                          List<Transaction> transactions) {
+        int n = itemNames.length;
+        double[] itemES = new double[n];
+        int[] counts = new int[n];
+        long entryCount = 0;
+        int maxLength = 0;
+
+        // 1. ES item đơn + số giao dịch chứa mỗi item
+        for (int t = 0; t < store.size(); t++) {
+            int len = store.length(t);
+            for (int j = 0; j < len; j++) {
+                int id = store.itemAt(t, j);
+                itemES[id] += store.probAt(t, j);
+                counts[id]++;
+            }
+            entryCount += len;
+            maxLength = Math.max(maxLength, len);
+        }
+
+        // 2. Thứ tự item theo ES giảm dần
+        int[] rankOrder = rankOrder(itemES);
+
+        // 3. Danh sách TID + xác suất theo item
+        int[][] tidLists = new int[n][];
+        double[][] tidProbs = new double[n][];
+        for (int i = 0; i < n; i++) {
+            tidLists[i] = new int[counts[i]];
+            tidProbs[i] = new double[counts[i]];
+        }
+        int[] fill = new int[n];
+        for (int t = 0; t < store.size(); t++) {
+            int len = store.length(t);
+            for (int j = 0; j < len; j++) {
+                int id = store.itemAt(t, j);
+                tidLists[id][fill[id]] = t;
+                tidProbs[id][fill[id]] = store.probAt(t, j);
+                fill[id]++;
+            }
+        }
+
+        return new PreparedDatabase(itemNames, store, itemES, rankOrder,
+                tidLists, tidProbs, entryCount, maxLength, transactions);
+    }
+
+    /** Item id sắp theo ES giảm dần (hòa thì theo id) */
+    static int[] rankOrder(double[] itemES) {
+        int n = itemES.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int c = Double.compare(itemES[b], itemES[a]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        int[] rankOrder = new int[n];
+        for (int i = 0; i < n; i++) {
+            rankOrder[i] = order[i];
+        }
+        return rankOrder;
+    }
+}
@@ -0,0 +1,116 @@
+package bll;
+
+/**
+ * Các vòng nhân–cộng trên vector xác suất, phần việc trong cùng của các thuật toán:
+ *  - dot:            ES dạng cột dày, Σ a[i]·b[i]
+ *  - multiply:       tích prefix với một cột, out[i] = a[i]·b[i], trả về Σ out[i]
+ *  - gatherDot:      tích thưa theo danh sách TID, Σ w[tids[x]]·p[x]
+ *  - gatherMultiply: như gatherDot và ghi out[tids[x]] = w[tids[x]]·p[x] (scatter)
+ *  - gatherSum:      Σ w[tids[x]]
+ *
+ * INSTANCE là bản SIMD (bll.VectorESKernels, dùng jdk.incubator.vector) nếu lớp đó được biên dịch
+ * (thư mục src-vector) và JVM chạy với --add-modules jdk.incubator.vector; ngược lại là bản vô hướng.
+ * Bản SIMD chỉ tăng tốc dot và multiply, các bản gather chạy vô hướng trong cả hai trường hợp.
+ * Bản SIMD cộng theo từng làn nên ES có thể khác bản vô hướng ở vài bit cuối.
+ * Tắt SIMD bằng -Dtopk.simd=false.
+ */
+
+public abstract class ESKernels {
+
+    private static final ESKernels SCALAR = new Scalar();
+
+    /** Bản được dùng bởi các thuật toán */
+    public static final ESKernels INSTANCE = load();
+
+    /** Bản vô hướng (dùng làm chuẩn so sánh trong benchmark) */
+    public static ESKernels scalar() {
+        return SCALAR;
+    }
+
+    private static ESKernels load() {
+        if (!Boolean.parseBoolean(System.getProperty("topk.simd", "true"))
+                || !ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return SCALAR;
+        }
+        try {
+            return (ESKernels) Class.forName("bll.VectorESKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR;
+        }
+    }
+
+    /** Tên bản cài đặt (vd: "scalar", "vector-512") */
+    public abstract String name();
+
+    /** Σ a[i]·b[i], i ∈ [0, n) */
+    public abstract double dot(double[] a, double[] b, int n);
+
+    /** out[i] = a[i]·b[i] với i ∈ [0, n); trả về Σ out[i] */
+    public abstract double multiply(double[] a, double[] b, double[] out, int n);
+
+    /** Σ w[tids[x]]·p[x], x ∈ [0, n) */
+    public abstract double gatherDot(double[] w, int[] tids, double[] p, int n);
+
+    /** out[tids[x]] = w[tids[x]]·p[x] với x ∈ [0, n); trả về tổng các giá trị đã ghi */
+    public abstract double gatherMultiply(double[] w, int[] tids, double[] p, double[] out, int n);
+
+    /** Σ w[tids[x]], x ∈ [0, n) */
+    public abstract double gatherSum(double[] w, int[] tids, int n);
+
+    /** Bản vô hướng */
+    static class Scalar extends ESKernels {
+
+        @Override
+        public String name() {
+            return "scalar";
+        }
+
+        @Override
+        public double dot(double[] a, double[] b, int n) {
+            double sum = 0.0;
+            for (int i = 0; i < n; i++) {
+                sum += a[i] * b[i];
+            }
+            return sum;
+        }
+
+        @Override
+        public double multiply(double[] a, double[] b, double[] out, int n) {
+            double sum = 0.0;
+            for (int i = 0; i < n; i++) {
+                out[i] = a[i] * b[i];
+                sum += out[i];
+            }
+            return sum;
+        }
+
+        @Override
+        public double gatherDot(double[] w, int[] tids, double[] p, int n) {
+            double sum = 0.0;
+            for (int x = 0; x < n; x++) {
+                sum += w[tids[x]] * p[x];
+            }
+            return sum;
+        }
+
+        @Override
+        public double gatherMultiply(double[] w, int[] tids, double[] p, double[] out, int n) {
+            double sum = 0.0;
+            for (int x = 0; x < n; x++) {
+                int t = tids[x];
+                out[t] = w[t] * p[x];
+                sum += out[t];
+            }
+            return sum;
+        }
+
+        @Override
+        public double gatherSum(double[] w, int[] tids, int n) {
+            double sum = 0.0;
+            for (int x = 0; x < n; x++) {
+                sum += w[tids[x]];
+            }
+            return sum;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package bll;
 
 import java.util.*;
 import model.Itemset;
+import model.ItemsetConstraints;
+import model.PreparedDatabase;
 import model.Transaction;
 
 /**
@@ -12,15 +14,17 @@ import model.Transaction;
  *      + UHMine – hiệu quả hơn với dữ liệu thưa
  *
  * Việc lựa chọn thuật toán dựa trên giá trị mật độ trung bình của cơ sở dữ liệu,
- * so sánh với ngưỡng densityThreshold. Cách tiếp cận này giúp tận dụng ưu điểm
+ * so sánh với ngưỡng densityThreshold. Khi tỉ lệ lấp đầy (số cặp item–giao dịch / số ô) đạt
+ * ngưỡng diffsetFillRatio và truy vấn không có ràng buộc, bộ khai thác dọc UDiffsetMiner được
+ * dùng thay cho cả hai. Cách tiếp cận này giúp tận dụng ưu điểm
  * của từng thuật toán trong từng bối cảnh dữ liệu khác nhau, đảm bảo hiệu quả
  * cả về thời gian chạy và khả năng mở rộng.
  */
 
 public class HybridTopKMiner {
 
-     /** Cơ sở dữ liệu giao dịch không chắc chắn đầu vào */
-    private List<Transaction> db;
+     /** Cơ sở dữ liệu giao dịch không chắc chắn đầu vào (đã tiền xử lý) */
+    private PreparedDatabase db;
 
     /** Số lượng tập mục phổ biến cần trích xuất (Top-K) */
     private int topK;
@@ -28,6 +32,12 @@ public class HybridTopKMiner {
     /** Ngưỡng mật độ dùng để quyết định phương pháp khai thác */
     private double densityThreshold;
 
+    /** Tỉ lệ lấp đầy mặc định từ đó dùng UDiffsetMiner (chess ≈ 0.49, retail / foodmart < 0.01) */
+    public static final double DEFAULT_DIFFSET_FILL_RATIO = 0.25;
+
+    /** Tỉ lệ lấp đầy từ đó dùng UDiffsetMiner */
+    private double diffsetFillRatio = DEFAULT_DIFFSET_FILL_RATIO;
+
     /** Giá trị ES nhỏ nhất hiện tại trong Top-K itemset */
     private double minES = 0.0;
 
@@ -40,6 +50,12 @@ public class HybridTopKMiner {
     /** Tập dùng để theo dõi các itemset đã xử lý, tránh thêm trùng lặp */
     private Set<String> visited = new HashSet<>();
 
+    /** Ràng buộc của truy vấn, chuyển cho thuật toán con được chọn */
+    private ItemsetConstraints constraints = ItemsetConstraints.NONE;
+
+    /** Bộ đếm không gian tìm kiếm, dùng chung với thuật toán con được chọn */
+    private final MiningStats stats = new MiningStats("Hybrid");
+
     /**
      * Khởi tạo đối tượng HybridTopKMiner
      *
@@ -48,6 +64,17 @@ public class HybridTopKMiner {
      * @param densityThreshold  ngưỡng mật độ để lựa chọn thuật toán
      */
     public HybridTopKMiner(List<Transaction> db, int topK, double densityThreshold) {
+        this(DatabasePreparer.prepare(db), topK, densityThreshold);
+    }
+
+    /**
+     * Khởi tạo HybridTopKMiner trên cơ sở dữ liệu đã tiền xử lý
+     *
+     * @param db                cơ sở dữ liệu đã tiền xử lý
+     * @param topK              số lượng tập mục cần tìm trong Top-K
+     * @param densityThreshold  ngưỡng mật độ để lựa chọn thuật toán
+     */
+    public HybridTopKMiner(PreparedDatabase db, int topK, double densityThreshold) {
         this.db = db;
         this.topK = topK;
         this.densityThreshold = densityThreshold;
@@ -55,18 +82,41 @@ public class HybridTopKMiner {
     }
 
     /**
-     * Thực thi khai thác Top-K. Chọn U-FPGrowth hoặc UH-Mine tùy theo mật độ.
+     * Đặt ràng buộc của truy vấn (mặc định không có), xem ItemsetConstraints
+     *
+     * @return chính đối tượng này
+     */
+    public HybridTopKMiner constraints(ItemsetConstraints constraints) {
+        this.constraints = constraints;
+        return this;
+    }
+
+    /**
+     * Đặt tỉ lệ lấp đầy từ đó dùng UDiffsetMiner (giá trị > 1 để tắt)
+     *
+     * @return chính đối tượng này
+     */
+    public HybridTopKMiner diffsetFillRatio(double diffsetFillRatio) {
+        this.diffsetFillRatio = diffsetFillRatio;
+        return this;
+    }
+
+    /**
+     * Thực thi khai thác Top-K. Chọn UDiffsetMiner với dữ liệu dày,
+     * ngược lại U-FPGrowth hoặc UH-Mine tùy theo mật độ.
      *
      * @return danh sách Top-K itemset theo ES giảm dần
      */
     public List<Itemset> mine() {
         double d = computeDensity();
 
-        if (d >= densityThreshold) {
-            UFPgrowth fpg = new UFPgrowth(db, topK, topKQueue);
+        if (constraints.isEmpty() && db.getFillRatio() >= diffsetFillRatio) {
+            new UDiffsetMiner(db, topK, topKQueue, stats).mine();
+        } else if (d >= densityThreshold) {
+            UFPgrowth fpg = new UFPgrowth(db, topK, topKQueue, stats).constraints(constraints);
             fpg.mine();
         } else {
-            UHMine hm = new UHMine(db, topK, topKQueue);
+            UHMine hm = new UHMine(db, topK, topKQueue, stats).constraints(constraints);
             hm.mine();
         }
 
@@ -78,13 +128,9 @@ public class HybridTopKMiner {
         return out;
     }
 
-    /** Tính mật độ = tổng số item / số giao dịch */
+    /** Mật độ = tổng số item / số giao dịch (đã tính sẵn ở bước tiền xử lý) */
     private double computeDensity() {
-        double sum = 0.0;
-        for (Transaction t : db) {
-            sum += t.getItems().size();
-        }
-        return sum / db.size();
+        return db.getAverageLength();
     }
 
     /**
@@ -101,9 +147,11 @@ public class HybridTopKMiner {
 
         if (topKQueue.size() < topK) {
             topKQueue.add(itemset);
+            if (MiningStats.ENABLED) stats.topKInsert();
         } else if (itemset.getExpectedSupport() > topKQueue.peek().getExpectedSupport()) {
             topKQueue.poll();
             topKQueue.add(itemset);
+            if (MiningStats.ENABLED) stats.topKReplacement();
         }
 
         if (topKQueue.size() == topK) {
@@ -120,4 +168,9 @@ public class HybridTopKMiner {
     public PriorityQueue<Itemset> getTopKQueue() {
         return topKQueue;
     }
+
+    /** Bộ đếm không gian tìm kiếm của lần khai thác (chỉ có số liệu khi MiningStats.ENABLED) */
+    public MiningStats getStats() {
+        return stats;
+    }
 }
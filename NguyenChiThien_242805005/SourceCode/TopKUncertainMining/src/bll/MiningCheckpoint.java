@@ -0,0 +1,252 @@
+package bll;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import model.Itemset;
+import model.ItemsetConstraints;
+import model.PreparedDatabase;
+
+/**
+ * Checkpoint của một lần khai thác dài (vd: U-FPGrowth trên retail, 15–40 phút) để chạy lại
+ * chỉ làm phần việc chưa xong.
+ *
+ * Trạng thái được lưu sau mỗi cây con của vòng item mức đầu tiên (nhưng không dày hơn một lần
+ * mỗi khoảng intervalMs): vị trí cây con kế tiếp, minES và Top-K hiện tại. Các cây con mức đầu
+ * rời nhau (cây con i chỉ chứa item đứng sau i), nên tiếp tục từ vị trí đã lưu với Top-K đã lưu
+ * cho cùng kết quả như chạy liền một mạch; minES lúc tiếp tục chỉ có thể cắt tỉa nhiều hơn.
+ *
+ * Định dạng nhị phân (big-endian, số nguyên không âm ghi dạng varint):
+ *   magic "TKCP", version
+ *   khóa: thuật toán, K, số giao dịch, số item, dấu vân tay (tên + ES item đơn), ràng buộc
+ *   vị trí kế tiếp, minES, số itemset
+ *   mỗi itemset: số item, các item id tăng dần (ghi hiệu số), ES
+ * Mỗi lần chạy (thuật toán, K, dataset, ràng buộc) có file riêng trong thư mục checkpoint, nên
+ * một loạt job (main.Main) dùng chung thư mục mà không ghi đè tiến độ của nhau; khóa trong file
+ * vẫn được kiểm tra, checkpoint không khớp bị bỏ qua. File được ghi vào file tạm rồi đổi tên nên
+ * lần chạy bị dừng giữa lúc ghi vẫn giữ checkpoint trước đó; file bị xóa khi khai thác xong.
+ *
+ * Bật bằng -Dtopk.checkpoint=DIR, khoảng lưu bằng -Dtopk.checkpointInterval=giây (mặc định 60).
+ * Chỉ các job chạy theo lô (main.BenchmarkScheduler, main.ForkedJob) dùng checkpoint; truy vấn
+ * đồng thời của MiningService thì không, vì hai truy vấn giống nhau sẽ dùng chung một file.
+ */
+
+public class MiningCheckpoint {
+
+    /** Khoảng lưu mặc định (ms) */
+    public static final long DEFAULT_INTERVAL_MS = 60_000L;
+
+    private static final int MAGIC = 0x544B4350; // "TKCP"
+    private static final int VERSION = 1;
+
+    private final File dir;
+    private final long intervalMs;
+
+    /** File của lần chạy hiện tại (đặt bởi resume) */
+    private File file;
+
+    /** Khóa của lần chạy hiện tại (đặt bởi resume) */
+    private String algorithm;
+    private int topK;
+    private PreparedDatabase prepared;
+    private String constraints;
+    private long fingerprint;
+
+    private double restoredMinES;
+    private long lastSave;
+    private int saves;
+
+    /**
+     * @param dir        thư mục chứa file checkpoint
+     * @param intervalMs khoảng thời gian tối thiểu giữa hai lần lưu (0 = sau mỗi cây con mức đầu)
+     */
+    public MiningCheckpoint(File dir, long intervalMs) {
+        this.dir = dir;
+        this.intervalMs = intervalMs;
+    }
+
+    /** Checkpoint theo -Dtopk.checkpoint / -Dtopk.checkpointInterval, null nếu không bật */
+    public static MiningCheckpoint fromSystemProperties() {
+        String path = System.getProperty("topk.checkpoint");
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        long seconds = Long.getLong("topk.checkpointInterval", DEFAULT_INTERVAL_MS / 1000);
+        return new MiningCheckpoint(new File(path), seconds * 1000);
+    }
+
+    /** File checkpoint của lần chạy hiện tại (null trước resume) */
+    public File getFile() {
+        return file;
+    }
+
+    /** Số lần đã lưu trong lần chạy này */
+    public int getSaves() {
+        return saves;
+    }
+
+    /** minES đọc từ checkpoint (0 nếu bắt đầu từ đầu) */
+    public double getRestoredMinES() {
+        return restoredMinES;
+    }
+
+    /**
+     * Gắn checkpoint với một lần khai thác và nạp trạng thái đã lưu (nếu có và khớp khóa)
+     *
+     * @param queue hàng đợi Top-K của bộ khai thác, được nạp lại các itemset đã lưu
+     * @return vị trí trong vòng item mức đầu để tiếp tục (0 nếu bắt đầu từ đầu)
+     */
+    public int resume(String algorithm, PreparedDatabase prepared, int topK, ItemsetConstraints constraints,
+                      PriorityQueue<Itemset> queue) {
+        this.algorithm = algorithm;
+        this.prepared = prepared;
+        this.topK = topK;
+        this.constraints = constraints.toString();
+        this.restoredMinES = 0.0;
+        this.lastSave = System.nanoTime();
+        this.fingerprint = fingerprint(prepared);
+        long key = 31 * fingerprint + this.constraints.hashCode();
+        this.file = new File(dir, algorithm + "_k" + topK + "_" + Long.toHexString(key) + ".ckpt");
+        if (!file.isFile()) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                System.err.println("WARNING: " + file + " is not a mining checkpoint, starting from scratch");
+                return 0;
+            }
+            if (!in.readUTF().equals(algorithm) || readVarInt(in) != topK
+                    || readVarInt(in) != prepared.getTransactionCount() || readVarInt(in) != prepared.getItemCount()
+                    || in.readLong() != fingerprint || !in.readUTF().equals(this.constraints)) {
+                System.err.println("WARNING: checkpoint " + file + " belongs to another run, starting from scratch");
+                return 0;
+            }
+            int next = readVarInt(in);
+            double minES = in.readDouble();
+            int count = readVarInt(in);
+            List<Itemset> itemsets = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int len = readVarInt(in);
+                Set<String> items = new TreeSet<>();
+                int id = 0;
+                for (int j = 0; j < len; j++) {
+                    id += readVarInt(in);
+                    items.add(prepared.getItemName(id));
+                }
+                itemsets.add(new Itemset(items, in.readDouble()));
+            }
+            queue.addAll(itemsets);
+            restoredMinES = minES;
+            System.out.println("Resuming " + algorithm + " from checkpoint " + file + ": first-level item "
+                    + next + ", " + count + " itemsets, minES = " + minES);
+            return next;
+        } catch (IOException e) {
+            e.printStackTrace();
+            queue.clear();
+            return 0;
+        }
+    }
+
+    /**
+     * Gọi sau mỗi cây con mức đầu; lưu nếu đã qua intervalMs kể từ lần lưu trước
+     *
+     * @param next  vị trí cây con mức đầu kế tiếp chưa khai thác
+     * @param minES ngưỡng hiện tại
+     * @param topK  Top-K hiện tại
+     */
+    public void completed(int next, double minES, Collection<Itemset> topK) {
+        long now = System.nanoTime();
+        if ((now - lastSave) / 1_000_000 < intervalMs) {
+            return;
+        }
+        save(next, minES, topK);
+        lastSave = System.nanoTime();
+    }
+
+    /** Khai thác đã xong: xóa file checkpoint */
+    public void finish() {
+        if (file.exists() && !file.delete()) {
+            System.err.println("WARNING: cannot delete checkpoint " + file);
+        }
+    }
+
+    private void save(int next, double minES, Collection<Itemset> itemsets) {
+        dir.mkdirs();
+        File tmp;
+        try {
+            // File tạm riêng của lần lưu này: không lần chạy nào khác ghi chen vào
+            tmp = File.createTempFile(file.getName() + ".", ".tmp", dir);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(algorithm);
+            writeVarInt(out, topK);
+            writeVarInt(out, prepared.getTransactionCount());
+            writeVarInt(out, prepared.getItemCount());
+            out.writeLong(fingerprint);
+            out.writeUTF(constraints);
+            writeVarInt(out, next);
+            out.writeDouble(minES);
+            writeVarInt(out, itemsets.size());
+            for (Itemset itemset : itemsets) {
+                int[] ids = new int[itemset.getItems().size()];
+                int n = 0;
+                for (String name : itemset.getItems()) {
+                    ids[n++] = prepared.getItemId(name);
+                }
+                Arrays.sort(ids);
+                writeVarInt(out, n);
+                int prev = 0;
+                for (int id : ids) {
+                    writeVarInt(out, id - prev);
+                    prev = id;
+                }
+                out.writeDouble(itemset.getExpectedSupport());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            saves++;
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+        }
+    }
+
+    /** Dấu vân tay của dataset: tên và ES của các item (đổi dữ liệu hoặc seed thì đổi dấu) */
+    private static long fingerprint(PreparedDatabase prepared) {
+        long h = 1125899906842597L;
+        for (int id = 0; id < prepared.getItemCount(); id++) {
+            h = 31 * h + prepared.getItemName(id).hashCode();
+            h = 31 * h + Double.doubleToLongBits(prepared.getItemES(id));
+        }
+        return h;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+    }
+}
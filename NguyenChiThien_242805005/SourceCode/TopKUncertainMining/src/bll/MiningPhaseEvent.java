@@ -0,0 +1,73 @@
+package bll;
+
+import jdk.jfr.*;
+
+/**
+ * Sự kiện JFR cho một pha khai thác:
+ *  - U-Apriori: mỗi mức (level) của vòng lặp Apriori
+ *  - UFP-growth, UH-Mine, TopK-ES: cây con của mỗi item ở mức đầu tiên
+ *
+ * Chỉ được ghi khi có JFR recording bật sự kiện này
+ * (vd: -XX:StartFlightRecording:filename=mining.jfr), nếu không chi phí gần như bằng 0.
+ * Các trường đếm chỉ có giá trị khi bật MiningStats (-Dtopk.stats=true).
+ */
+
+@Name("topk.MiningPhase")
+@Label("Mining Phase")
+@Category("Top-K Uncertain Mining")
+@StackTrace(false)
+public class MiningPhaseEvent extends Event {
+
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Level or first-level item rank")
+    int index;
+
+    @Label("Candidates")
+    long candidates;
+
+    @Label("Transactions Scanned")
+    long transactionsScanned;
+
+    @Label("minES At End")
+    double minES;
+
+    /**
+     * Bắt đầu một pha
+     *
+     * @param stats bộ đếm của lần khai thác (tên thuật toán, số ứng viên / giao dịch trong pha)
+     * @param phase tên pha
+     * @param index mức Apriori hoặc thứ hạng của item ở mức đầu tiên
+     */
+    static MiningPhaseEvent start(MiningStats stats, String phase, int index) {
+        MiningPhaseEvent event = new MiningPhaseEvent();
+        if (event.isEnabled()) {
+            event.algorithm = stats.getAlgorithm();
+            event.phase = phase;
+            event.index = index;
+            if (MiningStats.ENABLED) {
+                event.candidates = stats.candidatesSoFar();
+                event.transactionsScanned = stats.scannedSoFar();
+            }
+            event.begin();
+        }
+        return event;
+    }
+
+    /** Kết thúc pha và commit sự kiện (nếu JFR đang ghi) */
+    void finish(MiningStats stats, double minES) {
+        end();
+        if (shouldCommit()) {
+            if (MiningStats.ENABLED) {
+                candidates = stats.candidatesSoFar() - candidates;
+                transactionsScanned = stats.scannedSoFar() - transactionsScanned;
+            }
+            this.minES = minES;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package bll;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.ObjectName;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Bộ đếm không gian tìm kiếm của một lần khai thác:
+ *  - Số ứng viên được sinh ra
+ *  - Số nhánh bị cắt bởi cận trên (UB), bởi ES chính xác, bởi Apriori (tập con không phổ biến),
+ *    bởi ràng buộc của truy vấn (model.ItemsetConstraints)
+ *  - Số giao dịch đã duyệt (khi tính UB, ES và dựng DB điều kiện)
+ *  - Số lần thêm mới / thay thế trong Top-K
+ *  - Số DB điều kiện và tổng số giao dịch của chúng theo từng độ sâu
+ *
+ * Chỉ bật khi chạy với -Dtopk.stats=true. ENABLED là hằng static final nên khi tắt,
+ * JIT loại bỏ hoàn toàn các lệnh đếm dạng {@code if (MiningStats.ENABLED) ...} trong thuật toán.
+ *
+ * Mỗi lần khai thác dùng một đối tượng riêng (không cần đồng bộ). Khi kết thúc, publish()
+ * cộng dồn vào bộ đếm tổng của thuật toán, được đăng ký JMX dưới tên
+ * {@code TopKUncertainMining:type=MiningStats,algorithm=<tên thuật toán>}.
+ */
+
+public class MiningStats implements MiningStatsMXBean {
+
+    /** Bật bộ đếm (-Dtopk.stats=true) */
+    public static final boolean ENABLED = Boolean.getBoolean("topk.stats");
+
+    /** Bộ đếm tổng theo thuật toán (đã đăng ký JMX) */
+    private static final Map<String, MiningStats> TOTALS = new ConcurrentHashMap<>();
+
+    private final String algorithm;
+    private long runs;
+    private long candidates;
+    private long prunedByUpperBound;
+    private long prunedByExactES;
+    private long prunedBySubset;
+    private long prunedByConstraint;
+    private long transactionsScanned;
+    private long topKInserts;
+    private long topKReplacements;
+
+    /** Số DB điều kiện và tổng số giao dịch theo độ sâu (chỉ số = độ dài prefix) */
+    private long[] condDbCount = new long[8];
+    private long[] condDbTransactions = new long[8];
+
+    public MiningStats(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    // =====================================================================
+    // Đếm (gọi từ thuật toán, luôn đặt sau kiểm tra ENABLED)
+    // =====================================================================
+
+    public void candidate() {
+        candidates++;
+    }
+
+    public void prunedByUpperBound() {
+        prunedByUpperBound++;
+    }
+
+    public void prunedByExactES() {
+        prunedByExactES++;
+    }
+
+    public void prunedBySubset() {
+        prunedBySubset++;
+    }
+
+    public void prunedByConstraint() {
+        prunedByConstraint++;
+    }
+
+    public void scanned(long transactions) {
+        transactionsScanned += transactions;
+    }
+
+    /** Itemset được thêm vào Top-K khi hàng đợi chưa đủ K phần tử */
+    public void topKInsert() {
+        topKInserts++;
+    }
+
+    /** Itemset thay thế phần tử có ES nhỏ nhất của Top-K (minES có thể tăng) */
+    public void topKReplacement() {
+        topKReplacements++;
+    }
+
+    /** Ghi nhận một DB điều kiện ở độ sâu depth (độ dài prefix) có size giao dịch */
+    public void conditionalDb(int depth, int size) {
+        ensureDepth(depth);
+        condDbCount[depth]++;
+        condDbTransactions[depth] += size;
+    }
+
+    private void ensureDepth(int depth) {
+        if (depth >= condDbCount.length) {
+            int n = Math.max(depth + 1, condDbCount.length * 2);
+            condDbCount = Arrays.copyOf(condDbCount, n);
+            condDbTransactions = Arrays.copyOf(condDbTransactions, n);
+        }
+    }
+
+    // =====================================================================
+    // Pha khai thác (sự kiện JFR)
+    // =====================================================================
+
+    /**
+     * Bắt đầu một pha khai thác. Khi JFR chưa được khởi tạo trong JVM này thì trả về null
+     * mà không nạp lớp sự kiện (nạp lớp jdk.jfr tốn vài trăm ms ở lần đầu).
+     *
+     * @param phase tên pha
+     * @param index mức Apriori hoặc thứ hạng của item ở mức đầu tiên
+     */
+    public MiningPhaseEvent beginPhase(String phase, int index) {
+        return FlightRecorder.isInitialized() ? MiningPhaseEvent.start(this, phase, index) : null;
+    }
+
+    /** Kết thúc pha bắt đầu bởi beginPhase (bỏ qua nếu event là null) */
+    public void endPhase(MiningPhaseEvent event, double minES) {
+        if (event != null) {
+            event.finish(this, minES);
+        }
+    }
+
+    /** Giá trị hiện tại của số ứng viên, dùng cho MiningPhaseEvent (không đồng bộ) */
+    long candidatesSoFar() {
+        return candidates;
+    }
+
+    /** Giá trị hiện tại của số giao dịch đã duyệt, dùng cho MiningPhaseEvent (không đồng bộ) */
+    long scannedSoFar() {
+        return transactionsScanned;
+    }
+
+    // =====================================================================
+    // Tổng hợp và JMX
+    // =====================================================================
+
+    /**
+     * Cộng dồn bộ đếm của lần khai thác này vào bộ đếm tổng của thuật toán
+     * (đăng ký JMX ở lần đầu). Không làm gì khi bộ đếm bị tắt.
+     */
+    public void publish() {
+        if (!ENABLED) {
+            return;
+        }
+        MiningStats total = TOTALS.computeIfAbsent(algorithm, MiningStats::registerTotal);
+        total.add(this);
+    }
+
+    private static MiningStats registerTotal(String algorithm) {
+        MiningStats total = new MiningStats(algorithm);
+        try {
+            ObjectName name = new ObjectName("TopKUncertainMining:type=MiningStats,algorithm="
+                    + ObjectName.quote(algorithm));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(total, name);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return total;
+    }
+
+    private synchronized void add(MiningStats run) {
+        runs++;
+        candidates += run.candidates;
+        prunedByUpperBound += run.prunedByUpperBound;
+        prunedByExactES += run.prunedByExactES;
+        prunedBySubset += run.prunedBySubset;
+        prunedByConstraint += run.prunedByConstraint;
+        transactionsScanned += run.transactionsScanned;
+        topKInserts += run.topKInserts;
+        topKReplacements += run.topKReplacements;
+        for (int d = 0; d < run.condDbCount.length; d++) {
+            if (run.condDbCount[d] > 0) {
+                ensureDepth(d);
+                condDbCount[d] += run.condDbCount[d];
+                condDbTransactions[d] += run.condDbTransactions[d];
+            }
+        }
+    }
+
+    /**
+     * Ảnh chụp các bộ đếm theo thứ tự cố định (tên → giá trị), dùng để ghi file kết quả
+     * hoặc truyền từ JVM con về.
+     */
+    public synchronized Map<String, Long> snapshot() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        map.put("candidates", candidates);
+        map.put("pruned_by_upper_bound", prunedByUpperBound);
+        map.put("pruned_by_exact_es", prunedByExactES);
+        map.put("pruned_by_subset", prunedBySubset);
+        map.put("pruned_by_constraint", prunedByConstraint);
+        map.put("transactions_scanned", transactionsScanned);
+        map.put("topk_inserts", topKInserts);
+        map.put("topk_replacements", topKReplacements);
+        for (int d = 0; d < condDbCount.length; d++) {
+            if (condDbCount[d] > 0) {
+                map.put("cond_db_depth" + d + "_count", condDbCount[d]);
+                map.put("cond_db_depth" + d + "_transactions", condDbTransactions[d]);
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public synchronized long getRuns() {
+        return runs;
+    }
+
+    @Override
+    public synchronized long getCandidates() {
+        return candidates;
+    }
+
+    @Override
+    public synchronized long getPrunedByUpperBound() {
+        return prunedByUpperBound;
+    }
+
+    @Override
+    public synchronized long getPrunedByExactES() {
+        return prunedByExactES;
+    }
+
+    @Override
+    public synchronized long getPrunedBySubset() {
+        return prunedBySubset;
+    }
+
+    @Override
+    public synchronized long getPrunedByConstraint() {
+        return prunedByConstraint;
+    }
+
+    @Override
+    public synchronized long getTransactionsScanned() {
+        return transactionsScanned;
+    }
+
+    @Override
+    public synchronized long getTopKInserts() {
+        return topKInserts;
+    }
+
+    @Override
+    public synchronized long getTopKReplacements() {
+        return topKReplacements;
+    }
+
+    @Override
+    public synchronized long[] getConditionalDbCountByDepth() {
+        return condDbCount.clone();
+    }
+
+    @Override
+    public synchronized long[] getConditionalDbTransactionsByDepth() {
+        return condDbTransactions.clone();
+    }
+
+    @Override
+    public String toString() {
+        return algorithm + " " + snapshot();
+    }
+}
@@ -0,0 +1,35 @@
+package bll;
+
+/**
+ * Giao diện JMX của bộ đếm không gian tìm kiếm (tổng cộng dồn qua các lần khai thác
+ * của cùng một thuật toán). Xem MiningStats.
+ */
+
+public interface MiningStatsMXBean {
+
+    String getAlgorithm();
+
+    long getRuns();
+
+    long getCandidates();
+
+    long getPrunedByUpperBound();
+
+    long getPrunedByExactES();
+
+    long getPrunedBySubset();
+
+    long getPrunedByConstraint();
+
+    long getTransactionsScanned();
+
+    long getTopKInserts();
+
+    long getTopKReplacements();
+
+    /** Số DB điều kiện theo độ sâu (chỉ số = độ dài prefix) */
+    long[] getConditionalDbCountByDepth();
+
+    /** Tổng số giao dịch của các DB điều kiện theo độ sâu */
+    long[] getConditionalDbTransactionsByDepth();
+}
@@ -0,0 +1,563 @@
+package bll;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import model.Itemset;
+import model.TransactionStore;
+
+/**
+ * Khai thác Top-K theo ES cho cơ sở dữ liệu lớn hơn heap (external memory).
+ *
+ * Mỗi mức của thuật toán xử lý một nguồn giao dịch (store gốc hoặc một file phân vùng) ứng với
+ * một prefix, và tìm mọi itemset prefix ∪ Y:
+ *  1. Duyệt nguồn một lần: ES của từng item (có nhân trọng số prefix của giao dịch), số giao dịch.
+ *     Các itemset prefix ∪ {x} được đưa vào Top-K ngay, nên minES tăng trước khi khai thác sâu;
+ *     item có ES không vượt minES bị bỏ khỏi nguồn (không có itemset nào chứa nó vào được Top-K).
+ *  2. Nếu nguồn vừa ngân sách bộ nhớ: nạp thành danh sách TID theo item và duyệt DFS trong bộ nhớ.
+ *  3. Nếu không: chia theo item có ES cao nhất (partition projection). Mỗi giao dịch được ghi
+ *     vào phân vùng của item có hạng cao nhất của nó; FANOUT item đầu có phân vùng riêng,
+ *     các item còn lại dùng chung phân vùng "tail". Phân vùng của x được khai thác đệ quy
+ *     (prefix ∪ {x}, giao dịch bỏ x và nhân trọng số với xác suất của x), sau đó các giao dịch
+ *     của nó (bỏ x) được chuyển sang phân vùng của item kế tiếp. Dung lượng đĩa vì vậy chỉ
+ *     khoảng một bản của nguồn tại mỗi mức.
+ *
+ * Phân vùng được xử lý theo ES giảm dần nên minES (dùng chung cho mọi phân vùng, chỉ tăng)
+ * tăng nhanh nhất có thể. Vì mọi itemset của phân vùng x có ES ≤ ES(prefix ∪ {x}), khi ES này
+ * không vượt minES thì các phân vùng còn lại (và tail) bị bỏ qua mà không cần đọc.
+ *
+ * File phân vùng nằm trong một thư mục tạm, bị xóa ngay khi dùng xong.
+ */
+
+public class OutOfCoreTopKMiner {
+
+    /** Số phân vùng riêng tối đa mỗi mức (mỗi phân vùng là một file đang mở) */
+    public static final int DEFAULT_FANOUT = 64;
+
+    /** Byte ước tính cho mỗi cặp (item, xác suất) và mỗi giao dịch khi nạp vào bộ nhớ */
+    private static final int BYTES_PER_ENTRY = 24;
+    private static final int BYTES_PER_TRANSACTION = 8;
+
+    private final TransactionStore store;
+    private final String[] itemNames;
+    private final int k;
+    private final long memoryBudget;
+    private final File workDir;
+    private int fanout = DEFAULT_FANOUT;
+
+    /** Hàng đợi Top-K dùng chung cho mọi phân vùng (ES tăng dần) */
+    private final PriorityQueue<Itemset> topKQueue =
+            new PriorityQueue<>(Comparator.comparingDouble(Itemset::getExpectedSupport));
+
+    /** ES nhỏ nhất trong Top-K khi hàng đợi đã đủ K phần tử */
+    private double minES = 0.0;
+
+    /** Bộ đếm không gian tìm kiếm (chỉ cập nhật khi MiningStats.ENABLED) */
+    private final MiningStats stats = new MiningStats("OutOfCore");
+
+    private File tempDir;
+    private int partitionFiles;
+    private int inMemoryPartitions;
+    private long spilledBytes;
+
+    /**
+     * @param store        giao dịch (nên là store ngoài heap, vd MappedTransactionStore)
+     * @param itemNames    tên item theo id
+     * @param k            số itemset cần tìm
+     * @param memoryBudget số byte tối đa cho một phân vùng được nạp vào bộ nhớ
+     * @param workDir      thư mục chứa file phân vùng tạm
+     */
+    public OutOfCoreTopKMiner(TransactionStore store, String[] itemNames, int k,
+                              long memoryBudget, File workDir) {
+        this.store = store;
+        this.itemNames = itemNames;
+        this.k = k;
+        this.memoryBudget = memoryBudget;
+        this.workDir = workDir;
+    }
+
+    /** Ngân sách mặc định: 1/4 heap tối đa của JVM */
+    public static long defaultMemoryBudget() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /** Số phân vùng riêng tối đa mỗi mức */
+    public OutOfCoreTopKMiner fanout(int fanout) {
+        this.fanout = Math.max(1, fanout);
+        return this;
+    }
+
+    /**
+     * Khai thác Top-K
+     *
+     * @return danh sách Top-K itemset theo ES giảm dần
+     * @throws UncheckedIOException nếu không ghi / đọc được file phân vùng
+     */
+    public List<Itemset> mine() {
+        try {
+            workDir.mkdirs();
+            tempDir = Files.createTempDirectory(workDir.toPath(), "topk-partitions").toFile();
+            try {
+                mine(new StoreSource(), new int[0], true);
+            } finally {
+                File[] left = tempDir.listFiles();
+                if (left != null) {
+                    for (File f : left) {
+                        f.delete();
+                    }
+                }
+                tempDir.delete();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<Itemset> result = new ArrayList<>(topKQueue);
+        result.sort((a, b) -> Double.compare(b.getExpectedSupport(), a.getExpectedSupport()));
+        return result;
+    }
+
+    // =====================================================================
+    // Một mức: duyệt nguồn, rồi khai thác trong bộ nhớ hoặc chia phân vùng
+    // =====================================================================
+
+    /**
+     * Tìm mọi itemset prefix ∪ Y (Y khác rỗng, gồm các item của source).
+     *
+     * @param pushSingletons có đưa prefix ∪ {x} vào Top-K không (false với phân vùng tail:
+     *                       các itemset này đã được mức cha đưa vào)
+     */
+    private void mine(Source source, int[] prefix, boolean pushSingletons) throws IOException {
+        int n = itemNames.length;
+        double[] es = new double[n];
+        int[] counts = new int[n];
+        long[] totals = new long[1]; // số giao dịch
+        source.forEach((weight, items, probs, len) -> {
+            for (int j = 0; j < len; j++) {
+                es[items[j]] += weight * probs[j];
+                counts[items[j]]++;
+            }
+            totals[0]++;
+        });
+        if (MiningStats.ENABLED) {
+            stats.scanned(totals[0]);
+            stats.conditionalDb(prefix.length, (int) Math.min(Integer.MAX_VALUE, totals[0]));
+        }
+
+        // Item có ES > 0, theo ES giảm dần
+        int[] order = DatabasePreparer.rankOrder(es);
+        int m = 0;
+        while (m < n && es[order[m]] > 0) {
+            m++;
+        }
+
+        if (pushSingletons) {
+            for (int r = 0; r < m && !prunable(es[order[r]]); r++) {
+                if (MiningStats.ENABLED) stats.candidate();
+                pushTopK(prefix, new int[]{order[r]}, 1, es[order[r]]);
+            }
+        }
+
+        // Item có ES không vượt minES không thuộc itemset nào của Top-K: bỏ khỏi phân vùng
+        while (m > 0 && prunable(es[order[m - 1]])) {
+            m--;
+        }
+        if (m == 0) {
+            return;
+        }
+        order = Arrays.copyOf(order, m);
+        long entries = 0;
+        for (int x : order) {
+            entries += counts[x];
+        }
+
+        long estimate = entries * BYTES_PER_ENTRY + totals[0] * BYTES_PER_TRANSACTION;
+        if (estimate <= memoryBudget && totals[0] < Integer.MAX_VALUE) {
+            mineInMemory(source, prefix, order, es, counts, (int) totals[0]);
+        } else {
+            partition(source, prefix, order, es);
+        }
+    }
+
+    /**
+     * Nạp nguồn thành danh sách TID theo item (theo thứ tự order) và duyệt DFS.
+     * Các itemset prefix ∪ {x} đã được đưa vào Top-K ở mine().
+     */
+    private void mineInMemory(Source source, int[] prefix, int[] order, double[] es, int[] counts,
+                              int transCount) throws IOException {
+        inMemoryPartitions++;
+        int m = order.length;
+        int[] rank = ranks(order);
+        int[][] tids = new int[m][];
+        double[][] probs = new double[m][];
+        for (int r = 0; r < m; r++) {
+            tids[r] = new int[counts[order[r]]];
+            probs[r] = new double[counts[order[r]]];
+        }
+        double[] weights = new double[transCount];
+        int[] fill = new int[m];
+        int[] tid = new int[1];
+        source.forEach((weight, items, ps, len) -> {
+            int t = tid[0]++;
+            weights[t] = weight;
+            for (int j = 0; j < len; j++) {
+                int r = rank[items[j]];
+                if (r >= 0) {
+                    tids[r][fill[r]] = t;
+                    probs[r][fill[r]++] = ps[j];
+                }
+            }
+        });
+
+        InMemoryPartition part = new InMemoryPartition(prefix, order, es, tids, probs);
+        int[] path = new int[m];
+        for (int r = 0; r < m; r++) {
+            if (prunable(es[order[r]])) {
+                break;
+            }
+            MiningPhaseEvent phase = prefix.length == 0 ? stats.beginPhase("subtree", r) : null;
+            int len = tids[r].length;
+            double[] vals = new double[len];
+            for (int i = 0; i < len; i++) {
+                vals[i] = weights[tids[r][i]] * probs[r][i];
+            }
+            path[0] = order[r];
+            part.extend(path, 1, tids[r], vals, len, r + 1);
+            stats.endPhase(phase, minES);
+        }
+    }
+
+    /** Một nguồn đã nạp vào bộ nhớ: danh sách TID + xác suất của từng item theo thứ tự order */
+    private final class InMemoryPartition {
+
+        final int[] prefix;
+        final int[] order;
+        final double[] es;
+        final int[][] tids;
+        final double[][] probs;
+
+        InMemoryPartition(int[] prefix, int[] order, double[] es, int[][] tids, double[][] probs) {
+            this.prefix = prefix;
+            this.order = order;
+            this.es = es;
+            this.tids = tids;
+            this.probs = probs;
+        }
+
+        /**
+         * Mở rộng prefix ∪ path[0..depth) bằng các item order[from..]
+         *
+         * @param cur  TID tăng dần của các giao dịch chứa itemset hiện tại
+         * @param vals trọng số × tích xác suất của itemset hiện tại trong từng giao dịch của cur
+         */
+        void extend(int[] path, int depth, int[] cur, double[] vals, int len, int from) {
+            for (int r = from; r < order.length; r++) {
+                // ES của mọi mở rộng bằng item hạng r trở đi không vượt ES của chính item đó
+                if (prunable(es[order[r]])) {
+                    if (MiningStats.ENABLED) stats.prunedByUpperBound();
+                    break;
+                }
+                if (MiningStats.ENABLED) stats.candidate();
+                int[] ytids = tids[r];
+                double[] yprobs = probs[r];
+                int[] nextTids = new int[Math.min(len, ytids.length)];
+                double[] nextVals = new double[nextTids.length];
+                int c = 0;
+                double sum = 0.0;
+                for (int a = 0, b = 0; a < len && b < ytids.length; ) {
+                    if (cur[a] < ytids[b]) {
+                        a++;
+                    } else if (cur[a] > ytids[b]) {
+                        b++;
+                    } else {
+                        nextTids[c] = cur[a];
+                        nextVals[c] = vals[a++] * yprobs[b++];
+                        sum += nextVals[c++];
+                    }
+                }
+                if (MiningStats.ENABLED) stats.scanned(len);
+                if (prunable(sum)) {
+                    if (MiningStats.ENABLED) stats.prunedByExactES();
+                    continue;
+                }
+                path[depth] = order[r];
+                pushTopK(prefix, path, depth + 1, sum);
+                extend(path, depth + 1, nextTids, nextVals, c, r + 1);
+            }
+        }
+    }
+
+    /**
+     * Chia nguồn thành các phân vùng theo item hạng cao nhất của giao dịch và khai thác lần lượt.
+     */
+    private void partition(Source source, int[] prefix, int[] order, double[] es) throws IOException {
+        int p = Math.min(fanout, order.length);
+        int[] rank = ranks(order);
+        PartitionWriter[] writers = new PartitionWriter[p + 1]; // writers[p] = tail
+        try {
+            for (int r = 0; r <= p; r++) {
+                writers[r] = new PartitionWriter();
+            }
+            source.forEach((weight, items, probs, len) -> {
+                int top = topRank(items, len, rank, -1);
+                if (top >= 0) {
+                    writers[Math.min(top, p)].write(weight, items, probs, len, rank, -1);
+                }
+            });
+
+            boolean pruned = false;
+            for (int r = 0; r < p; r++) {
+                int x = order[r];
+                writers[r].close();
+                // Mọi itemset của phân vùng này và các phân vùng sau có ES ≤ ES(prefix ∪ {x})
+                if (prunable(es[x])) {
+                    if (MiningStats.ENABLED) stats.prunedByUpperBound();
+                    pruned = true;
+                    break;
+                }
+                MiningPhaseEvent phase = stats.beginPhase("partition", r);
+                int[] extended = Arrays.copyOf(prefix, prefix.length + 1);
+                extended[prefix.length] = x;
+                mine(new PartitionSource(writers[r].file, x), extended, true);
+
+                // Chuyển các giao dịch (bỏ x) sang phân vùng của item kế tiếp
+                new PartitionSource(writers[r].file, -1).forEach((weight, items, probs, len) -> {
+                    int next = topRank(items, len, rank, x);
+                    if (next >= 0) {
+                        writers[Math.min(next, p)].write(weight, items, probs, len, rank, x);
+                    }
+                });
+                writers[r].delete();
+                stats.endPhase(phase, minES);
+            }
+
+            writers[p].close();
+            if (!pruned) {
+                mine(new PartitionSource(writers[p].file, -1), prefix, false);
+            }
+        } finally {
+            for (PartitionWriter w : writers) {
+                if (w != null) {
+                    w.close();
+                    w.delete();
+                }
+            }
+        }
+    }
+
+    /** Số byte của một bản ghi có len item trong file phân vùng */
+    private static long recordBytes(int len) {
+        return Integer.BYTES + Double.BYTES + (long) len * (Integer.BYTES + Double.BYTES);
+    }
+
+    /** Hạng nhỏ nhất trong các item của giao dịch (bỏ qua item skip và item không có hạng), -1 nếu không có */
+    private static int topRank(int[] items, int len, int[] rank, int skip) {
+        int top = Integer.MAX_VALUE;
+        for (int j = 0; j < len; j++) {
+            if (items[j] != skip && rank[items[j]] >= 0) {
+                top = Math.min(top, rank[items[j]]);
+            }
+        }
+        return top == Integer.MAX_VALUE ? -1 : top;
+    }
+
+    private int[] ranks(int[] order) {
+        int[] rank = new int[itemNames.length];
+        Arrays.fill(rank, -1);
+        for (int r = 0; r < order.length; r++) {
+            rank[order[r]] = r;
+        }
+        return rank;
+    }
+
+    // =====================================================================
+    // Top-K dùng chung
+    // =====================================================================
+
+    /** Itemset (và mọi tập cha của nó) có ES này không thể vào Top-K */
+    private boolean prunable(double es) {
+        return es <= 0 || (topKQueue.size() == k && es <= minES);
+    }
+
+    /** Đưa prefix ∪ path[0..len) vào Top-K nếu đủ điều kiện, cập nhật minES */
+    private void pushTopK(int[] prefix, int[] path, int len, double es) {
+        if (topKQueue.size() == k && es <= topKQueue.peek().getExpectedSupport()) {
+            return;
+        }
+        Set<String> items = new LinkedHashSet<>();
+        for (int id : prefix) {
+            items.add(itemNames[id]);
+        }
+        for (int i = 0; i < len; i++) {
+            items.add(itemNames[path[i]]);
+        }
+        if (topKQueue.size() == k) {
+            topKQueue.poll();
+            if (MiningStats.ENABLED) stats.topKReplacement();
+        } else {
+            if (MiningStats.ENABLED) stats.topKInsert();
+        }
+        topKQueue.add(new Itemset(items, es));
+        if (topKQueue.size() == k) {
+            minES = topKQueue.peek().getExpectedSupport();
+        }
+    }
+
+    // =====================================================================
+    // Nguồn giao dịch và file phân vùng
+    // =====================================================================
+
+    /** Nhận từng giao dịch: trọng số (tích xác suất của prefix), item id và xác suất */
+    private interface RecordVisitor {
+        void visit(double weight, int[] items, double[] probs, int length) throws IOException;
+    }
+
+    private interface Source {
+        void forEach(RecordVisitor visitor) throws IOException;
+    }
+
+    /** Store gốc, trọng số 1 */
+    private final class StoreSource implements Source {
+
+        @Override
+        public void forEach(RecordVisitor visitor) throws IOException {
+            int[] items = new int[16];
+            double[] probs = new double[16];
+            for (int t = 0; t < store.size(); t++) {
+                int len = store.length(t);
+                if (len > items.length) {
+                    items = new int[len * 2];
+                    probs = new double[len * 2];
+                }
+                for (int j = 0; j < len; j++) {
+                    items[j] = store.itemAt(t, j);
+                    probs[j] = store.probAt(t, j);
+                }
+                if (len > 0) {
+                    visitor.visit(1.0, items, probs, len);
+                }
+            }
+        }
+    }
+
+    /**
+     * File phân vùng. Nếu condition ≥ 0 thì item này bị bỏ khỏi giao dịch và xác suất của nó
+     * được nhân vào trọng số (nguồn của prefix ∪ {condition}).
+     */
+    private static final class PartitionSource implements Source {
+
+        final File file;
+        final int condition;
+
+        PartitionSource(File file, int condition) {
+            this.file = file;
+            this.condition = condition;
+        }
+
+        @Override
+        public void forEach(RecordVisitor visitor) throws IOException {
+            int[] items = new int[16];
+            double[] probs = new double[16];
+            long remaining = file.length();
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+                while (remaining > 0) {
+                    int len = in.readInt();
+                    double weight = in.readDouble();
+                    if (len > items.length) {
+                        items = new int[len * 2];
+                        probs = new double[len * 2];
+                    }
+                    int n = 0;
+                    for (int j = 0; j < len; j++) {
+                        int item = in.readInt();
+                        double p = in.readDouble();
+                        if (item == condition) {
+                            weight *= p;
+                        } else {
+                            items[n] = item;
+                            probs[n++] = p;
+                        }
+                    }
+                    remaining -= recordBytes(len);
+                    if (n > 0) {
+                        visitor.visit(weight, items, probs, n);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Ghi giao dịch vào một file phân vùng, mỗi bản ghi:
+     * [số item: int][trọng số: double][item id: int, xác suất: double] × số item
+     */
+    private final class PartitionWriter implements Closeable {
+
+        final File file;
+        private DataOutputStream out;
+
+        PartitionWriter() throws IOException {
+            file = File.createTempFile("part", ".bin", tempDir);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            partitionFiles++;
+        }
+
+        /** Ghi các item có hạng của giao dịch, trừ item skip */
+        void write(double weight, int[] items, double[] probs, int len, int[] rank, int skip) throws IOException {
+            int n = 0;
+            for (int j = 0; j < len; j++) {
+                if (items[j] != skip && rank[items[j]] >= 0) {
+                    n++;
+                }
+            }
+            if (n == 0) {
+                return;
+            }
+            out.writeInt(n);
+            out.writeDouble(weight);
+            for (int j = 0; j < len; j++) {
+                if (items[j] != skip && rank[items[j]] >= 0) {
+                    out.writeInt(items[j]);
+                    out.writeDouble(probs[j]);
+                }
+            }
+            spilledBytes += recordBytes(n);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        }
+
+        void delete() {
+            file.delete();
+        }
+    }
+
+    // =====================================================================
+    // Thống kê
+    // =====================================================================
+
+    /** Số file phân vùng đã tạo */
+    public int getPartitionFiles() {
+        return partitionFiles;
+    }
+
+    /** Số nguồn (store gốc hoặc phân vùng) được khai thác trong bộ nhớ */
+    public int getInMemoryPartitions() {
+        return inMemoryPartitions;
+    }
+
+    /** Tổng số byte đã ghi ra các file phân vùng */
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /** Bộ đếm không gian tìm kiếm của lần khai thác (chỉ có số liệu khi MiningStats.ENABLED) */
+    public MiningStats getStats() {
+        return stats;
+    }
+}
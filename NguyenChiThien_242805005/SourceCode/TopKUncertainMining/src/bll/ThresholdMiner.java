@@ -0,0 +1,111 @@
+package bll;
+
+import java.util.*;
+import model.Itemset;
+import model.PreparedDatabase;
+
+/**
+ * Tìm mọi itemset có ES ≥ minES cố định (không phải Top-K). Dùng cho các worker của chế độ
+ * khai thác phân tán hai pha: pha 2 cần mọi itemset có ES cục bộ ≥ τ / N.
+ *
+ * Duyệt DFS theo thứ tự ES giảm dần trên danh sách TID: ES của itemset con được tính bằng
+ * giao của danh sách TID (kèm tích xác suất), nhánh bị cắt khi ES < minES (ES đơn điệu giảm
+ * khi thêm item).
+ */
+
+public class ThresholdMiner {
+
+    private final PreparedDatabase prepared;
+    private final double minES;
+    private final int maxItemsets;
+
+    private final List<Itemset> found = new ArrayList<>();
+
+    /** Bộ đếm không gian tìm kiếm (chỉ cập nhật khi MiningStats.ENABLED) */
+    private final MiningStats stats = new MiningStats("Threshold");
+
+    /**
+     * @param prepared    cơ sở dữ liệu đã tiền xử lý
+     * @param minES       ngưỡng ES (itemset có ES ≥ minES và ES > 0 được giữ lại)
+     * @param maxItemsets số itemset tối đa; vượt quá thì dừng với IllegalStateException
+     *                    (ngưỡng quá thấp so với dữ liệu)
+     */
+    public ThresholdMiner(PreparedDatabase prepared, double minES, int maxItemsets) {
+        this.prepared = prepared;
+        this.minES = minES;
+        this.maxItemsets = maxItemsets;
+    }
+
+    /**
+     * @return mọi itemset có ES ≥ minES, theo thứ tự duyệt
+     */
+    public List<Itemset> mine() {
+        int[] order = prepared.getRankOrder();
+        int[] path = new int[order.length];
+        for (int r = 0; r < order.length; r++) {
+            int id = order[r];
+            double es = prepared.getItemES(id);
+            if (es <= 0 || es < minES) {
+                break; // các item sau có ES không lớn hơn
+            }
+            int[] tids = prepared.getTidList(id);
+            double[] vals = prepared.getTidProbs(id);
+            path[0] = id;
+            add(path, 1, es);
+            extend(order, path, 1, tids, vals, tids.length, r + 1);
+        }
+        return found;
+    }
+
+    private void extend(int[] order, int[] path, int depth, int[] cur, double[] vals, int len, int from) {
+        for (int r = from; r < order.length; r++) {
+            int id = order[r];
+            if (prepared.getItemES(id) < minES) {
+                if (MiningStats.ENABLED) stats.prunedByUpperBound();
+                break;
+            }
+            if (MiningStats.ENABLED) stats.candidate();
+            int[] ytids = prepared.getTidList(id);
+            double[] yprobs = prepared.getTidProbs(id);
+            int[] nextTids = new int[Math.min(len, ytids.length)];
+            double[] nextVals = new double[nextTids.length];
+            int c = 0;
+            double sum = 0.0;
+            for (int a = 0, b = 0; a < len && b < ytids.length; ) {
+                if (cur[a] < ytids[b]) {
+                    a++;
+                } else if (cur[a] > ytids[b]) {
+                    b++;
+                } else {
+                    nextTids[c] = cur[a];
+                    nextVals[c] = vals[a++] * yprobs[b++];
+                    sum += nextVals[c++];
+                }
+            }
+            if (MiningStats.ENABLED) stats.scanned(len);
+            if (sum <= 0 || sum < minES) {
+                if (MiningStats.ENABLED) stats.prunedByExactES();
+                continue;
+            }
+            path[depth] = id;
+            add(path, depth + 1, sum);
+            extend(order, path, depth + 1, nextTids, nextVals, c, r + 1);
+        }
+    }
+
+    private void add(int[] path, int len, double es) {
+        if (found.size() >= maxItemsets) {
+            throw new IllegalStateException("More than " + maxItemsets + " itemsets with ES >= " + minES);
+        }
+        Set<String> items = new LinkedHashSet<>();
+        for (int i = 0; i < len; i++) {
+            items.add(prepared.getItemName(path[i]));
+        }
+        found.add(new Itemset(items, es));
+    }
+
+    /** Bộ đếm không gian tìm kiếm của lần khai thác (chỉ có số liệu khi MiningStats.ENABLED) */
+    public MiningStats getStats() {
+        return stats;
+    }
+}
@@ -2,6 +2,7 @@ package bll;
 
 import java.util.*;
 import model.Itemset;
+import model.PreparedDatabase;
 import model.Transaction;
 
 /**
@@ -11,19 +12,23 @@ import model.Transaction;
  * Thuật toán duyệt theo dạng nhánh (branch-and-bound) dựa trên:
  * - Danh sách item được sắp xếp giảm dần theo ES đơn lẻ
  * - Tính ES tích lũy theo từng mức mở rộng tập mục
- * - Cắt tỉa nhánh khi ES < minES (ngưỡng ES nhỏ nhất trong Top-K hiện tại)
+ * - Cắt tỉa nhánh khi ES < minES (ngưỡng ES nhỏ nhất trong Top-K hiện tại) hoặc ES = 0
+ * - Tích xác suất theo danh sách TID tính bằng ESKernels (SIMD nếu có)
  */
 
 public class TopKExpectedSupport {
 
-    /** Danh sách giao dịch đầu vào */
-    private final List<Transaction> transactions;
+    /** Cơ sở dữ liệu đã tiền xử lý (ES item đơn, danh sách TID) */
+    private final PreparedDatabase prepared;
+
+    /** Số lượng giao dịch */
+    private final int transCount;
 
     /** Số lượng Top-K cần tìm */
     private final int k;
 
-    /** Danh sách item sắp xếp giảm dần theo ES đơn lẻ */
-    private final List<String> allItems;
+    /** Item id sắp xếp giảm dần theo ES đơn lẻ */
+    private final int[] allItems;
 
     /** Hàng đợi Top-K itemset (sắp theo ES tăng dần) */
     private final PriorityQueue<Itemset> topKQueue;
@@ -31,6 +36,12 @@ public class TopKExpectedSupport {
     /** ES nhỏ nhất trong Top-K (dùng cho cắt tỉa) */
     private double minES = 0.0;
 
+    /** Bộ đếm không gian tìm kiếm (chỉ cập nhật khi MiningStats.ENABLED) */
+    private final MiningStats stats = new MiningStats("TopK-ES");
+
+    /** Vòng nhân–cộng trên vector xác suất (SIMD nếu có) */
+    private static final ESKernels KERNELS = ESKernels.INSTANCE;
+
 
     /**
      * Khởi tạo bộ tìm kiếm Top-K ES
@@ -39,21 +50,22 @@ public class TopKExpectedSupport {
      * @param k số lượng tập mục cần tìm
      */
     public TopKExpectedSupport(List<Transaction> transactions, int k) {
-        this.transactions = transactions;
-        this.k = k;
+        this(DatabasePreparer.prepare(transactions), k);
+    }
 
-        // Tính ES của từng item đơn lẻ
-        Map<String, Double> esMap = new HashMap<>();
-        for (Transaction t : transactions) {
-            for (Map.Entry<String, Double> e : t.getItems().entrySet()) {
-                esMap.merge(e.getKey(), e.getValue(), Double::sum);
-            }
-        }
+    /**
+     * Khởi tạo bộ tìm kiếm Top-K ES trên cơ sở dữ liệu đã tiền xử lý
+     *
+     * @param prepared cơ sở dữ liệu đã tiền xử lý
+     * @param k số lượng tập mục cần tìm
+     */
+    public TopKExpectedSupport(PreparedDatabase prepared, int k) {
+        this.prepared = prepared;
+        this.transCount = prepared.getTransactionCount();
+        this.k = k;
 
-        // Sắp xếp item theo ES giảm dần để tăng hiệu quả cắt tỉa
-        List<String> items = new ArrayList<>(esMap.keySet());
-        items.sort((a, b) -> Double.compare(esMap.get(b), esMap.get(a))); // sắp xếp giảm dần ES
-        this.allItems = items;
+        // Item đã được sắp theo ES giảm dần để tăng hiệu quả cắt tỉa
+        this.allItems = prepared.getRankOrder();
 
         this.topKQueue = new PriorityQueue<>(Comparator.comparingDouble(Itemset::getExpectedSupport));
     }
@@ -64,7 +76,7 @@ public class TopKExpectedSupport {
      * @return danh sách Top-K itemset theo ES giảm dần
      */
     public List<Itemset> findTopK() {
-        double[] probSoFar = new double[transactions.size()]; // xác suất tích lũy cho nhánh hiện tại
+        double[] probSoFar = new double[transCount]; // xác suất tích lũy cho nhánh hiện tại
         Arrays.fill(probSoFar, 1.0);
         explore(0, new LinkedHashSet<>(), probSoFar);
         List<Itemset> result = new ArrayList<>(topKQueue);
@@ -80,32 +92,46 @@ public class TopKExpectedSupport {
      * @param probSoFar xác suất tích lũy cho từng giao dịch
      */
     private void explore(int index, Set<String> curr, double[] probSoFar) {
-        for (int i = index; i < allItems.size(); i++) {
-            String item = allItems.get(i);
-
-            double[] newProb = new double[transactions.size()];
-            double es = 0.0;
-
-            // Tính ES của tập mục mới
-            for (int t = 0; t < transactions.size(); t++) {
-                Double p = transactions.get(t).getItems().get(item);
-                if (p == null) {
-                    p = 0.0;
-                }
-                newProb[t] = probSoFar[t] * p;
-                es += newProb[t];
+        for (int i = index; i < allItems.length; i++) {
+            if (curr.isEmpty()) {
+                // Mỗi cây con của item ở mức đầu tiên là một pha (sự kiện JFR)
+                MiningPhaseEvent phase = stats.beginPhase("subtree", i);
+                extend(i, curr, probSoFar);
+                stats.endPhase(phase, minES);
+            } else {
+                extend(i, curr, probSoFar);
             }
+        }
+    }
 
-            // Cắt nhánh nếu ES không đủ tốt
-            if (es < minES) {
-                continue; // cắt nhánh
-            }
-            curr.add(item);
-            pushTopK(new Itemset(new LinkedHashSet<>(curr), es));
-
-            explore(i + 1, curr, newProb);
-            curr.remove(item);
+    /**
+     * Xét tập mục curr ∪ {allItems[i]} và đệ quy mở rộng nếu không bị cắt nhánh
+     */
+    private void extend(int i, Set<String> curr, double[] probSoFar) {
+        int id = allItems[i];
+        String item = prepared.getItemName(id);
+        if (MiningStats.ENABLED) stats.candidate();
+
+        // Tính ES của tập mục mới: chỉ các giao dịch chứa item mới khác 0
+        int[] tids = prepared.getTidList(id);
+        double[] probs = prepared.getTidProbs(id);
+        if (MiningStats.ENABLED) stats.scanned(tids.length);
+        double es = KERNELS.gatherDot(probSoFar, tids, probs, tids.length);
+
+        // Cắt nhánh nếu ES không đủ tốt. ES = 0 (không giao dịch nào chứa cả tập mục) thì mọi
+        // tập cha cũng bằng 0: khi Top-K chưa đầy (minES = 0) nhánh này không được mở rộng tiếp
+        if (es <= 0 || es < minES) {
+            if (MiningStats.ENABLED) stats.prunedByExactES();
+            return; // cắt nhánh
         }
+        curr.add(item);
+        pushTopK(new Itemset(new LinkedHashSet<>(curr), es));
+
+        // Vector xác suất tích lũy của nhánh con chỉ được tạo khi nhánh không bị cắt
+        double[] newProb = new double[transCount];
+        KERNELS.gatherMultiply(probSoFar, tids, probs, newProb, tids.length);
+        explore(i + 1, curr, newProb);
+        curr.remove(item);
     }
 
     /**
@@ -116,13 +142,20 @@ public class TopKExpectedSupport {
     private void pushTopK(Itemset it) {
         if (topKQueue.size() < k) {
             topKQueue.add(it);
+            if (MiningStats.ENABLED) stats.topKInsert();
         } else if (it.getExpectedSupport() > topKQueue.peek().getExpectedSupport()) {
             topKQueue.poll();
             topKQueue.add(it);
+            if (MiningStats.ENABLED) stats.topKReplacement();
         }
 
         if (topKQueue.size() == k) {
             minES = topKQueue.peek().getExpectedSupport();
         }
     }
+
+    /** Bộ đếm không gian tìm kiếm của lần khai thác (chỉ có số liệu khi MiningStats.ENABLED) */
+    public MiningStats getStats() {
+        return stats;
+    }
 }
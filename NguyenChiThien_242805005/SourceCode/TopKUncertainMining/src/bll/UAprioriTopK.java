@@ -2,6 +2,9 @@ package bll;
 
 import java.util.*;
 import model.Itemset;
+import model.ItemsetConstraints;
+import model.PairESMatrix;
+import model.PreparedDatabase;
 import model.Transaction;
 
 /**
@@ -13,14 +16,15 @@ import model.Transaction;
  *  - Ngưỡng động Top-K (minES) để cắt tỉa ứng viên
  *  - Phát sinh ứng viên theo kiểu Apriori (join + prune)
  *  - Ước lượng cận trên UB = tổng ES của từng item đơn lẻ để cắt nhánh sớm
+ *  - ES của các cặp item (PairESMatrix) để bỏ ứng viên trước khi tính ES chính xác
  *
  * Kết quả cuối cùng là Top-K itemset có ES cao nhất, sắp xếp giảm dần
  */
 
 public class UAprioriTopK {
 
-    /** Danh sách giao dịch không chắc chắn */
-    private final List<Transaction> transactions;
+    /** Cơ sở dữ liệu đã tiền xử lý (ES item đơn, danh sách TID) */
+    private final PreparedDatabase prepared;
 
     /** Số lượng Top-K cần tìm */
     private final int k;
@@ -34,6 +38,15 @@ public class UAprioriTopK {
     /** Ngưỡng ES động của Top-K (dùng để cắt tỉa) */
     private double minES = 0.0; 
 
+    /** Ràng buộc của truy vấn (item bắt buộc / bị loại, độ dài) */
+    private ItemsetConstraints constraints = ItemsetConstraints.NONE;
+
+    /** Bộ đếm không gian tìm kiếm (chỉ cập nhật khi MiningStats.ENABLED) */
+    private final MiningStats stats = new MiningStats("U-Apriori");
+
+    /** ES của các cặp item (null nếu -Dtopk.pairs=false) */
+    private final PairESMatrix pairs;
+
     /**
      * Khởi tạo thuật toán U-Apriori Top-K
      *
@@ -41,23 +54,37 @@ public class UAprioriTopK {
      * @param k số tập mục cần tìm
      */
     public UAprioriTopK(List<Transaction> transactions, int k) {
-        this.transactions = transactions;
-        this.k = k;
+        this(DatabasePreparer.prepare(transactions), k);
+    }
 
-        // Tính ES đơn lẻ cho từng item
-        Map<String, Double> esMap = new HashMap<>();
-        for (Transaction t : transactions) {
-            for (Map.Entry<String, Double> e : t.getItems().entrySet()) {
-                esMap.merge(e.getKey(), e.getValue(), Double::sum);
-            }
-        }
+    /**
+     * Khởi tạo U-Apriori Top-K trên cơ sở dữ liệu đã tiền xử lý
+     * (ES đơn lẻ và thứ tự item lấy từ bước tiền xử lý dùng chung)
+     *
+     * @param prepared cơ sở dữ liệu đã tiền xử lý
+     * @param k số tập mục cần tìm
+     */
+    public UAprioriTopK(PreparedDatabase prepared, int k) {
+        this.prepared = prepared;
+        this.k = k;
 
-        // Sắp xếp item theo ES giảm dần – hỗ trợ cắt tỉa hiệu quả
-        List<String> items = new ArrayList<>(esMap.keySet());
-        items.sort((a, b) -> Double.compare(esMap.get(b), esMap.get(a)));
-        this.allItems = items;
+        // Item đã được sắp theo ES giảm dần – hỗ trợ cắt tỉa hiệu quả
+        this.allItems = prepared.getRankedItems();
 
         this.topKQueue = new PriorityQueue<>(Comparator.comparingDouble(Itemset::getExpectedSupport));
+        this.pairs = PairESMatrix.ENABLED ? prepared.getPairMatrix(k) : null;
+    }
+
+    /**
+     * Đặt ràng buộc của truy vấn (mặc định không có). Item bị loại không được đưa vào L1,
+     * vòng lặp theo mức dừng ở độ dài tối đa; itemset không thỏa ràng buộc vẫn được giữ
+     * trong mức hiện tại (cần cho bước join + prune) nhưng không vào Top-K.
+     *
+     * @return chính đối tượng này
+     */
+    public UAprioriTopK constraints(ItemsetConstraints constraints) {
+        this.constraints = constraints;
+        return this;
     }
 
     /**
@@ -69,56 +96,96 @@ public class UAprioriTopK {
 
         List<Set<String>> currentLevel = new ArrayList<>();
         Map<Set<String>, Double> freqMap = new HashMap<>();
+        if (constraints.isUnsatisfiable()) {
+            return new ArrayList<>();
+        }
 
         // ------------------- L1: tạo tập mục 1 phần tử -------------------
+        MiningPhaseEvent phase = stats.beginPhase("level", 1);
         for (String item : allItems) {
+            if (constraints.excludes(item)) {
+                if (MiningStats.ENABLED) stats.prunedByConstraint();
+                continue;
+            }
             Set<String> itemset = new LinkedHashSet<>();
             itemset.add(item);
+            if (MiningStats.ENABLED) stats.candidate();
 
             double es = computeExpectedSupport(itemset);
 
-            if (es >= minES) {
-                pushTopK(new Itemset(itemset, es));
+            if (es > 0 && es >= minES) {
+                if (constraints.accepts(itemset)) {
+                    pushTopK(new Itemset(itemset, es));
+                }
                 currentLevel.add(itemset);
                 freqMap.put(itemset, es);
+            } else if (MiningStats.ENABLED) {
+                stats.prunedByExactES();
             }
         }
+        stats.endPhase(phase, minES);
 
         // ------------------- L2, L3, ...: Apriori join + prune ---------
-        while (!currentLevel.isEmpty()) {
+        int level = 1;
+        // Không sinh ứng viên dài hơn độ dài tối đa của ràng buộc
+        while (!currentLevel.isEmpty() && level < constraints.getMaxLength()) {
 
             List<Set<String>> nextLevel = new ArrayList<>();
+            phase = stats.beginPhase("level", ++level);
 
             for (int i = 0; i < currentLevel.size(); i++) {
                 for (int j = i + 1; j < currentLevel.size(); j++) {
 
+                    // Ứng viên được thêm theo thứ tự của tập (k-1) sinh ra nó, nên các tập cùng prefix
+                    // nằm liền nhau: tập đầu tiên không join được kết thúc nhóm của i
                     Set<String> candidate = tryJoin(currentLevel.get(i), currentLevel.get(j));
                     if (candidate == null) {
-                        continue;
+                        break;
                     }
+                    if (MiningStats.ENABLED) stats.candidate();
 
                     // Apriori prune
                     if (!allSubsetsFrequent(candidate, freqMap)) {
+                        if (MiningStats.ENABLED) stats.prunedBySubset();
+                        continue;
+                    }
+
+                    // Các cặp trong tập con (k-1) đã được xét ở mức trước; chỉ còn cặp với item vừa join
+                    String joinedItem = currentLevel.get(j).stream().reduce((a, b) -> b).get();
+                    if (pairs != null && pairs.prunes(currentLevel.get(i), joinedItem, minES)) {
+                        if (MiningStats.ENABLED) stats.prunedByUpperBound();
                         continue;
                     }
 
                     double ub = candidate.stream().mapToDouble(this::singleES).sum();
                     if (ub < minES) {
+                        if (MiningStats.ENABLED) stats.prunedByUpperBound();
                         continue;
                     }
 
                     double es = computeExpectedSupport(candidate);
 
-                    // prune by Top-K dynamic threshold
-                    if (es < minES) {
+                    // prune by Top-K dynamic threshold; ES = 0 (các item không cùng xuất hiện) bị bỏ
+                    // cả khi Top-K chưa đầy (minES = 0), như mọi tập cha của nó
+                    if (es <= 0 || es < minES) {
+                        if (MiningStats.ENABLED) stats.prunedByExactES();
                         continue;
                     }
 
-                    pushTopK(new Itemset(candidate, es));
+                    if (constraints.accepts(candidate)) {
+                        pushTopK(new Itemset(candidate, es));
+                    } else if (constraints.missing(candidate) > 0
+                            && completionPrunes(prepared.expectedSupport(constraints.completion(candidate)))) {
+                        // Mọi tập cha thỏa ràng buộc đều chứa completion nên có ES < minES:
+                        // bỏ khỏi mức kế tiếp (các tập cha cũng bị Apriori prune)
+                        if (MiningStats.ENABLED) stats.prunedByConstraint();
+                        continue;
+                    }
                     nextLevel.add(candidate);
                     freqMap.put(candidate, es);
                 }
             }
+            stats.endPhase(phase, minES);
 
             currentLevel = nextLevel;
         }
@@ -129,32 +196,18 @@ public class UAprioriTopK {
         return result;
     }
 
+    /** Tập cha thỏa ràng buộc có ES ≤ ES(completion): bỏ nếu ES đó bằng 0 hoặc dưới minES */
+    private boolean completionPrunes(double completionES) {
+        return completionES <= 0 || completionES < minES;
+    }
+
     private double computeExpectedSupport(Set<String> itemset) {
-        double sum = 0.0;
-        for (Transaction t : transactions) {
-            double p = 1.0;
-            for (String item : itemset) {
-                Double val = t.getItems().get(item);
-                if (val == null) {
-                    p = 0.0;
-                    break;
-                }
-                p *= val;
-            }
-            sum += p;
-        }
-        return sum;
+        if (MiningStats.ENABLED) stats.scanned(prepared.getShortestTidList(itemset).length);
+        return prepared.expectedSupport(itemset);
     }
 
     private double singleES(String item) {
-        double sum = 0.0;
-        for (Transaction t : transactions) {
-            Double val = t.getItems().get(item);
-            if (val != null) {
-                sum += val;
-            }
-        }
-        return sum;
+        return prepared.getItemES(item);
     }
 
     /**
@@ -163,9 +216,11 @@ public class UAprioriTopK {
     private void pushTopK(Itemset is) {
         if (topKQueue.size() < k) {
             topKQueue.add(is);
+            if (MiningStats.ENABLED) stats.topKInsert();
         } else if (is.getExpectedSupport() > topKQueue.peek().getExpectedSupport()) {
             topKQueue.poll();
             topKQueue.add(is);
+            if (MiningStats.ENABLED) stats.topKReplacement();
         }
 
         if (topKQueue.size() == k) {
@@ -202,4 +257,9 @@ public class UAprioriTopK {
         }
         return true;
     }
+
+    /** Bộ đếm không gian tìm kiếm của lần khai thác (chỉ có số liệu khi MiningStats.ENABLED) */
+    public MiningStats getStats() {
+        return stats;
+    }
 }
@@ -0,0 +1,348 @@
+package bll;
+
+import java.util.*;
+import model.Itemset;
+import model.ItemsetPrefixTree;
+import model.LargeTopK;
+import model.PairESMatrix;
+import model.PreparedDatabase;
+
+/**
+ * Bộ khai thác Top-K theo chiều dọc dùng diffset, dành cho dữ liệu dày (tỉ lệ lấp đầy cao, vd: chess).
+ *
+ * Trên dữ liệu dày, danh sách TID của prefix gần như toàn bộ cơ sở dữ liệu, còn tập giao dịch
+ * "rơi ra" khi thêm một item (diffset) thì rất nhỏ. Với item dày X (có mặt trong ít nhất nửa số
+ * giao dịch), bộ khai thác lưu:
+ *  - diffset D(X): các giao dịch không chứa X
+ *  - cột xác suất dày p_X[t] (tỉ lệ nhân vào trọng số của prefix)
+ * Item thưa dùng danh sách TID thông thường.
+ *
+ * Mỗi độ sâu d của DFS giữ tập giao dịch T(P) của prefix P và trọng số w_P(t) = tích xác suất
+ * của P trong t (mảng dày theo TID). Khác với dữ liệu chắc chắn, trọng số của các giao dịch còn lại
+ * thay đổi theo p_X(t) nên không thể chỉ lưu diffset cho cả nút; diffset được dùng làm cận trên:
+ *
+ *   ES(P ∪ {X}) ≤ ES(P) − Σ_{t ∈ D(X)} w_P(t)
+ *
+ * tính trong O(|D(X)|) trước khi duyệt T(P). Nhánh qua được cận thì ES chính xác được tính bằng
+ * ESKernels (tích vô hướng với cột dày, hoặc gather trọng số theo danh sách TID của X); chỉ nút
+ * không bị cắt mới được chiếu sang độ sâu kế tiếp (w_P · p_X, bỏ giao dịch rơi ra) trong một lần
+ * duyệt min(|T(P)|, |T(X)|) phần tử. Trước đó ứng viên còn bị cắt bởi ES của cặp item
+ * (PairESMatrix). Item duyệt theo ES giảm dần.
+ *
+ * mineLarge() dùng cho K rất lớn: Top-K nằm trong LargeTopK (heap trên mảng nguyên thủy, itemset
+ * là nút của cây tiền tố) thay vì PriorityQueue<Itemset>. DFS sinh mỗi itemset đúng một lần nên
+ * không cần tập "đã thăm"; đường DFS hiện tại giữ tham chiếu tới các nút tiền tố của nó.
+ */
+
+public class UDiffsetMiner {
+
+    private final PreparedDatabase prepared;
+    private final int topK;
+    private final PriorityQueue<Itemset> topKQueue;
+    private final MiningStats stats;
+
+    /** ES của các cặp item (null nếu -Dtopk.pairs=false) */
+    private final PairESMatrix pairs;
+
+    /** Vòng nhân–cộng trên vector xác suất (SIMD nếu có) */
+    private static final ESKernels KERNELS = ESKernels.INSTANCE;
+
+    private double minES = 0.0;
+
+    /** Số giao dịch */
+    private final int n;
+
+    /** Thứ hạng → item id (ES giảm dần), chỉ gồm item có ES > 0 */
+    private final int[] order;
+
+    /** Cột xác suất dày theo thứ hạng, null với item thưa */
+    private final double[][] column;
+
+    /** Diffset D(X) theo thứ hạng (giao dịch không chứa X), null với item thưa */
+    private final int[][] absent;
+
+    /** T(P) ở từng độ sâu: tids[d][0..length[d]) */
+    private int[][] tids;
+    private int[] length;
+
+    /** Trọng số w_P(t) ở từng độ sâu (dày theo TID, 0 ngoài T(P)) */
+    private double[][] weight;
+
+    /** ES của prefix ở từng độ sâu */
+    private double[] prefixES;
+
+    /** Item id của prefix hiện tại */
+    private int[] prefix;
+
+    /** Top-K của mineLarge() (null với mine()) */
+    private LargeTopK large;
+
+    /** Nút cây tiền tố của prefix[0..d] ở từng độ sâu (chỉ dùng với mineLarge()) */
+    private int[] path;
+
+    /**
+     * @param prepared cơ sở dữ liệu đã tiền xử lý (dùng danh sách TID)
+     * @param topK     số itemset cần tìm
+     */
+    public UDiffsetMiner(PreparedDatabase prepared, int topK) {
+        this(prepared, topK, new PriorityQueue<>(Comparator.comparingDouble(Itemset::getExpectedSupport)),
+                new MiningStats("Diffset"));
+    }
+
+    /** Dùng bởi HybridTopKMiner để ghi vào hàng đợi và bộ đếm của chính nó */
+    UDiffsetMiner(PreparedDatabase prepared, int topK, PriorityQueue<Itemset> sharedQueue, MiningStats stats) {
+        this.prepared = prepared;
+        this.topK = topK;
+        this.topKQueue = sharedQueue;
+        this.stats = stats;
+        this.pairs = PairESMatrix.ENABLED ? prepared.getPairMatrix(topK) : null;
+        this.n = prepared.getTransactionCount();
+
+        int[] rankOrder = prepared.getRankOrder();
+        int m = 0;
+        while (m < rankOrder.length && prepared.getItemES(rankOrder[m]) > 0) {
+            m++;
+        }
+        this.order = Arrays.copyOf(rankOrder, m);
+        this.column = new double[m][];
+        this.absent = new int[m][];
+        for (int r = 0; r < m; r++) {
+            int[] tidList = prepared.getTidList(order[r]);
+            if ((long) tidList.length * 2 < n) {
+                continue;
+            }
+            double[] probs = prepared.getTidProbs(order[r]);
+            double[] col = new double[n];
+            int[] diff = new int[n - tidList.length];
+            int x = 0;
+            int a = 0;
+            for (int t = 0; t < n; t++) {
+                if (x < tidList.length && tidList[x] == t) {
+                    col[t] = probs[x++];
+                } else {
+                    diff[a++] = t;
+                }
+            }
+            column[r] = col;
+            absent[r] = diff;
+        }
+    }
+
+    /**
+     * Khai thác Top-K
+     *
+     * @return danh sách Top-K itemset theo ES giảm dần
+     */
+    public List<Itemset> mine() {
+        run();
+        List<Itemset> result = new ArrayList<>(topKQueue);
+        result.sort((a, b) -> Double.compare(b.getExpectedSupport(), a.getExpectedSupport()));
+        return result;
+    }
+
+    /**
+     * Khai thác Top-K với bộ nhớ giới hạn cho K lớn (10^5 – 10^6)
+     *
+     * @return Top-K dạng mảng nguyên thủy (ghi ra file bằng dal.SortedItemsetWriter hoặc
+     *         chuyển sang Itemset bằng LargeTopK.toItemsets)
+     */
+    public LargeTopK mineLarge() {
+        large = new LargeTopK(topK);
+        path = new int[order.length];
+        run();
+        return large;
+    }
+
+    private void run() {
+        int m = order.length;
+        tids = new int[m + 1][];
+        weight = new double[m + 1][];
+        length = new int[m + 1];
+        prefixES = new double[m + 1];
+        prefix = new int[m];
+
+        // Gốc: mọi giao dịch, trọng số 1
+        ensureDepth(0);
+        for (int t = 0; t < n; t++) {
+            tids[0][t] = t;
+        }
+        Arrays.fill(weight[0], 1.0);
+        length[0] = n;
+        prefixES[0] = n;
+
+        for (int r = 0; r < m; r++) {
+            // Mỗi cây con của item ở mức đầu tiên là một pha (sự kiện JFR)
+            MiningPhaseEvent phase = stats.beginPhase("subtree", r);
+            extend(0, r);
+            stats.endPhase(phase, minES);
+        }
+    }
+
+    private void explore(int depth, int from) {
+        for (int r = from; r < order.length; r++) {
+            extend(depth, r);
+        }
+    }
+
+    /**
+     * Xét ứng viên prefix[0..depth) ∪ {order[r]}: cắt tỉa bằng ES cặp và diffset, tính ES chính xác,
+     * chiếu T(P) sang độ sâu depth + 1 rồi đệ quy
+     */
+    private void extend(int depth, int r) {
+        int id = order[r];
+        if (MiningStats.ENABLED) stats.candidate();
+
+        if (pairs != null && minES > 0) {
+            for (int j = 0; j < depth; j++) {
+                if (pairs.upperBound(prefix[j], id) < minES) {
+                    if (MiningStats.ENABLED) stats.prunedByUpperBound();
+                    return;
+                }
+            }
+        }
+
+        double[] w = weight[depth];
+        int[] diff = absent[r];
+        if (diff != null && minES > 0) {
+            double dropped = KERNELS.gatherSum(w, diff, diff.length);
+            if (MiningStats.ENABLED) stats.scanned(diff.length);
+            if (prefixES[depth] - dropped < minES) {
+                if (MiningStats.ENABLED) stats.prunedByUpperBound();
+                return;
+            }
+        }
+
+        double es = expectedSupport(depth, r);
+        if (es <= 0 || es < minES) {
+            if (MiningStats.ENABLED) stats.prunedByExactES();
+            return;
+        }
+        project(depth, r);
+
+        prefix[depth] = id;
+        if (large != null) {
+            path[depth] = large.getTree().add(depth == 0 ? ItemsetPrefixTree.ROOT : path[depth - 1], id);
+            pushLarge(path[depth], es);
+        } else {
+            Set<String> items = new TreeSet<>();
+            for (int j = 0; j <= depth; j++) {
+                items.add(prepared.getItemName(prefix[j]));
+            }
+            pushTopK(new Itemset(items, es));
+        }
+
+        if (r + 1 < order.length && length[depth + 1] > 0) {
+            if (MiningStats.ENABLED) stats.conditionalDb(depth + 1, length[depth + 1]);
+            prefixES[depth + 1] = es;
+            explore(depth + 1, r + 1);
+        }
+        if (large != null) {
+            // Nút chỉ còn sống nếu nằm trong Top-K hoặc là tiền tố của một itemset trong Top-K
+            large.getTree().release(path[depth]);
+        }
+    }
+
+    /**
+     * ES(P ∪ {X}) bằng ESKernels: tích vô hướng với cột dày khi T(P) còn lớn,
+     * ngược lại gather trọng số của P theo danh sách TID của X
+     */
+    private double expectedSupport(int depth, int r) {
+        double[] w = weight[depth];
+        if (column[r] != null && (long) length[depth] * 4 >= n) {
+            if (MiningStats.ENABLED) stats.scanned(n);
+            return KERNELS.dot(w, column[r], n);
+        }
+        if (column[r] != null) {
+            double[] col = column[r];
+            int[] parentTids = tids[depth];
+            double es = 0.0;
+            for (int i = 0; i < length[depth]; i++) {
+                int t = parentTids[i];
+                es += w[t] * col[t];
+            }
+            if (MiningStats.ENABLED) stats.scanned(length[depth]);
+            return es;
+        }
+        int[] tidList = prepared.getTidList(order[r]);
+        if (MiningStats.ENABLED) stats.scanned(tidList.length);
+        return KERNELS.gatherDot(w, tidList, prepared.getTidProbs(order[r]), tidList.length);
+    }
+
+    /** Tính T(P ∪ {X}) và trọng số w_P · p_X vào độ sâu depth + 1 */
+    private void project(int depth, int r) {
+        ensureDepth(depth + 1);
+        double[] w = weight[depth];
+        int[] childTids = tids[depth + 1];
+        double[] childW = weight[depth + 1];
+
+        // Xóa trọng số của nút con trước đó ở cùng độ sâu
+        for (int i = 0; i < length[depth + 1]; i++) {
+            childW[childTids[i]] = 0.0;
+        }
+
+        int id = order[r];
+        int[] tidList = prepared.getTidList(id);
+        int len = 0;
+        if (column[r] != null && length[depth] < tidList.length) {
+            // Item dày: duyệt T(P), giao dịch có p_X = 0 là giao dịch rơi ra
+            double[] col = column[r];
+            int[] parentTids = tids[depth];
+            for (int i = 0; i < length[depth]; i++) {
+                int t = parentTids[i];
+                double v = w[t] * col[t];
+                if (v > 0) {
+                    childTids[len++] = t;
+                    childW[t] = v;
+                }
+            }
+        } else {
+            double[] probs = prepared.getTidProbs(id);
+            for (int x = 0; x < tidList.length; x++) {
+                int t = tidList[x];
+                double v = w[t] * probs[x];
+                if (v > 0) {
+                    childTids[len++] = t;
+                    childW[t] = v;
+                }
+            }
+        }
+        length[depth + 1] = len;
+    }
+
+    private void ensureDepth(int depth) {
+        if (tids[depth] == null) {
+            tids[depth] = new int[n];
+            weight[depth] = new double[n];
+        }
+    }
+
+    private void pushTopK(Itemset itemset) {
+        if (topKQueue.size() < topK) {
+            topKQueue.add(itemset);
+            if (MiningStats.ENABLED) stats.topKInsert();
+        } else if (itemset.getExpectedSupport() > topKQueue.peek().getExpectedSupport()) {
+            topKQueue.poll();
+            topKQueue.add(itemset);
+            if (MiningStats.ENABLED) stats.topKReplacement();
+        }
+        if (topKQueue.size() == topK) {
+            minES = topKQueue.peek().getExpectedSupport();
+        }
+    }
+
+    private void pushLarge(int node, double es) {
+        boolean full = large.isFull();
+        if (large.offer(node, es) && MiningStats.ENABLED) {
+            if (full) stats.topKReplacement();
+            else stats.topKInsert();
+        }
+        if (large.isFull()) {
+            minES = large.getMinES();
+        }
+    }
+
+    /** Bộ đếm không gian tìm kiếm của lần khai thác (chỉ có số liệu khi MiningStats.ENABLED) */
+    public MiningStats getStats() {
+        return stats;
+    }
+}
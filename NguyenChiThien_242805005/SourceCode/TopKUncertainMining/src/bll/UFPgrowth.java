@@ -2,6 +2,9 @@ package bll;
 
 import java.util.*;
 import model.Itemset;
+import model.ItemsetConstraints;
+import model.PairESMatrix;
+import model.PreparedDatabase;
 import model.Transaction;
 
 /**
@@ -9,18 +12,34 @@ import model.Transaction;
  * trên cơ sở dữ liệu không chắc chắn. Thuật toán mở rộng theo hướng FP-growth:
  * - Sử dụng cơ sở dữ liệu điều kiện (conditional DB)
  * - Sắp xếp item theo ES giảm dần
- * - Cắt tỉa bằng cận trên ES và ngưỡng động minES
+ * - Cắt tỉa bằng cận trên ES, ES của cặp item (PairESMatrix) và ngưỡng động minES
  * - Tránh lặp bằng visited
  */
 
 public class UFPgrowth {
 
     private List<Transaction> db;
+    private PreparedDatabase prepared;
     private int topK;
     private PriorityQueue<Itemset> topKQueue;
     private double minES = 0.0;
     private Set<String> visited = new HashSet<>();
 
+    /** Ràng buộc của truy vấn (item bắt buộc / bị loại, độ dài), đẩy vào quá trình tìm kiếm */
+    private ItemsetConstraints constraints = ItemsetConstraints.NONE;
+
+    /** Bộ đếm không gian tìm kiếm (chỉ cập nhật khi MiningStats.ENABLED) */
+    private final MiningStats stats;
+
+    /** ES của các cặp item, cắt tỉa trước khi duyệt DB con (null nếu -Dtopk.pairs=false) */
+    private final PairESMatrix pairs;
+
+    /** Checkpoint để tiếp tục lần chạy bị dừng (null = không lưu) */
+    private MiningCheckpoint checkpoint;
+
+    /** Vị trí bắt đầu của vòng item mức đầu (khác 0 khi tiếp tục từ checkpoint) */
+    private int firstIndex;
+
     /**
      * Khởi tạo thuật toán UFP-growth
      *
@@ -29,9 +48,28 @@ public class UFPgrowth {
      * @param sharedQueue  Hàng đợi Top-K dùng chung giữa các thuật toán (nếu có)
      */
     public UFPgrowth(List<Transaction> db, int topK, PriorityQueue<Itemset> sharedQueue) {
-        this.db = db;
+        this(DatabasePreparer.prepare(db), topK, sharedQueue);
+    }
+
+    /**
+     * Khởi tạo thuật toán UFP-growth trên cơ sở dữ liệu đã tiền xử lý
+     *
+     * @param prepared     Cơ sở dữ liệu đã tiền xử lý (ES item đơn, danh sách TID)
+     * @param topK         Số lượng itemset cần lấy
+     * @param sharedQueue  Hàng đợi Top-K dùng chung giữa các thuật toán (nếu có)
+     */
+    public UFPgrowth(PreparedDatabase prepared, int topK, PriorityQueue<Itemset> sharedQueue) {
+        this(prepared, topK, sharedQueue, new MiningStats("U-FPGrowth"));
+    }
+
+    /** Dùng bởi HybridTopKMiner để ghi số liệu vào bộ đếm của chính nó */
+    UFPgrowth(PreparedDatabase prepared, int topK, PriorityQueue<Itemset> sharedQueue, MiningStats stats) {
+        this.stats = stats;
+        this.prepared = prepared;
+        this.db = prepared.materializeTransactions();
         this.topK = topK;
         this.topKQueue = sharedQueue;
+        this.pairs = PairESMatrix.ENABLED ? prepared.getPairMatrix(topK) : null;
     }
 
     /**
@@ -40,7 +78,11 @@ public class UFPgrowth {
      */
     private double exactES(Set<String> items) {
         double es = 0.0;
-        for (Transaction t : db) {
+        // Chỉ duyệt các giao dịch chứa item hiếm nhất của itemset
+        int[] tids = prepared.getShortestTidList(items);
+        if (MiningStats.ENABLED) stats.scanned(tids.length);
+        for (int tid : tids) {
+            Transaction t = db.get(tid);
             double p = 1.0;
             for (String it : items) {
                 Double v = t.getItems().get(it);
@@ -55,6 +97,29 @@ public class UFPgrowth {
         return es;
     }
 
+    /**
+     * Đặt ràng buộc của truy vấn (mặc định không có). Top-K khi đó gồm K itemset thỏa ràng buộc
+     * có ES cao nhất; item bị loại không được chiếu vào DB điều kiện và nhánh không thể thỏa
+     * ràng buộc bị cắt (xem ItemsetConstraints).
+     *
+     * @return chính đối tượng này
+     */
+    public UFPgrowth constraints(ItemsetConstraints constraints) {
+        this.constraints = constraints;
+        return this;
+    }
+
+    /**
+     * Lưu trạng thái định kỳ vào checkpoint (Top-K, minES, vị trí vòng item mức đầu) và tiếp tục
+     * từ checkpoint nếu file đã có và khớp với lần chạy này (null = không dùng checkpoint)
+     *
+     * @return chính đối tượng này
+     */
+    public UFPgrowth checkpoint(MiningCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
     /**
      * Điểm bắt đầu của thuật toán
      * - Tính ES của 1-itemset
@@ -62,10 +127,23 @@ public class UFPgrowth {
      * - Gọi hàm explore để đệ quy mở rộng theo prefix
      */
     public void mine() {
-        Map<String, Double> es1 = computeES(db);
-        List<String> items = new ArrayList<>(es1.keySet());
-        items.sort((a, b) -> Double.compare(es1.get(b), es1.get(a)));
+        // ES item đơn và thứ tự giảm dần lấy từ bước tiền xử lý dùng chung
+        List<String> items = prepared.getRankedItems();
+        if (constraints.isUnsatisfiable()) {
+            return;
+        }
+        if (!constraints.getExcluded().isEmpty()) {
+            items = new ArrayList<>(items);
+            items.removeIf(constraints::excludes);
+        }
+        if (checkpoint != null) {
+            firstIndex = checkpoint.resume("U-FPGrowth", prepared, topK, constraints, topKQueue);
+            minES = checkpoint.getRestoredMinES();
+        }
         explore(new TreeSet<>(), db, items);
+        if (checkpoint != null) {
+            checkpoint.finish();
+        }
     }
 
     /**
@@ -74,6 +152,7 @@ public class UFPgrowth {
      */
     private Map<String, Double> computeES(List<Transaction> tdb) {
         Map<String, Double> map = new HashMap<>();
+        if (MiningStats.ENABLED) stats.scanned(tdb.size());
         for (Transaction t : tdb) {
             for (var e : t.getItems().entrySet()) {
                 map.merge(e.getKey(), e.getValue(), Double::sum);
@@ -90,13 +169,15 @@ public class UFPgrowth {
      */
     private List<Transaction> buildCondDB(List<Transaction> tdb, String item) {
         List<Transaction> ret = new ArrayList<>();
+        if (MiningStats.ENABLED) stats.scanned(tdb.size());
         for (Transaction t : tdb) {
             if (!t.getItems().containsKey(item)) {
                 continue;
             }
             Map<String, Double> newMap = new HashMap<>();
             for (var e : t.getItems().entrySet()) {
-                if (!e.getKey().equals(item)) {
+                // Item bị loại bởi ràng buộc không được chiếu vào DB điều kiện
+                if (!e.getKey().equals(item) && !constraints.excludes(e.getKey())) {
                     newMap.put(e.getKey(), e.getValue());
                 }
             }
@@ -113,6 +194,7 @@ public class UFPgrowth {
      */
     private double singleES(String item, List<Transaction> tdb) {
         double sum = 0.0;
+        if (MiningStats.ENABLED) stats.scanned(tdb.size());
         for (Transaction t : tdb) {
             Double val = t.getItems().get(item);
             if (val != null) {
@@ -131,48 +213,104 @@ public class UFPgrowth {
      * - Đệ quy mở rộng tiếp
      */
     private void explore(Set<String> prefix, List<Transaction> tdb, List<String> items) {
-        for (int i = 0; i < items.size(); i++) {
-            String item = items.get(i);
-
-            // 1. Prune bằng cận trên ES
-            double ub = singleES(item, tdb);
-            if (ub < minES) {
-                continue;
+        int[] includedInSuffix = constraints.includedInSuffix(items);
+        for (int i = prefix.isEmpty() ? firstIndex : 0; i < items.size(); i++) {
+            if (prefix.isEmpty()) {
+                // Mỗi cây con của item ở mức đầu tiên là một pha (sự kiện JFR)
+                MiningPhaseEvent phase = stats.beginPhase("subtree", i);
+                extend(prefix, tdb, items, i, includedInSuffix);
+                stats.endPhase(phase, minES);
+                if (checkpoint != null) {
+                    checkpoint.completed(i + 1, minES, topKQueue);
+                }
+            } else {
+                extend(prefix, tdb, items, i, includedInSuffix);
             }
+        }
+    }
 
-            // 2. Mở rộng prefix
-            Set<String> newPrefix = new TreeSet<>(prefix);
-            newPrefix.add(item);
+    /**
+     * Xét ứng viên prefix ∪ {items[i]} và đệ quy vào DB điều kiện của nó
+     * (includedInSuffix[j] = số item bắt buộc trong items[j..])
+     */
+    private void extend(Set<String> prefix, List<Transaction> tdb, List<String> items, int i,
+                        int[] includedInSuffix) {
+        String item = items.get(i);
+        if (MiningStats.ENABLED) stats.candidate();
 
-            // 3. Tính ES chính xác
-            double es = exactES(newPrefix);
-            if (es < minES) {
-                continue;
+        // 1. Prune bằng ES của cặp (prefix item, item) rồi bằng cận trên ES trong DB con
+        if (pairs != null && pairs.prunes(prefix, item, minES)) {
+            if (MiningStats.ENABLED) stats.prunedByUpperBound();
+            return;
+        }
+        double ub = singleES(item, tdb);
+        if (ub < minES) {
+            if (MiningStats.ENABLED) stats.prunedByUpperBound();
+            return;
+        }
+
+        // 2. Mở rộng prefix; itemset không thỏa ràng buộc và không tập cha nào thỏa được thì bỏ cả nhánh
+        Set<String> newPrefix = new TreeSet<>(prefix);
+        newPrefix.add(item);
+        boolean accepted = true;
+        boolean extensible = true;
+        if (!constraints.isEmpty()) {
+            accepted = constraints.accepts(newPrefix);
+            extensible = constraints.canExtend(newPrefix, items.size() - i - 1, includedInSuffix[i + 1]);
+            if (!accepted && !extensible) {
+                if (MiningStats.ENABLED) stats.prunedByConstraint();
+                return;
             }
+            // Tập cha thỏa ràng buộc phải chứa các item bắt buộc còn thiếu: ES không vượt ES(completion)
+            if (!accepted && minES > 0 && constraints.missing(newPrefix) > 0
+                    && prepared.expectedSupport(constraints.completion(newPrefix)) < minES) {
+                if (MiningStats.ENABLED) stats.prunedByConstraint();
+                return;
+            }
+        }
+
+        // 3. Tính ES chính xác
+        double es = exactES(newPrefix);
+        if (es < minES) {
+            if (MiningStats.ENABLED) stats.prunedByExactES();
+            return;
+        }
 
-            // 4. Cập nhật Top-K
+        // 4. Cập nhật Top-K (chỉ itemset thỏa ràng buộc)
+        if (accepted) {
             pushTopK(new Itemset(newPrefix, es));
+        }
+        if (!extensible) {
+            if (MiningStats.ENABLED) stats.prunedByConstraint();
+            return;
+        }
+
+        // 5. Tạo DB điều kiện cho lần đệ quy tiếp theo
+        List<Transaction> cdb = buildCondDB(tdb, item);
+        if (MiningStats.ENABLED) stats.conditionalDb(newPrefix.size(), cdb.size());
+        if (cdb.isEmpty()) {
+            return;
+        }
 
-            // 5. Tạo DB điều kiện cho lần đệ quy tiếp theo
-            List<Transaction> cdb = buildCondDB(tdb, item);
-            if (cdb.isEmpty()) {
+        // 6. Lọc và sắp xếp item phù hợp với DB điều kiện
+        Map<String, Double> ces = computeES(cdb);
+        List<String> newItems = new ArrayList<>();
+        for (int j = i + 1; j < items.size(); j++) {
+            String it = items.get(j);
+            if (!ces.containsKey(it)) {
                 continue;
             }
-
-            // 6. Lọc và sắp xếp item phù hợp với DB điều kiện
-            Map<String, Double> ces = computeES(cdb);
-            List<String> newItems = new ArrayList<>();
-            for (int j = i + 1; j < items.size(); j++) {
-                String it = items.get(j);
-                if (ces.containsKey(it)) {
-                    newItems.add(it);
-                }
+            // Cặp (item, it) đã dưới minES: không nhánh nào của prefix mới chứa it vào được Top-K
+            if (pairs != null && minES > 0 && pairs.upperBound(item, it) < minES) {
+                if (MiningStats.ENABLED) stats.prunedByUpperBound();
+                continue;
             }
-            newItems.sort((a, b) -> Double.compare(ces.get(b), ces.get(a)));
-
-            // 7. Đệ quy mở rộng
-            explore(newPrefix, cdb, newItems);
+            newItems.add(it);
         }
+        newItems.sort((a, b) -> Double.compare(ces.get(b), ces.get(a)));
+
+        // 7. Đệ quy mở rộng
+        explore(newPrefix, cdb, newItems);
     }
 
     /**
@@ -187,12 +325,19 @@ public class UFPgrowth {
         visited.add(key);
         if (topKQueue.size() < topK) {
             topKQueue.add(itemset);
+            if (MiningStats.ENABLED) stats.topKInsert();
         } else if (itemset.getExpectedSupport() > topKQueue.peek().getExpectedSupport()) {
             topKQueue.poll();
             topKQueue.add(itemset);
+            if (MiningStats.ENABLED) stats.topKReplacement();
         }
         if (topKQueue.size() == topK) {
             minES = topKQueue.peek().getExpectedSupport();
         }
     }
+
+    /** Bộ đếm không gian tìm kiếm của lần khai thác (chỉ có số liệu khi MiningStats.ENABLED) */
+    public MiningStats getStats() {
+        return stats;
+    }
 }
@@ -2,6 +2,9 @@ package bll;
 
 import java.util.*;
 import model.Itemset;
+import model.ItemsetConstraints;
+import model.PairESMatrix;
+import model.PreparedDatabase;
 import model.Transaction;
 
 /**
@@ -17,11 +20,27 @@ import model.Transaction;
 public class UHMine {
 
     private List<Transaction> db;
+    private PreparedDatabase prepared;
     private int topK;
     private PriorityQueue<Itemset> topKQueue;
     private double minES = 0.0;
     private Set<String> visited = new HashSet<>();
 
+    /** Ràng buộc của truy vấn (item bắt buộc / bị loại, độ dài), đẩy vào quá trình tìm kiếm */
+    private ItemsetConstraints constraints = ItemsetConstraints.NONE;
+
+    /** Bộ đếm không gian tìm kiếm (chỉ cập nhật khi MiningStats.ENABLED) */
+    private final MiningStats stats;
+
+    /** ES của các cặp item, cắt tỉa trước khi duyệt DB con (null nếu -Dtopk.pairs=false) */
+    private final PairESMatrix pairs;
+
+    /** Checkpoint để tiếp tục lần chạy bị dừng (null = không lưu) */
+    private MiningCheckpoint checkpoint;
+
+    /** Vị trí bắt đầu của vòng item mức đầu (khác 0 khi tiếp tục từ checkpoint) */
+    private int firstIndex;
+
     /**
      * Khởi tạo UHMine
      *
@@ -30,9 +49,28 @@ public class UHMine {
      * @param sharedQueue queue dùng để lưu trữ Top-K itemset
      */
     public UHMine(List<Transaction> db, int topK, PriorityQueue<Itemset> sharedQueue) {
-        this.db = db;
+        this(DatabasePreparer.prepare(db), topK, sharedQueue);
+    }
+
+    /**
+     * Khởi tạo UHMine trên cơ sở dữ liệu đã tiền xử lý
+     *
+     * @param prepared    cơ sở dữ liệu đã tiền xử lý (ES item đơn, danh sách TID)
+     * @param topK        số lượng itemset cần lấy
+     * @param sharedQueue queue dùng để lưu trữ Top-K itemset
+     */
+    public UHMine(PreparedDatabase prepared, int topK, PriorityQueue<Itemset> sharedQueue) {
+        this(prepared, topK, sharedQueue, new MiningStats("U-HMine"));
+    }
+
+    /** Dùng bởi HybridTopKMiner để ghi số liệu vào bộ đếm của chính nó */
+    UHMine(PreparedDatabase prepared, int topK, PriorityQueue<Itemset> sharedQueue, MiningStats stats) {
+        this.stats = stats;
+        this.prepared = prepared;
+        this.db = prepared.materializeTransactions();
         this.topK = topK;
         this.topKQueue = sharedQueue;
+        this.pairs = PairESMatrix.ENABLED ? prepared.getPairMatrix(topK) : null;
     }
 
     /**
@@ -44,7 +82,11 @@ public class UHMine {
      */
     private double exactES(Set<String> items) {
         double es = 0.0;
-        for (Transaction t : db) {
+        // Chỉ duyệt các giao dịch chứa item hiếm nhất của itemset
+        int[] tids = prepared.getShortestTidList(items);
+        if (MiningStats.ENABLED) stats.scanned(tids.length);
+        for (int tid : tids) {
+            Transaction t = db.get(tid);
             double p = 1.0;
             for (String it : items) {
                 Double v = t.getItems().get(it);
@@ -67,6 +109,7 @@ public class UHMine {
      */
     private Map<String, Double> computeES(List<Transaction> tdb) {
         Map<String, Double> map = new HashMap<>();
+        if (MiningStats.ENABLED) stats.scanned(tdb.size());
         for (Transaction t : tdb) {
             for (var e : t.getItems().entrySet()) {
                 map.merge(e.getKey(), e.getValue(), Double::sum);
@@ -84,13 +127,15 @@ public class UHMine {
      */
     private List<Transaction> condDB(List<Transaction> tdb, String item) {
         List<Transaction> ret = new ArrayList<>();
+        if (MiningStats.ENABLED) stats.scanned(tdb.size());
         for (Transaction t : tdb) {
             if (!t.getItems().containsKey(item)) {
                 continue;
             }
             Map<String, Double> newMap = new HashMap<>();
             for (var e : t.getItems().entrySet()) {
-                if (!e.getKey().equals(item)) {
+                // Item bị loại bởi ràng buộc không được chiếu vào DB điều kiện
+                if (!e.getKey().equals(item) && !constraints.excludes(e.getKey())) {
                     newMap.put(e.getKey(), e.getValue());
                 }
             }
@@ -110,6 +155,7 @@ public class UHMine {
      */
     private double singleES(String item, List<Transaction> tdb) {
         double sum = 0.0;
+        if (MiningStats.ENABLED) stats.scanned(tdb.size());
         for (Transaction t : tdb) {
             Double val = t.getItems().get(item);
             if (val != null) {
@@ -119,15 +165,51 @@ public class UHMine {
         return sum;
     }
 
+    /**
+     * Đặt ràng buộc của truy vấn (mặc định không có). Top-K khi đó gồm K itemset thỏa ràng buộc
+     * có ES cao nhất; item bị loại không được chiếu vào DB điều kiện và nhánh không thể thỏa
+     * ràng buộc bị cắt (xem ItemsetConstraints).
+     *
+     * @return chính đối tượng này
+     */
+    public UHMine constraints(ItemsetConstraints constraints) {
+        this.constraints = constraints;
+        return this;
+    }
+
+    /**
+     * Lưu trạng thái định kỳ vào checkpoint (Top-K, minES, vị trí vòng item mức đầu) và tiếp tục
+     * từ checkpoint nếu file đã có và khớp với lần chạy này (null = không dùng checkpoint)
+     *
+     * @return chính đối tượng này
+     */
+    public UHMine checkpoint(MiningCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
     /**
      * Điểm bắt đầu thuật toán: tính ES cho item đơn, sắp xếp,
      * sau đó gọi đệ quy explore()
      */
     public void mine() {
-        Map<String, Double> es1 = computeES(db);
-        List<String> items = new ArrayList<>(es1.keySet());
-        items.sort((a, b) -> Double.compare(es1.get(b), es1.get(a)));
+        // ES item đơn và thứ tự giảm dần lấy từ bước tiền xử lý dùng chung
+        List<String> items = prepared.getRankedItems();
+        if (constraints.isUnsatisfiable()) {
+            return;
+        }
+        if (!constraints.getExcluded().isEmpty()) {
+            items = new ArrayList<>(items);
+            items.removeIf(constraints::excludes);
+        }
+        if (checkpoint != null) {
+            firstIndex = checkpoint.resume("U-HMine", prepared, topK, constraints, topKQueue);
+            minES = checkpoint.getRestoredMinES();
+        }
         explore(new TreeSet<>(), db, items);
+        if (checkpoint != null) {
+            checkpoint.finish();
+        }
     }
 
     /**
@@ -139,40 +221,105 @@ public class UHMine {
      * @param items  tập item có thể mở rộng
      */
     private void explore(Set<String> prefix, List<Transaction> tdb, List<String> items) {
-        for (int i = 0; i < items.size(); i++) {
-            String item = items.get(i);
-            double ub = singleES(item, tdb);
-            if (ub < minES) {
-                continue;
+        int[] includedInSuffix = constraints.includedInSuffix(items);
+        for (int i = prefix.isEmpty() ? firstIndex : 0; i < items.size(); i++) {
+            if (prefix.isEmpty()) {
+                // Mỗi cây con của item ở mức đầu tiên là một pha (sự kiện JFR)
+                MiningPhaseEvent phase = stats.beginPhase("subtree", i);
+                extend(prefix, tdb, items, i, includedInSuffix);
+                stats.endPhase(phase, minES);
+                if (checkpoint != null) {
+                    checkpoint.completed(i + 1, minES, topKQueue);
+                }
+            } else {
+                extend(prefix, tdb, items, i, includedInSuffix);
             }
+        }
+    }
 
-            Set<String> newPrefix = new TreeSet<>(prefix);
-            newPrefix.add(item);
+    /**
+     * Xét ứng viên prefix ∪ {items[i]}: cắt tỉa, cập nhật Top-K và mở rộng tiếp
+     *
+     * @param prefix prefix itemset hiện tại
+     * @param tdb    tập giao dịch con ứng với prefix
+     * @param items  tập item có thể mở rộng
+     * @param i      vị trí item được xét trong items
+     * @param includedInSuffix số item bắt buộc trong items[j..] (ItemsetConstraints.includedInSuffix)
+     */
+    private void extend(Set<String> prefix, List<Transaction> tdb, List<String> items, int i,
+                        int[] includedInSuffix) {
+        String item = items.get(i);
+        if (MiningStats.ENABLED) stats.candidate();
 
-            double es = exactES(newPrefix);
-            if (es < minES) {
-                continue;
+        // ES của cặp (prefix item, item) chặn trên mọi itemset của nhánh: không cần duyệt DB con
+        if (pairs != null && pairs.prunes(prefix, item, minES)) {
+            if (MiningStats.ENABLED) stats.prunedByUpperBound();
+            return;
+        }
+        double ub = singleES(item, tdb);
+        if (ub < minES) {
+            if (MiningStats.ENABLED) stats.prunedByUpperBound();
+            return;
+        }
+
+        Set<String> newPrefix = new TreeSet<>(prefix);
+        newPrefix.add(item);
+
+        // Itemset không thỏa ràng buộc và không tập cha nào thỏa được: bỏ cả nhánh
+        boolean accepted = true;
+        boolean extensible = true;
+        if (!constraints.isEmpty()) {
+            accepted = constraints.accepts(newPrefix);
+            extensible = constraints.canExtend(newPrefix, items.size() - i - 1, includedInSuffix[i + 1]);
+            if (!accepted && !extensible) {
+                if (MiningStats.ENABLED) stats.prunedByConstraint();
+                return;
+            }
+            // Tập cha thỏa ràng buộc phải chứa các item bắt buộc còn thiếu: ES không vượt ES(completion)
+            if (!accepted && minES > 0 && constraints.missing(newPrefix) > 0
+                    && prepared.expectedSupport(constraints.completion(newPrefix)) < minES) {
+                if (MiningStats.ENABLED) stats.prunedByConstraint();
+                return;
             }
+        }
 
+        double es = exactES(newPrefix);
+        if (es < minES) {
+            if (MiningStats.ENABLED) stats.prunedByExactES();
+            return;
+        }
+
+        if (accepted) {
             pushTopK(new Itemset(newPrefix, es));
+        }
+        if (!extensible) {
+            if (MiningStats.ENABLED) stats.prunedByConstraint();
+            return;
+        }
+
+        List<Transaction> cdb = condDB(tdb, item);
+        if (MiningStats.ENABLED) stats.conditionalDb(newPrefix.size(), cdb.size());
+        if (cdb.isEmpty()) {
+            return;
+        }
 
-            List<Transaction> cdb = condDB(tdb, item);
-            if (cdb.isEmpty()) {
+        Map<String, Double> ces = computeES(cdb);
+        List<String> newItems = new ArrayList<>();
+        for (int j = i + 1; j < items.size(); j++) {
+            String it = items.get(j);
+            if (!ces.containsKey(it)) {
                 continue;
             }
-
-            Map<String, Double> ces = computeES(cdb);
-            List<String> newItems = new ArrayList<>();
-            for (int j = i + 1; j < items.size(); j++) {
-                String it = items.get(j);
-                if (ces.containsKey(it)) {
-                    newItems.add(it);
-                }
+            // Cặp (item, it) đã dưới minES: không nhánh nào của prefix mới chứa it vào được Top-K
+            if (pairs != null && minES > 0 && pairs.upperBound(item, it) < minES) {
+                if (MiningStats.ENABLED) stats.prunedByUpperBound();
+                continue;
             }
-            newItems.sort((a, b) -> Double.compare(ces.get(b), ces.get(a)));
-
-            explore(newPrefix, cdb, newItems);
+            newItems.add(it);
         }
+        newItems.sort((a, b) -> Double.compare(ces.get(b), ces.get(a)));
+
+        explore(newPrefix, cdb, newItems);
     }
 
     /**
@@ -190,9 +337,11 @@ public class UHMine {
 
         if (topKQueue.size() < topK) {
             topKQueue.add(itemset);
+            if (MiningStats.ENABLED) stats.topKInsert();
         } else if (itemset.getExpectedSupport() > topKQueue.peek().getExpectedSupport()) {
             topKQueue.poll();
             topKQueue.add(itemset);
+            if (MiningStats.ENABLED) stats.topKReplacement();
         }
 
         if (topKQueue.size() == topK) {
@@ -208,4 +357,9 @@ public class UHMine {
     public PriorityQueue<Itemset> getTopK() {
         return topKQueue;
     }
+
+    /** Bộ đếm không gian tìm kiếm của lần khai thác (chỉ có số liệu khi MiningStats.ENABLED) */
+    public MiningStats getStats() {
+        return stats;
+    }
 }
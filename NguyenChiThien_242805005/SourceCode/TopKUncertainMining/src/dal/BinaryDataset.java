@@ -0,0 +1,615 @@
+package dal;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import model.MappedTransactionStore;
+import model.ProbabilityCodec;
+import model.QuantizedTransactionStore;
+import model.TransactionStore;
+
+/**
+ * Định dạng nhị phân dạng cột cho cơ sở dữ liệu không chắc chắn (file .tkud).
+ * Được ghi một lần bởi bộ chuyển đổi, sau đó mở bằng memory mapping: không cần phân tích
+ * văn bản, và page cache của hệ điều hành được dùng chung giữa các tiến trình khai thác.
+ *
+ * Bố cục (little-endian, mỗi phần bắt đầu ở vị trí chia hết cho 8):
+ *  - Header (128 byte): MAGIC "TKUD", VERSION, FLAGS, số item, số giao dịch, số cặp (item, xác suất),
+ *    vị trí bắt đầu của từng phần bên dưới (phần bảng giải mã nằm cuối header)
+ *  - Từ điển item: với mỗi item, độ dài (int) + tên dạng UTF-8
+ *  - CSR offsets: long[số giao dịch + 1]
+ *  - Item id: int[số cặp], trong mỗi giao dịch tăng dần
+ *  - Xác suất: double[số cặp], hoặc (FLAG_QUANTIZED_8 / FLAG_QUANTIZED_16) mã byte[] / short[]
+ *    kèm bảng giải mã: số phần tử (int) + double[] (xem model.ProbabilityCodec)
+ *  - (tùy chọn, FLAG_TID_LISTS) danh sách TID theo item:
+ *    offsets long[số item + 1], TID int[số cặp], xác suất double[số cặp]
+ *
+ * Mỗi cột phải nhỏ hơn 2 GB (giới hạn của một vùng ánh xạ).
+ *
+ * Chuyển đổi từ file xác suất dạng văn bản:
+ *   java -cp bin dal.BinaryDataset <probFile> <itemFile> <out.tkud> [-tid] [-bits 8|16]
+ */
+
+public class BinaryDataset {
+
+    static final int MAGIC = 0x54_4B_55_44; // "TKUD"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 128;
+
+    /** File có thêm các cột danh sách TID theo item */
+    static final int FLAG_TID_LISTS = 1;
+
+    /** Xác suất lưu dạng mã 8 / 16 bit (ProbabilityCodec) */
+    static final int FLAG_QUANTIZED_8 = 2;
+    static final int FLAG_QUANTIZED_16 = 4;
+
+    /** Bảng mã không mất mát (mỗi giá trị xác suất có một mã riêng) */
+    static final int FLAG_LOSSLESS = 8;
+
+    private final String[] itemNames;
+    private final TransactionStore store;
+    private final long entryCount;
+    private final int[][] tidLists;
+    private final double[][] tidProbs;
+
+    private BinaryDataset(String[] itemNames, TransactionStore store, long entryCount,
+                          int[][] tidLists, double[][] tidProbs) {
+        this.itemNames = itemNames;
+        this.store = store;
+        this.entryCount = entryCount;
+        this.tidLists = tidLists;
+        this.tidProbs = tidProbs;
+    }
+
+    /** Tên item theo id */
+    public String[] getItemNames() {
+        return itemNames;
+    }
+
+    /** Giao dịch (trên vùng nhớ ánh xạ) */
+    public TransactionStore getStore() {
+        return store;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public boolean hasTidLists() {
+        return tidLists != null;
+    }
+
+    /** Danh sách TID theo item (null nếu file không có cột TID) */
+    public int[][] getTidLists() {
+        return tidLists;
+    }
+
+    /** Xác suất tương ứng với getTidLists() (null nếu file không có cột TID) */
+    public double[][] getTidProbs() {
+        return tidProbs;
+    }
+
+    // =====================================================================
+    // Mở file
+    // =====================================================================
+
+    /** Kiểm tra file có phải định dạng .tkud hay không (theo MAGIC) */
+    public static boolean isBinary(String path) {
+        File f = new File(path);
+        if (!f.isFile() || f.length() < HEADER_BYTES) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+            return Integer.reverseBytes(in.readInt()) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Số bit của mã xác suất trong file .tkud (0 nếu lưu double hoặc không đọc được header)
+     */
+    public static int probabilityBits(String path) {
+        if (!isBinary(path)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(path))) {
+            in.readInt();
+            in.readInt();
+            int flags = Integer.reverseBytes(in.readInt());
+            return (flags & FLAG_QUANTIZED_8) != 0 ? 8 : (flags & FLAG_QUANTIZED_16) != 0 ? 16 : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Mở file .tkud bằng memory mapping. Các cột giao dịch nằm ngoài heap;
+     * riêng cột TID (nếu có) được chép khối vào mảng để dùng trực tiếp khi tiền xử lý.
+     *
+     * @param path đường dẫn file
+     * @return dataset đã mở, hoặc null nếu không đọc được
+     */
+    public static BinaryDataset open(String path) {
+        try (FileChannel ch = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer header = map(ch, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a TKUD file: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported TKUD version " + version + ": " + path);
+            }
+            int flags = header.getInt();
+            int itemCount = header.getInt();
+            int transCount = header.getInt();
+            long entryCount = header.getLong();
+            long dictPos = header.getLong();
+            long offsetsPos = header.getLong();
+            long itemsPos = header.getLong();
+            long probsPos = header.getLong();
+            long tidOffsetsPos = header.getLong();
+            long tidsPos = header.getLong();
+            long tidProbsPos = header.getLong();
+            long lutPos = header.getLong();
+
+            // Từ điển item
+            ByteBuffer dict = map(ch, dictPos, offsetsPos - dictPos);
+            String[] itemNames = new String[itemCount];
+            byte[] scratch = new byte[64];
+            for (int i = 0; i < itemCount; i++) {
+                int len = dict.getInt();
+                if (len > scratch.length) scratch = new byte[len];
+                dict.get(scratch, 0, len);
+                itemNames[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+            }
+
+            LongBuffer offsets = map(ch, offsetsPos, (transCount + 1L) * Long.BYTES).asLongBuffer();
+            IntBuffer items = map(ch, itemsPos, entryCount * Integer.BYTES).asIntBuffer();
+            TransactionStore store;
+            if ((flags & (FLAG_QUANTIZED_8 | FLAG_QUANTIZED_16)) != 0) {
+                ByteBuffer lutBuf = map(ch, lutPos, Integer.BYTES);
+                int lutSize = lutBuf.getInt();
+                double[] lut = new double[lutSize];
+                map(ch, lutPos + Long.BYTES, (long) lutSize * Double.BYTES).asDoubleBuffer().get(lut);
+                if ((flags & FLAG_QUANTIZED_8) != 0) {
+                    store = new MappedTransactionStore(offsets, items, map(ch, probsPos, entryCount), null, lut);
+                } else {
+                    store = new MappedTransactionStore(offsets, items, null,
+                            map(ch, probsPos, entryCount * Short.BYTES).asShortBuffer(), lut);
+                }
+            } else {
+                store = new MappedTransactionStore(offsets, items,
+                        map(ch, probsPos, entryCount * Double.BYTES).asDoubleBuffer());
+            }
+
+            int[][] tidLists = null;
+            double[][] tidProbs = null;
+            if ((flags & FLAG_TID_LISTS) != 0) {
+                long[] tidOffsets = new long[itemCount + 1];
+                map(ch, tidOffsetsPos, (itemCount + 1L) * Long.BYTES).asLongBuffer().get(tidOffsets);
+                IntBuffer tids = map(ch, tidsPos, entryCount * Integer.BYTES).asIntBuffer();
+                DoubleBuffer probs = map(ch, tidProbsPos, entryCount * Double.BYTES).asDoubleBuffer();
+                tidLists = new int[itemCount][];
+                tidProbs = new double[itemCount][];
+                for (int i = 0; i < itemCount; i++) {
+                    int from = (int) tidOffsets[i];
+                    int len = (int) (tidOffsets[i + 1] - tidOffsets[i]);
+                    tidLists[i] = new int[len];
+                    tidProbs[i] = new double[len];
+                    tids.position(from);
+                    tids.get(tidLists[i]);
+                    probs.position(from);
+                    probs.get(tidProbs[i]);
+                }
+            }
+
+            return new BinaryDataset(itemNames, store, entryCount, tidLists, tidProbs);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static ByteBuffer map(FileChannel ch, long pos, long len) throws IOException {
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        return buf;
+    }
+
+    // =====================================================================
+    // Ghi file (bộ chuyển đổi)
+    // =====================================================================
+
+    /**
+     * Ghi cơ sở dữ liệu đã mã hóa ra file .tkud, xác suất lưu dạng double.
+     *
+     * @param itemNames     tên item theo id
+     * @param store         giao dịch, item trong mỗi giao dịch tăng dần theo id
+     * @param path          đường dẫn file đầu ra
+     * @param withTidLists  ghi thêm các cột danh sách TID theo item
+     */
+    public static void write(String[] itemNames, TransactionStore store, String path, boolean withTidLists) {
+        write(itemNames, store, path, withTidLists, 0);
+    }
+
+    /**
+     * Ghi cơ sở dữ liệu đã mã hóa ra file .tkud (ghi vào file tạm rồi đổi tên).
+     *
+     * @param itemNames        tên item theo id
+     * @param store            giao dịch, item trong mỗi giao dịch tăng dần theo id
+     * @param path             đường dẫn file đầu ra
+     * @param withTidLists     ghi thêm các cột danh sách TID theo item
+     * @param probabilityBits  0 = lưu double, 8 / 16 = lưu mã lượng tử hóa
+     * @return bảng mã đã dùng (kèm báo cáo sai số), null nếu lưu double
+     */
+    public static ProbabilityCodec write(String[] itemNames, TransactionStore store, String path,
+                                         boolean withTidLists, int probabilityBits) {
+        ProbabilityCodec codec = null;
+        if (probabilityBits != 0) {
+            codec = ProbabilityCodec.fit(store, itemNames.length, probabilityBits);
+            // Mọi cột (kể cả cột TID) dùng giá trị đã giải mã để ES nhất quán
+            store = QuantizedTransactionStore.encode(store, codec);
+        }
+
+        File target = new File(path);
+        File tmp = new File(path + ".tmp");
+        int n = store.size();
+
+        long entryCount = 0;
+        for (int t = 0; t < n; t++) {
+            entryCount += store.length(t);
+        }
+
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ColumnWriter out = new ColumnWriter(ch, HEADER_BYTES);
+
+            long dictPos = out.position();
+            for (String name : itemNames) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                out.putInt(bytes.length);
+                out.put(bytes);
+            }
+
+            long offsetsPos = out.align();
+            long off = 0;
+            out.putLong(0);
+            for (int t = 0; t < n; t++) {
+                off += store.length(t);
+                out.putLong(off);
+            }
+
+            long itemsPos = out.align();
+            for (int t = 0; t < n; t++) {
+                for (int j = 0; j < store.length(t); j++) {
+                    out.putInt(store.itemAt(t, j));
+                }
+            }
+
+            long probsPos = out.align();
+            for (int t = 0; t < n; t++) {
+                for (int j = 0; j < store.length(t); j++) {
+                    if (codec == null) {
+                        out.putDouble(store.probAt(t, j));
+                    } else if (codec.getBits() == 8) {
+                        out.putByte((byte) codec.encode(store.probAt(t, j)));
+                    } else {
+                        out.putShort((short) codec.encode(store.probAt(t, j)));
+                    }
+                }
+            }
+
+            long lutPos = 0;
+            if (codec != null) {
+                lutPos = out.align();
+                out.putInt(codec.getLut().length);
+                out.align();
+                for (double p : codec.getLut()) out.putDouble(p);
+            }
+
+            long tidOffsetsPos = 0;
+            long tidsPos = 0;
+            long tidProbsPos = 0;
+            if (withTidLists) {
+                long[] tidOffsets = new long[itemNames.length + 1];
+                for (int t = 0; t < n; t++) {
+                    for (int j = 0; j < store.length(t); j++) {
+                        tidOffsets[store.itemAt(t, j) + 1]++;
+                    }
+                }
+                for (int i = 0; i < itemNames.length; i++) {
+                    tidOffsets[i + 1] += tidOffsets[i];
+                }
+                int[] tids = new int[(int) entryCount];
+                double[] probs = new double[(int) entryCount];
+                long[] fill = Arrays.copyOf(tidOffsets, itemNames.length);
+                for (int t = 0; t < n; t++) {
+                    for (int j = 0; j < store.length(t); j++) {
+                        int pos = (int) fill[store.itemAt(t, j)]++;
+                        tids[pos] = t;
+                        probs[pos] = store.probAt(t, j);
+                    }
+                }
+
+                tidOffsetsPos = out.align();
+                for (long o : tidOffsets) out.putLong(o);
+                tidsPos = out.align();
+                for (int tid : tids) out.putInt(tid);
+                tidProbsPos = out.align();
+                for (double p : probs) out.putDouble(p);
+            }
+            out.flush();
+
+            int flags = withTidLists ? FLAG_TID_LISTS : 0;
+            if (codec != null) {
+                flags |= codec.getBits() == 8 ? FLAG_QUANTIZED_8 : FLAG_QUANTIZED_16;
+                flags |= codec.isLossless() ? FLAG_LOSSLESS : 0;
+            }
+            writeHeader(ch, flags, itemNames.length, n, entryCount,
+                    dictPos, offsetsPos, itemsPos, probsPos, tidOffsetsPos, tidsPos, tidProbsPos, lutPos);
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+            return codec;
+        }
+
+        try {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+        }
+        return codec;
+    }
+
+    private static void writeHeader(FileChannel ch, int flags, int itemCount, int transCount, long entryCount,
+                                    long dictPos, long offsetsPos, long itemsPos, long probsPos,
+                                    long tidOffsetsPos, long tidsPos, long tidProbsPos, long lutPos)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(flags)
+                .putInt(itemCount).putInt(transCount).putLong(entryCount)
+                .putLong(dictPos).putLong(offsetsPos).putLong(itemsPos).putLong(probsPos)
+                .putLong(tidOffsetsPos).putLong(tidsPos).putLong(tidProbsPos).putLong(lutPos);
+        header.clear();
+        while (header.hasRemaining()) {
+            ch.write(header, header.position());
+        }
+    }
+
+    // =====================================================================
+    // Ghi theo luồng
+    // =====================================================================
+
+    /**
+     * Ghi file .tkud theo từng giao dịch mà không giữ cơ sở dữ liệu trong bộ nhớ
+     * (dùng cho bộ sinh dữ liệu tổng hợp với hàng triệu giao dịch).
+     * Cột offsets, item và xác suất được ghi vào ba file tạm, rồi ghép lại khi close().
+     * Xác suất lưu dạng double, không có cột TID.
+     */
+    public static class Appender implements Closeable {
+
+        private final String[] itemNames;
+        private final String path;
+        private final File[] parts;
+        private final FileChannel[] channels = new FileChannel[3];
+        private final ColumnWriter offsets;
+        private final ColumnWriter items;
+        private final ColumnWriter probs;
+        private int transCount;
+        private long entryCount;
+        private boolean closed;
+
+        /**
+         * @param itemNames tên item theo id
+         * @param path      đường dẫn file đầu ra
+         */
+        public Appender(String[] itemNames, String path) throws IOException {
+            this.itemNames = itemNames;
+            this.path = path;
+            this.parts = new File[]{new File(path + ".offsets.tmp"), new File(path + ".items.tmp"),
+                    new File(path + ".probs.tmp")};
+            for (int i = 0; i < parts.length; i++) {
+                channels[i] = FileChannel.open(parts[i].toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.READ);
+            }
+            offsets = new ColumnWriter(channels[0], 0);
+            items = new ColumnWriter(channels[1], 0);
+            probs = new ColumnWriter(channels[2], 0);
+            offsets.putLong(0);
+        }
+
+        /**
+         * Thêm một giao dịch.
+         *
+         * @param itemIds item id tăng dần (chỉ dùng length phần tử đầu)
+         * @param probs   xác suất tương ứng
+         * @param length  số item của giao dịch
+         */
+        public void add(int[] itemIds, double[] probs, int length) throws IOException {
+            if (transCount == Integer.MAX_VALUE) {
+                throw new IOException("Too many transactions for " + path);
+            }
+            for (int j = 0; j < length; j++) {
+                items.putInt(itemIds[j]);
+                this.probs.putDouble(probs[j]);
+            }
+            entryCount += length;
+            offsets.putLong(entryCount);
+            transCount++;
+        }
+
+        public int getTransactionCount() {
+            return transCount;
+        }
+
+        /** Ghép các cột thành file .tkud (ghi vào file tạm rồi đổi tên) và xóa file tạm */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            File tmp = new File(path + ".tmp");
+            try {
+                offsets.flush();
+                items.flush();
+                probs.flush();
+
+                try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    ColumnWriter out = new ColumnWriter(ch, HEADER_BYTES);
+                    long dictPos = out.position();
+                    for (String name : itemNames) {
+                        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                        out.putInt(bytes.length);
+                        out.put(bytes);
+                    }
+                    long[] pos = new long[3];
+                    for (int i = 0; i < channels.length; i++) {
+                        pos[i] = out.align();
+                        out.flush();
+                        long size = channels[i].size();
+                        long done = 0;
+                        while (done < size) {
+                            done += channels[i].transferTo(done, size - done, ch.position(pos[i] + done));
+                        }
+                        out.skip(size);
+                    }
+                    writeHeader(ch, 0, itemNames.length, transCount, entryCount,
+                            dictPos, pos[0], pos[1], pos[2], 0, 0, 0, 0);
+                }
+                Files.move(tmp.toPath(), Paths.get(path), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                for (int i = 0; i < channels.length; i++) {
+                    channels[i].close();
+                    parts[i].delete();
+                }
+                tmp.delete();
+            }
+        }
+    }
+
+    /** Ghi tuần tự qua một bộ đệm little-endian */
+    private static class ColumnWriter {
+
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private long flushed;
+
+        ColumnWriter(FileChannel ch, long start) {
+            this.ch = ch;
+            this.flushed = start;
+        }
+
+        long position() {
+            return flushed + buf.position();
+        }
+
+        /** Chèn byte 0 cho tới vị trí chia hết cho 8, trả về vị trí mới */
+        long align() throws IOException {
+            while (position() % 8 != 0) {
+                ensure(1);
+                buf.put((byte) 0);
+            }
+            return position();
+        }
+
+        void putByte(byte v) throws IOException {
+            ensure(1);
+            buf.put(v);
+        }
+
+        void putShort(short v) throws IOException {
+            ensure(Short.BYTES);
+            buf.putShort(v);
+        }
+
+        void putInt(int v) throws IOException {
+            ensure(Integer.BYTES);
+            buf.putInt(v);
+        }
+
+        void putLong(long v) throws IOException {
+            ensure(Long.BYTES);
+            buf.putLong(v);
+        }
+
+        void putDouble(double v) throws IOException {
+            ensure(Double.BYTES);
+            buf.putDouble(v);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int off = 0;
+            while (off < bytes.length) {
+                ensure(1);
+                int len = Math.min(buf.remaining(), bytes.length - off);
+                buf.put(bytes, off, len);
+                off += len;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        /** Bỏ qua size byte đã được ghi trực tiếp vào kênh (bộ đệm phải rỗng) */
+        void skip(long size) {
+            flushed += size;
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                flushed += ch.write(buf, flushed);
+            }
+            buf.clear();
+        }
+    }
+
+    // =====================================================================
+    // Bộ chuyển đổi dòng lệnh
+    // =====================================================================
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: BinaryDataset <probFile> <itemFile> <out.tkud> [-tid] [-bits 8|16]");
+            System.exit(2);
+        }
+        boolean withTidLists = false;
+        int probabilityBits = 0;
+        for (int i = 3; i < args.length; i++) {
+            if ("-tid".equals(args[i])) {
+                withTidLists = true;
+            } else if ("-bits".equals(args[i])) {
+                probabilityBits = Integer.parseInt(args[++i]);
+            }
+        }
+        List<String> allItems = DataReader.readItemList(args[1]);
+
+        long start = System.nanoTime();
+        TransactionStore store = MappedDataReader.read(args[0], allItems.size());
+        ProbabilityCodec codec = write(allItems.toArray(new String[0]), store, args[2], withTidLists, probabilityBits);
+        System.out.println("Converted " + store.size() + " transactions to " + args[2]
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        if (codec != null) {
+            System.out.println("Probabilities: " + codec.report());
+        }
+    }
+}
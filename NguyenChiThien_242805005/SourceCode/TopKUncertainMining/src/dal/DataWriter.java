@@ -3,6 +3,7 @@ package dal;
 import java.io.*;
 import java.util.*;
 import model.Itemset;
+import model.RunMetrics;
 
 /**
  * Lớp hỗ trợ ghi kết quả khai thác Top-K frequent itemsets
@@ -29,24 +30,131 @@ public class DataWriter {
             double maxMemoryMB,
             long totalTimeMS
     ) {
+        writeResultToFile(itemsets, outputFile, topK, itemCount, transCount, maxMemoryMB, totalTimeMS, topK);
+    }
+
+    /**
+     * Ghi kết quả Top-K được cắt ra từ một lần khai thác với K lớn hơn (minedK).
+     * Thời gian và bộ nhớ là của lần khai thác với minedK, dùng chung cho mọi K.
+     *
+     * @param minedK  giá trị K thực sự dùng khi khai thác (minedK >= topK)
+     */
+    public static void writeResultToFile(
+            List<Itemset> itemsets,
+            String outputFile,
+            int topK,
+            int itemCount,
+            int transCount,
+            double maxMemoryMB,
+            long totalTimeMS,
+            int minedK
+    ) {
+        List<String> metricLines = Arrays.asList(
+                " Maximum memory usage : " + maxMemoryMB + " mb",
+                " Total time ~ " + totalTimeMS + " ms");
+        write(itemsets, outputFile, topK, itemCount, transCount, metricLines, minedK);
+    }
+
+    /**
+     * Ghi kết quả Top-K kèm số liệu đo chi tiết của lần khai thác (RunMetrics).
+     *
+     * @param metrics  số liệu đo của lần khai thác với minedK
+     * @param minedK   giá trị K thực sự dùng khi khai thác (minedK >= topK)
+     */
+    public static void writeResultToFile(
+            List<Itemset> itemsets,
+            String outputFile,
+            int topK,
+            int itemCount,
+            int transCount,
+            RunMetrics metrics,
+            int minedK
+    ) {
+        write(itemsets, outputFile, topK, itemCount, transCount, metricLines(metrics), minedK);
+    }
+
+    /** Các dòng số liệu đo (RunMetrics) ở cuối file kết quả */
+    static List<String> metricLines(RunMetrics metrics) {
+        return Arrays.asList(
+                " Peak heap usage : " + metrics.getPeakHeapMB() + " mb",
+                " Allocated by mining thread : " + metrics.getAllocatedMB() + " mb",
+                " Total time ~ " + (long) metrics.getWallMs() + " ms (CPU " + (long) metrics.getCpuMs() + " ms)",
+                " GC : " + metrics.getGcCount() + " collections, " + metrics.getGcPauseMs() + " ms");
+    }
+
+    private static void write(List<Itemset> itemsets, String outputFile, int topK, int itemCount,
+                              int transCount, List<String> metricLines, int minedK) {
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile))) {
 
-            bw.write("======PRINT TOP-K FREQUENT ITEMSETS FROM UNCERTAIN DATABASES=====\n\n");
+            writeHeader(bw);
             for (Itemset itemset : itemsets) {
                 bw.write(itemset.toString() + "\n");
             }
-            bw.write("\n");
-            bw.write("============= TOP-K FREQUENT FROM UNCERTAIN DATABASES=============\n");
-            bw.write(" Top K = " + topK + "\n");
-            bw.write(" Items count from dataset: " + itemCount + "\n");
-            bw.write(" Transactions count from dataset : " + transCount + "\n");
-            bw.write(" Maximum memory usage : " + maxMemoryMB + " mb\n");
-            bw.write(" Total time ~ " + totalTimeMS + " ms\n");
-            bw.write("===================================================\n");
+            writeFooter(bw, topK, itemCount, transCount, metricLines, minedK);
             bw.flush();
 
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    static void writeHeader(BufferedWriter bw) throws IOException {
+        bw.write("======PRINT TOP-K FREQUENT ITEMSETS FROM UNCERTAIN DATABASES=====\n\n");
+    }
+
+    static void writeFooter(BufferedWriter bw, int topK, int itemCount, int transCount,
+                            List<String> metricLines, int minedK) throws IOException {
+        bw.write("\n");
+        bw.write("============= TOP-K FREQUENT FROM UNCERTAIN DATABASES=============\n");
+        bw.write(" Top K = " + topK + "\n");
+        bw.write(" Items count from dataset: " + itemCount + "\n");
+        bw.write(" Transactions count from dataset : " + transCount + "\n");
+        for (String line : metricLines) {
+            bw.write(line + "\n");
+        }
+        if (minedK != topK) {
+            bw.write(" Mined once with K = " + minedK + " (time and memory shared by all K values)\n");
+        }
+        bw.write("===================================================\n");
+    }
+
+    /**
+     * Ghi bộ đếm không gian tìm kiếm của một lần khai thác (MiningStats), mỗi dòng "tên = giá trị".
+     *
+     * @param stats      ảnh chụp bộ đếm (tên → giá trị)
+     * @param algorithm  tên thuật toán
+     * @param minedK     giá trị K dùng khi khai thác
+     * @param outputFile đường dẫn file đầu ra
+     */
+    public static void writeMiningStats(Map<String, Long> stats, String algorithm, int minedK, String outputFile) {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile))) {
+            bw.write("================= SEARCH-SPACE COUNTERS =================\n");
+            bw.write(" Algorithm : " + algorithm + "\n");
+            bw.write(" Mined with K = " + minedK + "\n\n");
+            for (Map.Entry<String, Long> e : stats.entrySet()) {
+                bw.write(" " + e.getKey() + " = " + e.getValue() + "\n");
+            }
+            bw.write("=========================================================\n");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Ghi danh sách item (mỗi dòng một item, đúng thứ tự cột của file xác suất).
+     * Đọc lại bằng DataReader.readItemList.
+     *
+     * @param items      danh sách item
+     * @param outputFile đường dẫn file đầu ra
+     */
+    public static void writeItemList(List<String> items, String outputFile) {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile))) {
+            for (String item : items) {
+                bw.write(item);
+                bw.newLine();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 }
@@ -1,19 +1,84 @@
 package dal;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import model.ArrayTransactionStore;
+import model.TransactionStore;
+
+/**
+ * Sinh dataset không chắc chắn (probabilistic dataset) từ dataset giao dịch truyền thống,
+ * đọc file gốc theo luồng (không giữ toàn bộ giao dịch trong bộ nhớ):
+ *  - Lượt 1: đọc tuần tự, dựng từ điển item (theo thứ tự xuất hiện) và ghi lại vị trí byte
+ *    bắt đầu của mỗi nhóm GROUP_LINES giao dịch
+ *  - Lượt 2: các khối (gồm nhiều nhóm) được sinh song song, rồi ghi ra file đúng thứ tự;
+ *    số khối đang xử lý bị giới hạn nên bộ nhớ không phụ thuộc kích thước file
+ *
+ * Mỗi nhóm có một SplittableRandom riêng, tách lần lượt từ một bộ sinh gốc theo seed,
+ * nên cùng seed và cùng file gốc cho ra cùng một file xác suất với bất kỳ số luồng nào.
+ *
+ * Lượt 2 cũng có thể dựng thẳng giao dịch trong bộ nhớ (generateTransactions), không qua
+ * file xác suất; việc ghi file khi đó là tùy chọn và chạy trên một luồng nền.
+ */
 
 public class DatasetGenerator {
 
+    /** Số giao dịch của một nhóm (đơn vị chia luồng số ngẫu nhiên) */
+    private static final int GROUP_LINES = 64;
+
+    /** Kích thước đầu ra mục tiêu của một khối (file xác suất là dạng dày: mỗi item một cột) */
+    private static final long TARGET_BLOCK_BYTES = 4L << 20;
+
+    /** Xác suất được làm tròn 2 chữ số: 0.01, 0.02, ..., 1.0 */
+    private static final int PROB_LEVELS = 100;
+
+    /** Biểu diễn văn bản của xác suất c / 100 (giống Double.toString), chỉ số 0 là "0.0" */
+    private static final byte[][] PROB_TEXT = new byte[PROB_LEVELS + 1][];
+
+    static {
+        for (int c = 0; c <= PROB_LEVELS; c++) {
+            PROB_TEXT[c] = Double.toString(c / (double) PROB_LEVELS).getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
     /**
-     * Sinh dataset không chắc chắn (probabilistic dataset) từ dataset giao dịch truyền thống.
-     * Mỗi item trong giao dịch sẽ được gán một xác suất ngẫu nhiên > 0.
+     * Sinh dataset xác suất với seed ngẫu nhiên: mỗi lần gọi cho ra dữ liệu khác nhau.
      *
      * @param inputFile  đường dẫn dataset gốc (các item cách nhau bởi khoảng trắng)
      * @param outputFile đường dẫn file output probability (nếu null → tự sinh)
      * @return danh sách tất cả item (giữ nguyên thứ tự xuất hiện)
      */
     public static List<String> generateProbabilityDataset(String inputFile, String outputFile) {
+        return generateProbabilityDataset(inputFile, outputFile, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Sinh dataset xác suất với seed cố định: cùng seed và cùng file gốc cho ra
+     * cùng một file xác suất (dùng cho benchmark cần so sánh được giữa các lần chạy).
+     *
+     * @param inputFile  đường dẫn dataset gốc
+     * @param outputFile đường dẫn file output probability (nếu null → tự sinh)
+     * @param seed       seed của bộ sinh số ngẫu nhiên
+     * @return danh sách tất cả item (giữ nguyên thứ tự xuất hiện)
+     */
+    public static List<String> generateProbabilityDataset(String inputFile, String outputFile, long seed) {
+        return generateProbabilityDataset(inputFile, outputFile, seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param inputFile  đường dẫn dataset gốc
+     * @param outputFile đường dẫn file output probability (nếu null → tự sinh)
+     * @param seed       seed của bộ sinh số ngẫu nhiên
+     * @param threads    số luồng sinh (không ảnh hưởng tới nội dung file)
+     * @return danh sách tất cả item (giữ nguyên thứ tự xuất hiện), null nếu lỗi đọc file
+     */
+    public static List<String> generateProbabilityDataset(String inputFile, String outputFile, long seed, int threads) {
         // Nếu không chỉ định file output -> tự tạo file "_probability.txt"
         if (outputFile == null || outputFile.isEmpty()) {
             File inFile = new File(inputFile);
@@ -27,65 +92,496 @@ public class DatasetGenerator {
             outputFile = inFile.getParent() + "/" + name + "_probability.txt";
         }
 
-        // Lưu toàn bộ giao dịch dưới dạng list item
-        List<List<String>> transactions = new ArrayList<>();
+        // Lượt 1: từ điển item + vị trí các nhóm giao dịch
+        OriginIndex index = index(inputFile);
+        if (index == null) {
+            return null;
+        }
+
+        // Lượt 2: gán xác suất
+        try {
+            writeProbabilities(index, outputFile, seed, Math.max(1, threads));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
 
-        // Lưu tất cả item, dùng LinkedHashSet để giữ nguyên thứ tự xuất hiện
-        Set<String> allItemsSet = new LinkedHashSet<>();
+        System.out.println("Probability dataset generated at: " + outputFile);
+        return index.getItems();
+    }
 
-        // Đọc file dữ liệu gốc
-        try (BufferedReader br = new BufferedReader(new FileReader(inputFile))) {
-            String line;
-            // Đọc từng dòng giao dịch
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                // bỏ dòng rỗng
-                if (line.isEmpty()) continue;
+    /**
+     * Kết quả lượt 1 trên một file gốc: từ điển item và vị trí các nhóm giao dịch.
+     * Dùng cho generateTransactions khi danh sách item cần có trước khi sinh xác suất.
+     */
+    public static class OriginIndex {
+
+        private final String inputFile;
+        private final Map<String, Integer> dictionary;
+        /** Vị trí byte của giao dịch đầu tiên trong mỗi nhóm, phần tử cuối là kích thước file */
+        private final long[] groupStart;
+        private final int transactionCount;
+
+        private OriginIndex(String inputFile, Map<String, Integer> dictionary, long[] groupStart,
+                            int transactionCount) {
+            this.inputFile = inputFile;
+            this.dictionary = dictionary;
+            this.groupStart = groupStart;
+            this.transactionCount = transactionCount;
+        }
+
+        /** Danh sách item theo thứ tự xuất hiện (= thứ tự cột của file xác suất) */
+        public List<String> getItems() {
+            return new ArrayList<>(dictionary.keySet());
+        }
+
+        public int getTransactionCount() {
+            return transactionCount;
+        }
+    }
+
+    /**
+     * Lượt 1: đọc file gốc, dựng từ điển item.
+     *
+     * @return chỉ mục của file gốc, null nếu lỗi đọc file
+     */
+    public static OriginIndex index(String inputFile) {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int[] transactionCount = new int[1];
+        try {
+            long[] groupStart = scan(inputFile, dictionary, transactionCount);
+            return new OriginIndex(inputFile, dictionary, groupStart, transactionCount[0]);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-                // Tách item trong giao dịch
-                String[] items = line.split("\\s+");
-                // Lưu giao dịch vào danh sách
-                transactions.add(Arrays.asList(items));
-                // Thêm item vào tập allItems
-                allItemsSet.addAll(Arrays.asList(items));
+    /**
+     * Lượt 2 trong bộ nhớ: sinh xác suất và dựng thẳng giao dịch (item id = chỉ số cột, tăng dần),
+     * giống hệt kết quả đọc lại file xác suất sinh với cùng seed.
+     * Nếu persistFile khác null, file xác suất được ghi trên một luồng nền (ghi vào file tạm rồi
+     * đổi tên), hàm trả về ngay khi giao dịch đã dựng xong.
+     *
+     * @param index       kết quả lượt 1
+     * @param seed        seed của bộ sinh số ngẫu nhiên
+     * @param threads     số luồng sinh (không ảnh hưởng tới kết quả)
+     * @param persistFile file xác suất cần ghi (null → không ghi)
+     * @return giao dịch đã mã hóa, null nếu lỗi đọc file gốc
+     */
+    public static TransactionStore generateTransactions(OriginIndex index, long seed, int threads,
+                                                        String persistFile) {
+        int[][] items = new int[index.transactionCount][];
+        double[][] probs = new double[index.transactionCount][];
+        int[] next = new int[1];
+        BackgroundWriter writer = persistFile != null ? new BackgroundWriter(persistFile) : null;
+
+        Consumer<Block> assemble = block -> {
+            int from = 0;
+            for (int r = 0; r < block.rows; r++) {
+                int to = block.rowEnd[r];
+                int t = next[0]++;
+                items[t] = Arrays.copyOfRange(block.columns, from, to);
+                probs[t] = new double[to - from];
+                for (int j = from; j < to; j++) {
+                    probs[t][j - from] = block.codes[j] / (double) PROB_LEVELS;
+                }
+                from = to;
             }
+            if (writer != null) {
+                writer.submit(block, index.dictionary.size());
+            }
+        };
+        try {
+            forEachBlock(index, seed, Math.max(1, threads), block -> block, assemble);
         } catch (IOException e) {
             e.printStackTrace();
+            if (writer != null) {
+                writer.abort();
+            }
             return null;
         }
+        if (writer != null) {
+            writer.finish();
+        }
+        return new ArrayTransactionStore(items, probs);
+    }
 
-        // Chuyển Set -> List để dùng index
-        List<String> allItems = new ArrayList<>(allItemsSet);
+    // =====================================================================
+    // Lượt 1
+    // =====================================================================
 
-        // random để sinh xác suất
-        Random rand = new Random();
+    /**
+     * Đọc file gốc một lần: thêm item mới vào từ điển (id = thứ tự xuất hiện) và ghi lại
+     * vị trí byte của giao dịch đầu tiên trong mỗi nhóm. Phần tử cuối là kích thước file.
+     */
+    private static long[] scan(String inputFile, Map<String, Integer> dictionary, int[] transactionCount)
+            throws IOException {
+        long[] groupStart = new long[64];
+        int groups = 0;
+        long transactions = 0;
 
-        // Ghi file probability
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile))) {
-            // Duyệt từng giao dịch
-            for (List<String> transaction : transactions) {
-                // Dùng Set để kiểm tra item có xuất hiện hay không
-                Set<String> transSet = new HashSet<>(transaction);
-                StringBuilder sb = new StringBuilder();
+        try (InputStream in = new FileInputStream(inputFile)) {
+            LineBuffer line = new LineBuffer();
+            long pos = 0;
+            while (true) {
+                long lineStart = pos;
+                int read = line.readLine(in);
+                if (read < 0) {
+                    break;
+                }
+                pos += read;
 
-                // Duyệt toàn bộ item trong allItems
-                for (int i = 0; i < allItems.size(); i++) {
-                    String item = allItems.get(i);
+                boolean hasToken = false;
+                int i = 0;
+                while (i < line.length) {
+                    if (line.bytes[i] <= ' ') {
+                        i++;
+                        continue;
+                    }
+                    int start = i;
+                    while (i < line.length && line.bytes[i] > ' ') i++;
+                    String item = new String(line.bytes, start, i - start, StandardCharsets.UTF_8);
+                    dictionary.putIfAbsent(item, dictionary.size());
+                    hasToken = true;
+                }
 
-                    // Nếu item xuất hiện -> gán xác suất random > 0, làm tròn 2 chữ số // không xuất hiện -> xác suất 0
-                    double prob = transSet.contains(item) ? Math.round((rand.nextDouble() + 0.01) * 100.0) / 100.0 : 0.0;
-                    sb.append(prob);
-                    // Thêm dấu cách giữa các cột
-                    if (i < allItems.size() - 1) sb.append(" ");
+                // bỏ dòng rỗng
+                if (hasToken) {
+                    if (transactions % GROUP_LINES == 0) {
+                        if (groups == groupStart.length - 1) {
+                            groupStart = Arrays.copyOf(groupStart, groupStart.length * 2);
+                        }
+                        groupStart[groups++] = lineStart;
+                    }
+                    transactions++;
+                }
+            }
+            groupStart[groups] = pos;
+        }
+        if (transactions > Integer.MAX_VALUE) {
+            throw new IOException("Too many transactions in " + inputFile);
+        }
+        transactionCount[0] = (int) transactions;
+        return Arrays.copyOf(groupStart, groups + 1);
+    }
+
+    /** Đọc từng dòng vào một bộ đệm tái sử dụng (không tạo String cho cả dòng) */
+    private static class LineBuffer {
+
+        byte[] bytes = new byte[4096];
+        int length;
+
+        private final byte[] chunk = new byte[1 << 16];
+        private int chunkPos;
+        private int chunkLen;
+
+        /** Đọc một dòng (không gồm '\n'), trả về số byte đã đọc kể cả '\n', -1 nếu hết file */
+        int readLine(InputStream in) throws IOException {
+            length = 0;
+            int consumed = 0;
+            while (true) {
+                if (chunkPos == chunkLen) {
+                    chunkLen = in.read(chunk);
+                    chunkPos = 0;
+                    if (chunkLen <= 0) {
+                        chunkLen = 0;
+                        return consumed == 0 ? -1 : consumed;
+                    }
+                }
+                byte b = chunk[chunkPos++];
+                consumed++;
+                if (b == '\n') {
+                    return consumed;
+                }
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, length * 2);
+                }
+                bytes[length++] = b;
+            }
+        }
+    }
+
+    // =====================================================================
+    // Lượt 2
+    // =====================================================================
+
+    private static void writeProbabilities(OriginIndex index, String outputFile, long seed, int threads)
+            throws IOException {
+        int itemCount = index.dictionary.size();
+        byte[] newline = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16)) {
+            IOException[] failure = new IOException[1];
+            forEachBlock(index, seed, threads, block -> toText(block, itemCount, newline), bytes -> {
+                try {
+                    if (failure[0] == null) out.write(bytes);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+
+    /**
+     * Sinh các khối theo thứ tự: worker chạy song song trên các khối (tối đa 2 khối / luồng
+     * đang xử lý), sink nhận kết quả trên luồng gọi theo đúng thứ tự khối.
+     */
+    private static <T> void forEachBlock(OriginIndex index, long seed, int threads,
+                                         Function<Block, T> worker, Consumer<T> sink) throws IOException {
+        long[] groupStart = index.groupStart;
+        int groupCount = groupStart.length - 1;
+        int itemCount = index.dictionary.size();
+        // Số nhóm mỗi khối: chỉ phụ thuộc số item, để kích thước đầu ra mỗi khối khoảng vài MB
+        long rowBytes = Math.max(1L, itemCount * 4L);
+        int groupsPerBlock = (int) Math.max(1, TARGET_BLOCK_BYTES / (rowBytes * GROUP_LINES));
+
+        SplittableRandom root = new SplittableRandom(seed);
+
+        try (FileChannel in = FileChannel.open(Paths.get(index.inputFile), StandardOpenOption.READ)) {
+            if (threads == 1) {
+                for (int g = 0; g < groupCount; g += groupsPerBlock) {
+                    int to = Math.min(groupCount, g + groupsPerBlock);
+                    sink.accept(worker.apply(generateBlock(in, groupStart, g, to, splitAll(root, to - g),
+                            index.dictionary)));
+                }
+                return;
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            ArrayDeque<Future<T>> pending = new ArrayDeque<>();
+            try {
+                for (int g = 0; g < groupCount; g += groupsPerBlock) {
+                    int from = g;
+                    int to = Math.min(groupCount, g + groupsPerBlock);
+                    // Tách luồng số ngẫu nhiên trên luồng chính, theo thứ tự nhóm
+                    SplittableRandom[] randoms = splitAll(root, to - from);
+                    if (pending.size() >= threads * 2) {
+                        sink.accept(pending.removeFirst().get());
+                    }
+                    pending.addLast(pool.submit(
+                            () -> worker.apply(generateBlock(in, groupStart, from, to, randoms, index.dictionary))));
+                }
+                while (!pending.isEmpty()) {
+                    sink.accept(pending.removeFirst().get());
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while generating probabilities for " + index.inputFile, e);
+            } finally {
+                pool.shutdownNow();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static SplittableRandom[] splitAll(SplittableRandom root, int n) {
+        SplittableRandom[] randoms = new SplittableRandom[n];
+        for (int i = 0; i < n; i++) {
+            randoms[i] = root.split();
+        }
+        return randoms;
+    }
+
+    /**
+     * Một khối giao dịch đã gán xác suất, dạng thưa: các cột (tăng dần, không trùng)
+     * và mã xác suất c (xác suất = c / 100) của các giao dịch nối liền nhau.
+     */
+    private static class Block {
+
+        int rows;
+        int[] rowEnd = new int[GROUP_LINES];
+        int entries;
+        int[] columns = new int[1024];
+        byte[] codes = new byte[1024];
+
+        void add(int column, int code) {
+            if (entries == columns.length) {
+                columns = Arrays.copyOf(columns, entries * 2);
+                codes = Arrays.copyOf(codes, entries * 2);
+            }
+            columns[entries] = column;
+            codes[entries] = (byte) code;
+            entries++;
+        }
+
+        void endRow() {
+            if (rows == rowEnd.length) {
+                rowEnd = Arrays.copyOf(rowEnd, rows * 2);
+            }
+            rowEnd[rows++] = entries;
+        }
+    }
+
+    /**
+     * Sinh xác suất cho các nhóm [fromGroup, toGroup).
+     * Trong mỗi giao dịch, item xuất hiện (không tính trùng lặp) được gán xác suất ngẫu nhiên
+     * theo thứ tự cột, item không xuất hiện có xác suất 0.
+     */
+    private static Block generateBlock(FileChannel in, long[] groupStart, int fromGroup, int toGroup,
+                                       SplittableRandom[] randoms, Map<String, Integer> dictionary) {
+        long start = groupStart[fromGroup];
+        byte[] src = new byte[(int) (groupStart[toGroup] - start)];
+        ByteBuffer buf = ByteBuffer.wrap(src);
+        try {
+            while (buf.hasRemaining()) {
+                if (in.read(buf, start + buf.position()) < 0) {
+                    throw new EOFException("Input file changed while generating probabilities");
                 }
-                bw.write(sb.toString());
-                bw.newLine();
             }
         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Block block = new Block();
+        int[] columns = new int[16];
+        int group = 0;
+        int rowsInGroup = 0;
+        int pos = 0;
+        while (pos < src.length) {
+            // Các cột của một giao dịch
+            int n = 0;
+            while (pos < src.length && src[pos] != '\n') {
+                if (src[pos] <= ' ') {
+                    pos++;
+                    continue;
+                }
+                int tokenStart = pos;
+                while (pos < src.length && src[pos] > ' ') pos++;
+                Integer column = dictionary.get(new String(src, tokenStart, pos - tokenStart, StandardCharsets.UTF_8));
+                if (n == columns.length) {
+                    columns = Arrays.copyOf(columns, n * 2);
+                }
+                columns[n++] = column;
+            }
+            pos++;
+            if (n == 0) {
+                continue;
+            }
+
+            // Gán xác suất theo thứ tự cột (item trùng lặp chỉ nhận một xác suất)
+            SplittableRandom rand = randoms[group];
+            Arrays.sort(columns, 0, n);
+            for (int i = 0; i < n; i++) {
+                if (i == 0 || columns[i] != columns[i - 1]) {
+                    block.add(columns[i], rand.nextInt(PROB_LEVELS) + 1);
+                }
+            }
+            block.endRow();
+
+            if (++rowsInGroup == GROUP_LINES) {
+                rowsInGroup = 0;
+                group++;
+            }
+        }
+        return block;
+    }
+
+    /** Các dòng xác suất dạng dày (mỗi item một cột) của một khối */
+    private static byte[] toText(Block block, int itemCount, byte[] newline) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE - 8,
+                (long) block.rows * itemCount * 4));
+        int[] codes = new int[itemCount];
+        int from = 0;
+        for (int r = 0; r < block.rows; r++) {
+            int to = block.rowEnd[r];
+            for (int j = from; j < to; j++) {
+                codes[block.columns[j]] = block.codes[j];
+            }
+            for (int c = 0; c < itemCount; c++) {
+                if (c > 0) out.write(' ');
+                out.write(PROB_TEXT[codes[c]], 0, PROB_TEXT[codes[c]].length);
+            }
+            out.write(newline, 0, newline.length);
+            for (int j = from; j < to; j++) {
+                codes[block.columns[j]] = 0;
+            }
+            from = to;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Ghi file xác suất trên một luồng nền riêng: các khối được định dạng và ghi theo đúng
+     * thứ tự nhận, vào file tạm rồi đổi tên khi xong (file dở dang không bao giờ mang tên thật).
+     */
+    private static class BackgroundWriter {
+
+        private final File target;
+        private final File tmp;
+        private final byte[] newline = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+        private final ExecutorService thread = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "probability-writer");
+            t.setDaemon(false);
+            return t;
+        });
+        private OutputStream out;
+        private volatile boolean failed;
+
+        BackgroundWriter(String path) {
+            this.target = new File(path);
+            this.tmp = new File(path + ".tmp");
+            thread.execute(() -> {
+                try {
+                    out = new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16);
+                } catch (IOException e) {
+                    fail(e);
+                }
+            });
+        }
+
+        void submit(Block block, int itemCount) {
+            thread.execute(() -> {
+                if (failed) return;
+                try {
+                    out.write(toText(block, itemCount, newline));
+                } catch (IOException e) {
+                    fail(e);
+                }
+            });
+        }
+
+        /** Đóng file và đổi tên sau khi mọi khối đã ghi xong (không chờ) */
+        void finish() {
+            thread.execute(() -> {
+                if (failed) return;
+                try {
+                    out.close();
+                    Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    System.out.println("Probability dataset persisted at: " + target);
+                } catch (IOException e) {
+                    fail(e);
+                }
+            });
+            thread.shutdown();
+        }
+
+        void abort() {
+            failed = true;
+            thread.execute(this::closeQuietly);
+            thread.shutdown();
+        }
+
+        private void fail(IOException e) {
             e.printStackTrace();
+            failed = true;
+            closeQuietly();
         }
 
-        System.out.println("Probability dataset generated at: " + outputFile);
-        return allItems;
+        private void closeQuietly() {
+            try {
+                if (out != null) out.close();
+            } catch (IOException ignored) {
+            }
+            tmp.delete();
+        }
     }
 }
@@ -0,0 +1,304 @@
+package dal;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import model.ArrayTransactionStore;
+import model.TransactionStore;
+
+/**
+ * Trình đọc file xác suất nhanh, dùng cho các file lớn (nhiều GB).
+ * Cùng định dạng với DataReader.readUncertainDataset: mỗi dòng một giao dịch,
+ * cột thứ i là xác suất của item thứ i, xác suất 0 nghĩa là item không xuất hiện.
+ *
+ * Cách làm:
+ *  - Ánh xạ file vào bộ nhớ (NIO memory-mapped), chia thành các đoạn kết thúc đúng ở cuối dòng
+ *  - Mỗi đoạn được phân tích song song trên một luồng, bằng bộ tách token viết tay
+ *    (không tạo String cho từng dòng / từng số)
+ *  - Xác suất được đọc dạng số nguyên + số chữ số thập phân rồi chia cho 10^d,
+ *    cho đúng cùng giá trị double như Double.parseDouble (chỉ dùng lại Double.parseDouble
+ *    cho số có dạng mũ hoặc quá nhiều chữ số)
+ *  - Kết quả ghi thẳng vào mảng nguyên thủy (item id = chỉ số cột, tăng dần trong mỗi giao dịch),
+ *    các đoạn được ghép lại theo đúng thứ tự dòng trong file
+ */
+
+public class MappedDataReader {
+
+    /** Kích thước đoạn tối thiểu: file nhỏ hơn được đọc trên một luồng */
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+
+    /** Kích thước đoạn tối đa (mỗi đoạn là một vùng ánh xạ riêng, phải < 2 GB) */
+    private static final long MAX_CHUNK_BYTES = 256L << 20;
+
+    /** 10^d, d = 0..22: các lũy thừa này biểu diễn chính xác bằng double */
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1.0;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10.0;
+        }
+    }
+
+    /**
+     * Đọc file xác suất với số luồng bằng số lõi.
+     *
+     * @param probabilityFile đường dẫn file xác suất
+     * @param itemCount       số cột (số item, theo đúng thứ tự cột)
+     * @return giao dịch đã mã hóa, item id là chỉ số cột
+     */
+    public static TransactionStore read(String probabilityFile, int itemCount) {
+        return read(probabilityFile, itemCount, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param probabilityFile đường dẫn file xác suất
+     * @param itemCount       số cột (số item, theo đúng thứ tự cột)
+     * @param threads         số luồng phân tích
+     * @return giao dịch đã mã hóa, item id là chỉ số cột
+     */
+    public static TransactionStore read(String probabilityFile, int itemCount, int threads) {
+        try (FileChannel ch = FileChannel.open(Paths.get(probabilityFile), StandardOpenOption.READ)) {
+            long size = ch.size();
+            long[] bounds = chunkBounds(ch, size, Math.max(1, threads));
+            int chunkCount = bounds.length - 1;
+
+            Chunk[] chunks = new Chunk[chunkCount];
+            if (chunkCount == 1 || threads <= 1) {
+                for (int c = 0; c < chunkCount; c++) {
+                    chunks[c] = parse(ch, bounds[c], bounds[c + 1], itemCount);
+                }
+            } else {
+                ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, chunkCount));
+                try {
+                    List<Future<Chunk>> futures = new ArrayList<>();
+                    for (int c = 0; c < chunkCount; c++) {
+                        long start = bounds[c];
+                        long end = bounds[c + 1];
+                        futures.add(pool.submit(() -> parse(ch, start, end, itemCount)));
+                    }
+                    for (int c = 0; c < chunkCount; c++) {
+                        chunks[c] = futures.get(c).get();
+                    }
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    throw new IllegalStateException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while reading " + probabilityFile, e);
+                } finally {
+                    pool.shutdownNow();
+                }
+            }
+
+            return assemble(chunks);
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new ArrayTransactionStore(new int[0][], new double[0][]);
+        }
+    }
+
+    // =====================================================================
+    // Chia đoạn
+    // =====================================================================
+
+    /**
+     * Ranh giới các đoạn: mỗi ranh giới (trừ 0 và size) nằm ngay sau một ký tự '\n',
+     * nên không có dòng nào bị cắt đôi.
+     */
+    private static long[] chunkBounds(FileChannel ch, long size, int threads) throws IOException {
+        long target = Math.max(MIN_CHUNK_BYTES, Math.min(MAX_CHUNK_BYTES, size / (threads * 4L) + 1));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer scan = ByteBuffer.allocate(64 * 1024);
+        long pos = 0;
+        while (size - pos > target) {
+            long next = nextLineStart(ch, pos + target, size, scan);
+            if (next >= size) {
+                break;
+            }
+            bounds.add(next);
+            pos = next;
+        }
+        bounds.add(size);
+
+        long[] out = new long[bounds.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = bounds.get(i);
+        }
+        return out;
+    }
+
+    /** Vị trí ngay sau ký tự '\n' đầu tiên tính từ from (hoặc size nếu không còn) */
+    private static long nextLineStart(FileChannel ch, long from, long size, ByteBuffer scan) throws IOException {
+        long pos = from;
+        while (pos < size) {
+            scan.clear();
+            int n = ch.read(scan, pos);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (scan.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    // =====================================================================
+    // Phân tích một đoạn
+    // =====================================================================
+
+    /** Kết quả của một đoạn: các giao dịch nối liền nhau trong hai mảng phẳng */
+    private static class Chunk {
+
+        int rows;
+        int[] rowEnd = new int[1024];
+        int entries;
+        int[] items = new int[16 * 1024];
+        double[] probs = new double[16 * 1024];
+
+        void add(int item, double prob) {
+            if (entries == items.length) {
+                items = Arrays.copyOf(items, entries * 2);
+                probs = Arrays.copyOf(probs, entries * 2);
+            }
+            items[entries] = item;
+            probs[entries] = prob;
+            entries++;
+        }
+
+        void endRow() {
+            if (rows == rowEnd.length) {
+                rowEnd = Arrays.copyOf(rowEnd, rows * 2);
+            }
+            rowEnd[rows++] = entries;
+        }
+    }
+
+    private static Chunk parse(FileChannel ch, long start, long end, int itemCount) throws IOException {
+        Chunk chunk = new Chunk();
+        if (end <= start) {
+            return chunk;
+        }
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int limit = buf.limit();
+        int pos = 0;
+
+        while (pos < limit) {
+            int col = 0;
+            boolean hasToken = false;
+
+            // Một dòng
+            while (pos < limit) {
+                byte b = buf.get(pos);
+                if (b == '\n') {
+                    pos++;
+                    break;
+                }
+                if (b <= ' ') {
+                    pos++;
+                    continue;
+                }
+
+                // Một token: [-]digits[.digits], dạng khác dùng Double.parseDouble
+                int tokenStart = pos;
+                boolean negative = false;
+                if (b == '-' || b == '+') {
+                    negative = b == '-';
+                    pos++;
+                }
+                long mantissa = 0;
+                int digits = 0;
+                int fraction = -1;
+                boolean simple = true;
+                while (pos < limit) {
+                    b = buf.get(pos);
+                    if (b >= '0' && b <= '9') {
+                        mantissa = mantissa * 10 + (b - '0');
+                        digits++;
+                        if (fraction >= 0) fraction++;
+                    } else if (b == '.' && fraction < 0) {
+                        fraction = 0;
+                    } else if (b <= ' ') {
+                        break;
+                    } else {
+                        simple = false;
+                    }
+                    pos++;
+                }
+
+                double p;
+                if (simple && digits > 0 && digits <= 15 && fraction < POW10.length) {
+                    p = fraction > 0 ? mantissa / POW10[fraction] : (double) mantissa;
+                    if (negative) p = -p;
+                } else {
+                    p = slowParse(buf, tokenStart, pos);
+                }
+
+                if (col >= itemCount) {
+                    throw new IllegalArgumentException("Probability row has more than " + itemCount + " columns");
+                }
+                // Chỉ giữ item có xác suất > 0 (giống DataReader)
+                if (p > 0) {
+                    chunk.add(col, p);
+                }
+                col++;
+                hasToken = true;
+            }
+
+            // Dòng trống (chỉ có khoảng trắng) bị bỏ qua như DataReader
+            if (hasToken) {
+                chunk.endRow();
+            }
+        }
+        return chunk;
+    }
+
+    /** Đường chậm cho token hiếm gặp (dạng mũ, quá nhiều chữ số) */
+    private static double slowParse(MappedByteBuffer buf, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        // Bản sao vị trí riêng: buf được nhiều luồng đọc cùng lúc
+        buf.duplicate().position(from).get(bytes);
+        return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+    }
+
+    // =====================================================================
+    // Ghép các đoạn theo thứ tự
+    // =====================================================================
+
+    private static TransactionStore assemble(Chunk[] chunks) {
+        int total = 0;
+        for (Chunk c : chunks) {
+            total += c.rows;
+        }
+        int[][] items = new int[total][];
+        double[][] probs = new double[total][];
+
+        int t = 0;
+        for (Chunk c : chunks) {
+            int from = 0;
+            for (int r = 0; r < c.rows; r++) {
+                int to = c.rowEnd[r];
+                items[t] = Arrays.copyOfRange(c.items, from, to);
+                probs[t] = Arrays.copyOfRange(c.probs, from, to);
+                from = to;
+                t++;
+            }
+        }
+        return new ArrayTransactionStore(items, probs);
+    }
+}
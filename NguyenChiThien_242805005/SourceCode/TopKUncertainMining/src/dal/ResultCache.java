@@ -0,0 +1,337 @@
+package dal;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import model.Itemset;
+
+/**
+ * Bộ nhớ đệm (cache) kết quả Top-K lưu trên đĩa.
+ *
+ * Khóa của mỗi mục gồm:
+ *  - Dấu vân tay (SHA-256) của dataset: nội dung file gốc + seed sinh xác suất khi seed cố định,
+ *    ngược lại nội dung file xác suất
+ *  - Tên thuật toán
+ *  - K
+ *  - Các tùy chọn của thuật toán (vd: ngưỡng mật độ của Hybrid)
+ *
+ * Tên file của mục chứa SHA-256 của chuỗi tùy chọn; đầu mục lưu nguyên tên thuật toán và
+ * chuỗi tùy chọn, được so khớp khi đọc, nên hai cấu hình khác nhau không bao giờ trả lời
+ * thay nhau.
+ *
+ * Mỗi mục là một file nhị phân nhỏ (từ điển item + id + ES). Khi tổng dung lượng
+ * vượt ngân sách, các mục ít được dùng gần đây nhất (LRU theo lastModified) bị xóa.
+ * Khi nội dung file thay đổi thì dấu vân tay đổi, các mục cũ của dataset
+ * đó bị xóa. Một mục có K lớn hơn có thể trả lời cho K nhỏ hơn.
+ */
+
+public class ResultCache {
+
+    private static final int MAGIC = 0x544B5243; // "TKRC"
+    private static final int VERSION = 2;
+    private static final String ENTRY_EXT = ".bin";
+    private static final String FINGERPRINT_EXT = ".fp";
+
+    /** Thư mục chứa cache */
+    private final File cacheDir;
+
+    /** Ngân sách dung lượng tối đa (byte) cho toàn bộ các mục */
+    private final long maxBytes;
+
+    /**
+     * Một mục cache đã đọc: Top-K và thông tin dataset để ghi kết quả
+     * mà không cần đọc lại dataset.
+     */
+    public static class Entry {
+
+        public final List<Itemset> itemsets;
+        public final int cachedK;
+        public final int itemCount;
+        public final int transCount;
+
+        public Entry(List<Itemset> itemsets, int cachedK, int itemCount, int transCount) {
+            this.itemsets = itemsets;
+            this.cachedK = cachedK;
+            this.itemCount = itemCount;
+            this.transCount = transCount;
+        }
+    }
+
+    /**
+     * @param cacheDir thư mục cache (tự tạo nếu chưa có)
+     * @param maxBytes ngân sách dung lượng (byte)
+     */
+    public ResultCache(String cacheDir, long maxBytes) {
+        this.cacheDir = new File(cacheDir);
+        this.maxBytes = maxBytes;
+        this.cacheDir.mkdirs();
+    }
+
+    // =====================================================================
+    // Dấu vân tay dataset
+    // =====================================================================
+
+    /**
+     * Tính dấu vân tay nội dung file xác suất của một dataset.
+     * Kết quả được ghi nhớ cùng kích thước và thời điểm sửa file, nên lần gọi sau
+     * với file không đổi không phải băm lại. Nếu dấu vân tay khác lần trước,
+     * toàn bộ mục cache cũ của dataset bị xóa.
+     *
+     * @param datasetName     tên dataset
+     * @param probabilityFile đường dẫn file xác suất
+     * @return chuỗi hex SHA-256, hoặc null nếu không đọc được file
+     */
+    public String fingerprint(String datasetName, String probabilityFile) {
+        File data = new File(probabilityFile);
+        if (!data.isFile()) {
+            return null;
+        }
+        File memo = new File(cacheDir, sanitize(datasetName) + FINGERPRINT_EXT);
+        String previous = null;
+
+        // Dòng memo: <size> <lastModified> <hash>
+        if (memo.isFile()) {
+            try (BufferedReader br = new BufferedReader(new FileReader(memo))) {
+                String[] parts = br.readLine().trim().split("\\s+");
+                previous = parts[2];
+                if (Long.parseLong(parts[0]) == data.length()
+                        && Long.parseLong(parts[1]) == data.lastModified()) {
+                    return previous;
+                }
+            } catch (IOException | RuntimeException e) {
+                previous = null;
+            }
+        }
+
+        String hash;
+        try {
+            hash = sha256(data);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        if (previous != null && !previous.equals(hash)) {
+            invalidate(previous);
+        }
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(memo))) {
+            bw.write(data.length() + " " + data.lastModified() + " " + hash);
+            bw.newLine();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return hash;
+    }
+
+    private static String sha256(File file) throws IOException {
+        MessageDigest md = sha256();
+        byte[] buf = new byte[1 << 16];
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+            }
+        }
+        return hex(md.digest());
+    }
+
+    private static String sha256(String s) {
+        return hex(sha256().digest(s.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] digest) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /** Xóa mọi mục có dấu vân tay cho trước (kể cả dấu có hậu tố, vd: "-seed42") */
+    public void invalidate(String fingerprint) {
+        String prefix = fingerprint;
+        File[] entries = cacheDir.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(ENTRY_EXT));
+        if (entries == null) return;
+        for (File f : entries) {
+            f.delete();
+        }
+    }
+
+    // =====================================================================
+    // Đọc / ghi mục cache
+    // =====================================================================
+
+    /**
+     * Tìm Top-K trong cache. Nếu không có đúng K nhưng có một mục với K lớn hơn
+     * (cùng dataset, thuật toán, tùy chọn) thì lấy K phần tử đầu của mục nhỏ nhất đó.
+     *
+     * @return mục cache (itemsets đã cắt còn K phần tử), hoặc null nếu không có
+     */
+    public synchronized Entry get(String fingerprint, String algorithm, String options, int k) {
+        if (fingerprint == null) return null;
+        String prefix = entryPrefix(fingerprint, algorithm, options);
+        File[] candidates = cacheDir.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(ENTRY_EXT));
+        if (candidates == null) return null;
+
+        File best = null;
+        int bestK = Integer.MAX_VALUE;
+        for (File f : candidates) {
+            String kPart = f.getName().substring(prefix.length(), f.getName().length() - ENTRY_EXT.length());
+            int cachedK;
+            try {
+                cachedK = Integer.parseInt(kPart);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (cachedK >= k && cachedK < bestK) {
+                best = f;
+                bestK = cachedK;
+            }
+        }
+        if (best == null) return null;
+
+        try {
+            Entry e = readEntry(best, algorithm, options);
+            if (e == null) {
+                // Cùng tên file nhưng khác khóa: coi như không có, giữ nguyên mục
+                return null;
+            }
+            best.setLastModified(System.currentTimeMillis()); // cập nhật LRU
+            List<Itemset> top = e.itemsets.size() > k
+                    ? new ArrayList<>(e.itemsets.subList(0, k))
+                    : e.itemsets;
+            return new Entry(top, e.cachedK, e.itemCount, e.transCount);
+        } catch (IOException e) {
+            // Mục hỏng -> xóa và coi như không có
+            best.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Lưu Top-K (đã sắp ES giảm dần) vào cache rồi dọn theo ngân sách dung lượng.
+     */
+    public synchronized void put(String fingerprint, String algorithm, String options, int k,
+                    List<Itemset> itemsets, int itemCount, int transCount) {
+        if (fingerprint == null) return;
+        File out = new File(cacheDir, entryPrefix(fingerprint, algorithm, options) + k + ENTRY_EXT);
+        File tmp = new File(cacheDir, out.getName() + ".tmp");
+
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            // Từ điển item dùng trong kết quả
+            Map<String, Integer> dict = new LinkedHashMap<>();
+            for (Itemset is : itemsets) {
+                for (String item : is.getItems()) {
+                    dict.putIfAbsent(item, dict.size());
+                }
+            }
+
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeUTF(algorithm);
+            dos.writeUTF(options);
+            dos.writeInt(k);
+            dos.writeInt(itemCount);
+            dos.writeInt(transCount);
+            dos.writeInt(dict.size());
+            for (String item : dict.keySet()) {
+                dos.writeUTF(item);
+            }
+            dos.writeInt(itemsets.size());
+            for (Itemset is : itemsets) {
+                dos.writeDouble(is.getExpectedSupport());
+                dos.writeShort(is.getItems().size());
+                for (String item : is.getItems()) {
+                    dos.writeInt(dict.get(item));
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+            return;
+        }
+
+        out.delete();
+        if (!tmp.renameTo(out)) {
+            tmp.delete();
+            return;
+        }
+        evict();
+    }
+
+    /** Đọc một mục; null nếu mục thuộc thuật toán hoặc tùy chọn khác */
+    private Entry readEntry(File f, String algorithm, String options) throws IOException {
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+                throw new IOException("Invalid cache entry: " + f);
+            }
+            if (!dis.readUTF().equals(algorithm) || !dis.readUTF().equals(options)) {
+                return null;
+            }
+            int k = dis.readInt();
+            int itemCount = dis.readInt();
+            int transCount = dis.readInt();
+
+            String[] dict = new String[dis.readInt()];
+            for (int i = 0; i < dict.length; i++) {
+                dict[i] = dis.readUTF();
+            }
+
+            int n = dis.readInt();
+            List<Itemset> itemsets = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                double es = dis.readDouble();
+                int len = dis.readShort();
+                Set<String> items = new LinkedHashSet<>();
+                for (int j = 0; j < len; j++) {
+                    items.add(dict[dis.readInt()]);
+                }
+                itemsets.add(new Itemset(items, es));
+            }
+            return new Entry(itemsets, k, itemCount, transCount);
+        }
+    }
+
+    /** Xóa các mục cũ nhất (LRU) cho đến khi tổng dung lượng nằm trong ngân sách */
+    private void evict() {
+        File[] entries = cacheDir.listFiles((dir, name) -> name.endsWith(ENTRY_EXT));
+        if (entries == null) return;
+
+        long total = 0;
+        for (File f : entries) {
+            total += f.length();
+        }
+        if (total <= maxBytes) return;
+
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (File f : entries) {
+            if (total <= maxBytes) break;
+            total -= f.length();
+            f.delete();
+        }
+    }
+
+    private static String entryPrefix(String fingerprint, String algorithm, String options) {
+        String opt = sha256(options);
+        return fingerprint + "_" + sanitize(algorithm) + "_" + opt + "_k";
+    }
+
+    private static String sanitize(String s) {
+        return s.replaceAll("[^A-Za-z0-9.-]", "-");
+    }
+
+    /** Chuẩn hóa chuỗi tùy chọn để đưa vào khóa cache */
+    public static String options(String... keyValues) {
+        return String.join(";", keyValues);
+    }
+}
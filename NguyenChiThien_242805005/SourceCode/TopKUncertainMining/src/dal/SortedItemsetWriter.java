@@ -0,0 +1,181 @@
+package dal;
+
+import java.io.*;
+import java.util.*;
+import model.RunMetrics;
+
+/**
+ * Ghi kết quả Top-K rất lớn (10^5 – 10^6 itemset) ra file theo ES giảm dần mà không giữ toàn bộ
+ * dòng kết quả trên heap. Itemset được đưa vào theo thứ tự bất kỳ (vd: thứ tự mảng heap của
+ * model.LargeTopK); mỗi khi bộ đệm đầy, bộ đệm được sắp xếp và xả ra một file run tạm
+ * (ES + danh sách item), cuối cùng các run được trộn k đường thẳng vào file kết quả.
+ *
+ * File kết quả có cùng định dạng với DataWriter.writeResultToFile (đầu trang, các dòng
+ * "Itemset [..] | ExpSup=..", chân trang với số liệu đo). File run được xóa khi close().
+ */
+
+public class SortedItemsetWriter implements Closeable {
+
+    /** Số itemset tối đa trong bộ đệm (mặc định) */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final File tmpDir;
+    private final double[] es;
+    private final String[] items;
+    private int count;
+
+    private final List<File> runs = new ArrayList<>();
+    private long total;
+
+    /**
+     * @param tmpDir     thư mục chứa file run tạm
+     * @param bufferSize số itemset tối đa giữ trên heap trước khi xả ra đĩa
+     */
+    public SortedItemsetWriter(File tmpDir, int bufferSize) {
+        this.tmpDir = tmpDir;
+        this.es = new double[Math.max(1, bufferSize)];
+        this.items = new String[es.length];
+    }
+
+    /**
+     * @param expectedSupport ES của itemset
+     * @param itemNames       các item của itemset (in theo thứ tự duyệt, như Itemset.toString)
+     */
+    public void add(double expectedSupport, Collection<String> itemNames) throws IOException {
+        if (count == es.length) {
+            spill();
+        }
+        es[count] = expectedSupport;
+        items[count] = itemNames.toString();
+        count++;
+        total++;
+    }
+
+    /** Số itemset đã nhận */
+    public long size() {
+        return total;
+    }
+
+    /** Số file run đã xả ra đĩa */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Trộn các run và ghi file kết quả
+     *
+     * @param outputFile đường dẫn file đầu ra
+     * @param topK       số lượng K
+     * @param itemCount  tổng số item trong dataset
+     * @param transCount tổng số giao dịch trong dataset
+     * @param metrics    số liệu đo của lần khai thác
+     */
+    public void write(String outputFile, int topK, int itemCount, int transCount, RunMetrics metrics) throws IOException {
+        Integer[] sorted = sortBuffer();
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile), 1 << 16)) {
+            DataWriter.writeHeader(bw);
+            if (runs.isEmpty()) {
+                // Vừa bộ đệm: ghi thẳng, không qua đĩa
+                for (int i : sorted) {
+                    writeLine(bw, items[i], es[i]);
+                }
+            } else {
+                writeRun(sorted);
+                merge(bw);
+            }
+            DataWriter.writeFooter(bw, topK, itemCount, transCount, DataWriter.metricLines(metrics), topK);
+        }
+    }
+
+    /** Xóa các file run tạm */
+    @Override
+    public void close() {
+        for (File f : runs) {
+            if (!f.delete()) {
+                f.deleteOnExit();
+            }
+        }
+        runs.clear();
+    }
+
+    private void spill() throws IOException {
+        writeRun(sortBuffer());
+    }
+
+    /** Chỉ mục của bộ đệm theo ES giảm dần */
+    private Integer[] sortBuffer() {
+        Integer[] idx = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            idx[i] = i;
+        }
+        Arrays.sort(idx, (a, b) -> Double.compare(es[b], es[a]));
+        return idx;
+    }
+
+    private void writeRun(Integer[] sorted) throws IOException {
+        File run = File.createTempFile("topk-run-", ".bin", tmpDir);
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16))) {
+            out.writeInt(sorted.length);
+            for (int i : sorted) {
+                out.writeDouble(es[i]);
+                out.writeUTF(items[i]);
+            }
+        }
+        Arrays.fill(items, 0, count, null);
+        count = 0;
+    }
+
+    /** Trộn k đường các run (mỗi run đã theo ES giảm dần) */
+    private void merge(BufferedWriter bw) throws IOException {
+        PriorityQueue<RunReader> heads = new PriorityQueue<>((a, b) -> Double.compare(b.es, a.es));
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (File f : runs) {
+                RunReader r = new RunReader(f);
+                readers.add(r);
+                if (r.next()) {
+                    heads.add(r);
+                }
+            }
+            while (!heads.isEmpty()) {
+                RunReader r = heads.poll();
+                writeLine(bw, r.items, r.es);
+                if (r.next()) {
+                    heads.add(r);
+                }
+            }
+        } finally {
+            for (RunReader r : readers) {
+                r.in.close();
+            }
+        }
+    }
+
+    private static void writeLine(BufferedWriter bw, String items, double es) throws IOException {
+        bw.write("Itemset " + items + " | ExpSup=" + String.format("%.4f", es) + "\n");
+    }
+
+    /** Con trỏ đọc tuần tự một run */
+    private static class RunReader {
+        final DataInputStream in;
+        int remaining;
+        double es;
+        String items;
+
+        RunReader(File f) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16));
+            remaining = in.readInt();
+        }
+
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            es = in.readDouble();
+            items = in.readUTF();
+            return true;
+        }
+    }
+}
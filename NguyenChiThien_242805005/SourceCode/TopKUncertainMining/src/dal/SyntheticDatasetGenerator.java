@@ -0,0 +1,490 @@
+package dal;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Bộ sinh dataset tổng hợp theo kiểu IBM Quest (Agrawal & Srikant), dùng để thử tải
+ * các thuật toán ở quy mô lớn (vd: t20i6d100k, t10i4d10m):
+ *  - Sinh trước patternCount pattern (tập item tiềm năng phổ biến), độ dài ~ Poisson(avgPatternLength),
+ *    một phần item lấy lại từ pattern trước (tương quan), phần còn lại chọn theo độ phổ biến
+ *    của item (Zipf với hệ số zipfSkew, 0 = đều)
+ *  - Mỗi pattern có trọng số ~ Exp(1) và mức hỏng ~ N(0.5, 0.1)
+ *  - Mỗi giao dịch có độ dài ~ Poisson(avgLength), được lấp đầy bởi các pattern chọn theo trọng số;
+ *    mỗi item của pattern bị bỏ với xác suất bằng mức hỏng
+ *  - Xác suất của item trong giao dịch theo phân phối chọn được (đều / Gauss / hai đỉnh),
+ *    làm tròn 2 chữ số như DatasetGenerator
+ *
+ * Giao dịch được ghi thẳng ra file theo từng dòng (bộ nhớ chỉ phụ thuộc số item và số pattern),
+ * ở một trong các định dạng: file gốc (danh sách item, đưa vào datasets/origin), file xác suất
+ * dạng văn bản (kèm file danh sách item), hoặc file nhị phân .tkud.
+ * Cùng seed và cùng tham số cho ra cùng một dataset.
+ *
+ * Cách chạy:
+ *   java -cp bin dal.SyntheticDatasetGenerator t20i6d100k -items 1000 -zipf 0.8 -prob bimodal
+ *        -format binary -out datasets/probability/t20i6d100k.tkud
+ */
+
+public class SyntheticDatasetGenerator {
+
+    /** Định dạng đầu ra */
+    public enum Format {
+        /** Danh sách item mỗi dòng (xác suất do DatasetGenerator gán sau) */
+        ORIGIN,
+        /** File xác suất dạng dày (mỗi item một cột) + file danh sách item */
+        PROBABILITY,
+        /** File nhị phân .tkud */
+        BINARY
+    }
+
+    /** Phân phối xác suất của item trong giao dịch */
+    public enum ProbabilityDistribution {
+        /** Đều trên 0.01..1.0 (giống DatasetGenerator) */
+        UNIFORM,
+        /** Gauss quanh 0.5, độ lệch 0.15 */
+        GAUSSIAN,
+        /** Hai đỉnh 0.2 và 0.85 (mô phỏng cảm biến tin cậy / không tin cậy) */
+        BIMODAL
+    }
+
+    /** Xác suất được làm tròn 2 chữ số: 0.01, 0.02, ..., 1.0 */
+    private static final int PROB_LEVELS = 100;
+
+    /** Tỷ lệ tương quan trung bình giữa hai pattern liên tiếp (Quest: 0.5) */
+    private static final double CORRELATION = 0.5;
+
+    private long transactions = 100_000;
+    private double avgLength = 10;
+    private int patternCount = 2000;
+    private double avgPatternLength = 4;
+    private int itemCount = 1000;
+    private double zipfSkew = 0.0;
+    private ProbabilityDistribution distribution = ProbabilityDistribution.UNIFORM;
+    private long seed = 42;
+
+    // Dựng trong prepare()
+    private SplittableRandom rand;
+    private double spareGaussian;
+    private boolean hasSpareGaussian;
+    private double[] itemCdf;
+    private int[][] patterns;
+    private double[] patternCdf;
+    private double[] corruption;
+
+    // Bộ đệm của giao dịch đang sinh
+    private int[] txItems = new int[64];
+    private double[] txProbs = new double[64];
+    private BitSet chosen;
+    private BitSet pending;
+
+    public SyntheticDatasetGenerator transactions(long transactions) {
+        this.transactions = transactions;
+        return this;
+    }
+
+    public SyntheticDatasetGenerator avgLength(double avgLength) {
+        this.avgLength = avgLength;
+        return this;
+    }
+
+    public SyntheticDatasetGenerator patternCount(int patternCount) {
+        this.patternCount = patternCount;
+        return this;
+    }
+
+    public SyntheticDatasetGenerator avgPatternLength(double avgPatternLength) {
+        this.avgPatternLength = avgPatternLength;
+        return this;
+    }
+
+    public SyntheticDatasetGenerator itemCount(int itemCount) {
+        this.itemCount = itemCount;
+        return this;
+    }
+
+    /** Hệ số Zipf của độ phổ biến item (0 = mọi item như nhau, 1 = Zipf chuẩn) */
+    public SyntheticDatasetGenerator zipfSkew(double zipfSkew) {
+        this.zipfSkew = zipfSkew;
+        return this;
+    }
+
+    public SyntheticDatasetGenerator distribution(ProbabilityDistribution distribution) {
+        this.distribution = distribution;
+        return this;
+    }
+
+    public SyntheticDatasetGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Tham số theo tên kiểu Quest: t&lt;độ dài TB&gt;i&lt;độ dài pattern TB&gt;d&lt;số giao dịch&gt;,
+     * số giao dịch có thể có hậu tố k / m (vd: t20i6d100k, t10i4d10m).
+     */
+    public static SyntheticDatasetGenerator fromName(String name) {
+        java.util.regex.Matcher m = java.util.regex.Pattern
+                .compile("t(\\d+(?:\\.\\d+)?)i(\\d+(?:\\.\\d+)?)d(\\d+)([km]?)")
+                .matcher(name.toLowerCase());
+        if (!m.matches()) {
+            throw new IllegalArgumentException("Expected a name like t20i6d100k: " + name);
+        }
+        long d = Long.parseLong(m.group(3));
+        if ("k".equals(m.group(4))) d *= 1_000;
+        if ("m".equals(m.group(4))) d *= 1_000_000;
+        return new SyntheticDatasetGenerator()
+                .avgLength(Double.parseDouble(m.group(1)))
+                .avgPatternLength(Double.parseDouble(m.group(2)))
+                .transactions(d);
+    }
+
+    /** Tên item theo id (số nguyên bắt đầu từ 1, giống dữ liệu Quest) */
+    public String[] itemNames() {
+        String[] names = new String[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            names[i] = String.valueOf(i + 1);
+        }
+        return names;
+    }
+
+    /**
+     * Sinh dataset và ghi ra file.
+     *
+     * @param format     định dạng đầu ra
+     * @param outputFile đường dẫn file đầu ra
+     * @param itemFile   file danh sách item (chỉ dùng cho PROBABILITY, null → bỏ qua)
+     * @return số giao dịch đã ghi, -1 nếu lỗi ghi file
+     */
+    public long generate(Format format, String outputFile, String itemFile) {
+        if (transactions > Integer.MAX_VALUE && format != Format.ORIGIN) {
+            throw new IllegalArgumentException("At most " + Integer.MAX_VALUE + " transactions per dataset");
+        }
+        prepare();
+        String[] names = itemNames();
+
+        long written = 0;
+        try (Sink sink = openSink(format, outputFile, names)) {
+            for (long t = 0; t < transactions; t++) {
+                int n = nextTransaction();
+                for (int j = 0; j < n; j++) {
+                    txProbs[j] = nextProbability();
+                }
+                sink.add(txItems, txProbs, n);
+                written++;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+
+        if (format == Format.PROBABILITY && itemFile != null) {
+            DataWriter.writeItemList(Arrays.asList(names), itemFile);
+        }
+        System.out.println("Synthetic dataset generated at: " + outputFile + " (" + written + " transactions)");
+        return written;
+    }
+
+    // =====================================================================
+    // Pattern và giao dịch
+    // =====================================================================
+
+    private void prepare() {
+        rand = new SplittableRandom(seed);
+        hasSpareGaussian = false;
+        chosen = new BitSet(itemCount);
+        pending = new BitSet(itemCount);
+
+        // Độ phổ biến item: Zipf(zipfSkew) theo id
+        itemCdf = new double[itemCount];
+        double sum = 0.0;
+        for (int i = 0; i < itemCount; i++) {
+            sum += 1.0 / Math.pow(i + 1, zipfSkew);
+            itemCdf[i] = sum;
+        }
+        for (int i = 0; i < itemCount; i++) {
+            itemCdf[i] /= sum;
+        }
+
+        patterns = new int[patternCount][];
+        patternCdf = new double[patternCount];
+        corruption = new double[patternCount];
+        double weightSum = 0.0;
+        int[] previous = new int[0];
+        for (int p = 0; p < patternCount; p++) {
+            int length = Math.max(1, Math.min(itemCount, poisson(avgPatternLength)));
+            Set<Integer> pattern = new LinkedHashSet<>();
+            // Một phần item lấy lại từ pattern trước
+            int reused = (int) Math.min(previous.length, Math.round(length * Math.min(1.0, exponential(CORRELATION))));
+            for (int i = 0; i < reused; i++) {
+                pattern.add(previous[rand.nextInt(previous.length)]);
+            }
+            while (pattern.size() < length) {
+                pattern.add(nextItem());
+            }
+            patterns[p] = pattern.stream().mapToInt(Integer::intValue).toArray();
+            previous = patterns[p];
+
+            weightSum += exponential(1.0);
+            patternCdf[p] = weightSum;
+            corruption[p] = Math.max(0.0, Math.min(1.0, 0.5 + 0.1 * gaussian()));
+        }
+        for (int p = 0; p < patternCount; p++) {
+            patternCdf[p] /= weightSum;
+        }
+    }
+
+    /**
+     * Sinh một giao dịch vào txItems, trả về số item (item id tăng dần, không trùng).
+     * Pattern làm giao dịch vượt quá độ dài vẫn được thêm vào một nửa số lần, nửa còn lại
+     * kết thúc giao dịch (như Quest).
+     */
+    private int nextTransaction() {
+        int length = Math.max(1, Math.min(itemCount, poisson(avgLength)));
+        int size = 0;
+        // Giới hạn số lần chọn pattern khi các pattern không phủ đủ item
+        for (int attempt = 0; size < length && attempt < 4 * length + 16; attempt++) {
+            int p = pick(patternCdf);
+            int added = 0;
+            for (int item : patterns[p]) {
+                if (rand.nextDouble() >= corruption[p] && !chosen.get(item) && !pending.get(item)) {
+                    pending.set(item);
+                    added++;
+                }
+            }
+            if (size > 0 && size + added > length && coin()) {
+                pending.clear();
+                break;
+            }
+            chosen.or(pending);
+            pending.clear();
+            size += added;
+        }
+
+        if (size > txItems.length) {
+            txItems = new int[size * 2];
+            txProbs = new double[size * 2];
+        }
+        int n = 0;
+        for (int i = chosen.nextSetBit(0); i >= 0; i = chosen.nextSetBit(i + 1)) {
+            txItems[n++] = i;
+        }
+        chosen.clear();
+        return n;
+    }
+
+    private double nextProbability() {
+        double p;
+        switch (distribution) {
+            case GAUSSIAN:
+                p = 0.5 + 0.15 * gaussian();
+                break;
+            case BIMODAL:
+                p = coin() ? 0.2 + 0.08 * gaussian() : 0.85 + 0.08 * gaussian();
+                break;
+            default:
+                return (rand.nextInt(PROB_LEVELS) + 1) / (double) PROB_LEVELS;
+        }
+        long c = Math.max(1, Math.min(PROB_LEVELS, Math.round(p * PROB_LEVELS)));
+        return c / (double) PROB_LEVELS;
+    }
+
+    private int nextItem() {
+        return pick(itemCdf);
+    }
+
+    private int pick(double[] cdf) {
+        int i = Arrays.binarySearch(cdf, rand.nextDouble());
+        i = i >= 0 ? i : -i - 1;
+        return Math.min(i, cdf.length - 1);
+    }
+
+    /**
+     * Chuẩn tắc N(0, 1) bằng phương pháp cực Marsaglia (như java.util.Random.nextGaussian);
+     * SplittableRandom chỉ có nextGaussian / nextBoolean từ JDK 17
+     */
+    private double gaussian() {
+        if (hasSpareGaussian) {
+            hasSpareGaussian = false;
+            return spareGaussian;
+        }
+        double u;
+        double v;
+        double s;
+        do {
+            u = 2 * rand.nextDouble() - 1;
+            v = 2 * rand.nextDouble() - 1;
+            s = u * u + v * v;
+        } while (s >= 1 || s == 0);
+        double scale = Math.sqrt(-2 * Math.log(s) / s);
+        spareGaussian = v * scale;
+        hasSpareGaussian = true;
+        return u * scale;
+    }
+
+    private boolean coin() {
+        return rand.nextInt(2) == 0;
+    }
+
+    private double exponential(double mean) {
+        return -mean * Math.log(1.0 - rand.nextDouble());
+    }
+
+    /** Poisson(mean): thuật toán Knuth cho mean nhỏ, xấp xỉ chuẩn cho mean lớn */
+    private int poisson(double mean) {
+        if (mean > 30) {
+            return (int) Math.max(0, Math.round(mean + Math.sqrt(mean) * gaussian()));
+        }
+        double limit = Math.exp(-mean);
+        double product = rand.nextDouble();
+        int k = 0;
+        while (product > limit) {
+            product *= rand.nextDouble();
+            k++;
+        }
+        return k;
+    }
+
+    // =====================================================================
+    // Ghi theo định dạng
+    // =====================================================================
+
+    /** Nơi nhận từng giao dịch đã sinh */
+    private interface Sink extends Closeable {
+        void add(int[] items, double[] probs, int n) throws IOException;
+    }
+
+    private static Sink openSink(Format format, String outputFile, String[] names) throws IOException {
+        switch (format) {
+            case BINARY: {
+                BinaryDataset.Appender appender = new BinaryDataset.Appender(names, outputFile);
+                return new Sink() {
+                    @Override
+                    public void add(int[] items, double[] probs, int n) throws IOException {
+                        appender.add(items, probs, n);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        appender.close();
+                    }
+                };
+            }
+            case PROBABILITY:
+                return new DenseProbabilitySink(outputFile, names.length);
+            default:
+                return new OriginSink(outputFile, names);
+        }
+    }
+
+    /** File gốc: tên item cách nhau bởi khoảng trắng */
+    private static class OriginSink implements Sink {
+
+        private final OutputStream out;
+        private final byte[][] names;
+
+        OriginSink(String outputFile, String[] names) throws IOException {
+            this.out = new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16);
+            this.names = new byte[names.length][];
+            for (int i = 0; i < names.length; i++) {
+                this.names[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        @Override
+        public void add(int[] items, double[] probs, int n) throws IOException {
+            for (int j = 0; j < n; j++) {
+                if (j > 0) out.write(' ');
+                out.write(names[items[j]]);
+            }
+            out.write('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /** File xác suất dạng dày, cùng định dạng với DatasetGenerator */
+    private static class DenseProbabilitySink implements Sink {
+
+        private static final byte[][] PROB_TEXT = new byte[PROB_LEVELS + 1][];
+
+        static {
+            for (int c = 0; c <= PROB_LEVELS; c++) {
+                PROB_TEXT[c] = Double.toString(c / (double) PROB_LEVELS).getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+
+        private final OutputStream out;
+        private final int[] codes;
+
+        DenseProbabilitySink(String outputFile, int itemCount) throws IOException {
+            this.out = new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16);
+            this.codes = new int[itemCount];
+        }
+
+        @Override
+        public void add(int[] items, double[] probs, int n) throws IOException {
+            for (int j = 0; j < n; j++) {
+                codes[items[j]] = (int) Math.round(probs[j] * PROB_LEVELS);
+            }
+            for (int c = 0; c < codes.length; c++) {
+                if (c > 0) out.write(' ');
+                out.write(PROB_TEXT[codes[c]]);
+            }
+            out.write('\n');
+            for (int j = 0; j < n; j++) {
+                codes[items[j]] = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // =====================================================================
+    // Dòng lệnh
+    // =====================================================================
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: SyntheticDatasetGenerator <tXiYdZ> [-items N] [-patterns L] [-zipf s]"
+                    + " [-prob uniform|gaussian|bimodal] [-seed n] [-format origin|probability|binary]"
+                    + " [-out file] [-itemfile file]");
+            System.exit(2);
+        }
+        SyntheticDatasetGenerator gen = fromName(args[0]);
+        Format format = Format.ORIGIN;
+        String out = null;
+        String itemFile = null;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "-items":    gen.itemCount(Integer.parseInt(args[++i])); break;
+                case "-patterns": gen.patternCount(Integer.parseInt(args[++i])); break;
+                case "-zipf":     gen.zipfSkew(Double.parseDouble(args[++i])); break;
+                case "-prob":     gen.distribution(ProbabilityDistribution.valueOf(args[++i].toUpperCase())); break;
+                case "-seed":     gen.seed(Long.parseLong(args[++i])); break;
+                case "-format":   format = Format.valueOf(args[++i].toUpperCase()); break;
+                case "-out":      out = args[++i]; break;
+                case "-itemfile": itemFile = args[++i]; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (out == null) {
+            out = args[0] + (format == Format.BINARY ? ".tkud" : format == Format.PROBABILITY ? "_probability.txt" : ".txt");
+        }
+        if (format == Format.PROBABILITY && itemFile == null) {
+            itemFile = out.replace("_probability.txt", "") + "_items.txt";
+        }
+
+        long start = System.nanoTime();
+        gen.generate(format, out, itemFile);
+        System.out.println("Done in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,571 @@
+package main;
+
+import bll.DatabasePreparer;
+import bll.MiningCheckpoint;
+import bll.MiningStats;
+import dal.BinaryDataset;
+import dal.MappedDataReader;
+import dal.ResultCache;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import model.Itemset;
+import model.ItemsetConstraints;
+import model.MappedTransactionStore;
+import model.OffHeapTransactionStore;
+import model.PairESMatrix;
+import model.PreparedDatabase;
+import model.RunMetrics;
+import model.TransactionStore;
+
+/**
+ * Bộ lập lịch chạy lưới (dataset, thuật toán, K) của chương trình benchmark.
+ *
+ * Ba chế độ:
+ *  - SEQUENTIAL: chạy lần lượt trên luồng chính (gọi gc trước mỗi lần đo) để kết quả có thể tái lập
+ *  - CONCURRENT: chạy song song trên thread pool, giới hạn bởi số lõi và ngân sách bộ nhớ;
+ *                byte cấp phát và thời gian CPU vẫn là của riêng luồng chạy job,
+ *                còn heap cao nhất là đỉnh chung của cả JVM (Peak_scope = jvm)
+ *  - FORKED:     mỗi job chạy trong một JVM con riêng (ForkedJob), cùng giới hạn như CONCURRENT
+ *
+ * Ở chế độ SEQUENTIAL, dataset kế tiếp có thể được đọc + tiền xử lý trên một luồng nền trong lúc
+ * khai thác dataset hiện tại (prefetchNextDataset). Lần chạy nào trùng với việc nạp nền thì
+ * heap cao nhất được ghi là đỉnh chung của JVM (Peak_scope = jvm).
+ */
+
+public class BenchmarkScheduler {
+
+    public enum Mode { SEQUENTIAL, CONCURRENT, FORKED }
+
+    /**
+     * Giữ giao dịch ngoài heap (chạy với -Dtopk.offheap=true): store trên heap được chép sang
+     * OffHeapTransactionStore (store memory-mapped của file .tkud giữ nguyên) và danh sách
+     * Transaction được dựng khi truy cập thay vì giữ sẵn trên heap.
+     */
+    static final boolean OFF_HEAP = Boolean.getBoolean("topk.offheap");
+
+    /**
+     * Đánh số lại item theo ES giảm dần và sắp giao dịch theo thứ tự từ điển trước khi khai thác
+     * (chạy với -Dtopk.reorder=true, xem DatabasePreparer.reorder). Cột TID của file .tkud không
+     * được dùng vì TID thay đổi; giao dịch sau khi sắp luôn nằm trên heap.
+     */
+    static final boolean REORDER = Boolean.getBoolean("topk.reorder");
+
+    /** Phạm vi của số liệu heap cao nhất ghi trong bảng kết quả */
+    static final String PEAK_PER_RUN = "run";
+    static final String PEAK_SHARED_JVM = "jvm";
+
+    // =====================================================================
+    // Dataset dùng chung giữa các job
+    // =====================================================================
+
+    /**
+     * Một dataset đã sinh file xác suất (hoặc sinh giao dịch thẳng trong bộ nhớ).
+     * Cơ sở dữ liệu chỉ được đọc và tiền xử lý khi có job đầu tiên cần đến (không trúng cache)
+     * hoặc khi được nạp trước trên luồng nền, và được giải phóng khi job cuối cùng
+     * của dataset kết thúc.
+     */
+    public static class DatasetContext {
+
+        final String name;
+        /** File dữ liệu: file xác suất dạng văn bản hoặc file nhị phân .tkud (null nếu dùng source) */
+        final String dataFile;
+        /** Nguồn giao dịch trong bộ nhớ, không qua file (null nếu dùng dataFile) */
+        final Supplier<TransactionStore> source;
+        final String itemFile;
+        final List<String> allItems;
+        final String fingerprint;
+        final long originBytes;
+
+        /** Ghi dataFile khi job đầu tiên cần đến (không trúng cache); null nếu file đã có */
+        private Runnable writer;
+        private final Object writeLock = new Object();
+
+        private PreparedDatabase prepared;
+        private Future<PreparedDatabase> loading;
+        private final double[] timesMs = new double[2];
+        private int pendingJobs;
+        double prepareMs = 0.0;
+        int transCount = -1;
+
+        public DatasetContext(String name, String dataFile, String itemFile, List<String> allItems,
+                              String fingerprint, long originBytes) {
+            this(name, dataFile, null, itemFile, allItems, fingerprint, originBytes);
+        }
+
+        /**
+         * Dataset có giao dịch được dựng thẳng trong bộ nhớ (vd: DatasetGenerator.generateTransactions),
+         * không dùng được ở chế độ FORKED.
+         */
+        public DatasetContext(String name, Supplier<TransactionStore> source, String itemFile,
+                              List<String> allItems, String fingerprint, long originBytes) {
+            this(name, null, source, itemFile, allItems, fingerprint, originBytes);
+        }
+
+        private DatasetContext(String name, String dataFile, Supplier<TransactionStore> source, String itemFile,
+                               List<String> allItems, String fingerprint, long originBytes) {
+            this.name = name;
+            this.dataFile = dataFile;
+            this.source = source;
+            this.itemFile = itemFile;
+            this.allItems = allItems;
+            this.fingerprint = fingerprint;
+            this.originBytes = originBytes;
+        }
+
+        /**
+         * Hoãn việc ghi dataFile tới khi có job không trúng cache (vd: mọi thuật toán đã có
+         * trong cache thì file xác suất không được sinh lại).
+         */
+        public DatasetContext writtenBy(Runnable writer) {
+            this.writer = writer;
+            return this;
+        }
+
+        /** Ghi dataFile nếu đang được hoãn (một lần) */
+        void ensureWritten() {
+            synchronized (writeLock) {
+                if (writer != null) {
+                    writer.run();
+                    writer = null;
+                }
+            }
+        }
+
+        /** Đọc + tiền xử lý dataset (một lần), trả về cơ sở dữ liệu dùng chung */
+        synchronized PreparedDatabase acquire(int kMax) {
+            if (prepared == null) {
+                boolean prefetched = loading != null;
+                if (prefetched) {
+                    try {
+                        prepared = loading.get();
+                    } catch (ExecutionException e) {
+                        throw new RuntimeException("Loading " + name + " failed", e.getCause());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while loading " + name, e);
+                    }
+                    loading = null;
+                } else {
+                    prepared = load(kMax);
+                }
+                transCount = prepared.getTransactionCount();
+                prepareMs = timesMs[1];
+                System.out.println("[" + name + "] Transactions: " + transCount
+                        + ", loaded in " + timesMs[0] + " ms, prepared in " + prepareMs + " ms"
+                        + (prefetched ? " (in background)" : ""));
+            }
+            return prepared;
+        }
+
+        /**
+         * Bắt đầu nạp dataset trên luồng loader nếu chưa nạp.
+         *
+         * @param inFlight số lần nạp nền đang chạy (tăng ngay, giảm khi nạp xong)
+         */
+        synchronized void prefetch(ExecutorService loader, AtomicInteger inFlight, int kMax) {
+            if (prepared != null || loading != null || pendingJobs == 0) {
+                return;
+            }
+            inFlight.incrementAndGet();
+            loading = loader.submit(() -> {
+                try {
+                    return load(kMax);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+
+        private PreparedDatabase load(int kMax) {
+            if (source == null) {
+                ensureWritten();
+                return loadPrepared(dataFile, allItems, kMax, timesMs);
+            }
+            long start = System.nanoTime();
+            TransactionStore store = source.get();
+            if (store == null) {
+                throw new IllegalStateException("Cannot generate transactions for " + name);
+            }
+            timesMs[0] = (System.nanoTime() - start) / 1_000_000.0;
+            return prepare(allItems.toArray(new String[0]), store, null, kMax, timesMs);
+        }
+
+        synchronized void jobDone() {
+            if (--pendingJobs == 0) {
+                prepared = null;
+                if (loading != null) {
+                    loading.cancel(true);
+                    loading = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Đọc và tiền xử lý một file dữ liệu: file nhị phân .tkud được mở bằng memory mapping
+     * (dùng luôn cột TID nếu có), file văn bản được đọc bằng MappedDataReader.
+     * Danh sách Transaction cho các thuật toán dùng Map cũng được dựng ở đây
+     * để không bị tính vào thời gian khai thác.
+     *
+     * @param dataFile file dữ liệu (văn bản hoặc .tkud)
+     * @param allItems danh sách item theo thứ tự cột (chỉ dùng cho file văn bản)
+     * @param pairK    K lớn nhất sẽ khai thác, để dựng sẵn ma trận ES cặp item (0 = dựng khi cần)
+     * @param timesMs  nhận thời gian đọc [0] và tiền xử lý [1] (ms)
+     */
+    static PreparedDatabase loadPrepared(String dataFile, List<String> allItems, int pairK, double[] timesMs) {
+        long loadStart = System.nanoTime();
+        String[] itemNames;
+        TransactionStore store;
+        BinaryDataset bin = null;
+        if (BinaryDataset.isBinary(dataFile)) {
+            bin = BinaryDataset.open(dataFile);
+            if (bin == null) {
+                throw new IllegalStateException("Cannot open binary dataset " + dataFile);
+            }
+            itemNames = bin.getItemNames();
+            store = bin.getStore();
+        } else {
+            itemNames = allItems.toArray(new String[0]);
+            store = MappedDataReader.read(dataFile, allItems.size());
+        }
+        timesMs[0] = (System.nanoTime() - loadStart) / 1_000_000.0;
+        return prepare(itemNames, store, bin, pairK, timesMs);
+    }
+
+    /**
+     * Tiền xử lý giao dịch đã đọc (dùng cột TID của file .tkud nếu có) và dựng danh sách
+     * Transaction (hoặc chuyển giao dịch ra ngoài heap nếu OFF_HEAP), rồi dựng ma trận ES cặp item
+     * cho pairK (nếu pairK > 0) để chi phí này tính vào tiền xử lý thay vì vào lần khai thác đầu.
+     * Thời gian ghi vào timesMs[1] (ms).
+     */
+    static PreparedDatabase prepare(String[] itemNames, TransactionStore store, BinaryDataset bin,
+                                            int pairK, double[] timesMs) {
+        long start = System.nanoTime();
+        if (OFF_HEAP && !REORDER && !(store instanceof MappedTransactionStore)) {
+            store = OffHeapTransactionStore.copyOf(store);
+        }
+        PreparedDatabase db = REORDER
+                ? DatabasePreparer.reorder(itemNames, store)
+                : bin != null && bin.hasTidLists()
+                ? DatabasePreparer.prepare(itemNames, store, bin.getTidLists(), bin.getTidProbs())
+                : DatabasePreparer.prepare(itemNames, store);
+        if (OFF_HEAP) {
+            db = db.withTransactionView();
+        } else {
+            db.getTransactions();
+        }
+        if (PairESMatrix.ENABLED && pairK > 0) {
+            db.getPairMatrix(pairK);
+        }
+        timesMs[1] = (System.nanoTime() - start) / 1_000_000.0;
+        return db;
+    }
+
+    /** Một ô của lưới: (dataset, thuật toán), khai thác với K lớn nhất */
+    public static class Job {
+
+        final DatasetContext dataset;
+        final int algorithmIndex;
+
+        public Job(DatasetContext dataset, int algorithmIndex) {
+            this.dataset = dataset;
+            this.algorithmIndex = algorithmIndex;
+            synchronized (dataset) {
+                dataset.pendingJobs++;
+            }
+        }
+
+        String algorithm() {
+            return Main.ALGORITHMS[algorithmIndex];
+        }
+    }
+
+    /** Kết quả của một job */
+    public static class JobResult {
+
+        public final Job job;
+        public final List<Itemset> itemsets;
+        public final RunMetrics metrics;
+        public final int minedK;
+        public final String source;
+        public final String peakScope;
+        public final double prepareMs;
+        public final int transCount;
+
+        /** Bộ đếm không gian tìm kiếm (rỗng nếu không bật MiningStats hoặc lấy từ cache) */
+        public final Map<String, Long> stats = new LinkedHashMap<>();
+
+        JobResult(Job job, List<Itemset> itemsets, RunMetrics metrics, int minedK, String source,
+                  String peakScope, double prepareMs, int transCount) {
+            this.job = job;
+            this.itemsets = itemsets;
+            this.metrics = metrics;
+            this.minedK = minedK;
+            this.source = source;
+            this.peakScope = peakScope;
+            this.prepareMs = prepareMs;
+            this.transCount = transCount;
+        }
+    }
+
+    private final Mode mode;
+    private final int maxParallelJobs;
+    private final int memoryBudgetMB;
+    private final ResultCache cache;
+    private final int kMax;
+    private final double densityThreshold;
+    private final boolean prefetchNextDataset;
+
+    /** Giấy phép bộ nhớ (MB) còn lại cho các job đang chạy */
+    private final Semaphore memoryPermits;
+
+    /** Số dataset đang được nạp trên luồng nền */
+    private final AtomicInteger loadsInFlight = new AtomicInteger();
+
+    /**
+     * @param mode             chế độ chạy
+     * @param maxParallelJobs  số job chạy đồng thời tối đa (bị chặn bởi số lõi)
+     * @param memoryBudgetMB   tổng bộ nhớ ước lượng cho các job chạy đồng thời
+     * @param cache            cache kết quả (có thể null)
+     * @param kMax             K dùng để khai thác
+     * @param densityThreshold ngưỡng mật độ cho HybridTopKMiner
+     * @param prefetchNextDataset nạp dataset kế tiếp trên luồng nền (chỉ ở chế độ SEQUENTIAL)
+     */
+    public BenchmarkScheduler(Mode mode, int maxParallelJobs, int memoryBudgetMB,
+                              ResultCache cache, int kMax, double densityThreshold,
+                              boolean prefetchNextDataset) {
+        this.mode = mode;
+        this.maxParallelJobs = Math.max(1, Math.min(maxParallelJobs, Runtime.getRuntime().availableProcessors()));
+        this.memoryBudgetMB = Math.max(1, memoryBudgetMB);
+        this.cache = cache;
+        this.kMax = kMax;
+        this.densityThreshold = densityThreshold;
+        this.prefetchNextDataset = prefetchNextDataset;
+        this.memoryPermits = new Semaphore(this.memoryBudgetMB, true);
+    }
+
+    /**
+     * Chạy toàn bộ job. Kết quả trả về theo đúng thứ tự job đầu vào
+     * (không phụ thuộc thứ tự hoàn thành).
+     */
+    public List<JobResult> runAll(List<Job> jobs) {
+        List<JobResult> results = new ArrayList<>();
+
+        if (mode == Mode.SEQUENTIAL) {
+            ExecutorService loader = prefetchNextDataset ? Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "dataset-prefetch");
+                t.setDaemon(true);
+                return t;
+            }) : null;
+            try {
+                for (int i = 0; i < jobs.size(); i++) {
+                    if (loader != null) {
+                        prefetchNext(jobs, i, loader);
+                    }
+                    results.add(execute(jobs.get(i)));
+                }
+            } finally {
+                if (loader != null) {
+                    loader.shutdownNow();
+                }
+            }
+            return results;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(maxParallelJobs);
+        try {
+            List<Future<JobResult>> futures = new ArrayList<>();
+            for (Job job : jobs) {
+                futures.add(pool.submit(() -> executeWithinBudget(job)));
+            }
+            for (Future<JobResult> f : futures) {
+                try {
+                    results.add(f.get());
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Benchmark job failed", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for benchmark jobs", e);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Nạp trước dataset của job kế tiếp thuộc dataset khác với job thứ i,
+     * nếu có ít nhất một job của dataset đó không trúng cache.
+     */
+    private void prefetchNext(List<Job> jobs, int i, ExecutorService loader) {
+        DatasetContext current = jobs.get(i).dataset;
+        for (int j = i + 1; j < jobs.size(); j++) {
+            DatasetContext next = jobs.get(j).dataset;
+            if (next == current) {
+                continue;
+            }
+            for (int k = j; k < jobs.size() && jobs.get(k).dataset == next; k++) {
+                String algorithm = jobs.get(k).algorithm();
+                if (cache == null || cache.get(next.fingerprint, algorithm,
+                        Main.engineOptions(algorithm, densityThreshold), kMax) == null) {
+                    next.prefetch(loader, loadsInFlight, kMax);
+                    break;
+                }
+            }
+            return;
+        }
+    }
+
+    private JobResult executeWithinBudget(Job job) throws InterruptedException {
+        int permits = Math.min(estimateJobMB(job.dataset.originBytes), memoryBudgetMB);
+        memoryPermits.acquire(permits);
+        try {
+            return execute(job);
+        } finally {
+            memoryPermits.release(permits);
+        }
+    }
+
+    /**
+     * Ước lượng thô bộ nhớ một job cần (MB), dựa trên kích thước file giao dịch gốc:
+     * mỗi cặp (item, xác suất) trong HashMap và các DB điều kiện tốn vài trăm byte.
+     */
+    static int estimateJobMB(long originBytes) {
+        return (int) Math.min(Integer.MAX_VALUE, 64 + originBytes * 64 / (1024 * 1024));
+    }
+
+    // =====================================================================
+    // Thực thi một job
+    // =====================================================================
+
+    private JobResult execute(Job job) {
+        DatasetContext ds = job.dataset;
+        String algorithm = job.algorithm();
+        String options = Main.engineOptions(algorithm, densityThreshold);
+
+        try {
+            long lookupStart = System.nanoTime();
+            ResultCache.Entry hit = cache != null ? cache.get(ds.fingerprint, algorithm, options, kMax) : null;
+            if (hit != null) {
+                System.out.println("[" + ds.name + "] " + algorithm + ": cache hit (mined with K = " + hit.cachedK + ")");
+                RunMetrics m = RunMetrics.wallTimeOnly((System.nanoTime() - lookupStart) / 1_000_000.0);
+                return new JobResult(job, hit.itemsets, m, hit.cachedK, "cache", PEAK_PER_RUN, 0.0, hit.transCount);
+            }
+
+            System.out.println("[" + ds.name + "] Running " + Main.DISPLAY_NAMES[job.algorithmIndex] + " (K = " + kMax + ")");
+            JobResult result = mode == Mode.FORKED ? executeForked(job) : executeInProcess(job);
+
+            if (cache != null) {
+                cache.put(ds.fingerprint, algorithm, options, kMax, result.itemsets,
+                        ds.allItems.size(), result.transCount);
+            }
+            return result;
+        } finally {
+            ds.jobDone();
+        }
+    }
+
+    private JobResult executeInProcess(Job job) {
+        DatasetContext ds = job.dataset;
+        PreparedDatabase db = ds.acquire(kMax);
+        List<Itemset> mined = new ArrayList<>();
+        Map<String, Long> stats = new LinkedHashMap<>();
+        Runnable run = () -> mined.addAll(Main.mineTopK(job.algorithm(), db, kMax, densityThreshold,
+                ItemsetConstraints.NONE, stats, MiningCheckpoint.fromSystemProperties()));
+
+        // Chỉ gọi gc trước khi đo khi không có job nào khác đang chạy
+        boolean overlapped = loadsInFlight.get() > 0;
+        RunMetrics m = RunMeter.measure(run, mode == Mode.SEQUENTIAL);
+        overlapped |= loadsInFlight.get() > 0;
+        String scope = mode == Mode.SEQUENTIAL && !overlapped ? PEAK_PER_RUN : PEAK_SHARED_JVM;
+        JobResult result = new JobResult(job, mined, m, kMax, "mined", scope, ds.prepareMs, ds.transCount);
+        result.stats.putAll(stats);
+        return result;
+    }
+
+    // =====================================================================
+    // Chế độ FORKED: mỗi job một JVM con
+    // =====================================================================
+
+    private JobResult executeForked(Job job) {
+        DatasetContext ds = job.dataset;
+        if (ds.dataFile == null) {
+            throw new IllegalStateException("Dataset " + ds.name + " has no data file for a forked job");
+        }
+        ds.ensureWritten();
+        int heapMB = Math.max(256, Math.min(estimateJobMB(ds.originBytes), memoryBudgetMB));
+
+        List<String> cmd = new ArrayList<>();
+        cmd.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+        cmd.add("-Xmx" + heapMB + "m");
+        if (MiningStats.ENABLED) {
+            cmd.add("-Dtopk.stats=true");
+        }
+        if (OFF_HEAP) {
+            cmd.add("-Dtopk.offheap=true");
+        }
+        if (REORDER) {
+            cmd.add("-Dtopk.reorder=true");
+        }
+        for (String key : new String[]{"topk.checkpoint", "topk.checkpointInterval"}) {
+            if (System.getProperty(key) != null) {
+                cmd.add("-D" + key + "=" + System.getProperty(key));
+            }
+        }
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(ForkedJob.class.getName());
+        cmd.add(ds.dataFile);
+        cmd.add(ds.itemFile);
+        cmd.add(job.algorithm());
+        cmd.add(String.valueOf(kMax));
+        cmd.add(String.valueOf(densityThreshold));
+
+        try {
+            Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+            List<Itemset> itemsets = new ArrayList<>();
+            Map<String, Long> stats = new LinkedHashMap<>();
+            RunMetrics m = null;
+            double prepareMs = 0.0;
+            int transCount = -1;
+
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (line.startsWith(ForkedJob.ITEMSET)) {
+                        itemsets.add(ForkedJob.parseItemset(line));
+                    } else if (line.startsWith(ForkedJob.METRICS)) {
+                        String[] parts = line.split(" ");
+                        m = new RunMetrics(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                                Double.parseDouble(parts[3]), Double.parseDouble(parts[4]),
+                                Long.parseLong(parts[5]), Long.parseLong(parts[6]));
+                        prepareMs = Double.parseDouble(parts[7]);
+                        transCount = Integer.parseInt(parts[8]);
+                    } else if (line.startsWith(ForkedJob.STATS)) {
+                        String[] parts = line.split(" ");
+                        stats.put(parts[1], Long.parseLong(parts[2]));
+                    } else {
+                        System.out.println("[" + ds.name + "/" + job.algorithm() + "] " + line);
+                    }
+                }
+            }
+
+            int exit = p.waitFor();
+            if (exit != 0 || m == null) {
+                throw new RuntimeException("Forked job " + ds.name + "/" + job.algorithm() + " exited with " + exit);
+            }
+            JobResult result = new JobResult(job, itemsets, m, kMax, "mined", PEAK_PER_RUN, prepareMs, transCount);
+            result.stats.putAll(stats);
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
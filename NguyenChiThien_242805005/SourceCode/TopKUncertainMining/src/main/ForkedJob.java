@@ -0,0 +1,74 @@
+package main;
+
+import bll.MiningCheckpoint;
+import dal.DataReader;
+import java.util.*;
+import model.Itemset;
+import model.ItemsetConstraints;
+import model.PreparedDatabase;
+import model.RunMetrics;
+
+/**
+ * Điểm vào của JVM con trong chế độ FORKED của BenchmarkScheduler.
+ * Đọc dataset, tiền xử lý, khai thác một thuật toán rồi in kết quả ra stdout:
+ *  - ITEMSET <ES> <item1> <item2> ...   (mỗi itemset một dòng, ES giảm dần)
+ *  - METRICS <wallMs> <cpuMs> <peakHeapMB> <allocatedMB> <gcCount> <gcPauseMs> <prepareMs> <transCount>
+ *  - STATS <tên bộ đếm> <giá trị>         (chỉ khi chạy với -Dtopk.stats=true)
+ *
+ * Tham số: dataFile itemFile algorithm K densityThreshold
+ * (dataFile là file xác suất dạng văn bản hoặc file nhị phân .tkud)
+ */
+
+public class ForkedJob {
+
+    static final String ITEMSET = "ITEMSET ";
+    static final String METRICS = "METRICS ";
+    static final String STATS = "STATS ";
+
+    public static void main(String[] args) {
+        if (args.length != 5) {
+            System.err.println("Usage: ForkedJob <dataFile> <itemFile> <algorithm> <K> <densityThreshold>");
+            System.exit(2);
+        }
+        String dataFile = args[0];
+        String itemFile = args[1];
+        String algorithm = args[2];
+        int topK = Integer.parseInt(args[3]);
+        double densityThreshold = Double.parseDouble(args[4]);
+
+        List<String> allItems = DataReader.readItemList(itemFile);
+        double[] timesMs = new double[2];
+        PreparedDatabase prepared = BenchmarkScheduler.loadPrepared(dataFile, allItems, topK, timesMs);
+        double prepareMs = timesMs[1];
+
+        List<Itemset> mined = new ArrayList<>();
+        Map<String, Long> stats = new LinkedHashMap<>();
+        // JVM con chỉ chạy một job nên có thể gọi gc trước khi đo
+        RunMetrics m = RunMeter.measure(
+                () -> mined.addAll(Main.mineTopK(algorithm, prepared, topK, densityThreshold,
+                        ItemsetConstraints.NONE, stats, MiningCheckpoint.fromSystemProperties())), true);
+
+        StringBuilder sb = new StringBuilder();
+        for (Itemset is : mined) {
+            sb.setLength(0);
+            sb.append(ITEMSET).append(is.getExpectedSupport());
+            for (String item : is.getItems()) {
+                sb.append(' ').append(item);
+            }
+            System.out.println(sb);
+        }
+        for (Map.Entry<String, Long> e : stats.entrySet()) {
+            System.out.println(STATS + e.getKey() + " " + e.getValue());
+        }
+        System.out.println(METRICS + m.getWallMs() + " " + m.getCpuMs() + " " + m.getPeakHeapMB() + " "
+                + m.getAllocatedMB() + " " + m.getGcCount() + " " + m.getGcPauseMs() + " "
+                + prepareMs + " " + prepared.getTransactionCount());
+    }
+
+    /** Đọc lại một dòng ITEMSET do JVM con in ra */
+    static Itemset parseItemset(String line) {
+        String[] parts = line.substring(ITEMSET.length()).split(" ");
+        Set<String> items = new LinkedHashSet<>(Arrays.asList(parts).subList(1, parts.length));
+        return new Itemset(items, Double.parseDouble(parts[0]));
+    }
+}
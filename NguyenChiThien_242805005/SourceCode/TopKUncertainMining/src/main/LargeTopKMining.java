@@ -0,0 +1,81 @@
+package main;
+
+import bll.UDiffsetMiner;
+import dal.SortedItemsetWriter;
+import java.io.File;
+import java.io.IOException;
+import model.LargeTopK;
+import model.PreparedDatabase;
+import model.RunMetrics;
+
+/**
+ * Khai thác Top-K với K rất lớn (10^5 – 10^6) bằng UDiffsetMiner.mineLarge(): Top-K nằm trong
+ * model.LargeTopK (heap và cây tiền tố trên mảng nguyên thủy) và được ghi ra file theo ES giảm dần
+ * bằng dal.SortedItemsetWriter (xả các run đã sắp xếp ra đĩa rồi trộn), nên không lúc nào có
+ * K đối tượng Itemset trên heap.
+ *
+ * Cách chạy (từ thư mục dự án):
+ *   java -Xmx1g -cp bin main.LargeTopKMining datasets/origin/chess.txt 1000000 -buffer 65536 -tmp /data/tmp
+ *
+ * Tùy chọn:
+ *   -seed S     seed sinh xác suất cho file gốc .txt (mặc định 1; bỏ qua với .tkud)
+ *   -buffer N   số itemset giữ trên heap khi ghi trước khi xả ra đĩa (mặc định 65536)
+ *   -tmp DIR    thư mục chứa file run tạm (mặc định java.io.tmpdir)
+ *   -o FILE     file kết quả (mặc định outputs/largek_k<K>_<dataset>.txt)
+ */
+
+public class LargeTopKMining {
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: LargeTopKMining <dataset.txt|.tkud> <K> [-seed S] [-buffer N] [-tmp DIR] [-o FILE]");
+            System.exit(2);
+        }
+        File dataFile = new File(args[0]);
+        int topK = Integer.parseInt(args[1]);
+        long seed = 1L;
+        int bufferSize = SortedItemsetWriter.DEFAULT_BUFFER_SIZE;
+        String tmpDir = System.getProperty("java.io.tmpdir");
+        String datasetName = dataFile.getName().replaceFirst("\\.(tkud|txt)$", "");
+        String outputFile = "outputs/largek_k" + topK + "_" + datasetName + ".txt";
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "-seed":   seed = Long.parseLong(args[++i]); break;
+                case "-buffer": bufferSize = Integer.parseInt(args[++i]); break;
+                case "-tmp":    tmpDir = args[++i]; break;
+                case "-o":      outputFile = args[++i]; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        PreparedDatabase prepared = MiningService.load(dataFile, seed, topK);
+        if (prepared == null) {
+            System.err.println("ERROR: Cannot read " + dataFile);
+            System.exit(1);
+        }
+
+        UDiffsetMiner miner = new UDiffsetMiner(prepared, topK);
+        LargeTopK[] holder = new LargeTopK[1];
+        RunMetrics m = RunMeter.measure(() -> holder[0] = miner.mineLarge(), true);
+        LargeTopK result = holder[0];
+
+        System.out.println("Mined top-" + topK + " (" + result.size() + " itemsets) in " + (long) m.getWallMs()
+                + " ms, peak heap " + m.getPeakHeapMB() + " MB");
+        System.out.println("Top-K storage: " + result.getBytes() / 1024 + " KB, prefix-tree nodes: "
+                + result.getTree().getLiveNodes());
+
+        File out = new File(outputFile).getAbsoluteFile();
+        out.getParentFile().mkdirs();
+        try (SortedItemsetWriter writer = new SortedItemsetWriter(new File(tmpDir), bufferSize)) {
+            for (int i = 0; i < result.size(); i++) {
+                writer.add(result.getExpectedSupport(i), result.getItems(i, prepared::getItemName));
+            }
+            writer.write(out.getPath(), topK, prepared.getItemCount(), prepared.getTransactionCount(), m);
+            System.out.println("Result written to: " + outputFile + " (" + writer.getRunCount() + " sorted runs)");
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
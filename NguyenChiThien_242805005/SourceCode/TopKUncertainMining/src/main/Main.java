@@ -12,43 +12,261 @@ public class Main {
     // Utility: đo thời gian chạy và bộ nhớ sử dụng cho một thuật toán
     // =====================================================================
     /**
-     * Chạy một thuật toán bất kỳ và đo:
-     *  - Thời gian thực thi (ms)
-     *  - Bộ nhớ tăng thêm (MB)
+     * Chạy một thuật toán bất kỳ (không có job nào khác chạy cùng) và đo:
+     *  - Thời gian thực và thời gian CPU (ms)
+     *  - Heap cao nhất trong lúc chạy (MB)
+     *  - Tổng bộ nhớ cấp phát (MB)
+     *  - Số lần GC và thời gian dừng do GC
      *
      * @param algorithm Runnable chứa việc thực thi thuật toán
-     * @return Result đối tượng chứa timeMs và memMB
+     * @return RunMetrics chứa các số liệu đo
      */
-    public static Result runAlgorithm(Runnable algorithm) {
-        Runtime rt = Runtime.getRuntime();
-        rt.gc();
+    public static RunMetrics runAlgorithm(Runnable algorithm) {
+        return RunMeter.measure(algorithm, true);
+    }
 
-        long memBefore = rt.totalMemory() - rt.freeMemory();
-        long start = System.nanoTime();
+    // =====================================================================
+    // Danh sách thuật toán: tên trong bảng CSV, tên hiển thị, tiền tố file kết quả
+    // =====================================================================
+    static final String[] ALGORITHMS      = {"U-Apriori", "U-FPGrowth", "U-HMine", "Hybrid"};
+    static final String[] DISPLAY_NAMES   = {"U-Apriori", "U-FPGrowth", "U-HMine", "HybridTopKMiner"};
+    static final String[] OUTPUT_PREFIXES = {"uapriori", "ufpgrowth", "uhmine", "hybrid"};
 
-        algorithm.run();
+    /**
+     * Khai thác Top-K bằng một thuật toán theo tên.
+     *
+     * @param algorithm        tên thuật toán (một phần tử của ALGORITHMS, "TopK-ES", "Diffset", "LargeK",
+     *                         "OutOfCore", "Closed" hoặc "Maximal" — hai chế độ sau trả về itemset đóng / tối đại)
+     * @param prepared         cơ sở dữ liệu đã tiền xử lý, dùng chung cho mọi thuật toán
+     * @param topK             số lượng itemset cần lấy
+     * @param densityThreshold ngưỡng mật độ cho HybridTopKMiner
+     * @return danh sách Top-K itemset theo ES giảm dần
+     */
+    public static List<Itemset> mineTopK(String algorithm, PreparedDatabase prepared,
+                                         int topK, double densityThreshold) {
+        return mineTopK(algorithm, prepared, topK, densityThreshold, null);
+    }
+
+    /**
+     * Khai thác Top-K và lấy bộ đếm không gian tìm kiếm của lần khai thác.
+     *
+     * @param statsOut nhận ảnh chụp MiningStats (chỉ khi chạy với -Dtopk.stats=true), có thể null
+     */
+    public static List<Itemset> mineTopK(String algorithm, PreparedDatabase prepared,
+                                         int topK, double densityThreshold, Map<String, Long> statsOut) {
+        return mineTopK(algorithm, prepared, topK, densityThreshold, ItemsetConstraints.NONE, statsOut);
+    }
 
-        long end = System.nanoTime();
-        long memAfter = rt.totalMemory() - rt.freeMemory();
+    /**
+     * Khai thác K itemset thỏa ràng buộc có ES cao nhất, ràng buộc được đẩy vào quá trình tìm kiếm
+     * (U-Apriori, U-FPGrowth, U-HMine, Hybrid; các thuật toán khác chỉ nhận ItemsetConstraints.NONE).
+     *
+     * @param constraints ràng buộc item bắt buộc / bị loại và độ dài
+     * @param statsOut    nhận ảnh chụp MiningStats (chỉ khi chạy với -Dtopk.stats=true), có thể null
+     */
+    public static List<Itemset> mineTopK(String algorithm, PreparedDatabase prepared, int topK,
+                                         double densityThreshold, ItemsetConstraints constraints,
+                                         Map<String, Long> statsOut) {
+        return mineTopK(algorithm, prepared, topK, densityThreshold, constraints, statsOut, null);
+    }
 
-        double timeMs = (end - start) / 1_000_000.0;
-        double memMB = (memAfter - memBefore) / (1024.0 * 1024.0);
+    /**
+     * Khai thác Top-K có lưu checkpoint (U-FPGrowth, U-HMine; các thuật toán khác bỏ qua checkpoint).
+     * Chỉ dùng cho các job chạy theo lô (BenchmarkScheduler, ForkedJob), nơi mỗi (dataset, thuật toán,
+     * K) chỉ có một lần chạy tại một thời điểm; truy vấn đồng thời của MiningService không dùng
+     * checkpoint vì hai truy vấn giống nhau sẽ ghi cùng một file.
+     *
+     * @param checkpoint checkpoint để lưu / tiếp tục, null = không dùng
+     */
+    public static List<Itemset> mineTopK(String algorithm, PreparedDatabase prepared, int topK,
+                                         double densityThreshold, ItemsetConstraints constraints,
+                                         Map<String, Long> statsOut, MiningCheckpoint checkpoint) {
+        if (!constraints.isEmpty() && !Arrays.asList(ALGORITHMS).contains(algorithm)) {
+            throw new IllegalArgumentException(algorithm + " does not support constraints");
+        }
+        List<Itemset> result;
+        MiningStats stats;
+        switch (algorithm) {
+            case "U-Apriori": {
+                UAprioriTopK miner = new UAprioriTopK(prepared, topK).constraints(constraints);
+                result = miner.findTopK();
+                stats = miner.getStats();
+                break;
+            }
+            case "U-FPGrowth": {
+                PriorityQueue<Itemset> pq =
+                        new PriorityQueue<>(Comparator.comparingDouble(Itemset::getExpectedSupport));
+                UFPgrowth miner = new UFPgrowth(prepared, topK, pq).constraints(constraints)
+                        .checkpoint(checkpoint);
+                miner.mine();
+                result = sortDescending(pq);
+                stats = miner.getStats();
+                break;
+            }
+            case "U-HMine": {
+                PriorityQueue<Itemset> pq =
+                        new PriorityQueue<>(Comparator.comparingDouble(Itemset::getExpectedSupport));
+                UHMine miner = new UHMine(prepared, topK, pq).constraints(constraints)
+                        .checkpoint(checkpoint);
+                miner.mine();
+                result = sortDescending(pq);
+                stats = miner.getStats();
+                break;
+            }
+            case "Hybrid": {
+                HybridTopKMiner miner = new HybridTopKMiner(prepared, topK, densityThreshold).constraints(constraints);
+                result = miner.mine();
+                stats = miner.getStats();
+                break;
+            }
+            case "Diffset": {
+                UDiffsetMiner miner = new UDiffsetMiner(prepared, topK);
+                result = miner.mine();
+                stats = miner.getStats();
+                break;
+            }
+            case "LargeK": {
+                UDiffsetMiner miner = new UDiffsetMiner(prepared, topK);
+                result = miner.mineLarge().toItemsets(prepared::getItemName);
+                stats = miner.getStats();
+                break;
+            }
+            case "TopK-ES": {
+                TopKExpectedSupport miner = new TopKExpectedSupport(prepared, topK);
+                result = miner.findTopK();
+                stats = miner.getStats();
+                break;
+            }
+            case "Closed":
+            case "Maximal": {
+                CondensedTopKMiner miner = new CondensedTopKMiner(prepared, topK, "Closed".equals(algorithm)
+                        ? CondensedTopKMiner.Mode.CLOSED : CondensedTopKMiner.Mode.MAXIMAL);
+                result = miner.mine();
+                stats = miner.getStats();
+                break;
+            }
+            case "OutOfCore": {
+                String[] itemNames = new String[prepared.getItemCount()];
+                for (int i = 0; i < itemNames.length; i++) {
+                    itemNames[i] = prepared.getItemName(i);
+                }
+                OutOfCoreTopKMiner miner = new OutOfCoreTopKMiner(prepared.getStore(), itemNames, topK,
+                        OutOfCoreTopKMiner.defaultMemoryBudget(), new File(System.getProperty("java.io.tmpdir")));
+                result = miner.mine();
+                stats = miner.getStats();
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
 
-        return new Result(timeMs, memMB);
+        if (MiningStats.ENABLED) {
+            stats.publish();
+            if (statsOut != null) {
+                statsOut.putAll(stats.snapshot());
+            }
+        }
+        return result;
+    }
+
+    /** Chế độ chạy theo tên (không phân biệt hoa thường), null nếu không hợp lệ */
+    private static BenchmarkScheduler.Mode parseMode(String name) {
+        for (BenchmarkScheduler.Mode mode : BenchmarkScheduler.Mode.values()) {
+            if (mode.name().equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        return null;
     }
 
     /**
-     * Lưu kết quả đo thời gian và bộ nhớ.
+     * Chuỗi tùy chọn của thuật toán, dùng làm một phần khóa cache kết quả.
      */
-    public static class Result {
+    static String engineOptions(String algorithm, double densityThreshold) {
+        if ("Hybrid".equals(algorithm)) {
+            return ResultCache.options("density=" + densityThreshold);
+        }
+        return ResultCache.options();
+    }
+
+    /** Mọi thuật toán đều có Top-K (K >= kMax) trong cache cho dấu vân tay này */
+    private static boolean isCached(ResultCache cache, String fingerprint, int kMax, double densityThreshold) {
+        for (String algorithm : ALGORITHMS) {
+            if (cache.get(fingerprint, algorithm, engineOptions(algorithm, densityThreshold), kMax) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sinh file xác suất và danh sách item từ file gốc (seed null = seed ngẫu nhiên)
+     *
+     * @return danh sách item chuẩn, null nếu không đọc được file gốc
+     */
+    private static List<String> generateProbabilityDataset(String originFile, String probFile, String itemFile,
+                                                           Long seed) {
+        System.out.println("\n>>> Generating probability dataset...");
+        List<String> allItems = seed != null
+                ? DatasetGenerator.generateProbabilityDataset(originFile, probFile, seed)
+                : DatasetGenerator.generateProbabilityDataset(originFile, probFile);
+        if (allItems == null) {
+            System.out.println("ERROR: Cannot read " + originFile);
+            return null;
+        }
+        DataWriter.writeItemList(allItems, itemFile);
+        System.out.println("Generated: " + probFile);
+        return allItems;
+    }
+
+    /** Chuyển file xác suất sang .tkud nếu file .tkud chưa có, cũ hơn hoặc khác số bit xác suất */
+    private static void convertToBinary(String probFile, String binFile, List<String> allItems,
+                                        boolean tidLists, int probabilityBits) {
+        File bin = new File(binFile);
+        if (bin.isFile() && bin.lastModified() >= new File(probFile).lastModified()
+                && BinaryDataset.probabilityBits(binFile) == probabilityBits) {
+            return;
+        }
+        long start = System.nanoTime();
+        ProbabilityCodec codec = BinaryDataset.write(allItems.toArray(new String[0]),
+                MappedDataReader.read(probFile, allItems.size()), binFile, tidLists, probabilityBits);
+        System.out.println("Converted to " + binFile + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        if (codec != null) {
+            System.out.println("Probabilities: " + codec.report());
+        }
+        System.out.println();
+    }
 
-        public double timeMs;
-        public double memMB;
+    private static List<Itemset> sortDescending(Collection<Itemset> itemsets) {
+        List<Itemset> result = new ArrayList<>(itemsets);
+        result.sort((a, b) -> Double.compare(b.getExpectedSupport(), a.getExpectedSupport()));
+        return result;
+    }
+
+    /**
+     * Lấy Top-K từ kết quả đã khai thác với K lớn hơn.
+     * Danh sách đầu vào đã sắp ES giảm dần nên K phần tử đầu chính là Top-K.
+     */
+    static List<Itemset> topKPrefix(List<Itemset> sortedDesc, int topK) {
+        return new ArrayList<>(sortedDesc.subList(0, Math.min(topK, sortedDesc.size())));
+    }
 
-        public Result(double t, double m) {
-            this.timeMs = t;
-            this.memMB = m;
+    /**
+     * Đọc danh sách K từ một dòng nhập (cách nhau bởi khoảng trắng hoặc dấu phẩy).
+     * Bỏ giá trị không hợp lệ / trùng lặp, trả về danh sách tăng dần.
+     */
+    static List<Integer> parseKValues(String line) {
+        TreeSet<Integer> ks = new TreeSet<>();
+        for (String token : line.trim().split("[\\s,]+")) {
+            if (token.isEmpty()) continue;
+            try {
+                int k = Integer.parseInt(token);
+                if (k > 0) ks.add(k);
+            } catch (NumberFormatException e) {
+                System.out.println("Ignoring invalid K: " + token);
+            }
         }
+        return new ArrayList<>(ks);
     }
 
     // ============================================================
@@ -64,18 +282,96 @@ public class Main {
         String probFolder   = "datasets/probability/";
         String outFolder    = "outputs/";
 
+        // Chế độ chạy lưới (dataset, thuật toán): SEQUENTIAL giữ cách đo cũ để tái lập kết quả,
+        // CONCURRENT chạy song song trong JVM này, FORKED chạy mỗi job trong một JVM con.
+        // Có thể chọn bằng tham số dòng lệnh, vd: java -cp bin main.Main concurrent
+        // (kiểm tra trước khi hỏi K để gõ sai không phải nhập lại K)
+        BenchmarkScheduler.Mode schedulerMode = BenchmarkScheduler.Mode.SEQUENTIAL;
+        if (args.length > 0) {
+            schedulerMode = parseMode(args[0]);
+            if (schedulerMode == null) {
+                System.out.println("ERROR: Unknown mode: " + args[0] + " (expected sequential|concurrent|forked)");
+                return;
+            }
+        }
+
         // int topK = 10;
+        // Có thể nhập nhiều giá trị K (vd: 30 50 70 90): mỗi thuật toán chỉ khai thác
+        // một lần với K lớn nhất, các K nhỏ hơn được lấy từ cùng một kết quả đó.
         Scanner sc = new Scanner(System.in);
-        System.out.print("Enter K (Top-K): ");
-        int topK = sc.nextInt();
+        System.out.print("Enter K (Top-K), separate multiple values by spaces: ");
+        List<Integer> kValues = parseKValues(sc.nextLine());
+        if (kValues.isEmpty()) {
+            System.out.println("ERROR: No valid K value entered.");
+            return;
+        }
+        int kMax = kValues.get(kValues.size() - 1);
         
         double densityThreshold = 0.1;
 
-        List<List<String>> table = new ArrayList<>();
+        // Dùng lại file xác suất đã sinh ở lần chạy trước (không sinh lại xác suất ngẫu nhiên).
+        boolean reuseProbabilityFiles = false;
+
+        // Sinh giao dịch thẳng trong bộ nhớ thay vì ghi file xác suất rồi đọc lại (không dùng được
+        // ở chế độ FORKED). File xác suất khi đó chỉ được ghi nếu bật persistProbabilityFiles,
+        // trên một luồng nền (để lần sau dùng lại với reuseProbabilityFiles).
+        boolean fusedPipeline           = true;
+        boolean persistProbabilityFiles = false;
+
+        // SEQUENTIAL: nạp dataset kế tiếp trên luồng nền trong lúc khai thác dataset hiện tại
+        boolean prefetchNextDataset = true;
+
+        // Seed sinh xác suất: cùng seed cho cùng file xác suất (với mọi số luồng) nên thời gian
+        // chạy so sánh được giữa các lần; null = seed ngẫu nhiên, mỗi lần chạy sinh dữ liệu mới
+        // (cache kết quả khóa theo nội dung file nên kết quả cũ tự động mất hiệu lực).
+        Long generatorSeed = 42L;
+
+        // Dataset tổng hợp kiểu IBM Quest (vd: "t20i6d100k", "t10i4d1m"): file gốc được sinh vào
+        // originFolder nếu chưa có, rồi xử lý như các dataset khác (xem dal.SyntheticDatasetGenerator)
+        String[] syntheticDatasets = {};
+        int syntheticItemCount     = 1000;
+        double syntheticZipfSkew   = 0.0;
+
+        // Chuyển file xác suất sang định dạng nhị phân .tkud (một lần cho mỗi file xác suất),
+        // các job mở file này bằng memory mapping thay vì phân tích lại văn bản.
+        boolean useBinaryDatasets = true;
+        boolean binaryTidLists    = true;
+        // Lưu xác suất trong file .tkud dạng mã 8 / 16 bit + bảng giải mã (0 = double 8 byte).
+        // Dữ liệu sinh bởi DatasetGenerator chỉ có ~100 giá trị nên mã 8 bit không mất mát;
+        // khi có mất mát, sai số được in ra lúc chuyển đổi. ES vẫn được cộng bằng double.
+        int probabilityBits = 0;
+
+        // Cache kết quả Top-K trên đĩa, khóa theo dataset (file gốc + seed, hoặc nội dung file xác suất
+        // nếu seed ngẫu nhiên / dùng lại file) + thuật toán + K + tùy chọn
+        boolean useResultCache = true;
+        String cacheFolder     = "cache/";
+        long cacheBudgetMB     = 64;
+        ResultCache cache = useResultCache ? new ResultCache(cacheFolder, cacheBudgetMB * 1024 * 1024) : null;
+
+        int maxParallelJobs = Runtime.getRuntime().availableProcessors();
+        int memoryBudgetMB  = (int) (Runtime.getRuntime().maxMemory() * 3 / 4 / (1024 * 1024));
+
+        // Mỗi K có một bảng tổng hợp riêng (result_table_k<K>.csv)
+        Map<Integer, List<List<String>>> tables = new LinkedHashMap<>();
+        for (int topK : kValues) {
+            tables.put(topK, new ArrayList<>());
+        }
 
         new File(probFolder).mkdirs();
         new File(outFolder).mkdirs();
 
+        for (String name : syntheticDatasets) {
+            String originFile = originFolder + name + ".txt";
+            if (!new File(originFile).isFile()) {
+                new File(originFolder).mkdirs();
+                SyntheticDatasetGenerator.fromName(name)
+                        .itemCount(syntheticItemCount)
+                        .zipfSkew(syntheticZipfSkew)
+                        .seed(generatorSeed != null ? generatorSeed : System.nanoTime())
+                        .generate(SyntheticDatasetGenerator.Format.ORIGIN, originFile, null);
+            }
+        }
+
         // -----------------------------------------------------------------
         // Lấy danh sách file origin
         // -----------------------------------------------------------------
@@ -94,8 +390,10 @@ public class Main {
         System.out.println("Detected " + files.length + " dataset(s).\n");
 
         // =====================================================================
-        // DUYỆT TẤT CẢ DATASET
+        // DUYỆT TẤT CẢ DATASET: SINH FILE XÁC SUẤT, TẠO JOB CHO MỖI THUẬT TOÁN
         // =====================================================================
+        List<BenchmarkScheduler.Job> jobs = new ArrayList<>();
+
         for (File file : files) {
 
             String datasetName = file.getName().replace(".txt", "");
@@ -109,110 +407,149 @@ public class Main {
             // -------------------------------------------------------------
             // 1. SINH DATASET XÁC SUẤT + LẤY DANH SÁCH ITEM CHUẨN
             // -------------------------------------------------------------
-            System.out.println("\n>>> Generating probability dataset...");
-            List<String> allItems = DatasetGenerator.generateProbabilityDataset(originFile, probFile);
-            System.out.println("Generated: " + probFile);
-            System.out.println("Total items = " + allItems.size());
+            String itemFile = probFolder + datasetName + "_items.txt";
+            List<String> allItems;
+            boolean reuse = reuseProbabilityFiles && new File(probFile).isFile() && new File(itemFile).isFile();
+            if (!reuse && fusedPipeline && schedulerMode != BenchmarkScheduler.Mode.FORKED) {
+                // Chỉ đọc danh sách item ở đây, xác suất được sinh khi dataset được nạp
+                DatasetGenerator.OriginIndex index = DatasetGenerator.index(originFile);
+                if (index == null) {
+                    System.out.println("ERROR: Cannot read " + originFile);
+                    continue;
+                }
+                allItems = index.getItems();
+                DataWriter.writeItemList(allItems, itemFile);
+                System.out.println("\n>>> Probabilities will be generated in memory ("
+                        + index.getTransactionCount() + " transactions, " + allItems.size() + " items)\n");
+
+                long seed = generatorSeed != null ? generatorSeed : new SplittableRandom().nextLong();
+                String persistFile = persistProbabilityFiles ? probFile : null;
+                int generatorThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+                // Cùng file gốc + cùng seed cho cùng dữ liệu, seed ngẫu nhiên thì không dùng cache
+                String fingerprint = cache != null && generatorSeed != null
+                        ? cache.fingerprint(datasetName + "_origin", originFile) : null;
+                if (fingerprint != null) {
+                    fingerprint += "-seed" + generatorSeed;
+                }
+                BenchmarkScheduler.DatasetContext ds = new BenchmarkScheduler.DatasetContext(datasetName,
+                        () -> DatasetGenerator.generateTransactions(index, seed, generatorThreads, persistFile),
+                        itemFile, allItems, fingerprint, file.length());
+                for (int a = 0; a < ALGORITHMS.length; a++) {
+                    jobs.add(new BenchmarkScheduler.Job(ds, a));
+                }
+                continue;
+            }
 
             // -------------------------------------------------------------
-            // 2. ĐỌC DATASET XÁC SUẤT TRÙNG KHỚP VỚI allItems
+            // 2. DẤU VÂN TAY DATASET CHO CACHE
+            //    Với seed cố định, khóa là file gốc + seed (như đường sinh trong bộ nhớ) và được
+            //    tính trước khi sinh: nếu mọi thuật toán đều trúng cache thì file xác suất chỉ được
+            //    sinh khi có job cần đến. Dataset chỉ được đọc + tiền xử lý khi có job không trúng
+            //    cache, thời gian tiền xử lý được đo riêng, không tính vào thời gian khai thác
             // -------------------------------------------------------------
-            List<Transaction> transactions =
-                    DataReader.readUncertainDataset(probFile, allItems);
-
-            int itemCount = allItems.size();
-            int transCount = transactions.size();
-            System.out.println("Transactions: " + transCount);
-
-            // =====================================================================
-            // 4. U-APRIORI
-            // =====================================================================
-            System.out.println("\n--- Running U-Apriori ---");
-
-            UAprioriTopK apriori = new UAprioriTopK(transactions, topK);
-            List<Itemset> resultApriori = new ArrayList<>();
-
-            Result rA = runAlgorithm(() -> resultApriori.addAll(apriori.findTopK()));
-
-            DataWriter.writeResultToFile(
-                    resultApriori,
-                    outFolder + "uapriori_k" + topK + "_" + datasetName + ".txt",
-                    topK, itemCount, transCount,
-                    rA.memMB, (long) rA.timeMs
-            );
-
-            table.add(Arrays.asList(datasetName, "U-Apriori", String.valueOf(topK), String.valueOf(rA.timeMs), String.valueOf(rA.memMB)));
-
-            // =====================================================================
-            // 5. U-FPGrowth
-            // =====================================================================
-            System.out.println("\n--- Running U-FPGrowth ---");
-
-            PriorityQueue<Itemset> pqFP =
-                    new PriorityQueue<>(Comparator.comparingDouble(Itemset::getExpectedSupport));
-
-            UFPgrowth fp = new UFPgrowth(transactions, topK, pqFP);
-            Result rFP = runAlgorithm(fp::mine);
-
-            List<Itemset> resultFP = new ArrayList<>(pqFP);
-            resultFP.sort((a, b) -> Double.compare(b.getExpectedSupport(), a.getExpectedSupport()));
-
-            DataWriter.writeResultToFile(
-                    resultFP,
-                    outFolder + "ufpgrowth_k" + topK + "_" + datasetName + ".txt",
-                    topK, itemCount, transCount,
-                    rFP.memMB, (long) rFP.timeMs
-            );
-
-            table.add(Arrays.asList(datasetName, "U-FPGrowth", String.valueOf(topK), String.valueOf(rFP.timeMs), String.valueOf(rFP.memMB)));
-
-            // =====================================================================
-            // 6. U-HMine
-            // =====================================================================
-            System.out.println("\n--- Running U-HMine ---");
-
-            PriorityQueue<Itemset> pqHM =
-                    new PriorityQueue<>(Comparator.comparingDouble(Itemset::getExpectedSupport));
-
-            UHMine hm = new UHMine(transactions, topK, pqHM);
-            Result rHM = runAlgorithm(hm::mine);
-
-            List<Itemset> resultHM = new ArrayList<>(pqHM);
-            resultHM.sort((a, b) -> Double.compare(b.getExpectedSupport(), a.getExpectedSupport()));
-
-            DataWriter.writeResultToFile(
-                    resultHM,
-                    outFolder + "uhmine_k" + topK + "_" + datasetName + ".txt",
-                    topK, itemCount, transCount,
-                    rHM.memMB, (long) rHM.timeMs
-            );
-
-            table.add(Arrays.asList(datasetName, "U-HMine", String.valueOf(topK), String.valueOf(rHM.timeMs), String.valueOf(rHM.memMB)));
-
-            // =====================================================================
-            // 7. HybridTopKMiner
-            // =====================================================================
-            System.out.println("\n--- Running HybridTopKMiner ---");
-
-            HybridTopKMiner hybrid = new HybridTopKMiner(transactions, topK, densityThreshold);
-            List<Itemset> resultHybrid = new ArrayList<>();
-
-            Result rHybrid = runAlgorithm(() -> resultHybrid.addAll(hybrid.mine()));
-
-            DataWriter.writeResultToFile(
-                    resultHybrid,
-                    outFolder + "hybrid_k" + topK + "_" + datasetName + ".txt",
-                    topK, itemCount, transCount,
-                    rHybrid.memMB, (long) rHybrid.timeMs
-            );
+            // Xác suất lượng tử hóa có thể cho kết quả khác bản gốc
+            String quantized = useBinaryDatasets && probabilityBits != 0 ? "-q" + probabilityBits : "";
+            String fingerprint = null;
+            if (!reuse && cache != null && generatorSeed != null) {
+                fingerprint = cache.fingerprint(datasetName + "_origin", originFile);
+                if (fingerprint != null) {
+                    fingerprint += "-seed" + generatorSeed + quantized;
+                }
+            }
+            boolean allCached = fingerprint != null && new File(itemFile).isFile()
+                    && isCached(cache, fingerprint, kMax, densityThreshold);
+
+            String binFile = useBinaryDatasets ? probFolder + datasetName + ".tkud" : null;
+            if (reuse) {
+                System.out.println("\n>>> Reusing probability dataset: " + probFile);
+                allItems = DataReader.readItemList(itemFile);
+            } else if (allCached) {
+                System.out.println("\n>>> All algorithms are cached, probability dataset is generated only if needed");
+                allItems = DataReader.readItemList(itemFile);
+            } else {
+                allItems = generateProbabilityDataset(originFile, probFile, itemFile, generatorSeed);
+                if (allItems == null) {
+                    continue;
+                }
+            }
+            System.out.println("Total items = " + allItems.size() + "\n");
+            if (binFile != null && !allCached) {
+                convertToBinary(probFile, binFile, allItems, binaryTidLists, probabilityBits);
+            }
+
+            if (fingerprint == null && cache != null) {
+                fingerprint = cache.fingerprint(datasetName, probFile);
+                if (fingerprint != null) {
+                    fingerprint += quantized;
+                }
+            }
+            BenchmarkScheduler.DatasetContext ds = new BenchmarkScheduler.DatasetContext(
+                    datasetName, binFile != null ? binFile : probFile, itemFile, allItems, fingerprint, file.length());
+            if (allCached) {
+                ds.writtenBy(() -> {
+                    List<String> items = generateProbabilityDataset(originFile, probFile, itemFile, generatorSeed);
+                    if (items == null) {
+                        throw new IllegalStateException("Cannot generate probability dataset from " + originFile);
+                    }
+                    if (binFile != null) {
+                        convertToBinary(probFile, binFile, items, binaryTidLists, probabilityBits);
+                    }
+                });
+            }
+
+            for (int a = 0; a < ALGORITHMS.length; a++) {
+                jobs.add(new BenchmarkScheduler.Job(ds, a));
+            }
+        }
 
-            table.add(Arrays.asList(datasetName, "Hybrid", String.valueOf(topK), String.valueOf(rHybrid.timeMs), String.valueOf(rHybrid.memMB)));
+        // =====================================================================
+        // 3. CHẠY CÁC THUẬT TOÁN (MỖI THUẬT TOÁN KHAI THÁC MỘT LẦN VỚI K LỚN NHẤT)
+        // =====================================================================
+        System.out.println(">>> Running " + jobs.size() + " job(s) in " + schedulerMode + " mode\n");
+        BenchmarkScheduler scheduler = new BenchmarkScheduler(
+                schedulerMode, maxParallelJobs, memoryBudgetMB, cache, kMax, densityThreshold,
+                prefetchNextDataset);
+        List<BenchmarkScheduler.JobResult> results = scheduler.runAll(jobs);
 
-            System.out.println("\n>>> FINISHED DATASET: " + datasetName + "\n");
+        // =====================================================================
+        // 4. GHI KẾT QUẢ CHO TỪNG K
+        //    Thời gian và bộ nhớ là của lần khai thác duy nhất với K = kMax,
+        //    được ghi kèm Mined_K để không hiểu nhầm là chi phí riêng của từng K
+        // =====================================================================
+        for (BenchmarkScheduler.JobResult res : results) {
+            String datasetName = res.job.dataset.name;
+            int a = res.job.algorithmIndex;
+            RunMetrics m = res.metrics;
+            int itemCount = res.job.dataset.allItems.size();
+
+            if (!res.stats.isEmpty()) {
+                DataWriter.writeMiningStats(res.stats, ALGORITHMS[a], res.minedK,
+                        outFolder + OUTPUT_PREFIXES[a] + "_stats_" + datasetName + ".txt");
+            }
+
+            for (int topK : kValues) {
+                DataWriter.writeResultToFile(
+                        topKPrefix(res.itemsets, topK),
+                        outFolder + OUTPUT_PREFIXES[a] + "_k" + topK + "_" + datasetName + ".txt",
+                        topK, itemCount, res.transCount,
+                        m, res.minedK
+                );
+
+                tables.get(topK).add(Arrays.asList(datasetName, ALGORITHMS[a], String.valueOf(topK),
+                        String.valueOf(m.getWallMs()), String.valueOf(m.getCpuMs()),
+                        String.valueOf(m.getPeakHeapMB()), String.valueOf(m.getAllocatedMB()),
+                        String.valueOf(m.getGcCount()), String.valueOf(m.getGcPauseMs()),
+                        String.valueOf(res.minedK), res.source, String.valueOf(res.prepareMs), res.peakScope));
+            }
         }
 
-        List<String> headers = Arrays.asList("Dataset", "Algorithm", "K", "Runtime_ms", "Memory_MB");
-        CSVExporter.exportToCSV(headers, table, outFolder + "result_table_k" + topK + ".csv");
+        List<String> headers = Arrays.asList("Dataset", "Algorithm", "K", "Runtime_ms", "CPU_ms",
+                "Peak_heap_MB", "Allocated_MB", "GC_count", "GC_pause_ms",
+                "Mined_K", "Source", "Prepare_ms", "Peak_scope");
+        for (Map.Entry<Integer, List<List<String>>> e : tables.entrySet()) {
+            CSVExporter.exportToCSV(headers, e.getValue(), outFolder + "result_table_k" + e.getKey() + ".csv");
+        }
         System.out.println("\n>>> ALL DATASETS COMPLETED.");
     }
 }
@@ -0,0 +1,418 @@
+package main;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dal.DatasetGenerator;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import model.Itemset;
+import model.ItemsetConstraints;
+import model.PreparedDatabase;
+import model.TransactionStore;
+
+/**
+ * Dịch vụ khai thác Top-K chạy thường trú: các dataset được đọc + tiền xử lý một lần lúc khởi động,
+ * giữ sẵn trong bộ nhớ và dùng chung cho mọi truy vấn (giống cách các job của BenchmarkScheduler
+ * dùng chung PreparedDatabase ở chế độ CONCURRENT). Truy vấn đi qua HTTP trên localhost:
+ *
+ *   GET /topk?dataset=chess&k=50[&algorithm=Hybrid][&density=0.1]
+ *             [&include=a,b][&exclude=c][&minLength=2][&maxLength=4]
+ *         → mỗi dòng một itemset ("Itemset [a, b] | ExpSup=..."), dòng đầu "#" chứa thời gian chờ / khai thác;
+ *           với ràng buộc, kết quả là K itemset thỏa ràng buộc có ES cao nhất (xem ItemsetConstraints)
+ *   GET /datasets  → tên, số giao dịch, số item của các dataset đã nạp
+ *   GET /stats     → số truy vấn và phân vị độ trễ (p50 / p90 / p99 / max) theo (dataset, thuật toán),
+ *                    cùng số job đang chạy / đang chờ
+ *
+ * Việc khai thác chạy trên một thread pool giới hạn (số luồng và hàng đợi cố định); khi hàng đợi
+ * đầy, truy vấn mới bị từ chối ngay với mã 503 thay vì làm chậm mọi truy vấn khác.
+ *
+ * Dataset là file nhị phân .tkud (mở bằng memory mapping) hoặc file gốc .txt (xác suất được sinh
+ * thẳng trong bộ nhớ với seed cố định, như fusedPipeline của Main); một thư mục thì nạp mọi
+ * file .tkud / .txt trong đó. Tên dataset là tên file bỏ phần mở rộng.
+ *
+ * Cách chạy (từ thư mục dự án):
+ *   java -Xmx2g -cp bin main.MiningService datasets/origin -port 8080 -threads 2
+ *   curl "http://localhost:8080/topk?dataset=chess&k=50&algorithm=U-HMine"
+ *
+ * Tùy chọn:
+ *   -port N      cổng HTTP (mặc định 8080, chỉ lắng nghe trên loopback)
+ *   -threads N   số truy vấn khai thác chạy đồng thời (mặc định số lõi)
+ *   -queue N     số truy vấn được chờ khi mọi luồng đều bận (mặc định 16)
+ *   -density X   ngưỡng mật độ mặc định cho HybridTopKMiner (mặc định 0.1)
+ *   -seed N      seed sinh xác suất cho file gốc .txt (mặc định 42)
+ *   -pairK N     dựng sẵn ma trận ES cặp item cho K ≤ N lúc nạp (mặc định 100); truy vấn với K lớn
+ *                hơn dựng lại ma trận một lần, sau đó dùng chung cho mọi truy vấn
+ */
+
+public class MiningService {
+
+    private static final String DEFAULT_ALGORITHM = "Hybrid";
+
+    /** Số mẫu độ trễ gần nhất được giữ cho mỗi (dataset, thuật toán) */
+    private static final int LATENCY_WINDOW = 4096;
+
+    private final Map<String, PreparedDatabase> datasets;
+    private final ThreadPoolExecutor executor;
+    private final double defaultDensity;
+
+    /** Độ trễ theo khóa "dataset algorithm", sắp theo tên khi in */
+    private final Map<String, Latencies> latencies = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param datasets       dataset đã tiền xử lý theo tên
+     * @param threads        số truy vấn khai thác chạy đồng thời
+     * @param queueCapacity  số truy vấn được chờ khi mọi luồng đều bận
+     * @param defaultDensity ngưỡng mật độ cho HybridTopKMiner khi truy vấn không chỉ định
+     */
+    public MiningService(Map<String, PreparedDatabase> datasets, int threads, int queueCapacity,
+                         double defaultDensity) {
+        this.datasets = datasets;
+        this.defaultDensity = defaultDensity;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                    Thread t = new Thread(r, "mining-service");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // =====================================================================
+    // Truy vấn
+    // =====================================================================
+
+    /** Kết quả một truy vấn Top-K cùng thời gian chờ trong hàng đợi và thời gian khai thác (ms) */
+    public static class Answer {
+
+        public final List<Itemset> itemsets;
+        public final double queuedMs;
+        public final double minedMs;
+
+        Answer(List<Itemset> itemsets, double queuedMs, double minedMs) {
+            this.itemsets = itemsets;
+            this.queuedMs = queuedMs;
+            this.minedMs = minedMs;
+        }
+    }
+
+    /**
+     * Khai thác Top-K (thỏa ràng buộc) trên một dataset đã nạp, chờ tới khi có kết quả.
+     *
+     * @throws IllegalArgumentException   dataset / thuật toán / K không hợp lệ
+     * @throws RejectedExecutionException hàng đợi đã đầy
+     */
+    public Answer query(String dataset, String algorithm, int topK, double densityThreshold,
+                        ItemsetConstraints constraints) throws InterruptedException, ExecutionException {
+        PreparedDatabase prepared = datasets.get(dataset);
+        if (prepared == null) {
+            throw new IllegalArgumentException("Unknown dataset: " + dataset);
+        }
+        if (topK <= 0) {
+            throw new IllegalArgumentException("K must be positive: " + topK);
+        }
+        long submitted = System.nanoTime();
+        Future<Answer> future = executor.submit(() -> {
+            long start = System.nanoTime();
+            List<Itemset> itemsets = Main.mineTopK(algorithm, prepared, topK, densityThreshold, constraints, null);
+            long end = System.nanoTime();
+            return new Answer(itemsets, (start - submitted) / 1_000_000.0, (end - start) / 1_000_000.0);
+        });
+        Answer answer;
+        try {
+            answer = future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause(); // vd: tên thuật toán không hợp lệ
+            }
+            throw e;
+        }
+        latencies.computeIfAbsent(dataset + " " + algorithm, key -> new Latencies())
+                .record(answer.queuedMs + answer.minedMs);
+        return answer;
+    }
+
+    /**
+     * Độ trễ (chờ + khai thác) của LATENCY_WINDOW truy vấn gần nhất, cùng tổng số truy vấn.
+     * Phân vị tính theo thứ hạng gần nhất trên bản sao đã sắp xếp của cửa sổ.
+     */
+    static class Latencies {
+
+        private final double[] window = new double[LATENCY_WINDOW];
+        private long count;
+
+        synchronized void record(double ms) {
+            window[(int) (count++ % LATENCY_WINDOW)] = ms;
+        }
+
+        synchronized String summary() {
+            int n = (int) Math.min(count, LATENCY_WINDOW);
+            double[] sorted = Arrays.copyOf(window, n);
+            Arrays.sort(sorted);
+            return String.format(Locale.ROOT, "count=%d p50=%.1f p90=%.1f p99=%.1f max=%.1f ms",
+                    count, percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                    n > 0 ? sorted[n - 1] : 0.0);
+        }
+
+        private static double percentile(double[] sorted, int p) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+    }
+
+    // =====================================================================
+    // HTTP
+    // =====================================================================
+
+    /**
+     * Mở cổng HTTP trên loopback. Mỗi kết nối được xử lý trên một luồng riêng (chỉ chờ kết quả),
+     * việc khai thác vẫn bị giới hạn bởi thread pool của dịch vụ.
+     */
+    public HttpServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/topk", exchange -> handle(exchange, this::topK));
+        server.createContext("/datasets", exchange -> handle(exchange, params -> listDatasets()));
+        server.createContext("/stats", exchange -> handle(exchange, params -> stats()));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return server;
+    }
+
+    /** Dừng nhận job mới, chờ các job đang chạy xong */
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private interface Handler {
+        String respond(Map<String, String> params) throws Exception;
+    }
+
+    private static void handle(HttpExchange exchange, Handler handler) throws IOException {
+        int status = 200;
+        String body;
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                status = 405;
+                body = "Only GET is supported\n";
+            } else {
+                body = handler.respond(parseQuery(exchange.getRequestURI().getRawQuery()));
+            }
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = e.getMessage() + "\n";
+        } catch (RejectedExecutionException e) {
+            status = 503;
+            body = "Too many queued queries, try again later\n";
+        } catch (Exception e) {
+            e.printStackTrace();
+            status = 500;
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            body = cause + "\n";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private String topK(Map<String, String> params) throws Exception {
+        String dataset = params.get("dataset");
+        String k = params.get("k");
+        if (dataset == null || k == null) {
+            throw new IllegalArgumentException("Usage: /topk?dataset=NAME&k=K[&algorithm=NAME][&density=X]"
+                    + "[&include=A,B][&exclude=C][&minLength=N][&maxLength=N]");
+        }
+        String algorithm = params.getOrDefault("algorithm", DEFAULT_ALGORITHM);
+        int topK;
+        double density;
+        ItemsetConstraints constraints = ItemsetConstraints.NONE;
+        try {
+            topK = Integer.parseInt(k);
+            density = params.containsKey("density") ? Double.parseDouble(params.get("density")) : defaultDensity;
+            if (params.containsKey("include")) {
+                constraints = constraints.include(Arrays.asList(params.get("include").split(",")));
+            }
+            if (params.containsKey("exclude")) {
+                constraints = constraints.exclude(Arrays.asList(params.get("exclude").split(",")));
+            }
+            if (params.containsKey("minLength")) {
+                constraints = constraints.minLength(Integer.parseInt(params.get("minLength")));
+            }
+            if (params.containsKey("maxLength")) {
+                constraints = constraints.maxLength(Integer.parseInt(params.get("maxLength")));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + e.getMessage());
+        }
+
+        Answer answer = query(dataset, algorithm, topK, density, constraints);
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "# dataset=%s algorithm=%s k=%d constraints=%s itemsets=%d queued=%.1f ms mined=%.1f ms%n",
+                dataset, algorithm, topK, constraints, answer.itemsets.size(), answer.queuedMs, answer.minedMs));
+        for (Itemset is : answer.itemsets) {
+            sb.append(is).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private String listDatasets() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, PreparedDatabase> e : datasets.entrySet()) {
+            sb.append(e.getKey()).append(" transactions=").append(e.getValue().getTransactionCount())
+                    .append(" items=").append(e.getValue().getItemCount()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private String stats() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# running=").append(executor.getActiveCount())
+                .append(" queued=").append(executor.getQueue().size())
+                .append(" completed=").append(executor.getCompletedTaskCount()).append('\n');
+        for (Map.Entry<String, Latencies> e : latencies.entrySet()) {
+            sb.append(e.getKey()).append(' ').append(e.getValue().summary()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // =====================================================================
+    // Nạp dataset
+    // =====================================================================
+
+    /**
+     * Đọc + tiền xử lý một dataset: file .tkud qua BenchmarkScheduler.loadPrepared,
+     * file gốc .txt bằng cách sinh xác suất thẳng trong bộ nhớ.
+     *
+     * @param pairK K để dựng sẵn ma trận ES cặp item (0 = dựng khi cần)
+     * @return cơ sở dữ liệu đã tiền xử lý, null nếu không đọc được
+     */
+    static PreparedDatabase load(File file, long seed, int pairK) {
+        double[] timesMs = new double[2];
+        PreparedDatabase prepared;
+        if (file.getName().endsWith(".tkud")) {
+            prepared = BenchmarkScheduler.loadPrepared(file.getPath(), null, pairK, timesMs);
+        } else {
+            long start = System.nanoTime();
+            DatasetGenerator.OriginIndex index = DatasetGenerator.index(file.getPath());
+            if (index == null) {
+                return null;
+            }
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            TransactionStore store = DatasetGenerator.generateTransactions(index, seed, threads, null);
+            if (store == null) {
+                return null;
+            }
+            timesMs[0] = (System.nanoTime() - start) / 1_000_000.0;
+            prepared = BenchmarkScheduler.prepare(index.getItems().toArray(new String[0]), store, null, pairK, timesMs);
+        }
+        System.out.println("[" + file.getName() + "] Transactions: " + prepared.getTransactionCount()
+                + ", loaded in " + timesMs[0] + " ms, prepared in " + timesMs[1] + " ms");
+        return prepared;
+    }
+
+    private static String datasetName(File file) {
+        return file.getName().replaceFirst("\\.(tkud|txt)$", "");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 8080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = 16;
+        double density = 0.1;
+        long seed = 42L;
+        int pairK = 100;
+        List<File> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-port":    port = Integer.parseInt(args[++i]); break;
+                case "-threads": threads = Integer.parseInt(args[++i]); break;
+                case "-queue":   queueCapacity = Integer.parseInt(args[++i]); break;
+                case "-density": density = Double.parseDouble(args[++i]); break;
+                case "-seed":    seed = Long.parseLong(args[++i]); break;
+                case "-pairK":   pairK = Integer.parseInt(args[++i]); break;
+                default:
+                    if (args[i].startsWith("-")) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    inputs.add(new File(args[i]));
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: MiningService <dataset.tkud|origin.txt|folder>... [-port N] [-threads N] "
+                    + "[-queue N] [-density X] [-seed N] [-pairK N]");
+            System.exit(2);
+        }
+
+        List<File> files = new ArrayList<>();
+        for (File input : inputs) {
+            if (input.isDirectory()) {
+                File[] found = input.listFiles((dir, name) -> name.endsWith(".tkud") || name.endsWith(".txt"));
+                if (found != null) {
+                    Arrays.sort(found);
+                    files.addAll(Arrays.asList(found));
+                }
+            } else {
+                files.add(input);
+            }
+        }
+
+        // Nạp tuần tự lúc khởi động: dataset đã sẵn sàng trước khi nhận truy vấn đầu tiên
+        Map<String, PreparedDatabase> datasets = new LinkedHashMap<>();
+        for (File file : files) {
+            String name = datasetName(file);
+            if (datasets.containsKey(name)) {
+                System.out.println("Skipping " + file + ": dataset " + name + " is already loaded");
+                continue;
+            }
+            PreparedDatabase prepared = load(file, seed, pairK);
+            if (prepared == null) {
+                System.out.println("ERROR: Cannot load " + file);
+                continue;
+            }
+            datasets.put(name, prepared);
+        }
+        if (datasets.isEmpty()) {
+            System.out.println("ERROR: No dataset loaded.");
+            System.exit(1);
+        }
+
+        MiningService service = new MiningService(Collections.unmodifiableMap(datasets),
+                Math.max(1, threads), queueCapacity, density);
+        HttpServer server = service.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(0);
+            try {
+                service.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        System.out.println("Serving " + datasets.size() + " dataset(s) on http://localhost:"
+                + server.getAddress().getPort() + "/topk (" + threads + " mining thread(s), queue "
+                + queueCapacity + ")");
+    }
+}
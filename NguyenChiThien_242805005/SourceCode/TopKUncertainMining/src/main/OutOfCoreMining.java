@@ -0,0 +1,81 @@
+package main;
+
+import bll.OutOfCoreTopKMiner;
+import dal.BinaryDataset;
+import dal.DataWriter;
+import java.io.File;
+import java.util.*;
+import model.Itemset;
+import model.RunMetrics;
+
+/**
+ * Khai thác Top-K một dataset lớn hơn heap bằng bll.OutOfCoreTopKMiner.
+ *
+ * Dataset phải ở định dạng nhị phân .tkud: file được mở bằng memory mapping nên giao dịch không
+ * nằm trên heap (file xác suất văn bản được chuyển đổi bằng dal.BinaryDataset, dataset tổng hợp
+ * có thể sinh thẳng ra .tkud bằng dal.SyntheticDatasetGenerator -format binary).
+ *
+ * Cách chạy (từ thư mục dự án):
+ *   java -Xmx512m -cp bin main.OutOfCoreMining datasets/probability/t10i4d10m.tkud 100 -memory 128 -tmp /data/tmp
+ *
+ * Tùy chọn:
+ *   -memory MB  ngân sách bộ nhớ cho một phân vùng (mặc định 1/4 heap tối đa)
+ *   -fanout N   số phân vùng riêng tối đa mỗi mức (mặc định 64)
+ *   -tmp DIR    thư mục chứa file phân vùng tạm (mặc định java.io.tmpdir)
+ *   -o FILE     file kết quả (mặc định outputs/outofcore_k<K>_<dataset>.txt)
+ */
+
+public class OutOfCoreMining {
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: OutOfCoreMining <dataset.tkud> <K> [-memory MB] [-fanout N] [-tmp DIR] [-o FILE]");
+            System.exit(2);
+        }
+        String dataFile = args[0];
+        int topK = Integer.parseInt(args[1]);
+        long memoryBudget = OutOfCoreTopKMiner.defaultMemoryBudget();
+        int fanout = OutOfCoreTopKMiner.DEFAULT_FANOUT;
+        String tmpDir = System.getProperty("java.io.tmpdir");
+        String datasetName = new File(dataFile).getName().replaceFirst("\\.tkud$", "");
+        String outputFile = "outputs/outofcore_k" + topK + "_" + datasetName + ".txt";
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "-memory": memoryBudget = Long.parseLong(args[++i]) * 1024 * 1024; break;
+                case "-fanout": fanout = Integer.parseInt(args[++i]); break;
+                case "-tmp":    tmpDir = args[++i]; break;
+                case "-o":      outputFile = args[++i]; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (!BinaryDataset.isBinary(dataFile)) {
+            System.err.println("ERROR: " + dataFile + " is not a .tkud dataset (convert it with dal.BinaryDataset)");
+            System.exit(1);
+        }
+        BinaryDataset bin = BinaryDataset.open(dataFile);
+        if (bin == null) {
+            System.err.println("ERROR: Cannot open " + dataFile);
+            System.exit(1);
+        }
+        String[] itemNames = bin.getItemNames();
+        System.out.println("Dataset: " + bin.getStore().size() + " transactions, " + itemNames.length
+                + " items, " + bin.getEntryCount() + " entries");
+
+        OutOfCoreTopKMiner miner = new OutOfCoreTopKMiner(bin.getStore(), itemNames, topK,
+                memoryBudget, new File(tmpDir)).fanout(fanout);
+        List<Itemset> result = new ArrayList<>();
+        RunMetrics m = RunMeter.measure(() -> result.addAll(miner.mine()), true);
+
+        System.out.println("Mined top-" + topK + " in " + (long) m.getWallMs() + " ms, peak heap "
+                + m.getPeakHeapMB() + " MB");
+        System.out.println("Partition files: " + miner.getPartitionFiles() + " (" + miner.getSpilledBytes() / (1024 * 1024)
+                + " MB written), mined in memory: " + miner.getInMemoryPartitions());
+
+        File out = new File(outputFile).getAbsoluteFile();
+        out.getParentFile().mkdirs();
+        DataWriter.writeResultToFile(result, out.getPath(), topK, itemNames.length, bin.getStore().size(), m, topK);
+        System.out.println("Result written to: " + outputFile);
+    }
+}
@@ -0,0 +1,143 @@
+package main;
+
+import bll.DatabasePreparer;
+import bll.ThresholdMiner;
+import dal.BinaryDataset;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import model.Itemset;
+import model.PreparedDatabase;
+import model.TransactionStore;
+
+/**
+ * Worker của chế độ khai thác phân tán hai pha (PartitionedMining), chạy trong một JVM con.
+ * Mở file .tkud (memory mapping), chỉ tiền xử lý các giao dịch [from, to) rồi trả lời lệnh của
+ * coordinator qua stdin / stdout, mỗi lệnh và mỗi kết quả một dòng:
+ *
+ *   TOPK <K>             → ITEMSET <ES cục bộ> <item1> <item2> ... (Top-K cục bộ), rồi END
+ *   THRESHOLD <minES>    → ITEMSET ... cho mọi itemset có ES cục bộ ≥ minES, rồi END
+ *   ES <n> + n dòng item → n dòng "ES <ES cục bộ>" theo cùng thứ tự, rồi END
+ *   QUIT
+ *
+ * Sau khi nạp xong, worker in "READY <số giao dịch>". Lỗi của một lệnh được trả về dạng
+ * "ERROR <thông báo>" thay cho END để coordinator dừng lại.
+ *
+ * Tham số: dataFile from to algorithm densityThreshold maxItemsets
+ */
+
+public class PartitionWorker {
+
+    static final String READY = "READY ";
+    static final String ITEMSET = "ITEMSET ";
+    static final String ES = "ES ";
+    static final String END = "END";
+    static final String ERROR = "ERROR ";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 6) {
+            System.err.println("Usage: PartitionWorker <dataset.tkud> <from> <to> <algorithm> <densityThreshold> <maxItemsets>");
+            System.exit(2);
+        }
+        BinaryDataset bin = BinaryDataset.open(args[0]);
+        if (bin == null) {
+            System.err.println("ERROR: Cannot open " + args[0]);
+            System.exit(1);
+        }
+        int from = Integer.parseInt(args[1]);
+        int to = Integer.parseInt(args[2]);
+        String algorithm = args[3];
+        double densityThreshold = Double.parseDouble(args[4]);
+        int maxItemsets = Integer.parseInt(args[5]);
+
+        PreparedDatabase prepared = DatabasePreparer.prepare(bin.getItemNames(), new RangeStore(bin.getStore(), from, to));
+        prepared.getTransactions();
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        out.println(READY + prepared.getTransactionCount());
+        out.flush();
+
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] cmd = line.split(" ");
+            try {
+                switch (cmd[0]) {
+                    case "TOPK":
+                        printItemsets(Main.mineTopK(algorithm, prepared, Integer.parseInt(cmd[1]), densityThreshold), out);
+                        break;
+                    case "THRESHOLD":
+                        printItemsets(new ThresholdMiner(prepared, Double.parseDouble(cmd[1]), maxItemsets).mine(), out);
+                        break;
+                    case "ES": {
+                        // Đọc hết yêu cầu trước khi trả lời: coordinator gửi cả lô rồi mới đọc
+                        int n = Integer.parseInt(cmd[1]);
+                        List<String[]> itemsets = new ArrayList<>(n);
+                        for (int i = 0; i < n; i++) {
+                            itemsets.add(in.readLine().split(" "));
+                        }
+                        for (String[] items : itemsets) {
+                            out.println(ES + prepared.expectedSupport(Arrays.asList(items)));
+                        }
+                        break;
+                    }
+                    case "QUIT":
+                        out.flush();
+                        return;
+                    default:
+                        throw new IllegalArgumentException("Unknown command: " + cmd[0]);
+                }
+                out.println(END);
+            } catch (RuntimeException e) {
+                out.println(ERROR + e.getMessage());
+            }
+            out.flush();
+        }
+    }
+
+    private static void printItemsets(List<Itemset> itemsets, PrintWriter out) {
+        StringBuilder sb = new StringBuilder();
+        for (Itemset is : itemsets) {
+            sb.setLength(0);
+            sb.append(ITEMSET).append(is.getExpectedSupport());
+            for (String item : is.getItems()) {
+                sb.append(' ').append(item);
+            }
+            out.println(sb);
+        }
+    }
+
+    /** Các giao dịch [from, to) của một store, đánh số lại từ 0 */
+    static class RangeStore implements TransactionStore {
+
+        private final TransactionStore store;
+        private final int from;
+        private final int size;
+
+        RangeStore(TransactionStore store, int from, int to) {
+            this.store = store;
+            this.from = from;
+            this.size = Math.max(0, Math.min(to, store.size()) - from);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int length(int t) {
+            return store.length(from + t);
+        }
+
+        @Override
+        public int itemAt(int t, int j) {
+            return store.itemAt(from + t, j);
+        }
+
+        @Override
+        public double probAt(int t, int j) {
+            return store.probAt(from + t, j);
+        }
+    }
+}
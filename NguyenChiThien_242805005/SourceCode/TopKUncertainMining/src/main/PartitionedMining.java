@@ -0,0 +1,441 @@
+package main;
+
+import dal.BinaryDataset;
+import dal.DataWriter;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import model.Itemset;
+import model.RunMetrics;
+import model.TransactionStore;
+
+/**
+ * Khai thác Top-K phân tán hai pha trên N tiến trình worker cục bộ (PartitionWorker).
+ *
+ * Dataset .tkud được chia theo chiều ngang thành N đoạn giao dịch liên tiếp (cân bằng theo số
+ * cặp item - xác suất); mỗi worker chỉ tiền xử lý đoạn của mình. ES cộng được qua các đoạn:
+ * ES(X) = Σ ES cục bộ của X.
+ *
+ *  - Pha 1: mỗi worker khai thác Top-K cục bộ. Hợp các kết quả được kiểm chứng: worker trả về
+ *    ES cục bộ chính xác của những ứng viên nó chưa báo, nên có ES toàn cục của mọi ứng viên.
+ *    ES lớn thứ K trong số đó là cận dưới τ của ES thứ K toàn cục.
+ *  - Pha 2: itemset có ES toàn cục ≥ τ phải có ES cục bộ ≥ τ / N ở ít nhất một đoạn, nên mỗi
+ *    worker trả về mọi itemset có ES cục bộ ≥ τ / N. Với mỗi ứng viên mới, worker không báo nó có
+ *    ES cục bộ < τ / N, cho cận trên; ứng viên có cận trên < τ bị loại, còn lại được kiểm chứng
+ *    ES toàn cục chính xác rồi trộn với pha 1 để lấy Top-K.
+ *
+ * Coordinator giao tiếp với worker qua stdin / stdout (pipe) nên có thể chạy thử trên một máy.
+ *
+ * Cách chạy (từ thư mục dự án):
+ *   java -cp bin main.PartitionedMining datasets/probability/t20i6d100k.tkud 90 -workers 4
+ *
+ * Tùy chọn:
+ *   -workers N       số worker (mặc định số lõi)
+ *   -algorithm A     thuật toán Top-K cục bộ ở pha 1 (mặc định Hybrid)
+ *   -density d       ngưỡng mật độ của Hybrid (mặc định 0.1)
+ *   -workerHeap MB   heap tối đa của mỗi worker
+ *   -maxItemsets n   số itemset tối đa một worker trả về ở pha 2 (mặc định 1000000)
+ *   -o FILE          file kết quả (mặc định outputs/partitioned_k<K>_<dataset>.txt)
+ */
+
+public class PartitionedMining {
+
+    private final String dataFile;
+    private final int workerCount;
+    private final String algorithm;
+    private final double densityThreshold;
+    private final int workerHeapMB;
+    private final int maxItemsets;
+
+    /** Ứng viên theo khóa (tên item đã sắp xếp) */
+    private final Map<String, Candidate> candidates = new LinkedHashMap<>();
+
+    private final List<String> log = new ArrayList<>();
+
+    /** Một itemset ứng viên và ES cục bộ đã biết ở từng worker (NaN = chưa biết) */
+    static class Candidate {
+
+        final Set<String> items;
+        final double[] localES;
+
+        Candidate(Set<String> items, int workers) {
+            this.items = items;
+            this.localES = new double[workers];
+            Arrays.fill(localES, Double.NaN);
+        }
+
+        boolean known() {
+            for (double es : localES) {
+                if (Double.isNaN(es)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double globalES() {
+            double sum = 0.0;
+            for (double es : localES) {
+                sum += es;
+            }
+            return sum;
+        }
+
+        /** Cận trên ES toàn cục khi worker chưa báo có ES cục bộ < bound */
+        double upperBound(double bound) {
+            double sum = 0.0;
+            for (double es : localES) {
+                sum += Double.isNaN(es) ? bound : es;
+            }
+            return sum;
+        }
+    }
+
+    public PartitionedMining(String dataFile, int workerCount, String algorithm, double densityThreshold,
+                             int workerHeapMB, int maxItemsets) {
+        this.dataFile = dataFile;
+        this.workerCount = workerCount;
+        this.algorithm = algorithm;
+        this.densityThreshold = densityThreshold;
+        this.workerHeapMB = workerHeapMB;
+        this.maxItemsets = maxItemsets;
+    }
+
+    /**
+     * Chạy hai pha trên các worker và trả về Top-K toàn cục theo ES giảm dần
+     *
+     * @throws IOException nếu không khởi động / giao tiếp được với worker
+     */
+    public List<Itemset> mine(int k) throws IOException {
+        BinaryDataset bin = BinaryDataset.open(dataFile);
+        if (bin == null) {
+            throw new IOException("Cannot open " + dataFile);
+        }
+        int[] bounds = split(bin.getStore(), workerCount);
+
+        List<Worker> workers = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(workerCount);
+        try {
+            long start = System.nanoTime();
+            for (int w = 0; w < workerCount; w++) {
+                workers.add(new Worker(w, bounds[w], bounds[w + 1]));
+            }
+            forEachWorker(pool, workers, Worker::awaitReady);
+            log("Started " + workerCount + " workers", start);
+
+            // Pha 1: Top-K cục bộ, rồi ES toàn cục chính xác của mọi ứng viên → τ
+            start = System.nanoTime();
+            List<List<Itemset>> local = forEachWorker(pool, workers, w -> w.itemsets("TOPK " + k));
+            addCandidates(local);
+            int phase1 = candidates.size();
+            verify(pool, workers, new ArrayList<>(candidates.values()));
+            double tau = kthLargest(candidates.values(), k);
+            log("Phase 1: " + phase1 + " candidates, tau = " + tau, start);
+
+            // Pha 2: mọi itemset có ES cục bộ ≥ τ / N
+            start = System.nanoTime();
+            double threshold = tau / workerCount;
+            List<List<Itemset>> above = forEachWorker(pool, workers, w -> w.itemsets("THRESHOLD " + threshold));
+            int before = candidates.size();
+            addCandidates(above);
+            List<Candidate> toVerify = new ArrayList<>();
+            int prunedByBound = 0;
+            for (Candidate c : candidates.values()) {
+                if (c.known()) {
+                    continue;
+                }
+                if (c.upperBound(threshold) < tau) {
+                    prunedByBound++;
+                } else {
+                    toVerify.add(c);
+                }
+            }
+            verify(pool, workers, toVerify);
+            log("Phase 2: local threshold " + threshold + ", " + (candidates.size() - before)
+                    + " new candidates, " + prunedByBound + " pruned by upper bound, "
+                    + toVerify.size() + " verified", start);
+
+            for (Worker w : workers) {
+                w.quit();
+            }
+        } finally {
+            pool.shutdownNow();
+            for (Worker w : workers) {
+                w.close();
+            }
+        }
+
+        List<Itemset> result = new ArrayList<>();
+        for (Candidate c : candidates.values()) {
+            if (c.known()) {
+                result.add(new Itemset(c.items, c.globalES()));
+            }
+        }
+        result.sort((a, b) -> Double.compare(b.getExpectedSupport(), a.getExpectedSupport()));
+        return new ArrayList<>(result.subList(0, Math.min(k, result.size())));
+    }
+
+    /** Các dòng nhật ký của lần chạy (thời gian và số ứng viên của từng pha) */
+    public List<String> getLog() {
+        return log;
+    }
+
+    private void log(String message, long startNanos) {
+        String line = message + " (" + (System.nanoTime() - startNanos) / 1_000_000 + " ms)";
+        log.add(line);
+        System.out.println(line);
+    }
+
+    /** Chia [0, size) thành n đoạn liên tiếp có số cặp (item, xác suất) gần bằng nhau */
+    static int[] split(TransactionStore store, int n) {
+        long total = 0;
+        for (int t = 0; t < store.size(); t++) {
+            total += store.length(t);
+        }
+        int[] bounds = new int[n + 1];
+        long seen = 0;
+        int part = 1;
+        for (int t = 0; t < store.size() && part < n; t++) {
+            seen += store.length(t);
+            while (part < n && seen >= total * part / n) {
+                bounds[part++] = t + 1;
+            }
+        }
+        while (part <= n) {
+            bounds[part++] = store.size();
+        }
+        return bounds;
+    }
+
+    private void addCandidates(List<List<Itemset>> perWorker) {
+        for (int w = 0; w < perWorker.size(); w++) {
+            for (Itemset is : perWorker.get(w)) {
+                Candidate c = candidates.computeIfAbsent(key(is.getItems()),
+                        x -> new Candidate(is.getItems(), workerCount));
+                c.localES[w] = is.getExpectedSupport();
+            }
+        }
+    }
+
+    /** Hỏi mỗi worker ES cục bộ của các ứng viên mà worker đó chưa báo */
+    private void verify(ExecutorService pool, List<Worker> workers, List<Candidate> list) throws IOException {
+        forEachWorker(pool, workers, w -> {
+            List<Candidate> missing = new ArrayList<>();
+            for (Candidate c : list) {
+                if (Double.isNaN(c.localES[w.index])) {
+                    missing.add(c);
+                }
+            }
+            double[] es = w.expectedSupports(missing);
+            for (int i = 0; i < es.length; i++) {
+                missing.get(i).localES[w.index] = es[i];
+            }
+            return null;
+        });
+    }
+
+    private static double kthLargest(Collection<Candidate> list, int k) {
+        if (list.size() < k) {
+            return 0.0;
+        }
+        PriorityQueue<Double> top = new PriorityQueue<>();
+        for (Candidate c : list) {
+            top.add(c.globalES());
+            if (top.size() > k) {
+                top.poll();
+            }
+        }
+        return top.peek();
+    }
+
+    private static String key(Set<String> items) {
+        List<String> sorted = new ArrayList<>(items);
+        Collections.sort(sorted);
+        return String.join(" ", sorted);
+    }
+
+    interface WorkerCall<T> {
+        T call(Worker worker) throws IOException;
+    }
+
+    /** Gọi song song trên mọi worker, trả về kết quả theo thứ tự worker */
+    private static <T> List<T> forEachWorker(ExecutorService pool, List<Worker> workers, WorkerCall<T> call)
+            throws IOException {
+        List<Future<T>> futures = new ArrayList<>();
+        for (Worker w : workers) {
+            futures.add(pool.submit(() -> call.call(w)));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> f : futures) {
+                results.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for workers");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Worker call failed", e.getCause());
+        }
+        return results;
+    }
+
+    // =====================================================================
+    // Một tiến trình worker
+    // =====================================================================
+
+    class Worker implements Closeable {
+
+        final int index;
+        private final Process process;
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        Worker(int index, int from, int to) throws IOException {
+            this.index = index;
+            List<String> cmd = new ArrayList<>();
+            cmd.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+            if (workerHeapMB > 0) {
+                cmd.add("-Xmx" + workerHeapMB + "m");
+            }
+            cmd.add("-cp");
+            cmd.add(System.getProperty("java.class.path"));
+            cmd.add(PartitionWorker.class.getName());
+            cmd.addAll(Arrays.asList(dataFile, String.valueOf(from), String.valueOf(to), algorithm,
+                    String.valueOf(densityThreshold), String.valueOf(maxItemsets)));
+            process = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)));
+        }
+
+        Void awaitReady() throws IOException {
+            String line = readLine();
+            if (!line.startsWith(PartitionWorker.READY)) {
+                throw new IOException("Worker " + index + " did not start: " + line);
+            }
+            return null;
+        }
+
+        List<Itemset> itemsets(String command) throws IOException {
+            out.println(command);
+            out.flush();
+            List<Itemset> result = new ArrayList<>();
+            String line;
+            while (!(line = readLine()).equals(PartitionWorker.END)) {
+                String[] parts = line.split(" ");
+                Set<String> items = new LinkedHashSet<>(Arrays.asList(parts).subList(2, parts.length));
+                result.add(new Itemset(items, Double.parseDouble(parts[1])));
+            }
+            return result;
+        }
+
+        double[] expectedSupports(List<Candidate> list) throws IOException {
+            double[] es = new double[list.size()];
+            if (list.isEmpty()) {
+                return es;
+            }
+            out.println(PartitionWorker.ES + list.size());
+            for (Candidate c : list) {
+                out.println(String.join(" ", c.items));
+            }
+            out.flush();
+            for (int i = 0; i < es.length; i++) {
+                es[i] = Double.parseDouble(readLine().substring(PartitionWorker.ES.length()));
+            }
+            readLine(); // END
+            return es;
+        }
+
+        private String readLine() throws IOException {
+            String line = in.readLine();
+            if (line == null) {
+                throw new IOException("Worker " + index + " exited unexpectedly");
+            }
+            if (line.startsWith(PartitionWorker.ERROR)) {
+                throw new IOException("Worker " + index + ": " + line.substring(PartitionWorker.ERROR.length()));
+            }
+            return line;
+        }
+
+        void quit() {
+            out.println("QUIT");
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // =====================================================================
+    // Dòng lệnh
+    // =====================================================================
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PartitionedMining <dataset.tkud> <K> [-workers N] [-algorithm A] "
+                    + "[-density d] [-workerHeap MB] [-maxItemsets n] [-o FILE]");
+            System.exit(2);
+        }
+        String dataFile = args[0];
+        int topK = Integer.parseInt(args[1]);
+        int workers = Runtime.getRuntime().availableProcessors();
+        String algorithm = "Hybrid";
+        double densityThreshold = 0.1;
+        int workerHeapMB = 0;
+        int maxItemsets = 1_000_000;
+        String datasetName = new File(dataFile).getName().replaceFirst("\\.tkud$", "");
+        String outputFile = "outputs/partitioned_k" + topK + "_" + datasetName + ".txt";
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "-workers":     workers = Integer.parseInt(args[++i]); break;
+                case "-algorithm":   algorithm = args[++i]; break;
+                case "-density":     densityThreshold = Double.parseDouble(args[++i]); break;
+                case "-workerHeap":  workerHeapMB = Integer.parseInt(args[++i]); break;
+                case "-maxItemsets": maxItemsets = Integer.parseInt(args[++i]); break;
+                case "-o":           outputFile = args[++i]; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (!BinaryDataset.isBinary(dataFile)) {
+            System.err.println("ERROR: " + dataFile + " is not a .tkud dataset (convert it with dal.BinaryDataset)");
+            System.exit(1);
+        }
+
+        PartitionedMining coordinator = new PartitionedMining(dataFile, workers, algorithm, densityThreshold,
+                workerHeapMB, maxItemsets);
+        List<Itemset> result = new ArrayList<>();
+        IOException[] failure = new IOException[1];
+        // Chỉ đo được coordinator: heap và CPU của các worker không nằm trong số liệu này
+        RunMetrics m = RunMeter.measure(() -> {
+            try {
+                result.addAll(coordinator.mine(topK));
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        }, true);
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        System.out.println("Mined top-" + topK + " with " + workers + " workers in " + (long) m.getWallMs() + " ms");
+
+        BinaryDataset bin = BinaryDataset.open(dataFile);
+        File out = new File(outputFile).getAbsoluteFile();
+        out.getParentFile().mkdirs();
+        DataWriter.writeResultToFile(result, out.getPath(), topK, bin.getItemNames().length,
+                bin.getStore().size(), m, topK);
+        System.out.println("Result written to: " + outputFile);
+    }
+}
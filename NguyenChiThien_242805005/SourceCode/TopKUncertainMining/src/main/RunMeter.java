@@ -0,0 +1,183 @@
+package main;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.*;
+import javax.management.openmbean.CompositeData;
+import model.RunMetrics;
+
+/**
+ * Đo một lần chạy thuật toán trên luồng hiện tại.
+ *
+ *  - Heap cao nhất: lớn nhất của tổng heap đang dùng tại cùng một thời điểm, lấy từ
+ *      + thông báo GC: tổng các memory pool heap ngay trước mỗi lần GC (lúc heap đầy nhất)
+ *      + luồng nền lấy mẫu MemoryMXBean.getHeapMemoryUsage() mỗi SAMPLE_MS ms giữa các lần GC
+ *    Không cộng đỉnh riêng của từng pool: các đỉnh đó xảy ra ở những thời điểm khác nhau
+ *    (eden đầy trước mỗi lần young GC) nên tổng của chúng lớn hơn đỉnh thật.
+ *    Đây là số liệu của cả JVM, nên khi nhiều job chạy đồng thời trong cùng JVM thì giá trị
+ *    này là đỉnh chung của các job.
+ *  - Byte cấp phát và thời gian CPU: của riêng luồng chạy thuật toán (ThreadMXBean),
+ *    không bị ảnh hưởng bởi các luồng khác.
+ *  - GC: chênh lệch số lần và thời gian GC của các GarbageCollectorMXBean.
+ */
+
+public class RunMeter {
+
+    private static final double MB = 1024.0 * 1024.0;
+
+    /** Chu kỳ lấy mẫu heap đang dùng (ms) */
+    private static final long SAMPLE_MS = 5;
+
+    /**
+     * @param algorithm Runnable chứa việc thực thi thuật toán
+     * @param gcBefore  gọi System.gc() trước khi đo (chỉ nên dùng khi không có job nào khác chạy)
+     * @return số liệu đo
+     */
+    public static RunMetrics measure(Runnable algorithm, boolean gcBefore) {
+        if (gcBefore) {
+            System.gc();
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        boolean allocSupported = threads.isThreadAllocatedMemorySupported();
+        if (allocSupported && !threads.isThreadAllocatedMemoryEnabled()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        boolean cpuSupported = threads.isCurrentThreadCpuTimeSupported();
+        long tid = Thread.currentThread().getId();
+
+        PeakHeapMonitor peakMonitor = new PeakHeapMonitor();
+        long gcCount0 = gcCount();
+        long gcTime0 = gcTimeMs();
+        long alloc0 = allocSupported ? threads.getThreadAllocatedBytes(tid) : 0;
+        long cpu0 = cpuSupported ? threads.getCurrentThreadCpuTime() : 0;
+        long start = System.nanoTime();
+
+        try {
+            algorithm.run();
+        } finally {
+            peakMonitor.stop();
+        }
+
+        long end = System.nanoTime();
+        long cpu1 = cpuSupported ? threads.getCurrentThreadCpuTime() : 0;
+        long alloc1 = allocSupported ? threads.getThreadAllocatedBytes(tid) : 0;
+        long gcCount1 = gcCount();
+        long gcTime1 = gcTimeMs();
+
+        return new RunMetrics(
+                (end - start) / 1_000_000.0,
+                (cpu1 - cpu0) / 1_000_000.0,
+                peakMonitor.getPeakBytes() / MB,
+                (alloc1 - alloc0) / MB,
+                gcCount1 - gcCount0,
+                gcTime1 - gcTime0);
+    }
+
+    /**
+     * Theo dõi tổng heap đang dùng trong lúc chạy: nghe thông báo GC (heap ngay trước GC) và lấy
+     * mẫu định kỳ trên một luồng daemon. Bắt đầu khi tạo, kết thúc bằng stop().
+     */
+    private static final class PeakHeapMonitor implements NotificationListener {
+
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final Set<String> heapPools = new HashSet<>();
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+        private final AtomicLong peak = new AtomicLong();
+        private final Thread sampler;
+        private volatile boolean running = true;
+
+        PeakHeapMonitor() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapPools.add(pool.getName());
+                }
+            }
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (gc instanceof NotificationEmitter) {
+                    NotificationEmitter emitter = (NotificationEmitter) gc;
+                    emitter.addNotificationListener(this, null, null);
+                    emitters.add(emitter);
+                }
+            }
+            sample();
+            sampler = new Thread(() -> {
+                while (running) {
+                    sample();
+                    try {
+                        Thread.sleep(SAMPLE_MS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "run-meter-heap-sampler");
+            sampler.setDaemon(true);
+            sampler.start();
+        }
+
+        private void sample() {
+            record(memory.getHeapMemoryUsage().getUsed());
+        }
+
+        private void record(long used) {
+            peak.accumulateAndGet(used, Math::max);
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            long used = 0;
+            for (Map.Entry<String, MemoryUsage> e : info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+                if (heapPools.contains(e.getKey())) {
+                    used += e.getValue().getUsed();
+                }
+            }
+            record(used);
+        }
+
+        void stop() {
+            running = false;
+            sampler.interrupt();
+            try {
+                sampler.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sample();
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (ListenerNotFoundException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        long getPeakBytes() {
+            return peak.get();
+        }
+    }
+
+    static long gcCount() {
+        long sum = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sum += Math.max(0, gc.getCollectionCount());
+        }
+        return sum;
+    }
+
+    static long gcTimeMs() {
+        long sum = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sum += Math.max(0, gc.getCollectionTime());
+        }
+        return sum;
+    }
+}
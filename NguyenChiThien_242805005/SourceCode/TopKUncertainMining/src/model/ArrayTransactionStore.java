@@ -0,0 +1,37 @@
+package model;
+
+/**
+ * Lưu trữ giao dịch bằng mảng nguyên thủy trên heap:
+ * items[t] là các item id, probs[t] là xác suất tương ứng.
+ */
+
+public class ArrayTransactionStore implements TransactionStore {
+
+    private final int[][] items;
+    private final double[][] probs;
+
+    public ArrayTransactionStore(int[][] items, double[][] probs) {
+        this.items = items;
+        this.probs = probs;
+    }
+
+    @Override
+    public int size() {
+        return items.length;
+    }
+
+    @Override
+    public int length(int t) {
+        return items[t].length;
+    }
+
+    @Override
+    public int itemAt(int t, int j) {
+        return items[t][j];
+    }
+
+    @Override
+    public double probAt(int t, int j) {
+        return probs[t][j];
+    }
+}
@@ -0,0 +1,117 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Min-heap d-phân (d = 4) trên hai mảng song song: khóa double và giá trị int, không boxing.
+ * Heap 4-phân nông hơn heap nhị phân nên mỗi lần thay phần tử nhỏ nhất (thao tác chính của
+ * Top-K) đi qua ít mức hơn, và 4 con của một nút nằm liền nhau trong bộ nhớ.
+ */
+
+public class DaryMinHeap {
+
+    private static final int D = 4;
+
+    private double[] keys;
+    private int[] values;
+    private int size;
+
+    public DaryMinHeap(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        keys = new double[capacity];
+        values = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Khóa nhỏ nhất (heap không được rỗng) */
+    public double peekKey() {
+        return keys[0];
+    }
+
+    /** Giá trị của phần tử có khóa nhỏ nhất (heap không được rỗng) */
+    public int peekValue() {
+        return values[0];
+    }
+
+    public void add(double key, int value) {
+        if (size == keys.length) {
+            int capacity = keys.length + (keys.length >> 1);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        siftUp(size++, key, value);
+    }
+
+    /** Bỏ phần tử nhỏ nhất và trả về giá trị của nó */
+    public int poll() {
+        int value = values[0];
+        size--;
+        if (size > 0) {
+            siftDown(0, keys[size], values[size]);
+        }
+        return value;
+    }
+
+    /** Thay phần tử nhỏ nhất bằng (key, value) và trả về giá trị cũ (nhanh hơn poll + add) */
+    public int replaceMin(double key, int value) {
+        int old = values[0];
+        siftDown(0, key, value);
+        return old;
+    }
+
+    /** Khóa ở vị trí i của mảng heap (0 ≤ i < size, thứ tự heap, không sắp xếp) */
+    public double keyAt(int i) {
+        return keys[i];
+    }
+
+    /** Giá trị ở vị trí i của mảng heap */
+    public int valueAt(int i) {
+        return values[i];
+    }
+
+    /** Bộ nhớ của các mảng (byte) */
+    public long getBytes() {
+        return (long) keys.length * (Double.BYTES + Integer.BYTES);
+    }
+
+    private void siftUp(int i, double key, int value) {
+        while (i > 0) {
+            int p = (i - 1) / D;
+            if (keys[p] <= key) {
+                break;
+            }
+            keys[i] = keys[p];
+            values[i] = values[p];
+            i = p;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    private void siftDown(int i, double key, int value) {
+        while (true) {
+            int first = i * D + 1;
+            if (first >= size) {
+                break;
+            }
+            int min = first;
+            int last = Math.min(first + D, size);
+            for (int c = first + 1; c < last; c++) {
+                if (keys[c] < keys[min]) {
+                    min = c;
+                }
+            }
+            if (keys[min] >= key) {
+                break;
+            }
+            keys[i] = keys[min];
+            values[i] = values[min];
+            i = min;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+}
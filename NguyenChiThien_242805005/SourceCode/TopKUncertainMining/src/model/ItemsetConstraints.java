@@ -0,0 +1,183 @@
+package model;
+
+import java.util.*;
+
+/**
+ * Ràng buộc của một truy vấn Top-K: item bắt buộc có (include), item không được có (exclude),
+ * độ dài tối thiểu / tối đa. Top-K khi có ràng buộc là K itemset thỏa ràng buộc có ES cao nhất.
+ *
+ * Các thuật toán đẩy ràng buộc vào quá trình tìm kiếm thay vì lọc kết quả sau cùng:
+ *  - Item bị loại được bỏ khỏi danh sách mở rộng (mọi tập cha cũng vi phạm)
+ *  - Không mở rộng itemset đã đạt độ dài tối đa
+ *  - Cắt nhánh khi phần còn lại không thể bù đủ item bắt buộc hoặc độ dài tối thiểu,
+ *    hoặc khi ES của itemset cộng các item bắt buộc còn thiếu đã nhỏ hơn minES
+ * Itemset không thỏa ràng buộc vẫn có thể được duyệt làm prefix nhưng không vào Top-K,
+ * nên minES là ES lớn thứ K trong các itemset thỏa ràng buộc (ES vẫn đơn điệu giảm khi thêm item).
+ *
+ * Đối tượng bất biến: include / exclude / minLength / maxLength trả về bản sao mới.
+ */
+
+public class ItemsetConstraints {
+
+    /** Không có ràng buộc */
+    public static final ItemsetConstraints NONE =
+            new ItemsetConstraints(Collections.emptySet(), Collections.emptySet(), 1, Integer.MAX_VALUE);
+
+    private final Set<String> included;
+    private final Set<String> excluded;
+    private final int minLength;
+    private final int maxLength;
+
+    private ItemsetConstraints(Set<String> included, Set<String> excluded, int minLength, int maxLength) {
+        this.included = included;
+        this.excluded = excluded;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+    }
+
+    /** Thêm item bắt buộc có trong itemset kết quả */
+    public ItemsetConstraints include(Collection<String> items) {
+        Set<String> set = new LinkedHashSet<>(included);
+        set.addAll(items);
+        return new ItemsetConstraints(Collections.unmodifiableSet(set), excluded, minLength, maxLength);
+    }
+
+    /** Thêm item không được có trong itemset kết quả */
+    public ItemsetConstraints exclude(Collection<String> items) {
+        Set<String> set = new LinkedHashSet<>(excluded);
+        set.addAll(items);
+        return new ItemsetConstraints(included, Collections.unmodifiableSet(set), minLength, maxLength);
+    }
+
+    /** Độ dài tối thiểu của itemset kết quả (≥ 1) */
+    public ItemsetConstraints minLength(int minLength) {
+        return new ItemsetConstraints(included, excluded, Math.max(1, minLength), maxLength);
+    }
+
+    /** Độ dài tối đa của itemset kết quả */
+    public ItemsetConstraints maxLength(int maxLength) {
+        if (maxLength < 1) {
+            throw new IllegalArgumentException("maxLength must be positive: " + maxLength);
+        }
+        return new ItemsetConstraints(included, excluded, minLength, maxLength);
+    }
+
+    public Set<String> getIncluded() {
+        return included;
+    }
+
+    public Set<String> getExcluded() {
+        return excluded;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /** Không có ràng buộc nào (Top-K thông thường) */
+    public boolean isEmpty() {
+        return included.isEmpty() && excluded.isEmpty() && minLength <= 1 && maxLength == Integer.MAX_VALUE;
+    }
+
+    /** Không có itemset nào thỏa được (item vừa bắt buộc vừa bị loại, hoặc min > max) */
+    public boolean isUnsatisfiable() {
+        if (minLength > maxLength || included.size() > maxLength) {
+            return true;
+        }
+        for (String item : included) {
+            if (excluded.contains(item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Item bị loại: không cần xét mọi itemset chứa item này */
+    public boolean excludes(String item) {
+        return excluded.contains(item);
+    }
+
+    /** Item bắt buộc */
+    public boolean includes(String item) {
+        return included.contains(item);
+    }
+
+    /** Itemset thỏa mọi ràng buộc (được vào Top-K) */
+    public boolean accepts(Collection<String> itemset) {
+        if (itemset.size() < minLength || itemset.size() > maxLength) {
+            return false;
+        }
+        for (String item : itemset) {
+            if (excluded.contains(item)) {
+                return false;
+            }
+        }
+        return itemset.containsAll(included);
+    }
+
+    /** Số item bắt buộc chưa có trong itemset */
+    public int missing(Collection<String> itemset) {
+        int n = 0;
+        for (String item : included) {
+            if (!itemset.contains(item)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Itemset cộng các item bắt buộc còn thiếu. Mọi tập cha của itemset thỏa ràng buộc đều chứa
+     * tập này nên có ES không lớn hơn ES của nó: ES(completion) < minES thì bỏ cả nhánh.
+     */
+    public Set<String> completion(Collection<String> itemset) {
+        Set<String> set = new TreeSet<>(itemset);
+        set.addAll(included);
+        return set;
+    }
+
+    /**
+     * Số item bắt buộc trong từng hậu tố của danh sách mở rộng:
+     * kết quả[j] = số item bắt buộc trong items[j..] (kết quả có items.size() + 1 phần tử).
+     */
+    public int[] includedInSuffix(List<String> items) {
+        int[] counts = new int[items.size() + 1];
+        if (included.isEmpty()) {
+            return counts;
+        }
+        for (int j = items.size() - 1; j >= 0; j--) {
+            counts[j] = counts[j + 1] + (included.contains(items.get(j)) ? 1 : 0);
+        }
+        return counts;
+    }
+
+    /**
+     * Có tập cha nào của itemset (chỉ thêm item từ phần còn lại) thỏa ràng buộc không.
+     *
+     * @param itemset           itemset hiện tại
+     * @param remaining         số item còn có thể thêm
+     * @param includedRemaining số item bắt buộc trong phần còn lại
+     */
+    public boolean canExtend(Collection<String> itemset, int remaining, int includedRemaining) {
+        return itemset.size() < maxLength
+                && itemset.size() + remaining >= minLength
+                && missing(itemset) <= includedRemaining;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "none";
+        }
+        StringBuilder sb = new StringBuilder();
+        if (!included.isEmpty()) sb.append("include=").append(included).append(' ');
+        if (!excluded.isEmpty()) sb.append("exclude=").append(excluded).append(' ');
+        if (minLength > 1) sb.append("minLength=").append(minLength).append(' ');
+        if (maxLength != Integer.MAX_VALUE) sb.append("maxLength=").append(maxLength).append(' ');
+        return sb.toString().trim();
+    }
+}
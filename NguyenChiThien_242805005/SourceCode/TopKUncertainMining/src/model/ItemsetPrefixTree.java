@@ -0,0 +1,120 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Cây tiền tố lưu các itemset bằng mảng nguyên thủy song song: mỗi nút là một itemset, gồm
+ * nút cha (itemset bỏ item cuối) và item cuối. Các itemset có chung tiền tố dùng chung các nút,
+ * nên một itemset chỉ tốn một nút (12 byte) thay vì một Set<String>.
+ *
+ * Nút được đếm tham chiếu: người tạo nút giữ một tham chiếu, mỗi nút con và mỗi nơi giữ nút
+ * (vd: heap Top-K) giữ thêm một. Nút về 0 tham chiếu được trả vào danh sách rỗng để dùng lại và
+ * nhả tham chiếu tới nút cha, nên số nút sống chỉ phụ thuộc vào các itemset còn được giữ.
+ */
+
+public class ItemsetPrefixTree {
+
+    /** Cha của các itemset một phần tử */
+    public static final int ROOT = -1;
+
+    private int[] parent;
+    private int[] item;
+    private int[] refs;
+
+    /** Số ô đã dùng (kể cả ô trong danh sách rỗng) */
+    private int used;
+
+    /** Đầu danh sách ô rỗng (nối qua parent[]), -1 nếu rỗng */
+    private int freeHead = -1;
+
+    /** Số nút đang sống */
+    private int live;
+
+    public ItemsetPrefixTree(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        parent = new int[capacity];
+        item = new int[capacity];
+        refs = new int[capacity];
+    }
+
+    /**
+     * Tạo nút cho itemset = itemset của parentNode ∪ {itemId}. Người gọi giữ một tham chiếu
+     * và phải release() khi không dùng nữa.
+     */
+    public int add(int parentNode, int itemId) {
+        int node;
+        if (freeHead >= 0) {
+            node = freeHead;
+            freeHead = parent[node];
+        } else {
+            if (used == parent.length) {
+                int capacity = parent.length + (parent.length >> 1);
+                parent = Arrays.copyOf(parent, capacity);
+                item = Arrays.copyOf(item, capacity);
+                refs = Arrays.copyOf(refs, capacity);
+            }
+            node = used++;
+        }
+        parent[node] = parentNode;
+        item[node] = itemId;
+        refs[node] = 1;
+        if (parentNode != ROOT) {
+            refs[parentNode]++;
+        }
+        live++;
+        return node;
+    }
+
+    /** Thêm một tham chiếu tới nút */
+    public void retain(int node) {
+        refs[node]++;
+    }
+
+    /** Nhả một tham chiếu; nút về 0 được giải phóng và nhả tiếp nút cha */
+    public void release(int node) {
+        while (node != ROOT && --refs[node] == 0) {
+            int p = parent[node];
+            parent[node] = freeHead;
+            freeHead = node;
+            live--;
+            node = p;
+        }
+    }
+
+    public int getParent(int node) {
+        return parent[node];
+    }
+
+    public int getItem(int node) {
+        return item[node];
+    }
+
+    /** Số item của itemset */
+    public int length(int node) {
+        int n = 0;
+        for (int x = node; x != ROOT; x = parent[x]) {
+            n++;
+        }
+        return n;
+    }
+
+    /** Các item id của itemset, theo thứ tự từ gốc xuống */
+    public int[] items(int node) {
+        int[] ids = new int[length(node)];
+        int i = ids.length;
+        for (int x = node; x != ROOT; x = parent[x]) {
+            ids[--i] = item[x];
+        }
+        return ids;
+    }
+
+    /** Số nút đang sống */
+    public int getLiveNodes() {
+        return live;
+    }
+
+    /** Bộ nhớ của các mảng (byte) */
+    public long getBytes() {
+        return (long) parent.length * 3 * Integer.BYTES;
+    }
+}
@@ -0,0 +1,106 @@
+package model;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Top-K cho K lớn (10^5 – 10^6) với bộ nhớ giới hạn: mỗi itemset là một nút của ItemsetPrefixTree
+ * (item cuối + nút cha), heap là DaryMinHeap trên mảng ES / nút. Không có đối tượng Itemset,
+ * Set<String> hay Double nào được tạo trong lúc khai thác; khoảng 24 byte mỗi phần tử
+ * (heap 12 + nút 12) cộng các nút tiền tố dùng chung.
+ *
+ * Nút bị đẩy ra khỏi heap được nhả ngay nên cây chỉ giữ các itemset đang nằm trong Top-K và
+ * các tiền tố của chúng (cộng đường DFS hiện tại do bộ khai thác giữ).
+ */
+
+public class LargeTopK {
+
+    private final int k;
+    private final DaryMinHeap heap;
+    private final ItemsetPrefixTree tree;
+
+    public LargeTopK(int k) {
+        this.k = k;
+        int initial = Math.min(k, 1 << 16);
+        this.heap = new DaryMinHeap(initial);
+        this.tree = new ItemsetPrefixTree(initial);
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public ItemsetPrefixTree getTree() {
+        return tree;
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    public boolean isFull() {
+        return heap.size() >= k;
+    }
+
+    /** Ngưỡng hiện tại: ES nhỏ nhất trong Top-K khi đã đủ K, ngược lại 0 */
+    public double getMinES() {
+        return isFull() ? heap.peekKey() : 0.0;
+    }
+
+    /**
+     * Đưa itemset (nút của cây) vào Top-K; heap giữ thêm một tham chiếu tới nút nếu được nhận.
+     * Khi đã đủ K, chỉ nhận itemset có ES lớn hơn hẳn phần tử nhỏ nhất (như các bộ khai thác khác).
+     *
+     * @return true nếu itemset được nhận
+     */
+    public boolean offer(int node, double es) {
+        if (heap.size() < k) {
+            tree.retain(node);
+            heap.add(es, node);
+            return true;
+        }
+        if (k == 0 || es <= heap.peekKey()) {
+            return false;
+        }
+        tree.retain(node);
+        tree.release(heap.replaceMin(es, node));
+        return true;
+    }
+
+    /** ES của phần tử thứ i (thứ tự heap, không sắp xếp) */
+    public double getExpectedSupport(int i) {
+        return heap.keyAt(i);
+    }
+
+    /** Nút của phần tử thứ i (thứ tự heap, không sắp xếp) */
+    public int getNode(int i) {
+        return heap.valueAt(i);
+    }
+
+    /** Tên các item của phần tử thứ i, sắp theo tên như Itemset */
+    public SortedSet<String> getItems(int i, IntFunction<String> names) {
+        SortedSet<String> items = new TreeSet<>();
+        for (int x = heap.valueAt(i); x != ItemsetPrefixTree.ROOT; x = tree.getParent(x)) {
+            items.add(names.apply(tree.getItem(x)));
+        }
+        return items;
+    }
+
+    /**
+     * Chuyển sang danh sách Itemset theo ES giảm dần (để so sánh với các bộ khai thác khác;
+     * với K rất lớn nên ghi thẳng ra file bằng dal.SortedItemsetWriter)
+     */
+    public List<Itemset> toItemsets(IntFunction<String> names) {
+        List<Itemset> result = new ArrayList<>(heap.size());
+        for (int i = 0; i < heap.size(); i++) {
+            result.add(new Itemset(getItems(i, names), heap.keyAt(i)));
+        }
+        result.sort((a, b) -> Double.compare(b.getExpectedSupport(), a.getExpectedSupport()));
+        return result;
+    }
+
+    /** Bộ nhớ của heap và cây (byte) */
+    public long getBytes() {
+        return heap.getBytes() + tree.getBytes();
+    }
+}
@@ -0,0 +1,75 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Lưu trữ giao dịch dạng CSR trên vùng nhớ ánh xạ từ file nhị phân (xem dal.BinaryDataset):
+ *  - offsets[t] .. offsets[t+1] là vị trí các cặp (item, xác suất) của giao dịch t
+ *  - items / probs là hai cột liền nhau của toàn bộ cặp; xác suất có thể lưu dạng double
+ *    hoặc dạng mã 8/16 bit giải mã bằng bảng tra (ProbabilityCodec)
+ *
+ * Dữ liệu nằm ngoài heap, trong page cache của hệ điều hành nên được dùng chung
+ * giữa các tiến trình cùng mở một file.
+ */
+
+public class MappedTransactionStore implements TransactionStore {
+
+    private final LongBuffer offsets;
+    private final IntBuffer items;
+    private final DoubleBuffer probs;
+    private final ByteBuffer codes8;
+    private final ShortBuffer codes16;
+    private final double[] lut;
+    private final int size;
+
+    public MappedTransactionStore(LongBuffer offsets, IntBuffer items, DoubleBuffer probs) {
+        this(offsets, items, probs, null, null, null);
+    }
+
+    /**
+     * Xác suất lượng tử hóa: đúng một trong codes8 / codes16 khác null
+     */
+    public MappedTransactionStore(LongBuffer offsets, IntBuffer items,
+                                  ByteBuffer codes8, ShortBuffer codes16, double[] lut) {
+        this(offsets, items, null, codes8, codes16, lut);
+    }
+
+    private MappedTransactionStore(LongBuffer offsets, IntBuffer items, DoubleBuffer probs,
+                                   ByteBuffer codes8, ShortBuffer codes16, double[] lut) {
+        this.offsets = offsets;
+        this.items = items;
+        this.probs = probs;
+        this.codes8 = codes8;
+        this.codes16 = codes16;
+        this.lut = lut;
+        this.size = offsets.limit() - 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int length(int t) {
+        return (int) (offsets.get(t + 1) - offsets.get(t));
+    }
+
+    @Override
+    public int itemAt(int t, int j) {
+        return items.get((int) offsets.get(t) + j);
+    }
+
+    @Override
+    public double probAt(int t, int j) {
+        int e = (int) offsets.get(t) + j;
+        if (probs != null) {
+            return probs.get(e);
+        }
+        return codes8 != null ? lut[codes8.get(e) & 0xFF] : lut[codes16.get(e) & 0xFFFF];
+    }
+}
@@ -0,0 +1,123 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Lưu trữ giao dịch dạng CSR ngoài heap, trong các direct buffer cấp phát một lần:
+ *  - offsets[t] .. offsets[t+1] là vị trí các cặp (item, xác suất) của giao dịch t
+ *  - items / probs là hai cột của toàn bộ cặp
+ *
+ * Mỗi cột được chia thành các đoạn CHUNK_ENTRIES phần tử (một direct buffer phải nhỏ hơn 2 GB).
+ * Trên heap chỉ còn các đối tượng buffer, nên kích thước dataset không ảnh hưởng tới GC.
+ * Vùng nhớ được trả lại khi store không còn được tham chiếu (Cleaner của direct buffer).
+ *
+ * Cùng vai trò với MappedTransactionStore nhưng không cần file: dùng cho dữ liệu đọc từ
+ * file văn bản hoặc sinh trong bộ nhớ.
+ */
+
+public class OffHeapTransactionStore implements TransactionStore {
+
+    /** Số phần tử mỗi đoạn: 2^26 (256 MB cho int, 512 MB cho long / double) */
+    private static final int CHUNK_SHIFT = 26;
+    private static final int CHUNK_ENTRIES = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_ENTRIES - 1;
+
+    private final LongBuffer[] offsets;
+    private final IntBuffer[] items;
+    private final DoubleBuffer[] probs;
+    private final int size;
+
+    private OffHeapTransactionStore(LongBuffer[] offsets, IntBuffer[] items, DoubleBuffer[] probs, int size) {
+        this.offsets = offsets;
+        this.items = items;
+        this.probs = probs;
+        this.size = size;
+    }
+
+    /**
+     * Sao chép một store (thường là trên heap) ra ngoài heap.
+     * Store nguồn có thể được giải phóng ngay sau đó.
+     */
+    public static OffHeapTransactionStore copyOf(TransactionStore src) {
+        int n = src.size();
+        long entryCount = 0;
+        for (int t = 0; t < n; t++) {
+            entryCount += src.length(t);
+        }
+
+        LongBuffer[] offsets = new LongBuffer[chunks(n + 1L)];
+        for (int c = 0; c < offsets.length; c++) {
+            offsets[c] = allocate(chunkLength(n + 1L, c), Long.BYTES).asLongBuffer();
+        }
+        IntBuffer[] items = new IntBuffer[chunks(entryCount)];
+        DoubleBuffer[] probs = new DoubleBuffer[items.length];
+        for (int c = 0; c < items.length; c++) {
+            int len = chunkLength(entryCount, c);
+            items[c] = allocate(len, Integer.BYTES).asIntBuffer();
+            probs[c] = allocate(len, Double.BYTES).asDoubleBuffer();
+        }
+
+        long e = 0;
+        offsets[0].put(0, 0L);
+        for (int t = 0; t < n; t++) {
+            for (int j = 0; j < src.length(t); j++, e++) {
+                items[(int) (e >>> CHUNK_SHIFT)].put((int) (e & CHUNK_MASK), src.itemAt(t, j));
+                probs[(int) (e >>> CHUNK_SHIFT)].put((int) (e & CHUNK_MASK), src.probAt(t, j));
+            }
+            long pos = t + 1L;
+            offsets[(int) (pos >>> CHUNK_SHIFT)].put((int) (pos & CHUNK_MASK), e);
+        }
+        return new OffHeapTransactionStore(offsets, items, probs, n);
+    }
+
+    private static int chunks(long count) {
+        return (int) Math.max(1, (count + CHUNK_ENTRIES - 1) >>> CHUNK_SHIFT);
+    }
+
+    private static int chunkLength(long count, int chunk) {
+        return (int) Math.min(CHUNK_ENTRIES, count - ((long) chunk << CHUNK_SHIFT));
+    }
+
+    private static ByteBuffer allocate(int length, int elementBytes) {
+        return ByteBuffer.allocateDirect(Math.max(0, length) * elementBytes).order(ByteOrder.nativeOrder());
+    }
+
+    private long offset(long t) {
+        return offsets[(int) (t >>> CHUNK_SHIFT)].get((int) (t & CHUNK_MASK));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int length(int t) {
+        return (int) (offset(t + 1L) - offset(t));
+    }
+
+    @Override
+    public int itemAt(int t, int j) {
+        long e = offset(t) + j;
+        return items[(int) (e >>> CHUNK_SHIFT)].get((int) (e & CHUNK_MASK));
+    }
+
+    @Override
+    public double probAt(int t, int j) {
+        long e = offset(t) + j;
+        return probs[(int) (e >>> CHUNK_SHIFT)].get((int) (e & CHUNK_MASK));
+    }
+
+    /** Số byte ngoài heap đã cấp phát */
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (LongBuffer b : offsets) bytes += (long) b.capacity() * Long.BYTES;
+        for (IntBuffer b : items) bytes += (long) b.capacity() * Integer.BYTES;
+        for (DoubleBuffer b : probs) bytes += (long) b.capacity() * Double.BYTES;
+        return bytes;
+    }
+}
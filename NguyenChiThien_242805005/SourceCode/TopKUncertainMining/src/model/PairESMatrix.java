@@ -0,0 +1,188 @@
+package model;
+
+/**
+ * Ma trận ES của các cặp item, tính một lần duyệt trên toàn bộ giao dịch, dùng làm phép cắt tỉa
+ * rẻ trước khi xét một phần mở rộng: mọi itemset chứa cặp {a, b} đều có ES ≤ ES({a, b}), nên
+ * ứng viên có một cặp với ES < minES bị bỏ mà không cần duyệt giao dịch.
+ *
+ * Bộ nhớ được giới hạn bằng một ngưỡng gieo sẵn (seeded threshold) θ = ES lớn thứ K trong các
+ * item đơn. Đây là cận dưới của minES cuối cùng (mỗi item đơn cũng là một itemset), nên item
+ * có ES < θ không nằm trong itemset nào của Top-K. Ma trận chỉ lưu cặp của các item có ES ≥ θ,
+ * tức m item đầu của thứ tự ES giảm dần, ở dạng tam giác double[m(m-1)/2]; m còn bị chặn bởi
+ * số cặp tối đa. Cặp có item ngoài ma trận trả về cận của item đơn min(ES(a), ES(b)).
+ *
+ * Cận trả về luôn đúng (không nhỏ hơn ES thật) với mọi minES, kể cả khi truy vấn có ràng buộc.
+ * Vì vậy ma trận dựng cho K lớn (θ nhỏ, nhiều item) dùng được cho mọi K nhỏ hơn: mỗi
+ * PreparedDatabase giữ một ma trận (getPairMatrix) dùng chung cho mọi thuật toán và truy vấn.
+ * Tắt bằng -Dtopk.pairs=false.
+ */
+
+public class PairESMatrix {
+
+    /** Dùng ma trận cặp trong các thuật toán (mặc định bật) */
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("topk.pairs", "true"));
+
+    /** Số cặp tối đa mặc định: 4M cặp = 32 MB */
+    public static final long DEFAULT_MAX_PAIRS = 1L << 22;
+
+    private final PreparedDatabase prepared;
+
+    /** Ngưỡng gieo sẵn θ */
+    private final double threshold;
+
+    /** Số item (theo rank) có trong ma trận: rank [0, size) */
+    private final int size;
+
+    /** Số cặp tối đa khi dựng */
+    private final long maxPairs;
+
+    /** ES của cặp rank (i, j), i < j, ở vị trí j(j-1)/2 + i */
+    private final double[] pairES;
+
+    private PairESMatrix(PreparedDatabase prepared, double threshold, long maxPairs, int size, double[] pairES) {
+        this.prepared = prepared;
+        this.threshold = threshold;
+        this.maxPairs = maxPairs;
+        this.size = size;
+        this.pairES = pairES;
+    }
+
+    /** Ma trận cho truy vấn Top-K với ngưỡng gieo sẵn và số cặp mặc định */
+    public static PairESMatrix build(PreparedDatabase prepared, int k) {
+        return build(prepared, seedThreshold(prepared, k), DEFAULT_MAX_PAIRS);
+    }
+
+    /**
+     * ES lớn thứ K trong các item đơn: minES cuối cùng của Top-K không nhỏ hơn giá trị này
+     *
+     * @return ngưỡng, 0 nếu dataset có ít hơn K item
+     */
+    public static double seedThreshold(PreparedDatabase prepared, int k) {
+        int[] order = prepared.getRankOrder();
+        if (k <= 0 || k > order.length) {
+            return 0.0;
+        }
+        return prepared.getItemES(order[k - 1]);
+    }
+
+    /**
+     * Dựng ma trận trong một lần duyệt giao dịch
+     *
+     * @param threshold chỉ lưu cặp của các item có ES ≥ threshold (và ES > 0)
+     * @param maxPairs  số cặp tối đa được lưu
+     */
+    public static PairESMatrix build(PreparedDatabase prepared, double threshold, long maxPairs) {
+        int m = size(prepared, threshold, maxPairs);
+
+        double[] pairES = new double[(int) ((long) m * (m - 1) / 2)];
+        if (m > 1) {
+            TransactionStore store = prepared.getStore();
+            int[] ranks = new int[16];
+            double[] probs = new double[16];
+            for (int t = 0; t < store.size(); t++) {
+                int len = store.length(t);
+                if (len > ranks.length) {
+                    ranks = new int[len];
+                    probs = new double[len];
+                }
+                int n = 0;
+                for (int j = 0; j < len; j++) {
+                    int r = prepared.getRank(store.itemAt(t, j));
+                    if (r < m) {
+                        ranks[n] = r;
+                        probs[n++] = store.probAt(t, j);
+                    }
+                }
+                for (int a = 1; a < n; a++) {
+                    int ra = ranks[a];
+                    double pa = probs[a];
+                    for (int b = 0; b < a; b++) {
+                        pairES[index(ra, ranks[b])] += pa * probs[b];
+                    }
+                }
+            }
+        }
+        return new PairESMatrix(prepared, threshold, maxPairs, m, pairES);
+    }
+
+    /** Số item đầu (theo rank) của ma trận dựng với threshold và maxPairs */
+    private static int size(PreparedDatabase prepared, double threshold, long maxPairs) {
+        int[] order = prepared.getRankOrder();
+        int m = 0;
+        while (m < order.length) {
+            double es = prepared.getItemES(order[m]);
+            if (es <= 0 || es < threshold || (long) (m + 1) * m / 2 > maxPairs) {
+                break;
+            }
+            m++;
+        }
+        return m;
+    }
+
+    /** Ma trận đã chứa mọi item mà ma trận dựng cho Top-K này cần (nên không phải dựng lại) */
+    public boolean covers(int k) {
+        return size >= size(prepared, seedThreshold(prepared, k), maxPairs);
+    }
+
+    private static int index(int ra, int rb) {
+        return ra > rb ? ra * (ra - 1) / 2 + rb : rb * (rb - 1) / 2 + ra;
+    }
+
+    /**
+     * Cận trên ES của mọi itemset chứa cả hai item (theo id): ES chính xác của cặp nếu cả hai
+     * nằm trong ma trận, ngược lại min(ES(a), ES(b))
+     */
+    public double upperBound(int a, int b) {
+        int ra = prepared.getRank(a);
+        int rb = prepared.getRank(b);
+        if (ra < size && rb < size && ra != rb) {
+            return pairES[index(ra, rb)];
+        }
+        return Math.min(prepared.getItemES(a), prepared.getItemES(b));
+    }
+
+    /** Như upperBound(int, int) nhưng theo tên item; 0 nếu có item không có trong dataset */
+    public double upperBound(String a, String b) {
+        int ia = prepared.getItemId(a);
+        int ib = prepared.getItemId(b);
+        if (ia < 0 || ib < 0) {
+            return 0.0;
+        }
+        return upperBound(ia, ib);
+    }
+
+    /**
+     * Có cặp (item, x) nào với x trong itemset mà cận ES < minES không
+     * (khi đó mọi itemset chứa itemset ∪ {item} đều có ES < minES)
+     */
+    public boolean prunes(Iterable<String> itemset, String item, double minES) {
+        if (minES <= 0) {
+            return false;
+        }
+        int id = prepared.getItemId(item);
+        if (id < 0) {
+            return false;
+        }
+        for (String other : itemset) {
+            int o = prepared.getItemId(other);
+            if (o >= 0 && o != id && upperBound(o, id) < minES) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /** Số item (theo rank ES giảm dần) có ES cặp chính xác trong ma trận */
+    public int getSize() {
+        return size;
+    }
+
+    /** Bộ nhớ của ma trận (byte) */
+    public long getBytes() {
+        return (long) pairES.length * Double.BYTES;
+    }
+}
@@ -0,0 +1,350 @@
+package model;
+
+import java.util.*;
+
+/**
+ * Cơ sở dữ liệu không chắc chắn đã được tiền xử lý một lần, dùng chung cho mọi thuật toán.
+ *
+ * Gồm:
+ *  - Từ điển item (id → tên) và các giao dịch đã mã hóa (TransactionStore)
+ *  - ES của từng item đơn
+ *  - Thứ tự item theo ES giảm dần (rank order)
+ *  - Danh sách TID của từng item, kèm xác suất tương ứng
+ *  - Các thống kê tóm tắt: số giao dịch, số item, độ dài trung bình, tỉ lệ lấp đầy
+ *
+ * Đối tượng không thay đổi sau khi tạo; các mảng trả về chỉ được đọc, không được sửa.
+ */
+
+public class PreparedDatabase {
+
+    /** Tên item theo id */
+    private final String[] itemNames;
+
+    /** Tên item → id */
+    private final Map<String, Integer> itemIds;
+
+    /** Giao dịch đã mã hóa */
+    private final TransactionStore store;
+
+    /** ES của từng item đơn, theo id */
+    private final double[] itemES;
+
+    /** Item id sắp theo ES giảm dần */
+    private final int[] rankOrder;
+
+    /** Vị trí của item trong rankOrder, theo id */
+    private final int[] rankOf;
+
+    /** Danh sách TID tăng dần của từng item, theo id */
+    private final int[][] tidLists;
+
+    /** Xác suất của item trong từng giao dịch của tidLists */
+    private final double[][] tidProbs;
+
+    /** Tổng số cặp (item, xác suất) */
+    private final long entryCount;
+
+    /** Độ dài giao dịch lớn nhất */
+    private final int maxLength;
+
+    /** Danh sách giao dịch dạng Transaction, tạo khi cần cho các thuật toán dùng Map */
+    private volatile List<Transaction> transactions;
+
+    /** ES của các cặp item, dựng khi cần (getPairMatrix) */
+    private volatile PairESMatrix pairMatrix;
+
+    /** Ánh xạ về id / TID gốc nếu dataset đã được sắp xếp lại (DatabasePreparer.reorder), ngược lại null */
+    private Renumbering renumbering;
+
+    public PreparedDatabase(String[] itemNames, TransactionStore store, double[] itemES,
+                            int[] rankOrder, int[][] tidLists, double[][] tidProbs,
+                            long entryCount, int maxLength, List<Transaction> transactions) {
+        this.itemNames = itemNames;
+        this.store = store;
+        this.itemES = itemES;
+        this.rankOrder = rankOrder;
+        this.tidLists = tidLists;
+        this.tidProbs = tidProbs;
+        this.entryCount = entryCount;
+        this.maxLength = maxLength;
+        this.transactions = transactions == null ? null : Collections.unmodifiableList(transactions);
+
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < itemNames.length; i++) {
+            ids.put(itemNames[i], i);
+        }
+        this.itemIds = Collections.unmodifiableMap(ids);
+
+        this.rankOf = new int[itemNames.length];
+        for (int r = 0; r < rankOrder.length; r++) {
+            rankOf[rankOrder[r]] = r;
+        }
+    }
+
+    // =====================================================================
+    // Từ điển item
+    // =====================================================================
+
+    public int getItemCount() {
+        return itemNames.length;
+    }
+
+    public String getItemName(int id) {
+        return itemNames[id];
+    }
+
+    /** @return id của item, hoặc -1 nếu item không có trong dataset */
+    public int getItemId(String name) {
+        Integer id = itemIds.get(name);
+        return id == null ? -1 : id;
+    }
+
+    // =====================================================================
+    // Giao dịch
+    // =====================================================================
+
+    public TransactionStore getStore() {
+        return store;
+    }
+
+    public int getTransactionCount() {
+        return store.size();
+    }
+
+    /**
+     * Danh sách giao dịch dạng Transaction (item tên → xác suất).
+     * Nếu dataset được tạo trực tiếp từ dữ liệu mã hóa thì danh sách được dựng ở lần gọi đầu.
+     */
+    public List<Transaction> getTransactions() {
+        List<Transaction> result = transactions;
+        if (result == null) {
+            synchronized (this) {
+                result = transactions;
+                if (result == null) {
+                    List<Transaction> built = new ArrayList<>(store.size());
+                    for (int t = 0; t < store.size(); t++) {
+                        built.add(transactionAt(t));
+                    }
+                    result = Collections.unmodifiableList(built);
+                    transactions = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ma trận ES cặp item cho truy vấn Top-K, dựng ở lần gọi đầu rồi dùng chung cho mọi thuật toán,
+     * mọi K và mọi truy vấn. Ma trận dựng cho K lớn hơn vẫn đúng cho K nhỏ hơn, nên chỉ dựng lại
+     * khi K cần nhiều item hơn ma trận hiện có (giữ ma trận của K lớn nhất đã gặp).
+     */
+    public PairESMatrix getPairMatrix(int k) {
+        PairESMatrix result = pairMatrix;
+        if (result == null || !result.covers(k)) {
+            synchronized (this) {
+                result = pairMatrix;
+                if (result == null || !result.covers(k)) {
+                    result = PairESMatrix.build(this, k);
+                    pairMatrix = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Bản sao dùng chung store và TID list, nhưng getTransactions() không giữ các Map trên heap:
+     * mỗi lần get(t) dựng Transaction mới từ store. Dùng khi store nằm ngoài heap
+     * (OffHeapTransactionStore, MappedTransactionStore) để heap chỉ còn dữ liệu tạm của thuật toán.
+     */
+    public PreparedDatabase withTransactionView() {
+        PreparedDatabase view = new PreparedDatabase(itemNames, store, itemES, rankOrder,
+                tidLists, tidProbs, entryCount, maxLength, null);
+        view.transactions = view.new TransactionView();
+        view.renumbering = renumbering;
+        return view;
+    }
+
+    /**
+     * Bản sao dùng chung mọi dữ liệu, kèm ánh xạ về id / TID gốc (dùng bởi DatabasePreparer.reorder)
+     */
+    public PreparedDatabase withRenumbering(Renumbering renumbering) {
+        PreparedDatabase copy = new PreparedDatabase(itemNames, store, itemES, rankOrder,
+                tidLists, tidProbs, entryCount, maxLength, transactions);
+        copy.renumbering = renumbering;
+        return copy;
+    }
+
+    /** Ánh xạ về id / TID gốc, null nếu item và giao dịch giữ thứ tự gốc */
+    public Renumbering getRenumbering() {
+        return renumbering;
+    }
+
+    /**
+     * Danh sách Transaction dùng cho cả một lần khai thác. Với bản sao của withTransactionView(),
+     * các giao dịch được dựng một lần vào danh sách riêng của người gọi (thuật toán duyệt DB nhiều lần
+     * nên không dựng lại mỗi lần truy cập); danh sách được giải phóng cùng thuật toán.
+     */
+    public List<Transaction> materializeTransactions() {
+        List<Transaction> result = getTransactions();
+        return result instanceof TransactionView ? new ArrayList<>(result) : result;
+    }
+
+    private Transaction transactionAt(int t) {
+        Map<String, Double> items = new LinkedHashMap<>();
+        for (int j = 0; j < store.length(t); j++) {
+            items.put(itemNames[store.itemAt(t, j)], store.probAt(t, j));
+        }
+        return new Transaction(items);
+    }
+
+    /** Danh sách giao dịch chỉ đọc, dựng từng Transaction khi được truy cập */
+    private class TransactionView extends AbstractList<Transaction> implements RandomAccess {
+
+        @Override
+        public Transaction get(int t) {
+            return transactionAt(t);
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+    }
+
+    // =====================================================================
+    // ES và thứ tự item
+    // =====================================================================
+
+    public double getItemES(int id) {
+        return itemES[id];
+    }
+
+    /** @return ES của item theo tên, 0 nếu item không có trong dataset */
+    public double getItemES(String name) {
+        int id = getItemId(name);
+        return id < 0 ? 0.0 : itemES[id];
+    }
+
+    /** Item id theo ES giảm dần */
+    public int[] getRankOrder() {
+        return rankOrder;
+    }
+
+    /** Vị trí của item trong thứ tự ES giảm dần */
+    public int getRank(int id) {
+        return rankOf[id];
+    }
+
+    /** Tên item theo ES giảm dần (danh sách mới, có thể sửa) */
+    public List<String> getRankedItems() {
+        List<String> items = new ArrayList<>(rankOrder.length);
+        for (int id : rankOrder) {
+            items.add(itemNames[id]);
+        }
+        return items;
+    }
+
+    // =====================================================================
+    // Danh sách TID
+    // =====================================================================
+
+    /** Các TID (tăng dần) của giao dịch chứa item */
+    public int[] getTidList(int id) {
+        return tidLists[id];
+    }
+
+    /** Xác suất của item trong từng giao dịch của getTidList(id) */
+    public double[] getTidProbs(int id) {
+        return tidProbs[id];
+    }
+
+    /**
+     * Danh sách TID ngắn nhất trong các item của itemset. ES của itemset chỉ khác 0
+     * trên các giao dịch này nên chỉ cần duyệt chúng.
+     *
+     * @return mảng TID tăng dần, rỗng nếu itemset rỗng hoặc có item không tồn tại
+     */
+    public int[] getShortestTidList(Collection<String> items) {
+        int[] best = null;
+        for (String name : items) {
+            int id = getItemId(name);
+            if (id < 0) {
+                return new int[0];
+            }
+            if (best == null || tidLists[id].length < best.length) {
+                best = tidLists[id];
+            }
+        }
+        return best == null ? new int[0] : best;
+    }
+
+    /**
+     * ES chính xác của một itemset. Chỉ duyệt các giao dịch của item hiếm nhất; xác suất của
+     * các item còn lại lấy từ TID list của chúng (con trỏ tiến dần vì TID tăng dần).
+     * Tích được nhân theo thứ tự duyệt của itemset.
+     *
+     * @return ES, 0 nếu itemset rỗng hoặc có item không có trong dataset
+     */
+    public double expectedSupport(Collection<String> itemset) {
+        int n = itemset.size();
+        int[] ids = new int[n];
+        int i = 0;
+        for (String item : itemset) {
+            ids[i] = getItemId(item);
+            if (ids[i++] < 0) {
+                return 0.0;
+            }
+        }
+
+        double sum = 0.0;
+        int[] cursor = new int[n];
+        for (int tid : getShortestTidList(itemset)) {
+            double p = 1.0;
+            for (i = 0; i < n; i++) {
+                int[] list = tidLists[ids[i]];
+                int c = cursor[i];
+                while (c < list.length && list[c] < tid) {
+                    c++;
+                }
+                cursor[i] = c;
+                if (c == list.length || list[c] != tid) {
+                    p = 0.0;
+                    break;
+                }
+                p *= tidProbs[ids[i]][c];
+            }
+            sum += p;
+        }
+        return sum;
+    }
+
+    // =====================================================================
+    // Thống kê
+    // =====================================================================
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /** Mật độ = tổng số item / số giao dịch (độ dài giao dịch trung bình) */
+    public double getAverageLength() {
+        return store.size() == 0 ? 0.0 : (double) entryCount / store.size();
+    }
+
+    /** Tỉ lệ lấp đầy = số cặp (item, xác suất) / (số giao dịch × số item) */
+    public double getFillRatio() {
+        double cells = (double) store.size() * itemNames.length;
+        return cells == 0 ? 0.0 : entryCount / cells;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PreparedDatabase[transactions=%d, items=%d, avgLength=%.2f, fill=%.4f]",
+                getTransactionCount(), getItemCount(), getAverageLength(), getFillRatio());
+    }
+}
@@ -0,0 +1,175 @@
+package model;
+
+import java.util.*;
+
+/**
+ * Mã hóa xác suất thành mã 8 bit hoặc 16 bit, giải mã bằng bảng tra (LUT).
+ *
+ * Hai cách dựng bảng:
+ *  - Từ điển: nếu số giá trị xác suất khác nhau không vượt quá số mã (vd: DatasetGenerator
+ *    làm tròn 2 chữ số thập phân → khoảng 100 giá trị), mỗi giá trị có một mã riêng, không mất mát
+ *  - Fixed-point: ngược lại, mã c ∈ [1, 2^bits - 1] ứng với c / (2^bits - 1) × maxProb;
+ *    xác suất > 0 luôn có mã ≥ 1 để item không "biến mất" khỏi giao dịch
+ *
+ * Mã 0 luôn giải mã thành 0. Việc cộng ES vẫn làm trên double, chỉ phần lưu trữ bị lượng tử hóa.
+ */
+
+public class ProbabilityCodec {
+
+    private final int bits;
+    private final double[] lut;
+    private final boolean lossless;
+
+    /** Thống kê sai số trên dữ liệu dùng để dựng bảng */
+    private double maxAbsError;
+    private double meanAbsError;
+    private double maxItemESError;
+    private int distinctValues;
+
+    /** Xác suất dương nhỏ nhất của dữ liệu dựng bảng (0 nếu không biết, vd: bảng đọc lại từ file) */
+    private double minPositive;
+
+    private ProbabilityCodec(int bits, double[] lut, boolean lossless) {
+        this.bits = bits;
+        this.lut = lut;
+        this.lossless = lossless;
+    }
+
+    /** Bảng mã đọc lại từ file (không có báo cáo sai số) */
+    public static ProbabilityCodec fromLut(int bits, double[] lut, boolean lossless) {
+        return new ProbabilityCodec(bits, lut, lossless);
+    }
+
+    /**
+     * Dựng bảng mã cho toàn bộ xác suất của store và tính báo cáo sai số.
+     *
+     * @param store     giao dịch gốc
+     * @param itemCount số item (để tính sai số ES của từng item)
+     * @param bits      8 hoặc 16
+     */
+    public static ProbabilityCodec fit(TransactionStore store, int itemCount, int bits) {
+        if (bits != 8 && bits != 16) {
+            throw new IllegalArgumentException("Probability codes must be 8 or 16 bits: " + bits);
+        }
+        int levels = (1 << bits) - 1;
+
+        // Các giá trị khác nhau (dừng đếm khi vượt quá số mã)
+        TreeSet<Double> distinct = new TreeSet<>();
+        double maxProb = 0.0;
+        double minPositive = Double.MAX_VALUE;
+        boolean overflow = false;
+        for (int t = 0; t < store.size(); t++) {
+            for (int j = 0; j < store.length(t); j++) {
+                double p = store.probAt(t, j);
+                maxProb = Math.max(maxProb, p);
+                if (p > 0) {
+                    minPositive = Math.min(minPositive, p);
+                }
+                if (!overflow && distinct.add(p) && distinct.size() > levels) {
+                    overflow = true;
+                }
+            }
+        }
+
+        ProbabilityCodec codec;
+        if (!overflow) {
+            double[] lut = new double[distinct.size() + 1];
+            int c = 1;
+            for (double p : distinct) {
+                lut[c++] = p;
+            }
+            codec = new ProbabilityCodec(bits, lut, true);
+        } else {
+            double[] lut = new double[levels + 1];
+            for (int c = 1; c <= levels; c++) {
+                lut[c] = c * maxProb / levels;
+            }
+            codec = new ProbabilityCodec(bits, lut, false);
+        }
+        codec.distinctValues = overflow ? -1 : distinct.size();
+        codec.minPositive = minPositive == Double.MAX_VALUE ? 0.0 : minPositive;
+        codec.measure(store, itemCount);
+        return codec;
+    }
+
+    private void measure(TransactionStore store, int itemCount) {
+        double[] itemError = new double[itemCount];
+        double sum = 0.0;
+        long n = 0;
+        for (int t = 0; t < store.size(); t++) {
+            for (int j = 0; j < store.length(t); j++) {
+                double p = store.probAt(t, j);
+                double err = decode(encode(p)) - p;
+                maxAbsError = Math.max(maxAbsError, Math.abs(err));
+                sum += Math.abs(err);
+                itemError[store.itemAt(t, j)] += err;
+                n++;
+            }
+        }
+        meanAbsError = n == 0 ? 0.0 : sum / n;
+        for (double e : itemError) {
+            maxItemESError = Math.max(maxItemESError, Math.abs(e));
+        }
+    }
+
+    /** Mã của xác suất p (0 nếu p ≤ 0) */
+    public int encode(double p) {
+        if (p <= 0) {
+            return 0;
+        }
+        if (lossless) {
+            int c = Arrays.binarySearch(lut, 1, lut.length, p);
+            return c > 0 ? c : Math.max(1, Math.min(lut.length - 1, -c - 1));
+        }
+        int levels = lut.length - 1;
+        long c = Math.round(p / lut[levels] * levels);
+        return (int) Math.max(1, Math.min(levels, c));
+    }
+
+    public double decode(int code) {
+        return lut[code];
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    /** Bảng giải mã: lut[code] = xác suất, lut[0] = 0 */
+    public double[] getLut() {
+        return lut;
+    }
+
+    public boolean isLossless() {
+        return lossless;
+    }
+
+    public double getMaxAbsError() {
+        return maxAbsError;
+    }
+
+    /**
+     * Sai số tuyệt đối lớn nhất có thể của một xác suất (0 nếu không mất mát): nửa bước lượng tử,
+     * trừ khi có xác suất p nhỏ hơn nửa bước: p được làm tròn lên mã 1 nên sai số là bước − p,
+     * lớn nhất với xác suất dương nhỏ nhất (một bước nếu không biết, vd: bảng đọc lại từ file).
+     */
+    public double getErrorBound() {
+        if (lossless) {
+            return 0.0;
+        }
+        double step = lut[lut.length - 1] / (lut.length - 1);
+        return Math.max(step / 2, step - minPositive);
+    }
+
+    /**
+     * Báo cáo sai số: số giá trị khác nhau, sai số lớn nhất / trung bình của một xác suất,
+     * và sai số lớn nhất của ES item đơn.
+     */
+    public String report() {
+        if (lossless) {
+            return String.format("%d-bit dictionary codes, %d distinct probabilities, lossless", bits, distinctValues);
+        }
+        return String.format("%d-bit fixed-point codes (input has more than %d distinct probabilities): "
+                        + "max |error| = %.3g (bound %.3g), mean |error| = %.3g, max single-item ES error = %.3g",
+                bits, lut.length - 1, maxAbsError, getErrorBound(), meanAbsError, maxItemESError);
+    }
+}
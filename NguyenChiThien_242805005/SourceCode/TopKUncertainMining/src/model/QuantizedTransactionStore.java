@@ -0,0 +1,77 @@
+package model;
+
+/**
+ * Lưu trữ giao dịch dạng CSR trên heap với xác suất lượng tử hóa 8 hoặc 16 bit
+ * (xem ProbabilityCodec): mỗi cặp (item, xác suất) tốn 5 hoặc 6 byte thay vì 12 byte
+ * của ArrayTransactionStore (chưa kể phần đầu của mỗi mảng con).
+ */
+
+public class QuantizedTransactionStore implements TransactionStore {
+
+    private final int[] offsets;
+    private final int[] items;
+    private final byte[] codes8;
+    private final short[] codes16;
+    private final double[] lut;
+
+    private QuantizedTransactionStore(int[] offsets, int[] items, byte[] codes8, short[] codes16, double[] lut) {
+        this.offsets = offsets;
+        this.items = items;
+        this.codes8 = codes8;
+        this.codes16 = codes16;
+        this.lut = lut;
+    }
+
+    /**
+     * Mã hóa một store có sẵn
+     *
+     * @param src   giao dịch gốc
+     * @param codec bảng mã (ProbabilityCodec.fit)
+     */
+    public static QuantizedTransactionStore encode(TransactionStore src, ProbabilityCodec codec) {
+        int n = src.size();
+        int[] offsets = new int[n + 1];
+        for (int t = 0; t < n; t++) {
+            offsets[t + 1] = offsets[t] + src.length(t);
+        }
+        int entries = offsets[n];
+        int[] items = new int[entries];
+        byte[] codes8 = codec.getBits() == 8 ? new byte[entries] : null;
+        short[] codes16 = codec.getBits() == 16 ? new short[entries] : null;
+
+        for (int t = 0; t < n; t++) {
+            for (int j = 0; j < src.length(t); j++) {
+                int e = offsets[t] + j;
+                items[e] = src.itemAt(t, j);
+                int code = codec.encode(src.probAt(t, j));
+                if (codes8 != null) {
+                    codes8[e] = (byte) code;
+                } else {
+                    codes16[e] = (short) code;
+                }
+            }
+        }
+        return new QuantizedTransactionStore(offsets, items, codes8, codes16, codec.getLut());
+    }
+
+    @Override
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    @Override
+    public int length(int t) {
+        return offsets[t + 1] - offsets[t];
+    }
+
+    @Override
+    public int itemAt(int t, int j) {
+        return items[offsets[t] + j];
+    }
+
+    @Override
+    public double probAt(int t, int j) {
+        int e = offsets[t] + j;
+        return codes8 != null ? lut[codes8[e] & 0xFF] : lut[codes16[e] & 0xFFFF];
+    }
+}
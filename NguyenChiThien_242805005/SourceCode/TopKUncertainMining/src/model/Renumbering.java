@@ -0,0 +1,68 @@
+package model;
+
+/**
+ * Ánh xạ giữa cơ sở dữ liệu đã sắp xếp lại (DatabasePreparer.reorder) và thứ tự gốc:
+ *  - item id mới = thứ hạng theo ES giảm dần, id gốc = thứ tự xuất hiện đầu tiên
+ *  - TID mới = vị trí sau khi sắp giao dịch theo danh sách item (id mới) tăng dần, TID gốc = thứ tự trong file
+ *
+ * Tên item không đổi nên kết quả khai thác (theo tên) dùng được trực tiếp; ánh xạ chỉ cần khi
+ * đối chiếu theo id hoặc TID với dữ liệu gốc. Các mảng chỉ được đọc, không được sửa.
+ */
+
+public class Renumbering {
+
+    /** id mới → id gốc */
+    private final int[] originalItemIds;
+
+    /** id gốc → id mới */
+    private final int[] itemIds;
+
+    /** TID mới → TID gốc */
+    private final int[] originalTids;
+
+    /** TID gốc → TID mới */
+    private final int[] tids;
+
+    public Renumbering(int[] originalItemIds, int[] originalTids) {
+        this.originalItemIds = originalItemIds;
+        this.originalTids = originalTids;
+        this.itemIds = invert(originalItemIds);
+        this.tids = invert(originalTids);
+    }
+
+    private static int[] invert(int[] mapping) {
+        int[] inverse = new int[mapping.length];
+        for (int i = 0; i < mapping.length; i++) {
+            inverse[mapping[i]] = i;
+        }
+        return inverse;
+    }
+
+    public int getItemCount() {
+        return originalItemIds.length;
+    }
+
+    public int getTransactionCount() {
+        return originalTids.length;
+    }
+
+    /** id gốc của item có id mới là id */
+    public int originalItemId(int id) {
+        return originalItemIds[id];
+    }
+
+    /** id mới của item có id gốc là originalId */
+    public int itemId(int originalId) {
+        return itemIds[originalId];
+    }
+
+    /** TID gốc của giao dịch có TID mới là tid */
+    public int originalTid(int tid) {
+        return originalTids[tid];
+    }
+
+    /** TID mới của giao dịch có TID gốc là originalTid */
+    public int tid(int originalTid) {
+        return tids[originalTid];
+    }
+}
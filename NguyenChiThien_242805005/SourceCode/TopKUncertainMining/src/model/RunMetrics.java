@@ -0,0 +1,66 @@
+package model;
+
+/**
+ * Số liệu đo của một lần chạy thuật toán.
+ *
+ * Gồm:
+ *  - Thời gian thực (wall time) và thời gian CPU của luồng chạy thuật toán (ms)
+ *  - Heap cao nhất trong lúc chạy: tổng heap đang dùng lớn nhất, lấy từ thông báo GC và lấy mẫu (MB)
+ *  - Tổng số byte luồng chạy thuật toán đã cấp phát (MB)
+ *  - Số lần GC và tổng thời gian dừng do GC trong lúc chạy
+ */
+
+public class RunMetrics {
+
+    private final double wallMs;
+    private final double cpuMs;
+    private final double peakHeapMB;
+    private final double allocatedMB;
+    private final long gcCount;
+    private final long gcPauseMs;
+
+    public RunMetrics(double wallMs, double cpuMs, double peakHeapMB, double allocatedMB,
+                      long gcCount, long gcPauseMs) {
+        this.wallMs = wallMs;
+        this.cpuMs = cpuMs;
+        this.peakHeapMB = peakHeapMB;
+        this.allocatedMB = allocatedMB;
+        this.gcCount = gcCount;
+        this.gcPauseMs = gcPauseMs;
+    }
+
+    /** Số liệu cho kết quả không phải chạy thuật toán (vd: lấy từ cache), chỉ có thời gian */
+    public static RunMetrics wallTimeOnly(double wallMs) {
+        return new RunMetrics(wallMs, 0.0, 0.0, 0.0, 0, 0);
+    }
+
+    public double getWallMs() {
+        return wallMs;
+    }
+
+    public double getCpuMs() {
+        return cpuMs;
+    }
+
+    public double getPeakHeapMB() {
+        return peakHeapMB;
+    }
+
+    public double getAllocatedMB() {
+        return allocatedMB;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public long getGcPauseMs() {
+        return gcPauseMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("wall=%.3f ms, cpu=%.3f ms, peakHeap=%.2f MB, alloc=%.2f MB, gc=%d (%d ms)",
+                wallMs, cpuMs, peakHeapMB, allocatedMB, gcCount, gcPauseMs);
+    }
+}
@@ -0,0 +1,22 @@
+package model;
+
+/**
+ * Cách lưu trữ đã mã hóa của cơ sở dữ liệu giao dịch không chắc chắn.
+ * Mỗi giao dịch là một dãy (item id, xác suất), item id là chỉ số trong từ điển item.
+ * Các item trong một giao dịch được sắp theo id tăng dần.
+ */
+
+public interface TransactionStore {
+
+    /** Số lượng giao dịch */
+    int size();
+
+    /** Số item trong giao dịch t */
+    int length(int t);
+
+    /** Item id thứ j của giao dịch t */
+    int itemAt(int t, int j);
+
+    /** Xác suất của item thứ j trong giao dịch t */
+    double probAt(int t, int j);
+}